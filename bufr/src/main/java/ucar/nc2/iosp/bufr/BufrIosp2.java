@@ -4,6 +4,7 @@
  */
 package ucar.nc2.iosp.bufr;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.jdom2.Element;
 import ucar.nc2.constants.DataFormatType;
 import ucar.ma2.*;
@@ -13,6 +14,13 @@ import ucar.nc2.util.CancelTask;
 import ucar.unidata.io.RandomAccessFile;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * IOSP for BUFR data - version 2, use the preprocessor
@@ -35,6 +43,37 @@ public class BufrIosp2 extends AbstractIOServiceProvider {
     debugIter = debugFlag.isSet("Bufr/iter");
   }
 
+  // parallel decoding of messages, shared by all open files
+  private static volatile DecodePool decodePool;
+
+  /**
+   * Decode messages in parallel when iterating over the obs structure.
+   * The file is still scanned sequentially on the calling thread; each message is copied out and decoded
+   * by a pool of worker threads, and the results are returned in the original order.
+   * Iterators already in use keep going with the pool they started with.
+   *
+   * @param nthreads number of decoding threads; 0 or 1 means decode on the calling thread (default).
+   */
+  public static synchronized void setDecodeThreads(int nthreads) {
+    DecodePool old = decodePool;
+    decodePool = (nthreads > 1) ? new DecodePool(Executors.newFixedThreadPool(nthreads,
+        new ThreadFactoryBuilder().setNameFormat("BufrDecode-%d").setDaemon(true).build()), nthreads) : null;
+    // submitted messages are still decoded; SeqIterParallel decodes later ones itself
+    if (old != null)
+      old.executor.shutdown();
+  }
+
+  // the executor and its number of threads, always read together
+  private static class DecodePool {
+    final ExecutorService executor;
+    final int nthreads;
+
+    DecodePool(ExecutorService executor, int nthreads) {
+      this.executor = executor;
+      this.nthreads = nthreads;
+    }
+  }
+
   // static public final Set<NetcdfDataset.Enhance> enhance =
   // Collections.unmodifiableSet(EnumSet.of(NetcdfDataset.Enhance.ScaleMissing));
 
@@ -120,12 +159,56 @@ public class BufrIosp2 extends AbstractIOServiceProvider {
   @Override
   public Array readData(Variable v2, Section section) {
     // return new ArraySequence(obsStructure.makeStructureMembers(), getStructureIterator(null, -1), nelems);
-    return new ArraySequence(obsStructure.makeStructureMembers(), new SeqIter(), nelems);
+    return new ArraySequence(obsStructure.makeStructureMembers(), makeSeqIter(), nelems);
   }
 
   @Override
   public StructureDataIterator getStructureIterator(Structure s, int bufferSize) {
-    return isSingle ? new SeqIterSingle() : new SeqIter();
+    return isSingle ? new SeqIterSingle() : makeSeqIter();
+  }
+
+  private StructureDataIterator makeSeqIter() {
+    DecodePool pool = decodePool;
+    return (pool == null) ? new SeqIter() : new SeqIterParallel(pool.executor, 2 * pool.nthreads);
+  }
+
+  // next data message of the same type as the proto message, or null when done
+  private Message nextDataMessage() throws IOException {
+    while (scanner.hasNext()) {
+      Message m = scanner.next();
+      if (m == null) {
+        log.warn("BUFR scanner hasNext() true but next() null!");
+        return null;
+      }
+      if (m.containsBufrTable()) // data messages only
+        continue;
+
+      // mixed messages
+      if (!protoMessage.equals(m)) {
+        if (messHash == null)
+          messHash = new HashSet<>(20);
+        if (!messHash.contains(m.hashCode())) {
+          log.warn("File " + raf.getLocation() + " has different BUFR message types hash=" + protoMessage.hashCode()
+              + "; skipping");
+          messHash.add(m.hashCode());
+        }
+        continue;
+      }
+      return m;
+    }
+    return null;
+  }
+
+  private ArrayStructure readMessage(Message m, RandomAccessFile mraf) throws IOException {
+    ArrayStructure as;
+    if (m.dds.isCompressed()) {
+      MessageCompressedDataReader reader = new MessageCompressedDataReader();
+      as = reader.readEntireMessage(obsStructure, protoMessage, m, mraf, null);
+    } else {
+      MessageUncompressedDataReader reader = new MessageUncompressedDataReader();
+      as = reader.readEntireMessage(obsStructure, protoMessage, m, mraf, null);
+    }
+    return as;
   }
 
   private class SeqIter implements StructureDataIterator {
@@ -169,42 +252,116 @@ public class BufrIosp2 extends AbstractIOServiceProvider {
     }
 
     private StructureDataIterator readNextMessage() throws IOException {
-      if (!scanner.hasNext())
+      Message m = nextDataMessage();
+      if (m == null)
         return null;
-      Message m = scanner.next();
-      if (m == null) {
-        log.warn("BUFR scanner hasNext() true but next() null!");
-        return null;
-      }
-      if (m.containsBufrTable()) // data messages only
-        return readNextMessage();
+      ArrayStructure as = readMessage(m, raf);
+      return as.getStructureDataIterator();
+    }
 
-      // mixed messages
-      if (!protoMessage.equals(m)) {
-        if (messHash == null)
-          messHash = new HashSet<>(20);
-        if (!messHash.contains(m.hashCode())) {
-          log.warn("File " + raf.getLocation() + " has different BUFR message types hash=" + protoMessage.hashCode()
-              + "; skipping");
-          messHash.add(m.hashCode());
+    @Override
+    public int getCurrentRecno() {
+      return recnum - 1;
+    }
+
+    @Override
+    public void close() {
+      if (currIter != null)
+        currIter.close();
+      currIter = null;
+      if (debugIter)
+        System.out.printf("BUFR read recnum %d%n", recnum);
+    }
+  }
+
+  // Pipelined version of SeqIter: messages are scanned and copied out on this thread, decoded in the pool,
+  // and handed back in file order. At most maxPending messages are in flight at once.
+  // If the pool is shut down, the rest of the messages are decoded on this thread.
+  private class SeqIterParallel implements StructureDataIterator {
+    private final ExecutorService pool;
+    private final int maxPending;
+    private final ArrayDeque<Future<ArrayStructure>> pending = new ArrayDeque<>();
+    private boolean scanDone;
+    StructureDataIterator currIter;
+    int recnum;
+
+    SeqIterParallel(ExecutorService pool, int maxPending) {
+      this.pool = pool;
+      this.maxPending = maxPending;
+      reset();
+    }
+
+    @Override
+    public StructureDataIterator reset() {
+      cancelPending();
+      recnum = 0;
+      currIter = null;
+      scanDone = false;
+      scanner.reset();
+      return this;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+      while (currIter == null || !currIter.hasNext()) {
+        fill();
+        Future<ArrayStructure> next = pending.poll();
+        if (next == null) {
+          currIter = null;
+          nelems = recnum;
+          return false;
         }
-        return readNextMessage();
+        currIter = take(next).getStructureDataIterator();
       }
+      return true;
+    }
 
-      ArrayStructure as = readMessage(m);
-      return as.getStructureDataIterator();
+    @Override
+    public StructureData next() throws IOException {
+      recnum++;
+      return currIter.next();
     }
 
-    private ArrayStructure readMessage(Message m) throws IOException {
-      ArrayStructure as;
-      if (m.dds.isCompressed()) {
-        MessageCompressedDataReader reader = new MessageCompressedDataReader();
-        as = reader.readEntireMessage(obsStructure, protoMessage, m, raf, null);
-      } else {
-        MessageUncompressedDataReader reader = new MessageUncompressedDataReader();
-        as = reader.readEntireMessage(obsStructure, protoMessage, m, raf, null);
+    private void fill() throws IOException {
+      while (!scanDone && pending.size() < maxPending) {
+        Message m = nextDataMessage();
+        if (m == null) {
+          scanDone = true;
+          break;
+        }
+        RandomAccessFile mraf =
+            new MessageBytesRandomAccessFile(raf.getLocation(), scanner.getMessageBytes(m), m.getStartPos());
+        Callable<ArrayStructure> task = () -> readMessage(m, mraf);
+        try {
+          pending.add(pool.submit(task));
+        } catch (RejectedExecutionException e) { // setDecodeThreads() shut down this pool
+          FutureTask<ArrayStructure> inline = new FutureTask<>(task);
+          inline.run();
+          pending.add(inline);
+        }
+      }
+    }
+
+    private ArrayStructure take(Future<ArrayStructure> future) throws IOException {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while decoding BUFR message in " + raf.getLocation());
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException)
+          throw (IOException) cause;
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        throw new IOException(cause);
       }
-      return as;
+    }
+
+    private void cancelPending() {
+      for (Future<ArrayStructure> f : pending)
+        f.cancel(true);
+      pending.clear();
     }
 
     @Override
@@ -214,6 +371,7 @@ public class BufrIosp2 extends AbstractIOServiceProvider {
 
     @Override
     public void close() {
+      cancelPending();
       if (currIter != null)
         currIter.close();
       currIter = null;
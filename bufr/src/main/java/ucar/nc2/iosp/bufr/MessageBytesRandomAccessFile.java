@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.bufr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import ucar.unidata.io.InMemoryRandomAccessFile;
+
+/**
+ * The raw bytes of a single BUFR message, addressed by their position in the original file.
+ * This lets the message readers, which seek to absolute file positions taken from the Message,
+ * decode a copy of the message on another thread without touching the shared file.
+ *
+ * @since 10/19/2026
+ */
+class MessageBytesRandomAccessFile extends InMemoryRandomAccessFile {
+  private final long startPos;
+
+  /**
+   * @param name used as the location
+   * @param data the complete message, from MessageScanner.getMessageBytes()
+   * @param startPos position of data[0] in the original file
+   */
+  MessageBytesRandomAccessFile(String name, byte[] data, long startPos) {
+    super(name, data);
+    this.startPos = startPos;
+    bufferStart = startPos;
+    dataEnd = startPos + data.length;
+    filePosition = startPos;
+  }
+
+  @Override
+  public void seek(long pos) throws IOException {
+    endOfFile = false;
+    super.seek(pos);
+  }
+
+  // the entire message is in the buffer, anything outside of it is past the end
+  @Override
+  protected void readBuffer(long pos) throws IOException {
+    if (pos < startPos)
+      throw new IOException("Seek to " + pos + " before start of message at " + startPos);
+    filePosition = pos;
+    endOfFile = true;
+  }
+
+  @Override
+  protected int read_(long pos, byte[] b, int offset, int len) {
+    if (pos < startPos || pos >= dataEnd)
+      return -1;
+    return super.read_(pos - startPos, b, offset, len);
+  }
+
+  @Override
+  public long readToByteChannel(WritableByteChannel dest, long offset, long nbytes) throws IOException {
+    return dest.write(ByteBuffer.wrap(buffer, (int) (offset - startPos), (int) nbytes));
+  }
+}
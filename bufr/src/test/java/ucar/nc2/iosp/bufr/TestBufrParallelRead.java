@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.bufr;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureDataIterator;
+import ucar.nc2.NCdumpW;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Sequence;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Parallel decoding of BUFR messages must return the same obs, in the same order, as sequential decoding. */
+public class TestBufrParallelRead {
+  private static final String filename = "../bufr/src/test/data/RadiosondeStationData.bufr";
+
+  @After
+  public void after() {
+    BufrIosp2.setDecodeThreads(0);
+  }
+
+  @Test
+  public void compareParallelToSequential() throws IOException {
+    BufrIosp2.setDecodeThreads(0);
+    List<String> sequential = readAll();
+
+    BufrIosp2.setDecodeThreads(4);
+    List<String> parallel = readAll();
+
+    Assert.assertTrue(sequential.size() > 0);
+    Assert.assertEquals(sequential, parallel);
+  }
+
+  @Test
+  public void resetRestartsFromBeginning() throws IOException {
+    BufrIosp2.setDecodeThreads(3);
+    try (NetcdfFile ncfile = NetcdfFile.open(filename)) {
+      Sequence obs = (Sequence) ncfile.findVariable(BufrIosp2.obsRecord);
+      try (StructureDataIterator iter = obs.getStructureIterator()) {
+        int count = 0;
+        while (iter.hasNext()) {
+          iter.next();
+          count++;
+        }
+        iter.reset();
+        int count2 = 0;
+        while (iter.hasNext()) {
+          iter.next();
+          Assert.assertEquals(count2, iter.getCurrentRecno());
+          count2++;
+        }
+        Assert.assertEquals(count, count2);
+      }
+    }
+  }
+
+  // the iterator's pool is shut down after the first record
+  @Test
+  public void setDecodeThreadsWhileIterating() throws IOException {
+    BufrIosp2.setDecodeThreads(0);
+    List<String> sequential = readAll();
+
+    BufrIosp2.setDecodeThreads(2);
+    List<String> result = new ArrayList<>();
+    try (NetcdfFile ncfile = NetcdfFile.open(filename)) {
+      Sequence obs = (Sequence) ncfile.findVariable(BufrIosp2.obsRecord);
+      try (StructureDataIterator iter = obs.getStructureIterator()) {
+        while (iter.hasNext()) {
+          result.add(NCdumpW.toString(iter.next()));
+          if (result.size() == 1)
+            BufrIosp2.setDecodeThreads(0);
+        }
+      }
+    }
+    Assert.assertEquals(sequential, result);
+  }
+
+  private List<String> readAll() throws IOException {
+    List<String> result = new ArrayList<>();
+    try (NetcdfFile ncfile = NetcdfFile.open(filename)) {
+      Sequence obs = (Sequence) ncfile.findVariable(BufrIosp2.obsRecord);
+      try (StructureDataIterator iter = obs.getStructureIterator()) {
+        while (iter.hasNext()) {
+          StructureData sdata = iter.next();
+          result.add(NCdumpW.toString(sdata));
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -13,6 +13,7 @@ import ucar.nc2.dt.GridDatatype;
 import ucar.nc2.dt.GridDataset;
 import ucar.nc2.dt.GridCoordSystem;
 import ucar.unidata.geoloc.vertical.VerticalTransform;
+import ucar.unidata.geoloc.vertical.VerticalTransformImpl;
 import ucar.unidata.util.test.category.NeedsCdmUnitTest;
 import ucar.unidata.util.test.TestDir;
 import java.lang.invoke.MethodHandles;
@@ -56,6 +57,33 @@ public class TestVertical extends TestCase {
     gds.close();
   }
 
+  public void testOceanSWindow() throws java.io.IOException, InvalidRangeException {
+    try (GridDataset gds =
+        ucar.nc2.dt.grid.GridDataset.open(TestDir.cdmUnitTestDir + "transforms/roms_ocean_s_coordinate.nc")) {
+      GridDatatype grid = gds.findGridDatatype("temp");
+      VerticalTransformImpl vt = (VerticalTransformImpl) grid.getCoordinateSystem().getVerticalTransform();
+      vt.setCacheSize(2);
+
+      ArrayDouble.D3 full = vt.getCoordinateArray(0);
+      assert vt.getCoordinateArray(0) == full : "cached";
+      int[] shape = full.getShape();
+
+      Range z = new Range(1, shape[0] - 1, 2);
+      Range y = new Range(shape[1] / 4, shape[1] / 2);
+      Range x = new Range(3, shape[2] - 1, 3);
+      ArrayDouble.D3 window = vt.getCoordinateArray(0, z, y, x);
+      Array expected = full.sectionNoReduce(java.util.Arrays.asList(z, y, x));
+      assert MAMath.nearlyEquals(expected, window);
+
+      // the same window through a subset
+      VerticalTransform subset = vt.subset(null, z, y, x);
+      assert MAMath.nearlyEquals(expected, subset.getCoordinateArray(0));
+
+      ArrayDouble.D1 column = vt.getCoordinateArray1D(0, 5, 7);
+      assert MAMath.nearlyEquals(full.section(new int[] {0, 7, 5}, new int[] {shape[0], 1, 1}).reduce(), column);
+    }
+  }
+
   public void testOceanSigma() throws java.io.IOException, InvalidRangeException {
     GridDataset gds = ucar.nc2.dt.grid.GridDataset.open(TestDir.cdmUnitTestDir + "conventions/cf/gomoos_cf.nc");
 
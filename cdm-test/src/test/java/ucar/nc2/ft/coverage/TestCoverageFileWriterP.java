@@ -12,13 +12,18 @@ import org.junit.runners.Parameterized;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
 import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
 import ucar.nc2.constants.FeatureType;
 import ucar.nc2.dataset.NetcdfDataset;
 import ucar.nc2.dt.grid.GridDataset;
 import ucar.nc2.ft2.coverage.*;
 import ucar.nc2.ft2.coverage.writer.CFGridCoverageWriter2;
+import ucar.nc2.iosp.hdf5.H5iosp;
+import ucar.nc2.iosp.netcdf3.N3iosp;
 import ucar.nc2.jni.netcdf.Nc4Iosp;
+import ucar.nc2.util.CompareNetcdf2;
 import ucar.nc2.util.Optional;
 import ucar.unidata.util.test.category.NeedsCdmUnitTest;
 import ucar.unidata.util.test.TestDir;
@@ -26,6 +31,7 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Formatter;
 import java.util.List;
 
 /**
@@ -141,4 +147,69 @@ public class TestCoverageFileWriterP {
 
   }
 
+  @Test
+  public void writeTestFileInSlabs() throws IOException, InvalidRangeException {
+    if (version.useJniIosp() && !Nc4Iosp.isClibraryPresent()) {
+      return;
+    }
+    File expectedFile = tempFolder.newFile();
+
+    try (FeatureDatasetCoverage cc = CoverageDatasetFactory.open(endpoint)) {
+      Assert.assertNotNull(endpoint, cc);
+      CoverageCollection gcs = cc.findCoverageDataset(type);
+
+      try (NetcdfFileWriter writer = NetcdfFileWriter.createNew(version, expectedFile.getPath(), null)) {
+        Assert.assertTrue(CFGridCoverageWriter2.write(gcs, covList, params, false, writer).isPresent());
+      }
+
+      // small enough to split every coverage into single time or level slabs
+      compareSlabs(expectedFile, writeSlabs(gcs, 1000, 1));
+    }
+
+    long largest = 0;
+    try (NetcdfFile expected = NetcdfFile.open(expectedFile.getPath())) {
+      for (String covName : covList) {
+        Variable v = expected.findVariable(covName);
+        largest = Math.max(largest, v.getSize() * v.getElementSize());
+      }
+    }
+
+    // several slabs read at once by the executor, and waiting in the pending queue to be written.
+    // concurrent reads must be allowed when the dataset is opened.
+    N3iosp.setConcurrentReads(true);
+    H5iosp.setConcurrentReads(true);
+    try (FeatureDatasetCoverage cc = CoverageDatasetFactory.open(endpoint)) {
+      Assert.assertNotNull(endpoint, cc);
+      CoverageCollection gcs = cc.findCoverageDataset(type);
+      compareSlabs(expectedFile, writeSlabs(gcs, 1000, 4));
+      compareSlabs(expectedFile, writeSlabs(gcs, largest / 3, 4));
+    } finally {
+      N3iosp.setConcurrentReads(false);
+      H5iosp.setConcurrentReads(false);
+    }
+  }
+
+  private File writeSlabs(CoverageCollection gcs, long maxBytesInMemory, int nthreads)
+      throws IOException, InvalidRangeException {
+    File slabFile = tempFolder.newFile();
+    try (NetcdfFileWriter writer = NetcdfFileWriter.createNew(version, slabFile.getPath(), null)) {
+      Assert.assertTrue(
+          CFGridCoverageWriter2.write(gcs, covList, params, false, writer, maxBytesInMemory, nthreads).isPresent());
+    }
+    return slabFile;
+  }
+
+  private void compareSlabs(File expectedFile, File slabFile) throws IOException {
+    try (NetcdfFile expected = NetcdfFile.open(expectedFile.getPath());
+        NetcdfFile result = NetcdfFile.open(slabFile.getPath())) {
+      for (String covName : covList) {
+        Variable v = expected.findVariable(covName);
+        Formatter f = new Formatter();
+        boolean ok = new CompareNetcdf2(f, false, false, true).compareData(covName, v.read(),
+            result.findVariable(covName).read());
+        Assert.assertTrue(covName + " " + f, ok);
+      }
+    }
+  }
+
 }
@@ -7,8 +7,12 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
 import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
 import ucar.nc2.VariableSimpleIF;
+import ucar.nc2.constants.ACDD;
 import ucar.nc2.constants.FeatureType;
 import ucar.nc2.ft.*;
 import ucar.nc2.ft.point.TestCFPointDatasets;
@@ -79,6 +83,40 @@ public class TestCFPointWriter {
     assert count == countExpected : "count =" + count + " expected " + countExpected;
   }
 
+  @Test
+  public void testWrite3batched() throws IOException {
+    File unbatched = tempFolder.newFile();
+    writeDataset(location, ftype, new CFPointWriterConfig(NetcdfFileWriter.Version.netcdf3), show, unbatched);
+
+    // small batches, so that there are full and partial ones
+    CFPointWriterConfig config =
+        new CFPointWriterConfig(NetcdfFileWriter.Version.netcdf3).setBatchSize(7).setAsyncWrites(true);
+    File batched = tempFolder.newFile();
+    int count = writeDataset(location, ftype, config, show, batched);
+    System.out.printf("%s netcdf3 batched count=%d%n", location, count);
+    assert count == countExpected : "count =" + count + " expected " + countExpected;
+
+    // the batched writes must give the same file
+    try (NetcdfFile org = NetcdfFile.open(unbatched.getPath()); NetcdfFile copy = NetcdfFile.open(batched.getPath())) {
+      Formatter f = new Formatter();
+      boolean ok = new CompareNetcdf2(f).compare(org, copy, new TimeCoverageFilter(), false, false, true);
+      Assert.assertTrue(location + " batched differs\n" + f, ok);
+    }
+  }
+
+  // the time coverage is the present time if the dataset has no dates
+  private static class TimeCoverageFilter implements CompareNetcdf2.ObjFilter {
+    @Override
+    public boolean attCheckOk(Variable v, Attribute att) {
+      return v != null || !(att.getShortName().equals(ACDD.TIME_START) || att.getShortName().equals(ACDD.TIME_END));
+    }
+
+    @Override
+    public boolean varDataTypeCheckOk(Variable v) {
+      return true;
+    }
+  }
+
   @Test
   public void testWrite4classic() throws IOException {
     // Ignore this test if NetCDF-4 isn't present.
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.nc2.util.CompareNetcdf2;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Formatter;
+
+/** Test that reads through the chunk cache get the same data, and that overlapping reads hit the cache. */
+@Category(NeedsCdmUnitTest.class)
+public class TestH5chunkCache {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @After
+  public void clearCache() {
+    H5iosp.setChunkCache(null);
+  }
+
+  @Test
+  public void testCompareWithoutCache() throws IOException, InvalidRangeException {
+    H5chunkCache cache = new H5chunkCache(10 * 1000 * 1000);
+
+    try (NetcdfFile ncfile = TestH5.openH5("support/zip.h5")) {
+      Variable v = ncfile.findVariable("Data/Compressed_Data");
+      Assert.assertNotNull(((H5header.Vinfo) v.getSPobject()).mfp);
+      v.setCaching(false);
+
+      H5iosp.setChunkCache(null);
+      Array expected = v.read();
+      Section half = new Section().appendRange(0, v.getShape(0) / 2).appendRange(v.getShape(1));
+      Array expectedHalf = v.read(half);
+
+      H5iosp.setChunkCache(cache);
+      compare(v, expected, v.read());
+      long hits = cache.getStats().hitCount();
+      compare(v, expectedHalf, v.read(half)); // overlaps the first read
+      Assert.assertTrue(cache.getStats().hitCount() > hits);
+    }
+
+    Formatter f = new Formatter();
+    cache.showStats(f);
+    logger.debug("{}", f);
+    Assert.assertTrue(cache.getBytesDecompressed() > 0);
+    Assert.assertTrue(cache.getBytes() <= cache.getMaxBytes());
+  }
+
+  @Test
+  public void testSmallCache() throws IOException {
+    H5chunkCache cache = new H5chunkCache(100); // smaller than any chunk, so nothing is kept
+
+    try (NetcdfFile ncfile = TestH5.openH5("support/zip.h5")) {
+      Variable v = ncfile.findVariable("Data/Compressed_Data");
+      v.setCaching(false);
+      Array expected = v.read();
+
+      H5iosp.setChunkCache(cache);
+      compare(v, expected, v.read());
+      compare(v, expected, v.read());
+    }
+    Assert.assertTrue(cache.getBytes() <= 100);
+  }
+
+  private void compare(Variable v, Array expected, Array result) {
+    Formatter f = new Formatter();
+    boolean ok = new CompareNetcdf2(f, false, false, true).compareData(v.getFullName(), expected, result);
+    Assert.assertTrue(v.getFullName() + " " + f, ok);
+  }
+}
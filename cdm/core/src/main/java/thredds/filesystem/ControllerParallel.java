@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package thredds.filesystem;
+
+import thredds.inventory.CollectionConfig;
+import thredds.inventory.MController;
+import thredds.inventory.MFile;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An MController that scans subdirectories in parallel, and remembers what it found.
+ * <p>
+ * Independent subdirectories are listed concurrently by a pool of at most nthreads.
+ * For each directory, the last scan (the directory mtime, the subdirectory names, and each file's name, size and mtime)
+ * is kept in a snapshot. On a rescan, a directory whose mtime has not changed is not listed again, and its files
+ * are not stat'ed; only the directory itself is. The snapshot may be persisted to a file, so that it survives a restart.
+ * <p>
+ * Adding, removing or renaming a file changes the directory mtime, but modifying a file in place does not.
+ * If files are rewritten in place, use a DirectoryWatcher to tell this controller which directories changed,
+ * or call {@link #invalidate}.
+ * <p>
+ * Use with MFileCollectionManager.setController(new ControllerParallel(nthreads, snapshotFile)).
+ * recheck is ignored (always true).
+ */
+@ThreadSafe
+public class ControllerParallel implements MController {
+  private static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ControllerParallel.class);
+  private static final int MAGIC = 0x4d534e50; // "MSNP"
+  private static final int VERSION = 1;
+  private static final long MTIME_GRANULARITY = 2000; // some file systems only keep mtime to the nearest 2 seconds
+
+  private final ForkJoinPool pool;
+  private final Path snapshotFile; // may be null
+  private final Map<String, DirSnapshot> snapshot = new ConcurrentHashMap<>();
+  private final AtomicInteger countListed = new AtomicInteger();
+  private final AtomicInteger countReused = new AtomicInteger();
+
+  /**
+   * Constructor, without a persistent snapshot.
+   *
+   * @param nthreads maximum number of directories to scan at once
+   */
+  public ControllerParallel(int nthreads) {
+    this(nthreads, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param nthreads maximum number of directories to scan at once
+   * @param snapshotFile read the snapshot from here if it exists, and write it here after each full scan; may be null
+   */
+  public ControllerParallel(int nthreads, Path snapshotFile) {
+    this.pool = new ForkJoinPool(Math.max(1, nthreads));
+    this.snapshotFile = snapshotFile;
+    if (snapshotFile != null && Files.exists(snapshotFile)) {
+      try {
+        readSnapshot(snapshotFile);
+      } catch (IOException e) {
+        logger.warn("Cant read scan snapshot {}; will do a full scan", snapshotFile, e);
+        snapshot.clear();
+      }
+    }
+  }
+
+  ////////////////////////////////////////
+
+  @Override
+  public Iterator<MFile> getInventoryAll(CollectionConfig mc, boolean recheck) throws IOException {
+    Path top = getTopDir(mc);
+    if (top == null)
+      return null;
+
+    Set<String> visited = ConcurrentHashMap.newKeySet();
+    List<MFile> result;
+    try {
+      result = pool.invoke(new ScanTask(mc, top, true, visited));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    // forget directories under top that no longer exist
+    String topKey = key(top);
+    String topPrefix = topKey.endsWith("/") ? topKey : topKey + "/";
+    snapshot.keySet().removeIf(k -> (k.equals(topKey) || k.startsWith(topPrefix)) && !visited.contains(k));
+
+    logger.debug("{}: scanned {} files; {} directories listed, {} unchanged", top, result.size(), countListed.get(),
+        countReused.get());
+    if (snapshotFile != null) {
+      try {
+        saveSnapshot();
+      } catch (IOException e) {
+        logger.warn("Cant write scan snapshot {}", snapshotFile, e);
+      }
+    }
+    return result.iterator();
+  }
+
+  @Override
+  public Iterator<MFile> getInventoryTop(CollectionConfig mc, boolean recheck) throws IOException {
+    Path top = getTopDir(mc);
+    if (top == null)
+      return null;
+    try {
+      return pool.invoke(new ScanTask(mc, top, false, null)).iterator();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  @Override
+  public Iterator<MFile> getSubdirs(CollectionConfig mc, boolean recheck) throws IOException {
+    Path top = getTopDir(mc);
+    if (top == null)
+      return null;
+    List<MFile> result = new ArrayList<>();
+    DirSnapshot snap = scanDirectory(top);
+    for (String name : snap.subdirs) {
+      MFile mfile = new MFileOS7(top.resolve(name));
+      if (mc.accept(mfile))
+        result.add(mfile);
+    }
+    return result.iterator();
+  }
+
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+
+  /**
+   * Forget the snapshot of this directory, so that it is listed again on the next scan.
+   *
+   * @param dir the directory
+   */
+  public void invalidate(Path dir) {
+    snapshot.remove(key(dir));
+  }
+
+  /** Forget all snapshots, so that the next scan is a full scan. */
+  public void invalidateAll() {
+    snapshot.clear();
+  }
+
+  /**
+   * Write the snapshot to the snapshotFile. Done automatically after each getInventoryAll().
+   *
+   * @throws IOException on write error
+   */
+  public void saveSnapshot() throws IOException {
+    if (snapshotFile == null)
+      return;
+    Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      List<Map.Entry<String, DirSnapshot>> entries = new ArrayList<>(snapshot.entrySet());
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(entries.size());
+      for (Map.Entry<String, DirSnapshot> entry : entries) {
+        out.writeUTF(entry.getKey());
+        entry.getValue().write(out);
+      }
+    }
+    Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private void readSnapshot(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        throw new IOException("Not a scan snapshot, or wrong version");
+      int ndirs = in.readInt();
+      for (int i = 0; i < ndirs; i++) {
+        String key = in.readUTF();
+        snapshot.put(key, DirSnapshot.read(in));
+      }
+    }
+    logger.debug("read scan snapshot {} with {} directories", file, snapshot.size());
+  }
+
+  /** @return number of directories listed, and number not listed because they were unchanged, since creation */
+  public String getStatistics() {
+    return String.format("directories listed=%d unchanged=%d cached=%d", countListed.get(), countReused.get(),
+        snapshot.size());
+  }
+
+  ////////////////////////////////////////////////////////////
+
+  private static Path getTopDir(CollectionConfig mc) {
+    String path = mc.getDirectoryName();
+    if (path.startsWith("file:")) {
+      path = path.substring(5);
+    }
+
+    Path cd = Paths.get(path);
+    if (!Files.isDirectory(cd))
+      return null;
+    return cd;
+  }
+
+  private static String key(Path dir) {
+    return dir.toAbsolutePath().normalize().toString();
+  }
+
+  // the snapshot of dir if its mtime hasnt changed, else list it and make a new snapshot
+  private DirSnapshot scanDirectory(Path dir) throws IOException {
+    String key = key(dir);
+    long scanTime = System.currentTimeMillis();
+    long mtime = Files.getLastModifiedTime(dir).toMillis();
+    DirSnapshot old = snapshot.get(key);
+    // a change in the same mtime tick as the last scan would not be seen, so those are never trusted
+    if (old != null && old.lastModified == mtime && old.scanned > mtime + MTIME_GRANULARITY) {
+      countReused.incrementAndGet();
+      return old;
+    }
+
+    List<String> subdirs = new ArrayList<>();
+    List<FileEntry> files = new ArrayList<>();
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+      for (Path p : ds) {
+        BasicFileAttributes attr;
+        try {
+          attr = Files.readAttributes(p, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+          continue; // deleted while we were looking
+        }
+        String name = p.getFileName().toString();
+        if (attr.isDirectory())
+          subdirs.add(name);
+        else
+          files.add(new FileEntry(name, attr.size(), attr.lastModifiedTime().toMillis()));
+      }
+    }
+    Collections.sort(subdirs);
+
+    DirSnapshot result = new DirSnapshot(mtime, scanTime, subdirs, files);
+    snapshot.put(key, result);
+    countListed.incrementAndGet();
+    return result;
+  }
+
+  // scan one directory, and fork a task for each subdirectory
+  private class ScanTask extends RecursiveTask<List<MFile>> {
+    private final CollectionConfig mc;
+    private final Path dir;
+    private final boolean recurse;
+    private final Set<String> visited;
+
+    ScanTask(CollectionConfig mc, Path dir, boolean recurse, Set<String> visited) {
+      this.mc = mc;
+      this.dir = dir;
+      this.recurse = recurse;
+      this.visited = visited;
+    }
+
+    @Override
+    protected List<MFile> compute() {
+      DirSnapshot snap;
+      try {
+        snap = scanDirectory(dir);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      if (visited != null)
+        visited.add(key(dir));
+
+      List<ScanTask> subtasks = new ArrayList<>();
+      if (recurse) {
+        for (String name : snap.subdirs) {
+          ScanTask task = new ScanTask(mc, dir.resolve(name), true, visited);
+          task.fork();
+          subtasks.add(task);
+        }
+      }
+
+      List<MFile> result = new ArrayList<>(snap.files.size());
+      for (FileEntry fe : snap.files) {
+        MFile mfile = new MFileOS7(dir.resolve(fe.name), fe);
+        if (mc.accept(mfile))
+          result.add(mfile);
+      }
+      for (ScanTask task : subtasks)
+        result.addAll(task.join());
+      return result;
+    }
+  }
+
+  private static class DirSnapshot {
+    final long lastModified; // directory mtime
+    final long scanned; // when it was listed
+    final List<String> subdirs;
+    final List<FileEntry> files;
+
+    DirSnapshot(long lastModified, long scanned, List<String> subdirs, List<FileEntry> files) {
+      this.lastModified = lastModified;
+      this.scanned = scanned;
+      this.subdirs = subdirs;
+      this.files = files;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeLong(lastModified);
+      out.writeLong(scanned);
+      out.writeInt(subdirs.size());
+      for (String name : subdirs)
+        out.writeUTF(name);
+      out.writeInt(files.size());
+      for (FileEntry fe : files) {
+        out.writeUTF(fe.name);
+        out.writeLong(fe.size);
+        out.writeLong(fe.lastModified);
+      }
+    }
+
+    static DirSnapshot read(DataInputStream in) throws IOException {
+      long lastModified = in.readLong();
+      long scanned = in.readLong();
+      int nsubdirs = in.readInt();
+      List<String> subdirs = new ArrayList<>(nsubdirs);
+      for (int i = 0; i < nsubdirs; i++)
+        subdirs.add(in.readUTF());
+      int nfiles = in.readInt();
+      List<FileEntry> files = new ArrayList<>(nfiles);
+      for (int i = 0; i < nfiles; i++)
+        files.add(new FileEntry(in.readUTF(), in.readLong(), in.readLong()));
+      return new DirSnapshot(lastModified, scanned, subdirs, files);
+    }
+  }
+
+  // a file as seen in the last scan; serves as the attributes of the MFileOS7, so the file is not stat'ed again
+  private static class FileEntry implements BasicFileAttributes {
+    final String name;
+    final long size;
+    final long lastModified;
+
+    FileEntry(String name, long size, long lastModified) {
+      this.name = name;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+      return FileTime.fromMillis(lastModified);
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+      return lastModifiedTime();
+    }
+
+    @Override
+    public FileTime creationTime() {
+      return lastModifiedTime();
+    }
+
+    @Override
+    public boolean isRegularFile() {
+      return true;
+    }
+
+    @Override
+    public boolean isDirectory() {
+      return false;
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+      return false;
+    }
+
+    @Override
+    public boolean isOther() {
+      return false;
+    }
+
+    @Override
+    public long size() {
+      return size;
+    }
+
+    @Override
+    public Object fileKey() {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package thredds.filesystem;
+
+import thredds.inventory.CollectionUpdateEvent;
+import thredds.inventory.CollectionUpdateType;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watch a collection's directory tree with a WatchService, and send a CollectionUpdateEvent when something in it
+ * changes, so there is no need to rescan on a schedule.
+ * <p>
+ * Events are coalesced: after the first change, the watcher waits quietMillis for more, then sends one event
+ * whose source lists the changed directories. If a ControllerParallel is given, those directories are invalidated
+ * first, so the rescan that the event triggers only lists the directories that changed, including ones where a file
+ * was modified in place.
+ * <p>
+ * New subdirectories are watched as they appear. If the WatchService overflows, everything is invalidated.
+ * Note that many WatchService implementations do not see changes made on other hosts of a network file system.
+ */
+@ThreadSafe
+public class DirectoryWatcher implements Closeable {
+  private static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(DirectoryWatcher.class);
+
+  private final String collectionName;
+  private final Path topDir;
+  private final boolean recurse;
+  private final ControllerParallel controller; // may be null
+  private final Consumer<CollectionUpdateEvent> listener;
+  private final long quietMillis;
+
+  private final WatchService watcher;
+  private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+  private final Thread thread;
+  private volatile boolean closed;
+
+  /**
+   * Constructor. Call start() to begin watching.
+   *
+   * @param collectionName name of the collection, put into the events
+   * @param topDir top directory of the collection
+   * @param recurse also watch all subdirectories
+   * @param controller invalidate changed directories in this controller; may be null
+   * @param listener gets the events, called from the watcher thread
+   * @param quietMillis wait this long after a change for more changes, before sending the event
+   * @throws IOException if the directories cant be registered
+   */
+  public DirectoryWatcher(String collectionName, Path topDir, boolean recurse, ControllerParallel controller,
+      Consumer<CollectionUpdateEvent> listener, long quietMillis) throws IOException {
+    this.collectionName = collectionName;
+    this.topDir = topDir;
+    this.recurse = recurse;
+    this.controller = controller;
+    this.listener = listener;
+    this.quietMillis = quietMillis;
+
+    this.watcher = topDir.getFileSystem().newWatchService();
+    register(topDir);
+    this.thread = new Thread(this::run, "DirectoryWatcher-" + collectionName);
+    this.thread.setDaemon(true);
+  }
+
+  public void start() {
+    thread.start();
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    watcher.close(); // wakes up the watcher thread
+  }
+
+  /** @return number of directories being watched */
+  public int getWatchCount() {
+    return keys.size();
+  }
+
+  private void register(Path dir) throws IOException {
+    if (!recurse) {
+      registerOne(dir);
+      return;
+    }
+    Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+        registerOne(d);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException exc) {
+        logger.warn("{}: cant watch {}", collectionName, file, exc);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private void registerOne(Path dir) throws IOException {
+    WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+    keys.put(key, dir);
+  }
+
+  private void run() {
+    try {
+      while (!closed) {
+        Set<Path> changed = new TreeSet<>();
+        boolean overflow = collect(watcher.take(), changed);
+        // coalesce whatever else comes in while things are still changing
+        WatchKey key;
+        while ((key = watcher.poll(quietMillis, TimeUnit.MILLISECONDS)) != null)
+          overflow |= collect(key, changed);
+
+        if (!overflow && changed.isEmpty())
+          continue;
+        if (controller != null) {
+          if (overflow)
+            controller.invalidateAll();
+          else
+            changed.forEach(controller::invalidate);
+        }
+        String source = overflow ? "watch overflow" : "watch " + changed;
+        logger.debug("{}: {}", collectionName, source);
+        listener.accept(new CollectionUpdateEvent(CollectionUpdateType.test, collectionName, source));
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // closed
+    } catch (Throwable t) {
+      logger.error("{}: DirectoryWatcher failed", collectionName, t);
+    }
+  }
+
+  // add the directories that changed; return true on overflow
+  private boolean collect(WatchKey key, Set<Path> changed) {
+    Path dir = keys.get(key);
+    boolean overflow = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      WatchEvent.Kind<?> kind = event.kind();
+      if (kind == StandardWatchEventKinds.OVERFLOW) {
+        overflow = true;
+        continue;
+      }
+      if (dir == null)
+        continue;
+      Path child = dir.resolve((Path) event.context());
+      changed.add(dir);
+      if (Files.isDirectory(child)) {
+        changed.add(child); // a new directory, or the contents of a subdirectory changed
+        if (recurse && kind == StandardWatchEventKinds.ENTRY_CREATE) {
+          try {
+            register(child);
+          } catch (IOException e) {
+            logger.warn("{}: cant watch new directory {}", collectionName, child, e);
+          }
+        }
+      }
+    }
+    if (!key.reset())
+      keys.remove(key); // directory is gone
+    return overflow;
+  }
+
+  @Override
+  public String toString() {
+    return "DirectoryWatcher{" + collectionName + " " + topDir + " watching " + keys.size() + " directories}";
+  }
+}
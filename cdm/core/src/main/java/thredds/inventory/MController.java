@@ -22,8 +22,9 @@ public interface MController {
    * @param mc defines the collection to scan
    * @param recheck if false, may use cached results. otherwise must sync with File OS
    * @return iterator over Mfiles, or null if collection does not exist
+   * @throws IOException if a directory cant be read
    */
-  Iterator<MFile> getInventoryAll(CollectionConfig mc, boolean recheck);
+  Iterator<MFile> getInventoryAll(CollectionConfig mc, boolean recheck) throws IOException;
 
   /**
    * Returns all leaves in top collection, not recursing into subdirectories.
@@ -31,6 +32,7 @@ public interface MController {
    * @param mc defines the collection to scan
    * @param recheck if false, may use cached results. otherwise must sync with File OS
    * @return iterator over Mfiles, or null if collection does not exist
+   * @throws IOException if the directory cant be read
    */
   Iterator<MFile> getInventoryTop(CollectionConfig mc, boolean recheck) throws IOException;
 
@@ -40,8 +42,9 @@ public interface MController {
    * @param mc defines the collection to scan
    * @param recheck if false, may use cached results. otherwise must sync with File OS
    * @return iterator over Mfiles, or null if collection does not exist
+   * @throws IOException if the directory cant be read
    */
-  Iterator<MFile> getSubdirs(CollectionConfig mc, boolean recheck);
+  Iterator<MFile> getSubdirs(CollectionConfig mc, boolean recheck) throws IOException;
 
   void close();
 
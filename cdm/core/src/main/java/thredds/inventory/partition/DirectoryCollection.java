@@ -7,11 +7,16 @@ package thredds.inventory.partition;
 
 import thredds.filesystem.MFileOS7;
 import thredds.inventory.CollectionAbstract;
+import thredds.inventory.CollectionConfig;
+import thredds.inventory.MController;
 import thredds.inventory.MFile;
+import thredds.inventory.MFileIterator;
 import ucar.nc2.util.CloseableIterator;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -22,6 +27,10 @@ import java.util.*;
  * Manage MFiles from one directory.
  * Doesnt know about parents or children.
  * Use getFileIterator() for best performance on large directories
+ * <p>
+ * If an MController is set, the directory is listed by it, eg a ControllerParallel, whose snapshot avoids stat'ing
+ * the files of an unchanged directory again. A DirectoryWatcher sharing that ControllerParallel keeps it current
+ * when files are rewritten in place.
  *
  * @author caron
  * @since 11/16/13
@@ -54,6 +63,18 @@ public class DirectoryCollection extends CollectionAbstract {
     return Paths.get(dir.toString(), collectionName + suffix);
   }
 
+  private static MController controller; // if null, list the directory with a DirectoryStream
+
+  /**
+   * Set the MController used to list the directories of all DirectoryCollections.
+   * Defaults to listing each directory with a DirectoryStream.
+   *
+   * @param _controller use this MController, or null for the default
+   */
+  public static void setController(MController _controller) {
+    controller = _controller;
+  }
+
   ///////////////////////////////////////////////////////////////////////////////////
 
   final String topCollection;
@@ -99,9 +120,32 @@ public class DirectoryCollection extends CollectionAbstract {
 
   @Override
   public CloseableIterator<MFile> getFileIterator() throws IOException {
+    MController useController = controller;
+    if (useController != null) {
+      long now = System.currentTimeMillis();
+      return new MFileIterator(listWithController(useController),
+          mfile -> acceptPath(mfile) && now - mfile.getLastModified() >= olderThanMillis);
+    }
     return new MyFileIterator(collectionDir);
   }
 
+  // the files in collectionDir, as listed by the controller
+  private Iterator<MFile> listWithController(MController useController) throws IOException {
+    CollectionConfig mc = new CollectionConfig(collectionName, collectionDir.toString(), false, null, null);
+    Iterator<MFile> iter = useController.getInventoryTop(mc, true);
+    if (iter == null)
+      throw new NoSuchFileException(collectionDir.toString());
+    return iter;
+  }
+
+  private boolean acceptPath(MFile mfile) {
+    try {
+      return sfilter == null || sfilter.accept(Paths.get(mfile.getPath()));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   @Override
   public void close() {
     if (debug)
@@ -187,6 +231,16 @@ public class DirectoryCollection extends CollectionAbstract {
     if (debug)
       System.out.printf(" iterateOverMFileCollection %s ", collectionDir);
     int count = 0;
+    MController useController = controller;
+    if (useController != null) {
+      Iterator<MFile> iter = listWithController(useController);
+      while (iter.hasNext()) {
+        MFile mfile = iter.next();
+        if (acceptPath(mfile))
+          visit.consume(mfile);
+      }
+      return;
+    }
     try (DirectoryStream<Path> ds = Files.newDirectoryStream(collectionDir, new MyStreamFilter())) {
       for (Path p : ds) {
         try {
@@ -36,7 +36,10 @@ import java.util.ArrayList;
  * 
  * For String members, you must store the Strings in the stringHeap. An integer index into the heap is used in the
  * ByteBuffer.
- * 
+ * <p>
+ * To read many records, use makeRecordView(), which reads members of the records in place, or the getColumn<type>()
+ * methods, which copy one member of all the records into a java array.
+ *
  * @author caron
  * @see Array
  */
@@ -536,6 +539,460 @@ public class ArrayStructureBB extends ArrayStructure {
     return bb_offset + recnum * getStructureSize() + m.getDataParam();
   }
 
+  /////////////////////////////////////////////////////
+  // compiled layout, record views and columns
+
+  private StructureLayout layout;
+
+  /**
+   * The record layout, computed from the members the first time this is called.
+   *
+   * @return layout of the records
+   */
+  public StructureLayout getLayout() {
+    if (layout == null)
+      layout = new StructureLayout(members);
+    return layout;
+  }
+
+  /**
+   * Make a view of one record at a time, which is moved with setRecnum(), instead of making a StructureData for each
+   * record. Members without an explicit byte order are read in the order of the ByteBuffer when this is called.
+   * Not thread-safe; make one view for each thread.
+   *
+   * @return view of record 0
+   */
+  public RecordView makeRecordView() {
+    return new RecordView(getLayout(), bb_offset, bbuffer.order(), false);
+  }
+
+  /**
+   * A flyweight view of one record, which reads the member data straight out of the ByteBuffer, at offsets
+   * computed once in the StructureLayout. Members are given by their index in the StructureMembers, or by
+   * StructureLayout.Field.getIndex(). Nothing is allocated for each record, except for Strings.
+   */
+  public class RecordView {
+    private final StructureLayout layout;
+    private final int base;
+    private final ByteOrder defaultOrder;
+    private final boolean nested; // recnum is the element in a nested structure, not the record of this array
+    private final ByteBuffer[] buffers; // by field, with the field's byte order
+    private final RecordView[] nestedViews; // by field, made when first used
+    private int recnum;
+    private int start;
+
+    private RecordView(StructureLayout layout, int base, ByteOrder defaultOrder, boolean nested) {
+      this.layout = layout;
+      this.base = base;
+      this.defaultOrder = defaultOrder;
+      this.nested = nested;
+      ByteBuffer bbDefault = bbuffer.duplicate().order(defaultOrder);
+      ByteBuffer bbBig = null;
+      ByteBuffer bbLittle = null;
+      int n = layout.getFieldCount();
+      this.buffers = new ByteBuffer[n];
+      for (int i = 0; i < n; i++) {
+        ByteOrder order = layout.getField(i).order;
+        if (order == null || order.equals(defaultOrder)) {
+          buffers[i] = bbDefault;
+        } else if (order.equals(ByteOrder.BIG_ENDIAN)) {
+          if (bbBig == null)
+            bbBig = bbuffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+          buffers[i] = bbBig;
+        } else {
+          if (bbLittle == null)
+            bbLittle = bbuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+          buffers[i] = bbLittle;
+        }
+      }
+      this.nestedViews = new RecordView[n];
+      this.start = base;
+    }
+
+    /**
+     * Move to another record.
+     *
+     * @param recnum record number, for a nested view the index in the nested array
+     * @return this view
+     */
+    public RecordView setRecnum(int recnum) {
+      this.recnum = recnum;
+      this.start = base + recnum * layout.getRecordSize();
+      return this;
+    }
+
+    public int getRecnum() {
+      return recnum;
+    }
+
+    public StructureLayout getLayout() {
+      return layout;
+    }
+
+    private StructureLayout.Field field(int index, Class<?> type) {
+      StructureLayout.Field f = layout.getField(index);
+      if (f.primitiveType != type || f.onHeap)
+        throw new IllegalArgumentException("Type is " + f.dataType + ", must be " + type);
+      return f;
+    }
+
+    // is the member data in f.dataArray, indexed by recnum ?
+    private boolean inDataArray(StructureLayout.Field f) {
+      if (f.dataArray == null)
+        return false;
+      if (nested)
+        throw new IllegalArgumentException(
+            "Member " + f.member.getName() + " of a nested structure is not in the ByteBuffer");
+      return true;
+    }
+
+    public double getDouble(int index) {
+      return getDouble(index, 0);
+    }
+
+    /** @return element elem of a member of type double */
+    public double getDouble(int index, int elem) {
+      StructureLayout.Field f = field(index, double.class);
+      if (inDataArray(f))
+        return f.dataArray.getDouble(recnum * f.count + elem);
+      return buffers[index].getDouble(start + f.offset + elem * 8);
+    }
+
+    public float getFloat(int index) {
+      return getFloat(index, 0);
+    }
+
+    /** @return element elem of a member of type float */
+    public float getFloat(int index, int elem) {
+      StructureLayout.Field f = field(index, float.class);
+      if (inDataArray(f))
+        return f.dataArray.getFloat(recnum * f.count + elem);
+      return buffers[index].getFloat(start + f.offset + elem * 4);
+    }
+
+    public long getLong(int index) {
+      return getLong(index, 0);
+    }
+
+    /** @return element elem of a member of type long or ulong */
+    public long getLong(int index, int elem) {
+      StructureLayout.Field f = field(index, long.class);
+      if (inDataArray(f))
+        return f.dataArray.getLong(recnum * f.count + elem);
+      return buffers[index].getLong(start + f.offset + elem * 8);
+    }
+
+    public int getInt(int index) {
+      return getInt(index, 0);
+    }
+
+    /** @return element elem of a member of type int, uint or enum4 */
+    public int getInt(int index, int elem) {
+      StructureLayout.Field f = field(index, int.class);
+      if (inDataArray(f))
+        return f.dataArray.getInt(recnum * f.count + elem);
+      return buffers[index].getInt(start + f.offset + elem * 4);
+    }
+
+    public short getShort(int index) {
+      return getShort(index, 0);
+    }
+
+    /** @return element elem of a member of type short, ushort or enum2 */
+    public short getShort(int index, int elem) {
+      StructureLayout.Field f = field(index, short.class);
+      if (inDataArray(f))
+        return f.dataArray.getShort(recnum * f.count + elem);
+      return buffers[index].getShort(start + f.offset + elem * 2);
+    }
+
+    public byte getByte(int index) {
+      return getByte(index, 0);
+    }
+
+    /** @return element elem of a member of type byte, ubyte or enum1 */
+    public byte getByte(int index, int elem) {
+      StructureLayout.Field f = field(index, byte.class);
+      if (inDataArray(f))
+        return f.dataArray.getByte(recnum * f.count + elem);
+      return buffers[index].get(start + f.offset + elem);
+    }
+
+    /** @return element elem of a member of type char */
+    public char getChar(int index, int elem) {
+      StructureLayout.Field f = field(index, char.class);
+      if (inDataArray(f))
+        return f.dataArray.getChar(recnum * f.count + elem);
+      return (char) buffers[index].get(start + f.offset + elem);
+    }
+
+    /**
+     * Get a member as a double, converting from any numeric type. Unsigned types are widened as unsigned.
+     *
+     * @return element elem of a numeric member
+     */
+    public double convertDouble(int index, int elem) {
+      StructureLayout.Field f = layout.getField(index);
+      if (inDataArray(f))
+        return f.dataArray.getDouble(recnum * f.count + elem);
+      return readAsDouble(f, buffers[index], start + f.offset, elem);
+    }
+
+    /**
+     * Get a String member, or a char member as a String.
+     *
+     * @return the first String of the member
+     */
+    public String getString(int index) {
+      StructureLayout.Field f = layout.getField(index);
+      if (f.dataType != DataType.STRING && f.dataType != DataType.CHAR)
+        throw new IllegalArgumentException("Type is " + f.dataType + ", must be String or char");
+      if (inDataArray(f))
+        return ArrayStructureBB.this.getScalarString(recnum, f.member);
+
+      int offset = start + f.offset;
+      if (f.dataType == DataType.STRING) {
+        Object data = heap.get(buffers[index].getInt(offset));
+        if (data instanceof String)
+          return (String) data;
+        return ((String[]) data)[0];
+      }
+
+      ByteBuffer bb = buffers[index];
+      int len = 0;
+      while (len < f.count && bb.get(offset + len) != 0)
+        len++;
+      byte[] bytes = new byte[len];
+      for (int i = 0; i < len; i++)
+        bytes[i] = bb.get(offset + i);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public RecordView getNested(int index) {
+      return getNested(index, 0);
+    }
+
+    /**
+     * Get a view of a nested structure member. The same view is returned each time, moved to the requested element.
+     *
+     * @param index member of type Structure, stored in the ByteBuffer
+     * @param elem element of the member, when its an array of structures
+     * @return view of the nested structure
+     */
+    public RecordView getNested(int index, int elem) {
+      StructureLayout.Field f = layout.getField(index);
+      if (f.nested == null)
+        throw new IllegalArgumentException("Member " + f.member.getName() + " is not a nested structure in the buffer");
+      RecordView view = nestedViews[index];
+      if (view == null) {
+        view = new RecordView(f.nested, 0, defaultOrder, true);
+        nestedViews[index] = view;
+      }
+      view.recnum = elem;
+      view.start = start + f.offset + elem * f.nested.getRecordSize();
+      return view;
+    }
+  }
+
+  // numeric value of element elem at offset, any numeric type
+  private static double readAsDouble(StructureLayout.Field f, ByteBuffer bb, int offset, int elem) {
+    switch (f.dataType) {
+      case DOUBLE:
+        return bb.getDouble(offset + elem * 8);
+      case FLOAT:
+        return bb.getFloat(offset + elem * 4);
+      case LONG:
+        return bb.getLong(offset + elem * 8);
+      case ULONG:
+        long v = bb.getLong(offset + elem * 8);
+        return (v >= 0) ? v : 2.0 * (v >>> 1) + (v & 1);
+      case INT:
+        return bb.getInt(offset + elem * 4);
+      case UINT:
+        return DataType.unsignedIntToLong(bb.getInt(offset + elem * 4));
+      case SHORT:
+        return bb.getShort(offset + elem * 2);
+      case USHORT:
+        return DataType.unsignedShortToInt(bb.getShort(offset + elem * 2));
+      case BYTE:
+        return bb.get(offset + elem);
+      case UBYTE:
+        return DataType.unsignedByteToShort(bb.get(offset + elem));
+      default:
+        throw new ForbiddenConversionException("Type is " + f.dataType + ", not convertible to double");
+    }
+  }
+
+  // the ByteBuffer to read a column with, and the field of the member
+  private ByteBuffer columnBuffer(StructureLayout.Field f) {
+    return bbuffer.duplicate().order((f.order != null) ? f.order : bbuffer.order());
+  }
+
+  private StructureLayout.Field columnField(StructureMembers.Member m, Class<?> type) {
+    StructureLayout.Field f = getLayout().getField(m);
+    if (type != null && (f.primitiveType != type || f.onHeap))
+      throw new IllegalArgumentException("Type is " + f.dataType + ", must be " + type);
+    return f;
+  }
+
+  /**
+   * Get all the data of a member of type double, for all records, in one array.
+   *
+   * @param m member of type double
+   * @return array of getSize() * m.getSize() values, record by record
+   */
+  public double[] getColumnDouble(StructureMembers.Member m) {
+    StructureLayout.Field f = columnField(m, double.class);
+    if (f.dataArray != null)
+      return (double[]) f.dataArray.copyTo1DJavaArray();
+    ByteBuffer bb = columnBuffer(f);
+    int recsize = getStructureSize();
+    double[] result = new double[nelems * f.count];
+    int k = 0;
+    for (int recnum = 0; recnum < nelems; recnum++) {
+      int offset = bb_offset + recnum * recsize + f.offset;
+      for (int i = 0; i < f.count; i++)
+        result[k++] = bb.getDouble(offset + i * 8);
+    }
+    return result;
+  }
+
+  /**
+   * Get all the data of a member of type float, for all records, in one array.
+   *
+   * @param m member of type float
+   * @return array of getSize() * m.getSize() values, record by record
+   */
+  public float[] getColumnFloat(StructureMembers.Member m) {
+    StructureLayout.Field f = columnField(m, float.class);
+    if (f.dataArray != null)
+      return (float[]) f.dataArray.copyTo1DJavaArray();
+    ByteBuffer bb = columnBuffer(f);
+    int recsize = getStructureSize();
+    float[] result = new float[nelems * f.count];
+    int k = 0;
+    for (int recnum = 0; recnum < nelems; recnum++) {
+      int offset = bb_offset + recnum * recsize + f.offset;
+      for (int i = 0; i < f.count; i++)
+        result[k++] = bb.getFloat(offset + i * 4);
+    }
+    return result;
+  }
+
+  /**
+   * Get all the data of a member of type long or ulong, for all records, in one array.
+   *
+   * @param m member of type long
+   * @return array of getSize() * m.getSize() values, record by record
+   */
+  public long[] getColumnLong(StructureMembers.Member m) {
+    StructureLayout.Field f = columnField(m, long.class);
+    if (f.dataArray != null)
+      return (long[]) f.dataArray.copyTo1DJavaArray();
+    ByteBuffer bb = columnBuffer(f);
+    int recsize = getStructureSize();
+    long[] result = new long[nelems * f.count];
+    int k = 0;
+    for (int recnum = 0; recnum < nelems; recnum++) {
+      int offset = bb_offset + recnum * recsize + f.offset;
+      for (int i = 0; i < f.count; i++)
+        result[k++] = bb.getLong(offset + i * 8);
+    }
+    return result;
+  }
+
+  /**
+   * Get all the data of a member of type int, uint or enum4, for all records, in one array.
+   *
+   * @param m member of type int
+   * @return array of getSize() * m.getSize() values, record by record
+   */
+  public int[] getColumnInt(StructureMembers.Member m) {
+    StructureLayout.Field f = columnField(m, int.class);
+    if (f.dataArray != null)
+      return (int[]) f.dataArray.copyTo1DJavaArray();
+    ByteBuffer bb = columnBuffer(f);
+    int recsize = getStructureSize();
+    int[] result = new int[nelems * f.count];
+    int k = 0;
+    for (int recnum = 0; recnum < nelems; recnum++) {
+      int offset = bb_offset + recnum * recsize + f.offset;
+      for (int i = 0; i < f.count; i++)
+        result[k++] = bb.getInt(offset + i * 4);
+    }
+    return result;
+  }
+
+  /**
+   * Get all the data of a member of type short, ushort or enum2, for all records, in one array.
+   *
+   * @param m member of type short
+   * @return array of getSize() * m.getSize() values, record by record
+   */
+  public short[] getColumnShort(StructureMembers.Member m) {
+    StructureLayout.Field f = columnField(m, short.class);
+    if (f.dataArray != null)
+      return (short[]) f.dataArray.copyTo1DJavaArray();
+    ByteBuffer bb = columnBuffer(f);
+    int recsize = getStructureSize();
+    short[] result = new short[nelems * f.count];
+    int k = 0;
+    for (int recnum = 0; recnum < nelems; recnum++) {
+      int offset = bb_offset + recnum * recsize + f.offset;
+      for (int i = 0; i < f.count; i++)
+        result[k++] = bb.getShort(offset + i * 2);
+    }
+    return result;
+  }
+
+  /**
+   * Get all the data of a member of type byte, ubyte or enum1, for all records, in one array.
+   *
+   * @param m member of type byte
+   * @return array of getSize() * m.getSize() values, record by record
+   */
+  public byte[] getColumnByte(StructureMembers.Member m) {
+    StructureLayout.Field f = columnField(m, byte.class);
+    if (f.dataArray != null)
+      return (byte[]) f.dataArray.copyTo1DJavaArray();
+    ByteBuffer bb = columnBuffer(f);
+    int recsize = getStructureSize();
+    byte[] result = new byte[nelems * f.count];
+    int k = 0;
+    for (int recnum = 0; recnum < nelems; recnum++) {
+      int offset = bb_offset + recnum * recsize + f.offset;
+      for (int i = 0; i < f.count; i++)
+        result[k++] = bb.get(offset + i);
+    }
+    return result;
+  }
+
+  /**
+   * Get all the data of a numeric member as doubles, for all records, in one array.
+   * Unsigned types are widened as unsigned.
+   *
+   * @param m numeric member
+   * @return array of getSize() * m.getSize() values, record by record
+   */
+  public double[] getColumnAsDouble(StructureMembers.Member m) {
+    StructureLayout.Field f = columnField(m, null);
+    if (f.dataArray != null) // a copy, never the storage
+      return (double[]) (f.dataType == DataType.DOUBLE ? f.dataArray.copyTo1DJavaArray()
+          : f.dataArray.get1DJavaArray(DataType.DOUBLE));
+    if (!f.dataType.isNumeric() || f.onHeap)
+      throw new ForbiddenConversionException("Type is " + f.dataType + ", not convertible to double");
+    ByteBuffer bb = columnBuffer(f);
+    int recsize = getStructureSize();
+    double[] result = new double[nelems * f.count];
+    int k = 0;
+    for (int recnum = 0; recnum < nelems; recnum++) {
+      int offset = bb_offset + recnum * recsize + f.offset;
+      for (int i = 0; i < f.count; i++)
+        result[k++] = readAsDouble(f, bb, offset, i);
+    }
+    return result;
+  }
+
   /*
    * int index = asbb.addObjectToHeap(s);
    * bb.order( ByteOrder.nativeOrder()); // the string index is always written in "native order"
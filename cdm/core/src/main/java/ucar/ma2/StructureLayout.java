@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.ma2;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * The record layout of an ArrayStructureBB, computed once from its StructureMembers: for each member, its offset in
+ * the record, data type, number of elements, byte order, and the layout of nested structures.
+ * ArrayStructureBB.RecordView and the ArrayStructureBB column getters use it, so the member lookups, type checks and
+ * offset calculations are not repeated for each record.
+ * <p>
+ * The layout is a snapshot; make a new one if the members, their offsets or the structure size change.
+ */
+@Immutable
+public class StructureLayout {
+  private final StructureMembers members;
+  private final int recordSize;
+  private final Field[] fields;
+
+  /**
+   * Compute the layout from the members, using getDataParam() as the member offsets, and getStructureSize() as the
+   * record size. See ArrayStructureBB.setOffsets().
+   *
+   * @param members describe the records
+   */
+  public StructureLayout(StructureMembers members) {
+    this.members = members;
+    this.recordSize = members.getStructureSize();
+    List<StructureMembers.Member> list = members.getMembers();
+    this.fields = new Field[list.size()];
+    for (int i = 0; i < fields.length; i++)
+      fields[i] = new Field(i, list.get(i));
+  }
+
+  public StructureMembers getStructureMembers() {
+    return members;
+  }
+
+  /** @return size in bytes of each record */
+  public int getRecordSize() {
+    return recordSize;
+  }
+
+  public int getFieldCount() {
+    return fields.length;
+  }
+
+  public Field getField(int index) {
+    return fields[index];
+  }
+
+  /**
+   * Find the field of a member.
+   *
+   * @param m one of the members
+   * @return its field
+   * @throws IllegalArgumentException if m is not one of the members
+   */
+  public Field getField(StructureMembers.Member m) {
+    for (Field f : fields) {
+      if (f.member == m)
+        return f;
+    }
+    throw new IllegalArgumentException("Member " + m.getName() + " is not in " + members.getName());
+  }
+
+  /**
+   * Find the field of a member by name.
+   *
+   * @param name member name
+   * @return its field, or null if not found
+   */
+  @Nullable
+  public Field findField(String name) {
+    for (Field f : fields) {
+      if (f.member.getName().equals(name))
+        return f;
+    }
+    return null;
+  }
+
+  /** The layout of one member. */
+  @Immutable
+  public static class Field {
+    final int index;
+    final StructureMembers.Member member;
+    final DataType dataType;
+    final Class<?> primitiveType;
+    final int offset; // from the start of the record
+    final int count; // number of elements
+    final int elemSize; // bytes in each element
+    final ByteOrder order; // null means the order of the ByteBuffer
+    final Array dataArray; // member data stored outside the ByteBuffer, or null
+    final boolean onHeap; // the ByteBuffer holds an index into the heap
+    final StructureLayout nested; // for nested structures in the ByteBuffer
+
+    private Field(int index, StructureMembers.Member m) {
+      this.index = index;
+      this.member = m;
+      this.dataType = m.getDataType();
+      this.primitiveType = dataType.getPrimitiveClassType();
+      this.offset = m.getDataParam();
+      this.count = m.getSize();
+      this.elemSize = dataType.getSize();
+      this.order = (m.getDataObject() instanceof ByteOrder) ? (ByteOrder) m.getDataObject() : null;
+      this.dataArray = m.getDataArray();
+      this.onHeap = m.isVariableLength() || dataType == DataType.STRING || dataType == DataType.SEQUENCE;
+      this.nested = (dataType == DataType.STRUCTURE && dataArray == null && m.getStructureMembers() != null)
+          ? new StructureLayout(m.getStructureMembers())
+          : null;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public StructureMembers.Member getMember() {
+      return member;
+    }
+
+    public DataType getDataType() {
+      return dataType;
+    }
+
+    /** @return offset in bytes from the start of the record */
+    public int getOffset() {
+      return offset;
+    }
+
+    /** @return number of elements in each record */
+    public int getCount() {
+      return count;
+    }
+
+    /** @return explicit byte order of the member, or null if it uses the order of the ByteBuffer */
+    @Nullable
+    public ByteOrder getByteOrder() {
+      return order;
+    }
+
+    /** @return layout of a nested structure stored in the ByteBuffer, else null */
+    @Nullable
+    public StructureLayout getNested() {
+      return nested;
+    }
+
+    @Override
+    public String toString() {
+      return member.getName() + " " + dataType + "[" + count + "] at " + offset;
+    }
+  }
+}
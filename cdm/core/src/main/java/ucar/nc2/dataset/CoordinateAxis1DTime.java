@@ -16,6 +16,7 @@ import ucar.nc2.util.NamedObject;
 import ucar.ma2.*;
 import java.util.*;
 import java.io.IOException;
+import javax.annotation.Nullable;
 import ucar.nc2.units.DateRange;
 
 /**
@@ -60,19 +61,27 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
   private CoordinateAxis1DTime(NetcdfDataset ncd, CoordinateAxis1DTime org) {
     super(ncd, org);
     helper = org.helper;
-    this.cdates = org.cdates;
+    this.millis = org.millis;
+    this.template = org.template;
+    this.explicitDates = org.explicitDates;
+    this.isAscending = org.isAscending;
   }
 
   @Override
   public CoordinateAxis1DTime section(Range r) throws InvalidRangeException {
     CoordinateAxis1DTime s = (CoordinateAxis1DTime) super.section(r);
-    List<CalendarDate> cdates = getCalendarDates();
 
-    List<CalendarDate> cdateSection = new ArrayList<>(cdates.size());
-    for (int idx : r)
-      cdateSection.add(cdates.get(idx));
+    long[] millisSection = new long[(int) r.length()];
+    List<CalendarDate> explicitSection = (explicitDates == null) ? null : new ArrayList<>(millisSection.length);
+    int count = 0;
+    for (int idx : r) {
+      millisSection[count++] = millis[idx];
+      if (explicitSection != null)
+        explicitSection.add(explicitDates.get(idx));
+    }
 
-    s.cdates = cdateSection;
+    s.setMillis(millisSection, template);
+    s.explicitDates = explicitSection;
     return s;
   }
 
@@ -83,8 +92,28 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
    * @return the ith CalendarDate
    */
   public CalendarDate getCalendarDate(int idx) {
-    List<CalendarDate> cdates = getCalendarDates(); // in case we want to lazily evaluate
-    return cdates.get(idx);
+    if (explicitDates != null)
+      return explicitDates.get(idx);
+    return template.withMillis(millis[idx]);
+  }
+
+  /**
+   * Get the ith coordinate as msecs since 1970-01-01T00:00:00Z, without making a CalendarDate.
+   *
+   * @param idx index
+   * @return the ith coordinate in msecs
+   */
+  public long getCalendarDateMillis(int idx) {
+    return millis[idx];
+  }
+
+  /**
+   * Get all the coordinates as msecs since 1970-01-01T00:00:00Z, without making CalendarDates.
+   *
+   * @return copy of the coordinates in msecs
+   */
+  public long[] getCalendarDatesMillis() {
+    return millis.clone();
   }
 
   /**
@@ -93,16 +122,14 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
    * @return calendar date range
    */
   public CalendarDateRange getCalendarDateRange() {
-    List<CalendarDate> cd = getCalendarDates();
-    int last = cd.size();
-    return (last > 0) ? CalendarDateRange.of(cd.get(0), cd.get(last - 1)) : null;
+    int last = millis.length;
+    return (last > 0) ? CalendarDateRange.of(getCalendarDate(0), getCalendarDate(last - 1)) : null;
   }
 
   @Override
   public List<NamedObject> getNames() {
-    List<CalendarDate> cdates = getCalendarDates();
-    List<NamedObject> names = new ArrayList<>(cdates.size());
-    for (CalendarDate cd : cdates)
+    List<NamedObject> names = new ArrayList<>(millis.length);
+    for (CalendarDate cd : getCalendarDates())
       names.add(new NamedAnything(CalendarDateFormatter.toDateTimeStringISO(cd), getShortName())); // "calendar date"));
     return names;
   }
@@ -135,16 +162,87 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
    * @throws UnsupportedOperationException is no time axis or isDate() false
    */
   public int findTimeIndexFromCalendarDate(CalendarDate d) {
-    List<CalendarDate> cdates = getCalendarDates(); // LOOK linear search, switch to binary
+    long want = d.getMillis();
     int index = 0;
-    while (index < cdates.size()) {
-      if (d.compareTo(cdates.get(index)) < 0)
-        break;
-      index++;
+    if (isAscending) {
+      index = upperBound(want);
+    } else {
+      while (index < millis.length) {
+        if (want < millis[index])
+          break;
+        index++;
+      }
     }
     return Math.max(0, index - 1);
   }
 
+  /**
+   * Find the time index whose coordinate is closest to the given CalendarDate.
+   * If two coordinates are equally close, the smaller index is returned.
+   *
+   * @param d date to look for
+   * @return index of the closest coordinate, or -1 if there are no coordinates
+   */
+  public int findTimeIndexNearest(CalendarDate d) {
+    long want = d.getMillis();
+    if (!isAscending) {
+      int result = -1;
+      long bestDiff = Long.MAX_VALUE;
+      for (int i = 0; i < millis.length; i++) {
+        long diff = Math.abs(millis[i] - want);
+        if (diff < bestDiff) {
+          bestDiff = diff;
+          result = i;
+        }
+      }
+      return result;
+    }
+
+    int index = lowerBound(want); // first coordinate >= want
+    if (index == millis.length)
+      return index - 1;
+    if (index == 0)
+      return 0;
+    return (want - millis[index - 1] <= millis[index] - want) ? index - 1 : index;
+  }
+
+  /**
+   * Find the time indices whose coordinates are in the interval [start, end].
+   * If the coordinates are not ascending, the Range goes from the first to the last coordinate in the interval.
+   *
+   * @param start starting date, inclusive
+   * @param end ending date, inclusive
+   * @return Range of indices, or null if no coordinate is in the interval
+   */
+  @Nullable
+  public Range findTimeIndexRange(CalendarDate start, CalendarDate end) {
+    long lo = start.getMillis();
+    long hi = end.getMillis();
+    int first, last;
+    if (isAscending) {
+      first = lowerBound(lo);
+      last = upperBound(hi) - 1;
+    } else {
+      first = -1;
+      last = -2;
+      for (int i = 0; i < millis.length; i++) {
+        if (millis[i] >= lo && millis[i] <= hi) {
+          if (first < 0)
+            first = i;
+          last = i;
+        }
+      }
+    }
+    if (first < 0 || first > last)
+      return null;
+
+    try {
+      return new Range(getShortName(), first, last);
+    } catch (InvalidRangeException e) {
+      throw new IllegalStateException(e); // cant happen
+    }
+  }
+
   /**
    * See if the given CalendarDate appears as a coordinate
    *
@@ -152,21 +250,98 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
    * @return true if equals a coordinate
    */
   public boolean hasCalendarDate(CalendarDate date) {
-    List<CalendarDate> cdates = getCalendarDates();
-    for (CalendarDate cd : cdates) { // LOOK linear search, switch to binary
-      if (date.equals(cd))
+    long want = date.getMillis();
+    int start = isAscending ? lowerBound(want) : 0;
+    for (int i = start; i < millis.length; i++) {
+      if (millis[i] == want && date.equals(getCalendarDate(i)))
         return true;
+      if (isAscending && millis[i] > want)
+        break;
     }
     return false;
   }
 
   /**
    * Get the list of datetimes in this coordinate as CalendarDate objects.
+   * The CalendarDates are made when they are accessed.
    * 
    * @return list of CalendarDates.
    */
   public List<CalendarDate> getCalendarDates() {
-    return cdates;
+    if (millis == null)
+      return null;
+    if (explicitDates != null)
+      return explicitDates;
+    return new CalendarDateList();
+  }
+
+  // read-only view of the coordinates; makes the CalendarDate on each get
+  private class CalendarDateList extends AbstractList<CalendarDate> implements RandomAccess {
+    @Override
+    public CalendarDate get(int index) {
+      return getCalendarDate(index);
+    }
+
+    @Override
+    public int size() {
+      return millis.length;
+    }
+  }
+
+  // first index whose coordinate is >= want; only if isAscending
+  private int lowerBound(long want) {
+    int lo = 0;
+    int hi = millis.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (millis[mid] < want)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+
+  // first index whose coordinate is > want; only if isAscending
+  private int upperBound(long want) {
+    int lo = 0;
+    int hi = millis.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (millis[mid] <= want)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+
+  private void setMillis(long[] millis, CalendarDate template) {
+    this.millis = millis;
+    this.template = template;
+    boolean ascending = true;
+    for (int i = 1; i < millis.length; i++) {
+      if (millis[i] < millis[i - 1]) {
+        ascending = false;
+        break;
+      }
+    }
+    this.isAscending = ascending;
+  }
+
+  // from parsed dates, which may not all share one calendar
+  private void setCalendarDates(List<CalendarDate> cdates) {
+    long[] result = new long[cdates.size()];
+    CalendarDate first = cdates.isEmpty() ? null : cdates.get(0);
+    boolean sameChronology = true;
+    for (int i = 0; i < result.length; i++) {
+      CalendarDate cd = cdates.get(i);
+      result[i] = cd.getMillis();
+      if (sameChronology && !cd.equals(first.withMillis(result[i])))
+        sameChronology = false;
+    }
+    setMillis(result, first);
+    this.explicitDates = sameChronology ? null : cdates;
   }
 
   public CalendarDate[] getCoordBoundsDate(int i) {
@@ -210,9 +385,9 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
     this.helper = new CoordinateAxisTimeHelper(getCalendarFromAttribute(), null);
 
     if (org.getDataType() == DataType.CHAR)
-      cdates = makeTimesFromChar(org, errMessages);
+      setCalendarDates(makeTimesFromChar(org, errMessages));
     else
-      cdates = makeTimesFromStrings(org, errMessages);
+      setCalendarDates(makeTimesFromStrings(org, errMessages));
 
     List<Attribute> atts = org.getAttributes();
     for (Attribute att : atts) {
@@ -286,7 +461,7 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
 
     // make the coordinates
     int ncoords = (int) org.getSize();
-    List<CalendarDate> result = new ArrayList<>(ncoords);
+    double[] offsets = new double[ncoords];
 
     Array data = org.read();
 
@@ -296,9 +471,10 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
       double val = ii.getDoubleNext();
       if (Double.isNaN(val))
         continue; // WTF ??
-      result.add(helper.makeCalendarDateFromOffset(val));
-      count++;
+      offsets[count++] = val;
     }
+    if (count != ncoords)
+      offsets = Arrays.copyOf(offsets, count);
 
     // if we encountered NaNs, shorten it up
     if (count != ncoords) {
@@ -323,7 +499,8 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
       setCachedData(shortData, true);
     }
 
-    cdates = result;
+    CalendarDate first = (count > 0) ? helper.makeCalendarDateFromOffset(offsets[0]) : null;
+    setMillis(helper.makeMillisFromOffsets(offsets), first);
   }
 
   ///////////////////////////////////////////////////////
@@ -334,11 +511,9 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
    * @deprecated use getCalendarDates() to correctly interpret calendars
    */
   public java.util.Date[] getTimeDates() {
-    List<CalendarDate> cdates = getCalendarDates();
-    Date[] timeDates = new Date[cdates.size()];
-    int index = 0;
-    for (CalendarDate cd : cdates)
-      timeDates[index++] = cd.toDate();
+    Date[] timeDates = new Date[millis.length];
+    for (int i = 0; i < millis.length; i++)
+      timeDates[i] = new Date(millis[i]);
     return timeDates;
   }
 
@@ -376,9 +551,13 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
    * @deprecated use hasCalendarDate
    */
   public boolean hasTime(Date date) {
-    List<CalendarDate> cdates = getCalendarDates();
-    for (CalendarDate cd : cdates) {
-      if (date.equals(cd.toDate()))
+    long want = date.getTime();
+    if (isAscending) {
+      int index = lowerBound(want);
+      return index < millis.length && millis[index] == want;
+    }
+    for (long m : millis) {
+      if (m == want)
         return true;
     }
     return false;
@@ -386,7 +565,10 @@ public class CoordinateAxis1DTime extends CoordinateAxis1D {
 
   ////////////////////////////////////////////////////////////////////////////////////////////
   private CoordinateAxisTimeHelper helper;
-  private List<CalendarDate> cdates;
+  private long[] millis; // the coordinates as msecs since 1970-01-01T00:00:00Z
+  private CalendarDate template; // has the calendar and chronology of the coordinates; null if there are none
+  private List<CalendarDate> explicitDates; // only when the coordinates dont all share one chronology
+  private boolean isAscending; // if so, can use binary search
 
   protected CoordinateAxis1DTime(Builder<?> builder) {
     super(builder);
@@ -33,6 +33,16 @@ public class CoordinateAxisTimeHelper {
     return dateUnit.makeCalendarDate(offset);
   }
 
+  /**
+   * Convert an array of offsets to msecs since 1970-01-01T00:00:00Z, without making CalendarDates.
+   *
+   * @param offsets offsets in the units of this time coordinate
+   * @return msecs for each offset
+   */
+  public long[] makeMillisFromOffsets(double[] offsets) {
+    return dateUnit.makeMillis(offsets);
+  }
+
   public CalendarDate makeCalendarDateFromOffset(String offset) {
     return CalendarDateFormatter.isoStringToCalendarDate(calendar, offset);
   }
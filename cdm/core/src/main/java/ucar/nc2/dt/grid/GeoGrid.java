@@ -34,6 +34,21 @@ public class GeoGrid implements NamedObject, ucar.nc2.dt.GridDatatype {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(GeoGrid.class);
   private static final boolean debugArrayShape = false;
 
+  private static GridTileCache tileCache; // default is not to use
+
+  /**
+   * Set a cache of the tiles read by readYXTile(), shared by all GeoGrids.
+   *
+   * @param cache use this cache, or null to not use a cache.
+   */
+  public static void setTileCache(GridTileCache cache) {
+    tileCache = cache;
+  }
+
+  public static GridTileCache getTileCache() {
+    return tileCache;
+  }
+
   private final GridDataset dataset;
   private final GridCoordSys gcs;
   private final VariableDS vs;
@@ -452,6 +467,89 @@ public class GeoGrid implements NamedObject, ucar.nc2.dt.GridDatatype {
     return readDataSlice(t, -1, -1, x);
   }
 
+  /**
+   * The number of tiles needed to cover the y and x dimensions with readYXTile().
+   *
+   * @param tileSize number of points on a side of a tile
+   * @param stride take every stride-th point
+   * @return {number of tiles in y, number of tiles in x}
+   */
+  public int[] getTileCounts(int tileSize, int stride) {
+    return new int[] {tileCount(getYDimension(), tileSize, stride), tileCount(getXDimension(), tileSize, stride)};
+  }
+
+  private int tileCount(Dimension dim, int tileSize, int stride) {
+    if (dim == null)
+      return 1;
+    int span = tileSize * stride;
+    return (dim.getLength() + span - 1) / span;
+  }
+
+  /**
+   * Reads one tile of a Y-X "horizontal slice" at the given time and vertical index, in canonical order (y-x).
+   * Only the points of the tile are read: tile (tileY, tileX) starts at index (tileY * tileSize * stride,
+   * tileX * tileSize * stride), and has up to tileSize points in each direction, taking every stride-th point.
+   * Tiles on the upper edges are smaller. Runtime and ensemble indices are 0.
+   * If GeoGrid.setTileCache() has been called, the tile is kept there, and must not be modified.
+   *
+   * @param t time index; ignored if no time axis.
+   * @param z vertical index; ignored if no z axis.
+   * @param tileY tile index in y, 0 <= tileY < getTileCounts()[0]
+   * @param tileX tile index in x, 0 <= tileX < getTileCounts()[1]
+   * @param tileSize number of points on a side of a tile, > 0
+   * @param stride take every stride-th point, > 0; eg 2^n for zoom level n below the full resolution.
+   * @return data[y,x]
+   * @throws InvalidRangeException if the tile or t, z indices are out of range
+   * @throws java.io.IOException on read error
+   */
+  public Array readYXTile(int t, int z, int tileY, int tileX, int tileSize, int stride)
+      throws InvalidRangeException, IOException {
+    if (tileSize < 1 || stride < 1)
+      throw new InvalidRangeException("tileSize and stride must be > 0");
+    GridTileCache cache = tileCache;
+    if (cache == null)
+      return readTile(t, z, tileY, tileX, tileSize, stride);
+    GridTileCache.Key key = new GridTileCache.Key(dataset.getLocation(), dataset.getNetcdfFile().getLastModified(),
+        vs.getFullName(), t, z, tileY, tileX, tileSize, stride);
+    return cache.get(key, () -> readTile(t, z, tileY, tileX, tileSize, stride));
+  }
+
+  private Array readTile(int t, int z, int tileY, int tileX, int tileSize, int stride)
+      throws InvalidRangeException, IOException {
+    // all dimensions not in the tile are fixed
+    int rank = vs.getRank();
+    List<Range> ranges = new ArrayList<>(rank);
+    for (int i = 0; i < rank; i++)
+      ranges.add(new Range(0, 0));
+    if (tDimOrgIndex >= 0)
+      ranges.set(tDimOrgIndex, new Range(t, t));
+    if (zDimOrgIndex >= 0)
+      ranges.set(zDimOrgIndex, new Range(z, z));
+    if (yDimOrgIndex >= 0)
+      ranges.set(yDimOrgIndex, makeTileRange(getYDimension(), tileY, tileSize, stride));
+    if (xDimOrgIndex >= 0)
+      ranges.set(xDimOrgIndex, makeTileRange(getXDimension(), tileX, tileSize, stride));
+
+    Array data = vs.read(ranges);
+
+    // reduce to (y,x) or (x,y)
+    for (int i = rank - 1; i >= 0; i--) {
+      if (i != yDimOrgIndex && i != xDimOrgIndex)
+        data = data.reduce(i);
+    }
+    if (yDimOrgIndex > xDimOrgIndex && xDimOrgIndex >= 0)
+      data = data.transpose(0, 1);
+    return data;
+  }
+
+  private Range makeTileRange(Dimension dim, int tile, int tileSize, int stride) throws InvalidRangeException {
+    int first = tile * tileSize * stride;
+    if (tile < 0 || first >= dim.getLength())
+      throw new InvalidRangeException(String.format("tile %d out of range for dimension %s", tile, dim.getShortName()));
+    int last = Math.min(dim.getLength() - 1, first + (tileSize - 1) * stride);
+    return new Range(dim.getShortName(), first, last, stride);
+  }
+
   /**
    * @throws java.io.IOException on read error
    * @deprecated use readDataSlice
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dt.grid;
+
+import ucar.ma2.Array;
+import ucar.nc2.util.cache.ByteBoundedCache;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Objects;
+
+/**
+ * A memory cache of y-x tiles read by GeoGrid.readYXTile(), shared by all datasets, bounded by the total bytes held.
+ * Map tile clients ask for the same tiles over and over, so those are then read only once.
+ * Tiles are keyed by the last modified time of the dataset, so a rewritten file is read again.
+ * Turn on with GeoGrid.setTileCache().
+ */
+@ThreadSafe
+public class GridTileCache extends ByteBoundedCache<GridTileCache.Key, Array> {
+
+  /**
+   * Constructor.
+   *
+   * @param maxBytes maximum number of bytes of tile data to keep. Tiles larger than this are not kept.
+   */
+  public GridTileCache(long maxBytes) {
+    super("GridTileCache", maxBytes, Array::getSizeBytes);
+  }
+
+  /** Identifies one tile of one horizontal slice of one grid in one dataset. */
+  @Immutable
+  static class Key {
+    private final String location;
+    private final long lastModified;
+    private final String varName;
+    private final int t, z;
+    private final int tileY, tileX, tileSize, stride;
+    private final int hashCode;
+
+    Key(String location, long lastModified, String varName, int t, int z, int tileY, int tileX, int tileSize,
+        int stride) {
+      this.location = location;
+      this.lastModified = lastModified;
+      this.varName = varName;
+      this.t = t;
+      this.z = z;
+      this.tileY = tileY;
+      this.tileX = tileX;
+      this.tileSize = tileSize;
+      this.stride = stride;
+      this.hashCode = Objects.hash(location, lastModified, varName, t, z, tileY, tileX, tileSize, stride);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof Key))
+        return false;
+      Key key = (Key) o;
+      return t == key.t && z == key.z && tileY == key.tileY && tileX == key.tileX && tileSize == key.tileSize
+          && stride == key.stride && lastModified == key.lastModified && location.equals(key.location)
+          && varName.equals(key.varName);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s#%s t=%d z=%d tile=%d,%d size=%d stride=%d", location, varName, t, z, tileY, tileX,
+          tileSize, stride);
+    }
+  }
+}
@@ -107,6 +107,11 @@ public class Fmrc implements Closeable {
   private volatile long lastInvChanged;
   private volatile long lastProtoChanged;
 
+  // memoized inventory, so that an update only opens new or changed files, and only remakes the runs they are in.
+  // guarded by lock
+  private final Map<String, FileInv> fileInvMap = new HashMap<>(); // file path -> inventory of the file
+  private final Map<CalendarDate, RunInv> runInvMap = new HashMap<>(); // run date -> finished FmrInv
+
   private Fmrc(String collectionSpec, Formatter errlog) {
     this.manager = MFileCollectionManager.open(collectionSpec, collectionSpec, null, errlog); // LOOK no name
     this.config = new FeatureCollectionConfig();
@@ -141,7 +146,9 @@ public class Fmrc implements Closeable {
   }
 
   public FmrcInv getFmrcInv(Formatter debug) {
-    return makeFmrcInv(debug);
+    synchronized (lock) {
+      return makeFmrcInv(debug);
+    }
   }
 
   /////////////////////////////////////////////////////////////////////////////////////////
@@ -258,11 +265,12 @@ public class Fmrc implements Closeable {
     }
   }
 
-  // scan has been done, create FmrcInv
+  // scan has been done, create FmrcInv. Must hold lock.
   private FmrcInv makeFmrcInv(Formatter debug) {
     try {
-      Map<CalendarDate, FmrInv> fmrMap = new HashMap<>(); // all files are grouped by run date in an FmrInv
-      List<FmrInv> fmrList = new ArrayList<>(); // an fmrc is a collection of fmr
+      Map<String, FileInv> fileInvs = new HashMap<>(); // the files in this scan
+      Map<CalendarDate, List<FileInv>> runFiles = new HashMap<>(); // all files are grouped by run date
+      int countOpened = 0;
 
       // get the inventory, sorted by path
       for (MFile f : manager.getFilesSorted()) {
@@ -282,38 +290,57 @@ public class Fmrc implements Closeable {
           config.innerNcml = element.addContent(runDateAttr);
         }
 
-        GridDatasetInv inv;
-        try {
-          inv = GridDatasetInv.open(manager, f, config.innerNcml); // inventory is discovered for each GDS
-        } catch (IOException ioe) {
-          logger.warn("Error opening " + f.getPath() + "(skipped)", ioe);
-          continue; // skip
+        FileInv fileInv = fileInvMap.get(f.getPath());
+        if (fileInv == null || fileInv.lastModified != f.getLastModified()) {
+          GridDatasetInv inv;
+          try {
+            inv = GridDatasetInv.open(manager, f, config.innerNcml); // inventory is discovered for each GDS
+          } catch (IOException ioe) {
+            logger.warn("Error opening " + f.getPath() + "(skipped)", ioe);
+            continue; // skip
+          }
+          fileInv = new FileInv(f.getLastModified(), inv);
+          countOpened++;
         }
+        fileInvs.put(f.getPath(), fileInv);
 
-        runDate = inv.getRunDate();
+        runDate = fileInv.inv.getRunDate();
         if (debug != null)
-          debug.format("  opened %s rundate = %s%n", f.getPath(), inv.getRunDateString());
-
-        // add to fmr for that rundate
-        FmrInv fmr = fmrMap.get(runDate);
-        if (fmr == null) {
-          fmr = new FmrInv(runDate);
-          fmrMap.put(runDate, fmr);
-          fmrList.add(fmr);
-        }
-        fmr.addDataset(inv, debug);
+          debug.format("  opened %s rundate = %s%n", f.getPath(), fileInv.inv.getRunDateString());
+
+        runFiles.computeIfAbsent(runDate, k -> new ArrayList<>()).add(fileInv);
       }
       if (debug != null)
         debug.format("%n");
 
-      // finish the FmrInv
-      Collections.sort(fmrList);
-      for (FmrInv fmr : fmrList) {
-        fmr.finish();
-        if (logger.isDebugEnabled())
-          logger.debug("Fmrc:" + config.name + ": made fmr with rundate=" + fmr.getRunDate() + " nfiles= "
-              + fmr.getFiles().size());
+      // make an FmrInv for each run whose files have changed, reuse the others
+      Map<CalendarDate, RunInv> runInvs = new HashMap<>();
+      List<FmrInv> fmrList = new ArrayList<>(); // an fmrc is a collection of fmr
+      int countRemade = 0;
+      for (Map.Entry<CalendarDate, List<FileInv>> entry : runFiles.entrySet()) {
+        RunInv runInv = runInvMap.get(entry.getKey());
+        if (runInv == null || debug != null || !runInv.hasFiles(entry.getValue())) {
+          FmrInv fmr = new FmrInv(entry.getKey());
+          for (FileInv fileInv : entry.getValue())
+            fmr.addDataset(fileInv.inv, debug);
+          fmr.finish();
+          if (logger.isDebugEnabled())
+            logger.debug("Fmrc:" + config.name + ": made fmr with rundate=" + fmr.getRunDate() + " nfiles= "
+                + fmr.getFiles().size());
+          runInv = new RunInv(entry.getValue(), fmr);
+          countRemade++;
+        }
+        runInvs.put(entry.getKey(), runInv);
+        fmrList.add(runInv.fmr);
       }
+      Collections.sort(fmrList);
+
+      fileInvMap.clear();
+      fileInvMap.putAll(fileInvs);
+      runInvMap.clear();
+      runInvMap.putAll(runInvs);
+      logger.debug("{}: opened {} of {} files, made {} of {} runs", config.name, countOpened, fileInvs.size(),
+          countRemade, fmrList.size());
 
       return new FmrcInv("fmrc:" + manager.getCollectionName(), fmrList, config.fmrcConfig.regularize);
 
@@ -323,6 +350,38 @@ public class Fmrc implements Closeable {
     }
   }
 
+  // the inventory of one file, valid while the file is not modified
+  private static class FileInv {
+    final long lastModified;
+    final GridDatasetInv inv;
+
+    FileInv(long lastModified, GridDatasetInv inv) {
+      this.lastModified = lastModified;
+      this.inv = inv;
+    }
+  }
+
+  // a finished FmrInv, valid while its run has the same files
+  private static class RunInv {
+    final List<FileInv> files;
+    final FmrInv fmr;
+
+    RunInv(List<FileInv> files, FmrInv fmr) {
+      this.files = files;
+      this.fmr = fmr;
+    }
+
+    boolean hasFiles(List<FileInv> want) {
+      if (files.size() != want.size())
+        return false;
+      for (int i = 0; i < files.size(); i++) {
+        if (files.get(i) != want.get(i)) // unchanged files keep their FileInv
+          return false;
+      }
+      return true;
+    }
+  }
+
   public void showDetails(Formatter out) {
     checkNeeded(false);
     fmrcDataset.showDetails(out);
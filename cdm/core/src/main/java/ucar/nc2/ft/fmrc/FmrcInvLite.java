@@ -35,6 +35,8 @@ public class FmrcInvLite implements java.io.Serializable {
   public List<Gridset> gridSets = new ArrayList<>(); // All Grids in Gridset have same time coordinate
   public List<Gridset.GridInventory> invList = new ArrayList<>(); // the actual inventory
                                                                   // share these, they are expensive!
+  // invList by hash of the inventory, only used while constructing
+  private transient Map<Integer, List<Gridset.GridInventory>> invHash = new HashMap<>();
 
   public FmrcInvLite(FmrcInv fmrcInv) {
     this.collectionName = fmrcInv.getName();
@@ -70,6 +72,8 @@ public class FmrcInvLite implements java.io.Serializable {
       gridSets.add(new Gridset(runseq));
     }
 
+    invHash = null;
+
     // calc the offsets
     TreeSet<Double> tree = new TreeSet<>();
     for (Gridset gridset : gridSets) {
@@ -222,6 +226,8 @@ public class FmrcInvLite implements java.io.Serializable {
     double[] timeBounds; // timeBounds(nruns,noffsets,2) in offset hours since base. null means not an interval time
                          // coordinate
 
+    int[] ntimes; // ntimes[nruns] number of non-missing times of each run, which come first
+
     Map<String, List<TimeInv>> timeCoordMap = new HashMap<>();
 
     Gridset(FmrcInv.RunSeq runseq) {
@@ -244,6 +250,8 @@ public class FmrcInvLite implements java.io.Serializable {
           timeBounds[i] = Double.NaN;
       }
 
+      ntimes = new int[nruns];
+
       // fill twoD time coordinate from the sequence of time coordinates
       int runIdx = 0;
       for (TimeCoord timeCoord : timeList) {
@@ -273,6 +281,7 @@ public class FmrcInvLite implements java.io.Serializable {
         double run_offset = FmrcInv.getOffsetInHours(base, tc.getRunDate());
         double[] offsets = tc.getOffsetTimes();
         int ntimes = offsets.length;
+        this.ntimes[runIdx] = ntimes;
         for (int time = 0; time < ntimes; time++) {
           timeOffset[runIdx * noffsets + time] = run_offset + offsets[time]; // offset == bound2 when its an interval
         }
@@ -297,21 +306,17 @@ public class FmrcInvLite implements java.io.Serializable {
 
     // create GridInventory, see if it matches other Grids
     private GridInventory getInventory(FmrcInv.UberGrid ugrid) {
-      GridInventory result = null;
       GridInventory need = new GridInventory(ugrid);
 
-      // see if we already have it
-      for (GridInventory got : invList) {
-        if (got.equalData(need)) {
-          result = got;
-          break;
-        }
+      // see if we already have it; only compare the ones with the same hash
+      List<GridInventory> same = invHash.computeIfAbsent(need.hashData(), k -> new ArrayList<>());
+      for (GridInventory got : same) {
+        if (got.equalData(need))
+          return got;
       }
-      if (result == null) {
-        invList.add(need);
-        result = need;
-      }
-      return result;
+      invList.add(need);
+      same.add(need);
+      return need;
     }
 
     double getTimeCoord(int run, int time) {
@@ -490,23 +495,64 @@ public class FmrcInvLite implements java.io.Serializable {
         return true;
       }
 
-      // LOOK linear search!
+      private int hashData() {
+        return 31 * Arrays.hashCode(location) + Arrays.hashCode(invIndex);
+      }
+
       private int findIndex(int runIdx, double want) {
-        for (int j = 0; j < noffsets; j++)
+        int j = searchTimes(runIdx, want);
+        if (j >= 0)
+          return j;
+
+        // times were not sorted
+        for (j = 0; j < noffsets; j++)
           if (Misc.nearlyEquals(timeOffset[runIdx * noffsets + j], want))
             return j;
         return -1;
       }
 
-      // LOOK linear search!
       private int findBounds(int runIdx, double b1, double b2) {
-        for (int j = 0; j < noffsets; j++)
-          if (Misc.nearlyEquals(timeBounds[2 * (runIdx * noffsets + j)], b1)
-              && Misc.nearlyEquals(timeBounds[2 * (runIdx * noffsets + j) + 1], b2))
+        // the offset is bound2, look for bound1 among the intervals that end there
+        int j = searchTimes(runIdx, b2);
+        if (j >= 0) {
+          int start = j;
+          while (start > 0 && Misc.nearlyEquals(getTimeCoord(runIdx, start - 1), b2))
+            start--;
+          for (int k = start; k < ntimes[runIdx] && Misc.nearlyEquals(getTimeCoord(runIdx, k), b2); k++) {
+            if (matchBounds(runIdx, k, b1, b2))
+              return k;
+          }
+        }
+
+        // times were not sorted
+        for (j = 0; j < noffsets; j++)
+          if (matchBounds(runIdx, j, b1, b2))
             return j;
         return -1;
       }
 
+      private boolean matchBounds(int runIdx, int time, double b1, double b2) {
+        return Misc.nearlyEquals(timeBounds[2 * (runIdx * noffsets + time)], b1)
+            && Misc.nearlyEquals(timeBounds[2 * (runIdx * noffsets + time) + 1], b2);
+      }
+
+      // binary search of the times of a run, assuming they are sorted. -1 if not found
+      private int searchTimes(int runIdx, double want) {
+        int low = 0;
+        int high = ntimes[runIdx] - 1;
+        while (low <= high) {
+          int mid = (low + high) >>> 1;
+          double val = getTimeCoord(runIdx, mid);
+          if (Misc.nearlyEquals(val, want))
+            return mid;
+          if (val < want)
+            low = mid + 1;
+          else
+            high = mid - 1;
+        }
+        return -1;
+      }
+
       private int findLocation(String location) {
         return locationMap.get(location);
       }
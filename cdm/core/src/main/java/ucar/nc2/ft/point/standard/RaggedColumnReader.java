@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.ft.point.standard;
+
+import ucar.ma2.*;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.Variable;
+import ucar.nc2.constants.AxisType;
+import ucar.nc2.constants.CF;
+import ucar.nc2.dataset.CoordinateAxis;
+import ucar.nc2.dataset.NetcdfDataset;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.nc2.time.CalendarDateUnit;
+import ucar.unidata.geoloc.LatLonRect;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column oriented reading of CF DSG ragged arrays (contiguous or indexed), as an alternative to iterating over
+ * StructureData with Table and NestedTable.
+ * Each variable is read with one call to Variable.read(Section), and returned as one Array over all the wanted
+ * observations, grouped by feature. Time and lat/lon bounding box constraints are applied to the coordinates
+ * before the other variables are read.
+ *
+ * <pre>
+ * RaggedColumnReader reader = RaggedColumnReader.factory(ds, errlog);
+ * RaggedColumnReader.Columns cols = reader.read(Arrays.asList("time", "temp"), dateRange, bbox);
+ * int[] offsets = cols.getRowOffsets();
+ * double[] temp = (double[]) cols.getColumn("temp").get1DJavaArray(DataType.DOUBLE);
+ * for (int feature = 0; feature &lt; cols.getFeatureCount(); feature++)
+ *   for (int row = offsets[feature]; row &lt; offsets[feature + 1]; row++)
+ *     ... temp[row] ...
+ * </pre>
+ */
+public class RaggedColumnReader {
+
+  /**
+   * Find the ragged array representation of a single level CF DSG dataset.
+   *
+   * @param ds the dataset, with coordinate systems if time or bounding box constraints are used
+   * @param errlog put error messages here
+   * @return the reader, or null if the dataset does not use a contiguous or indexed ragged array
+   * @throws IOException on read error
+   */
+  public static RaggedColumnReader factory(NetcdfDataset ds, Formatter errlog) throws IOException {
+    Evaluator.VarAtt varatt = Evaluator.findVariableWithAttribute(ds, CF.SAMPLE_DIMENSION);
+    if (varatt == null)
+      varatt = Evaluator.findVariableWithAttribute(ds, CF.RAGGED_ROWSIZE);
+    if (varatt != null) { // contiguous
+      Variable rowSize = varatt.var;
+      Dimension sampleDim = ds.findDimension(varatt.att.getStringValue());
+      if (sampleDim == null || rowSize.getRank() != 1 || rowSize.isMemberOfStructure()) {
+        errlog.format("RaggedColumnReader: row size variable %s must be 1D, with a valid %s%n", rowSize.getFullName(),
+            CF.SAMPLE_DIMENSION);
+        return null;
+      }
+      return new RaggedColumnReader(ds, rowSize.getDimension(0), sampleDim, rowSize, true);
+    }
+
+    varatt = Evaluator.findVariableWithAttribute(ds, CF.INSTANCE_DIMENSION);
+    if (varatt == null)
+      varatt = Evaluator.findVariableWithAttribute(ds, CF.RAGGED_PARENTINDEX);
+    if (varatt != null) { // indexed
+      Variable parentIndex = varatt.var;
+      Dimension instanceDim = ds.findDimension(varatt.att.getStringValue());
+      if (instanceDim == null || parentIndex.getRank() != 1 || parentIndex.isMemberOfStructure()) {
+        errlog.format("RaggedColumnReader: parent index variable %s must be 1D, with a valid %s%n",
+            parentIndex.getFullName(), CF.INSTANCE_DIMENSION);
+        return null;
+      }
+      return new RaggedColumnReader(ds, instanceDim, parentIndex.getDimension(0), parentIndex, false);
+    }
+
+    errlog.format("RaggedColumnReader: no variable with a %s or %s attribute%n", CF.SAMPLE_DIMENSION,
+        CF.INSTANCE_DIMENSION);
+    return null;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+
+  private final NetcdfDataset ds;
+  private final Dimension instanceDim, sampleDim;
+  private final Variable raggedVar;
+  private final boolean isContiguous;
+  private final int nfeatures, nobs;
+  private final int[] offsets; // feature i has rows offsets[i] to offsets[i+1]-1
+  private final int[] order; // row -> obs index; null means the same
+
+  private RaggedColumnReader(NetcdfDataset ds, Dimension instanceDim, Dimension sampleDim, Variable raggedVar,
+      boolean isContiguous) throws IOException {
+    this.ds = ds;
+    this.instanceDim = instanceDim;
+    this.sampleDim = sampleDim;
+    this.raggedVar = raggedVar;
+    this.isContiguous = isContiguous;
+    this.nfeatures = instanceDim.getLength();
+    this.nobs = sampleDim.getLength();
+    this.offsets = new int[nfeatures + 1];
+
+    if (isContiguous) {
+      int[] rowSize = (int[]) raggedVar.read().get1DJavaArray(DataType.INT);
+      for (int i = 0; i < nfeatures; i++)
+        offsets[i + 1] = Math.min(offsets[i] + Math.max(rowSize[i], 0), nobs);
+      this.order = null;
+
+    } else { // group the obs by feature, keeping them in file order within a feature
+      int[] parent = (int[]) raggedVar.read().get1DJavaArray(DataType.INT);
+      int[] count = new int[nfeatures];
+      for (int p : parent) {
+        if (p >= 0 && p < nfeatures) // missing parents are skipped
+          count[p]++;
+      }
+      for (int i = 0; i < nfeatures; i++)
+        offsets[i + 1] = offsets[i] + count[i];
+      int[] next = offsets.clone();
+      this.order = new int[offsets[nfeatures]];
+      for (int obs = 0; obs < parent.length; obs++) {
+        int p = parent[obs];
+        if (p >= 0 && p < nfeatures)
+          order[next[p]++] = obs;
+      }
+    }
+  }
+
+  public boolean isContiguous() {
+    return isContiguous;
+  }
+
+  public Dimension getInstanceDimension() {
+    return instanceDim;
+  }
+
+  public Dimension getSampleDimension() {
+    return sampleDim;
+  }
+
+  public int getFeatureCount() {
+    return nfeatures;
+  }
+
+  /** @return number of observations that belong to a feature */
+  public int getObsCount() {
+    return offsets[nfeatures];
+  }
+
+  /** @return the variables whose outer dimension is the instance dimension, except the ragged array variable */
+  public List<Variable> getFeatureVariables() {
+    return getVariables(instanceDim);
+  }
+
+  /** @return the variables whose outer dimension is the sample dimension, except the ragged array variable */
+  public List<Variable> getObsVariables() {
+    return getVariables(sampleDim);
+  }
+
+  private List<Variable> getVariables(Dimension outer) {
+    List<Variable> result = new ArrayList<>();
+    for (Variable v : ds.getVariables()) {
+      if (v != raggedVar && v.getRank() > 0 && outer.equals(v.getDimension(0))
+          && v.getDataType() != DataType.STRUCTURE)
+        result.add(v);
+    }
+    return result;
+  }
+
+  /**
+   * Read variables of the features and observations.
+   *
+   * @param varNames full names of the variables to read; feature or observation variables
+   * @param dateRange only observations in this time range, or null for all
+   * @param bbox only observations in this bounding box, or null for all
+   * @return the wanted data
+   * @throws IOException on read error
+   * @throws IllegalArgumentException if a variable is not found, or the time or lat/lon coordinates cant be found
+   */
+  public Columns read(List<String> varNames, CalendarDateRange dateRange, LatLonRect bbox) throws IOException {
+    // row -> obs index, and the row offsets of each feature, after applying the constraints
+    int[] rowOrder = order;
+    int[] rowOffsets = offsets;
+    if (dateRange != null || bbox != null) {
+      Selection sel = select(dateRange, bbox);
+      rowOrder = sel.order;
+      rowOffsets = sel.offsets;
+    }
+    int nrows = rowOffsets[nfeatures];
+
+    Columns result = new Columns(rowOffsets, rowOrder, nrows);
+    for (String name : varNames) {
+      Variable v = ds.findVariable(name);
+      if (v == null)
+        throw new IllegalArgumentException("No variable named " + name);
+      if (v.getRank() > 0 && instanceDim.equals(v.getDimension(0)))
+        result.featureColumns.put(name, v.read());
+      else if (v.getRank() > 0 && sampleDim.equals(v.getDimension(0)))
+        result.columns.put(name, readRows(v, rowOrder, nrows));
+      else
+        throw new IllegalArgumentException(name + " is not a feature or observation variable");
+    }
+    return result;
+  }
+
+  // read the given rows with one read over the range of obs they cover
+  private Array readRows(Variable v, int[] rowOrder, int nrows) throws IOException {
+    int[] shape = v.getShape();
+    shape[0] = nrows;
+    if (nrows == 0)
+      return Array.factory(v.getDataType(), shape);
+
+    int first, last;
+    if (rowOrder == null) {
+      first = 0;
+      last = nrows - 1;
+    } else {
+      first = Integer.MAX_VALUE;
+      last = -1;
+      for (int obs : rowOrder) {
+        first = Math.min(first, obs);
+        last = Math.max(last, obs);
+      }
+    }
+
+    Array data;
+    try {
+      Section section = new Section(v.getShapeAsSection()).replaceRange(0, new Range(first, last));
+      data = v.read(section);
+    } catch (InvalidRangeException e) {
+      throw new IllegalStateException(e);
+    }
+    if (rowOrder == null || isIdentity(rowOrder, first))
+      return data;
+
+    // gather the rows
+    int rowLen = (int) (data.getSize() / (last - first + 1));
+    Object src = data.get1DJavaArray(data.getDataType());
+    Array result = Array.factory(data.getDataType(), shape);
+    Object dest = result.getStorage();
+    for (int row = 0; row < nrows; row++)
+      System.arraycopy(src, (rowOrder[row] - first) * rowLen, dest, row * rowLen, rowLen);
+    return result;
+  }
+
+  private boolean isIdentity(int[] rowOrder, int first) {
+    for (int row = 0; row < rowOrder.length; row++) {
+      if (rowOrder[row] != first + row)
+        return false;
+    }
+    return true;
+  }
+
+  private static class Selection {
+    int[] order;
+    int[] offsets;
+  }
+
+  // evaluate the constraints on the coordinates
+  private Selection select(CalendarDateRange dateRange, LatLonRect bbox) throws IOException {
+    double[] obsTime = null, featureTime = null;
+    double[] obsLat = null, featureLat = null, obsLon = null, featureLon = null;
+    double start = 0, end = 0;
+
+    if (dateRange != null) {
+      CoordinateAxis timeAxis = findAxis(AxisType.Time);
+      double[] millis = readMillis(timeAxis);
+      if (sampleDim.equals(timeAxis.getDimension(0)))
+        obsTime = millis;
+      else
+        featureTime = millis;
+      start = dateRange.getStart().getMillis();
+      end = dateRange.getEnd().getMillis();
+    }
+
+    if (bbox != null) {
+      CoordinateAxis latAxis = findAxis(AxisType.Lat);
+      CoordinateAxis lonAxis = findAxis(AxisType.Lon);
+      double[] lat = (double[]) latAxis.read().get1DJavaArray(DataType.DOUBLE);
+      double[] lon = (double[]) lonAxis.read().get1DJavaArray(DataType.DOUBLE);
+      if (sampleDim.equals(latAxis.getDimension(0))) {
+        obsLat = lat;
+        obsLon = lon;
+      } else {
+        featureLat = lat;
+        featureLon = lon;
+      }
+    }
+
+    Selection sel = new Selection();
+    sel.offsets = new int[nfeatures + 1];
+    int[] selected = new int[offsets[nfeatures]];
+    int nrows = 0;
+    for (int f = 0; f < nfeatures; f++) {
+      boolean featureOk = (featureTime == null || (featureTime[f] >= start && featureTime[f] <= end))
+          && (featureLat == null || bbox.contains(featureLat[f], featureLon[f]));
+      if (featureOk) {
+        for (int row = offsets[f]; row < offsets[f + 1]; row++) {
+          int obs = (order == null) ? row : order[row];
+          if (obsTime != null && !(obsTime[obs] >= start && obsTime[obs] <= end))
+            continue;
+          if (obsLat != null && !bbox.contains(obsLat[obs], obsLon[obs]))
+            continue;
+          selected[nrows++] = obs;
+        }
+      }
+      sel.offsets[f + 1] = nrows;
+    }
+    sel.order = Arrays.copyOf(selected, nrows);
+    return sel;
+  }
+
+  private CoordinateAxis findAxis(AxisType type) {
+    for (CoordinateAxis axis : ds.getCoordinateAxes()) {
+      if (axis.getAxisType() == type && axis.getRank() == 1
+          && (sampleDim.equals(axis.getDimension(0)) || instanceDim.equals(axis.getDimension(0))))
+        return axis;
+    }
+    throw new IllegalArgumentException("RaggedColumnReader: cant find " + type + " coordinate along "
+        + sampleDim.getShortName() + " or " + instanceDim.getShortName());
+  }
+
+  private double[] readMillis(CoordinateAxis timeAxis) throws IOException {
+    Attribute calendar = timeAxis.findAttributeIgnoreCase(CF.CALENDAR);
+    CalendarDateUnit unit =
+        CalendarDateUnit.of((calendar == null) ? null : calendar.getStringValue(), timeAxis.getUnitsString());
+    double[] values = (double[]) timeAxis.read().get1DJavaArray(DataType.DOUBLE);
+    long[] millis = unit.makeMillis(values);
+    double[] result = new double[values.length];
+    for (int i = 0; i < values.length; i++)
+      result[i] = Double.isNaN(values[i]) ? Double.NaN : millis[i];
+    return result;
+  }
+
+  /**
+   * The data read by RaggedColumnReader.read(). Observation columns have the rows of feature i at
+   * getRowOffsets()[i] to getRowOffsets()[i+1]-1.
+   */
+  public static class Columns {
+    private final int[] rowOffsets;
+    private final int[] rowOrder;
+    private final int nrows;
+    private final Map<String, Array> columns = new HashMap<>();
+    private final Map<String, Array> featureColumns = new HashMap<>();
+
+    private Columns(int[] rowOffsets, int[] rowOrder, int nrows) {
+      this.rowOffsets = rowOffsets;
+      this.rowOrder = rowOrder;
+      this.nrows = nrows;
+    }
+
+    public int getFeatureCount() {
+      return rowOffsets.length - 1;
+    }
+
+    public int getRowCount() {
+      return nrows;
+    }
+
+    /** @return for each feature, the first row; has one extra element, the number of rows */
+    public int[] getRowOffsets() {
+      return rowOffsets;
+    }
+
+    /** @return for each row, its index along the sample dimension */
+    public int[] getObsIndex() {
+      if (rowOrder != null)
+        return rowOrder;
+      int[] result = new int[nrows];
+      for (int i = 0; i < nrows; i++)
+        result[i] = i;
+      return result;
+    }
+
+    /** @return the rows of this observation variable, with outer dimension getRowCount(), or null if not read */
+    public Array getColumn(String name) {
+      return columns.get(name);
+    }
+
+    /** @return all the values of this feature variable, or null if not read */
+    public Array getFeatureColumn(String name) {
+      return featureColumns.get(name);
+    }
+
+    /**
+     * Iterate over the observations of one feature as StructureData, with a member for each observation variable.
+     *
+     * @param feature feature index
+     * @return iterator over the feature's observations
+     */
+    public StructureDataIterator getStructureDataIterator(int feature) {
+      int first = rowOffsets[feature];
+      int n = rowOffsets[feature + 1] - first;
+      StructureMembers members = new StructureMembers("obs");
+      try {
+        for (Map.Entry<String, Array> entry : columns.entrySet()) {
+          Array column = entry.getValue();
+          int[] origin = new int[column.getRank()];
+          origin[0] = first;
+          int[] shape = column.getShape();
+          shape[0] = n;
+          int[] memberShape = Arrays.copyOfRange(shape, 1, shape.length);
+          StructureMembers.Member m =
+              members.addMember(entry.getKey(), null, null, column.getDataType(), memberShape);
+          m.setDataArray(column.sectionNoReduce(origin, shape, null).copy());
+        }
+      } catch (InvalidRangeException e) {
+        throw new IllegalStateException(e);
+      }
+      return new ArrayStructureMA(members, new int[] {n}).getStructureDataIterator();
+    }
+  }
+}
@@ -28,7 +28,12 @@ import ucar.unidata.geoloc.LatLonRect;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Write Point Feature Collections into netcdf3/4 files in CF 1.6 point obs conventions.
@@ -365,6 +370,11 @@ public abstract class CFPointWriter implements Closeable {
   protected CalendarDate minDate;
   protected CalendarDate maxDate;
 
+  // batched writes, classic model only
+  private final Map<Map<String, Variable>, RecordBatch> batches = new IdentityHashMap<>();
+  private ExecutorService writeExecutor; // if config.asyncWrites
+  private Future<?> pendingWrite;
+
   // LOOK doesnt work
   protected CFPointWriter(String fileOut, List<Attribute> atts, NetcdfFileWriter.Version version) throws IOException {
     this(fileOut, atts, null, null, null, new CFPointWriterConfig(version));
@@ -388,6 +398,8 @@ public abstract class CFPointWriter implements Closeable {
     this.noUnlimitedDimension =
         (writer.getVersion() == NetcdfFileWriter.Version.netcdf3) && config.recDimensionLength >= 0; // LOOK NOT USED
     this.isExtendedModel = writer.getVersion().isExtendedModel();
+    if (config.batchSize > 1 && config.asyncWrites && !isExtendedModel)
+      this.writeExecutor = Executors.newSingleThreadExecutor();
 
     addGlobalAtts(atts);
     addNetcdf3UnknownAtts(noTimeCoverage);
@@ -740,6 +752,9 @@ public abstract class CFPointWriter implements Closeable {
           return recno + 1;
         }
 
+      } else if (config.batchSize > 1) {
+        writeStructureDataBatched(recno, sdata, varMap);
+
       } else {
         writeStructureDataClassic(varMap, origin, sdata);
       }
@@ -779,6 +794,82 @@ public abstract class CFPointWriter implements Closeable {
   }
 
 
+  // add the record to the batch for its variables, writing the batch when its full
+  private void writeStructureDataBatched(int recno, StructureData sdata, Map<String, Variable> varMap)
+      throws IOException, InvalidRangeException {
+    RecordBatch batch = batches.computeIfAbsent(varMap, m -> new RecordBatch(m, config.batchSize));
+    if (batch.add(recno, sdata))
+      return;
+
+    writeBatch(batch);
+    if (!batch.add(recno, sdata)) { // cant be batched, eg non-numeric members
+      awaitWrites();
+      writeStructureDataClassic(varMap, new int[] {recno}, sdata);
+    }
+  }
+
+  private void writeBatch(RecordBatch batch) throws IOException, InvalidRangeException {
+    List<RecordBatch.Write> writes = batch.take();
+    if (writes.isEmpty())
+      return;
+
+    if (writeExecutor == null) {
+      write(writes);
+    } else { // write in the background while the next batch is filled
+      awaitWrites();
+      pendingWrite = writeExecutor.submit(() -> {
+        write(writes);
+        return null;
+      });
+    }
+  }
+
+  private void write(List<RecordBatch.Write> writes) throws IOException, InvalidRangeException {
+    for (RecordBatch.Write w : writes)
+      writer.write(w.v, w.origin, w.data);
+  }
+
+  // wait for the background write to finish
+  private void awaitWrites() throws IOException {
+    if (pendingWrite == null)
+      return;
+    try {
+      pendingWrite.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted writing " + writer.getNetcdfFile().getLocation());
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      throw new IOException(cause);
+    } finally {
+      pendingWrite = null;
+    }
+  }
+
+  /**
+   * Write all the records that have been batched.
+   *
+   * @throws IOException on write error
+   */
+  protected void flushBatches() throws IOException {
+    try {
+      for (RecordBatch batch : batches.values())
+        writeBatch(batch);
+      awaitWrites();
+    } catch (InvalidRangeException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void shutdownWriteExecutor() {
+    if (writeExecutor != null) {
+      writeExecutor.shutdown();
+      writeExecutor = null;
+    }
+  }
+
   // keep track of the bounding box
   protected void trackBB(LatLonPoint loc, CalendarDate obsDate) {
     if (loc != null) {
@@ -797,6 +888,12 @@ public abstract class CFPointWriter implements Closeable {
   }
 
   public void finish() throws IOException {
+    try {
+      flushBatches();
+    } finally {
+      shutdownWriteExecutor();
+    }
+
     if (llbb != null) {
       writer.updateAttribute(null, new Attribute(ACDD.LAT_MIN, llbb.getLowerLeftPoint().getLatitude()));
       writer.updateAttribute(null, new Attribute(ACDD.LAT_MAX, llbb.getUpperRightPoint().getLatitude()));
@@ -818,7 +915,12 @@ public abstract class CFPointWriter implements Closeable {
 
   @Override
   public void close() throws IOException {
-    writer.close();
+    try {
+      flushBatches();
+    } finally {
+      shutdownWriteExecutor();
+      writer.close();
+    }
   }
 
   ///////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -21,6 +21,8 @@ public class CFPointWriterConfig {
   public boolean noTimeCoverage; // does not have a time dimension
   public int recDimensionLength = -1; // do use unlimited dimension (for netcdf3), use fixed dimension of this length
                                       // NOT USED
+  public int batchSize; // classic model: collect this many records, then write each variable at once. 0 = dont batch
+  public boolean asyncWrites; // if batching, write each batch on another thread while the next one is collected
 
   public CFPointWriterConfig(NetcdfFileWriter.Version version) {
     this(version, new Nc4ChunkingDefault()); // The default chunker used in Nc4Iosp.
@@ -35,4 +37,14 @@ public class CFPointWriterConfig {
     this.noTimeCoverage = noTimeCoverage;
     return this;
   }
+
+  public CFPointWriterConfig setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  public CFPointWriterConfig setAsyncWrites(boolean asyncWrites) {
+    this.asyncWrites = asyncWrites;
+    return this;
+  }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.ft.point.writer;
+
+import ucar.ma2.*;
+import ucar.nc2.Variable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects consecutive records of the classic model into one array per variable, so that they can be
+ * written with one write per variable, instead of one write per variable per record.
+ * Not thread-safe; the filled arrays are handed off by take(), and are not touched again.
+ */
+class RecordBatch {
+  private final Map<String, Variable> varMap;
+  private final int capacity;
+
+  private int startRecno;
+  private int count;
+  private List<Variable> vars; // the variables of the first record, in member order
+  private List<Array> columns; // one for each of vars, with capacity records
+
+  /**
+   * Constructor.
+   *
+   * @param varMap member name to the variable it is written to
+   * @param capacity max number of records in a batch
+   */
+  RecordBatch(Map<String, Variable> varMap, int capacity) {
+    this.varMap = varMap;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Copy one record into the batch.
+   *
+   * @param recno record number
+   * @param sdata record data
+   * @return false if the record cant be added: the batch is full, the record doesnt follow the previous one,
+   *         or its members dont match. Then nothing is changed.
+   */
+  boolean add(int recno, StructureData sdata) {
+    if (count > 0 && (count == capacity || recno != startRecno + count))
+      return false;
+
+    List<Variable> rowVars = new ArrayList<>();
+    List<Array> rowData = new ArrayList<>();
+    for (StructureMembers.Member m : sdata.getMembers()) {
+      Variable mv = varMap.get(m.getName());
+      if (mv == null)
+        continue;
+      Array org = sdata.getArray(m);
+      if (m.getDataType() == DataType.STRING) // convert to ArrayChar
+        org = ArrayChar.makeFromStringArray((ArrayObject) org);
+      rowVars.add(mv);
+      rowData.add(org);
+    }
+
+    if (count == 0) {
+      for (int i = 0; i < rowVars.size(); i++) {
+        if (!canCopy(rowVars.get(i), rowData.get(i)))
+          return false;
+      }
+      vars = rowVars;
+      columns = new ArrayList<>();
+      for (Variable mv : vars) {
+        int[] shape = mv.getShape();
+        shape[0] = capacity;
+        columns.add(Array.factory(mv.getDataType(), shape));
+      }
+      startRecno = recno;
+
+    } else {
+      if (rowVars.size() != vars.size())
+        return false;
+      for (int i = 0; i < rowVars.size(); i++) {
+        if (rowVars.get(i) != vars.get(i) || !canCopy(rowVars.get(i), rowData.get(i)))
+          return false;
+      }
+    }
+
+    for (int i = 0; i < vars.size(); i++)
+      copy(columns.get(i).slice(0, count), rowData.get(i));
+    count++;
+    return true;
+  }
+
+  // one record of the variable has the same shape as the data, except that Strings may be shorter
+  private boolean canCopy(Variable mv, Array org) {
+    DataType dt = mv.getDataType();
+    if ((!dt.isNumeric() && dt != DataType.CHAR) || mv.getRank() == 0)
+      return false;
+    int[] recordShape = Arrays.copyOfRange(mv.getShape(), 1, mv.getRank());
+    if (Arrays.equals(recordShape, org.getShape()))
+      return true;
+    return dt == DataType.CHAR && org.getRank() == 1 && recordShape.length == 1;
+  }
+
+  private void copy(Array row, Array org) {
+    if (org.getDataType() == DataType.CHAR && org.getRank() == 1) {
+      int n = Math.min(row.getShape()[0], org.getShape()[0]);
+      for (int i = 0; i < n; i++)
+        row.setChar(i, org.getChar(i));
+    } else {
+      MAMath.copy(row, org);
+    }
+  }
+
+  /**
+   * Take the records collected so far, and start a new batch.
+   *
+   * @return what to write, in variable order
+   */
+  List<Write> take() throws InvalidRangeException {
+    List<Write> result = new ArrayList<>();
+    if (count == 0)
+      return result;
+
+    for (int i = 0; i < vars.size(); i++) {
+      Array column = columns.get(i);
+      int[] origin = new int[column.getRank()];
+      origin[0] = startRecno;
+      int[] shape = column.getShape();
+      shape[0] = count;
+      Array data = (count == capacity) ? column : column.sectionNoReduce(new int[column.getRank()], shape, null);
+      result.add(new Write(vars.get(i), origin, data));
+    }
+    count = 0;
+    vars = null;
+    columns = null;
+    return result;
+  }
+
+  static class Write {
+    final Variable v;
+    final int[] origin;
+    final Array data;
+
+    Write(Variable v, int[] origin, Array data) {
+      this.v = v;
+      this.origin = origin;
+      this.data = data;
+    }
+  }
+}
@@ -7,17 +7,24 @@ package ucar.nc2.ft2.coverage.writer;
 import com.google.common.base.Preconditions;
 import ucar.ma2.Array;
 import ucar.ma2.DataType;
+import ucar.ma2.Index;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
 import ucar.nc2.*;
 import ucar.nc2.constants.*;
 import ucar.nc2.ft2.coverage.*;
 import ucar.nc2.time.CalendarDate;
+import ucar.nc2.util.Misc;
 import ucar.nc2.util.Optional;
 import ucar.unidata.geoloc.*;
 import ucar.unidata.geoloc.projection.LatLonProjection;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Write CF Compliant Grid file from a Coverage.
@@ -35,6 +42,9 @@ public class CFGridCoverageWriter2 {
   private static final String BOUNDS = "_bounds";
   private static final String BOUNDS_DIM = "bounds_dim"; // dimension of length 2, can be used by any bounds coordinate
 
+  private long maxBytesInMemory = -1; // <= 0 means read each coverage in one piece
+  private int nthreads = 1;
+
   /**
    * Write a netcdf/CF file from a CoverageDataset
    * 
@@ -54,6 +64,32 @@ public class CFGridCoverageWriter2 {
     return writer2.writeFile(gdsOrg, gridNames, subset, tryToAddLatLon2D, false, writer);
   }
 
+  /**
+   * Write a netcdf/CF file from a CoverageDataset, reading the data in slabs instead of one coverage at a time.
+   * Coverages bigger than maxBytesInMemory are split along their leading time, vertical and ensemble dimensions.
+   * The slabs are read by nthreads threads, and written in order, while no more than maxBytesInMemory bytes
+   * (or a single slab, if that is bigger) are held in memory.
+   * Only use nthreads > 1 if the underlying IOSP allows concurrent reads of one file.
+   *
+   * @param gdsOrg the CoverageDataset
+   * @param gridNames the list of coverage names to be written, or null for all
+   * @param subset defines the requested subset, or null to include everything in gdsOrg
+   * @param tryToAddLatLon2D add 2D lat/lon coordinates, if possible
+   * @param writer this does the actual writing, must not be null
+   * @param maxBytesInMemory memory budget for the coverage data read but not yet written; <= 0 for no limit
+   * @param nthreads number of threads reading coverage data; <= 1 reads on the calling thread
+   * @return the total number of bytes that the variables in the output file occupy.
+   */
+  public static ucar.nc2.util.Optional<Long> write(CoverageCollection gdsOrg, List<String> gridNames,
+      SubsetParams subset, boolean tryToAddLatLon2D, NetcdfFileWriter writer, long maxBytesInMemory, int nthreads)
+      throws IOException, InvalidRangeException {
+    Preconditions.checkNotNull(writer);
+    CFGridCoverageWriter2 writer2 = new CFGridCoverageWriter2();
+    writer2.maxBytesInMemory = maxBytesInMemory;
+    writer2.nthreads = nthreads;
+    return writer2.writeFile(gdsOrg, gridNames, subset, tryToAddLatLon2D, false, writer);
+  }
+
   public static ucar.nc2.util.Optional<Long> getSizeOfOutput(CoverageCollection gdsOrg, List<String> gridNames,
       SubsetParams subset, boolean tryToAddLatLon2D) throws IOException, InvalidRangeException {
     CFGridCoverageWriter2 writer2 = new CFGridCoverageWriter2();
@@ -392,6 +428,11 @@ public class CFGridCoverageWriter2 {
 
   private void writeCoverageData(CoverageCollection gdsOrg, SubsetParams subsetParams, CoverageCollection subsetDataset,
       NetcdfFileWriter writer) throws IOException, InvalidRangeException {
+    if (maxBytesInMemory > 0) {
+      writeCoverageDataInSlabs(gdsOrg, subsetParams, subsetDataset, writer);
+      return;
+    }
+
     for (Coverage coverage : subsetDataset.getCoverages()) {
       // we need to call readData on the original
       Coverage coverageOrg = gdsOrg.findCoverage(coverage.getName());
@@ -447,6 +488,216 @@ public class CFGridCoverageWriter2 {
     writer.write(lonVar, lonDataArray);
   }
 
+  ////////////////////////////////////////////////////////////////////
+  // streaming coverage data in slabs
+
+  private void writeCoverageDataInSlabs(CoverageCollection gdsOrg, SubsetParams subsetParams,
+      CoverageCollection subsetDataset, NetcdfFileWriter writer) throws IOException, InvalidRangeException {
+    ExecutorService executor = (nthreads > 1) ? Executors.newFixedThreadPool(nthreads) : null;
+    Deque<Slab> pending = new ArrayDeque<>(); // submitted, in write order
+    long bytesPending = 0;
+
+    try {
+      for (Coverage coverage : subsetDataset.getCoverages()) {
+        // we need to call readData on the original
+        Coverage coverageOrg = gdsOrg.findCoverage(coverage.getName());
+        Variable v = writer.findVariable(coverage.getName());
+        if (show)
+          System.out.printf("CFGridCoverageWriter2 write coverage %s%n", v.getNameAndDimensions());
+
+        for (Slab slab : makeSlabs(coverage, coverageOrg, v, subsetParams)) {
+          if (executor == null) {
+            slab.write(writer, gdsOrg.getName());
+            continue;
+          }
+          // make room for this slab by writing out the oldest ones
+          while (!pending.isEmpty() && bytesPending + slab.nbytes > maxBytesInMemory) {
+            Slab done = pending.removeFirst();
+            done.write(writer, gdsOrg.getName());
+            bytesPending -= done.nbytes;
+          }
+          slab.submit(executor);
+          pending.addLast(slab);
+          bytesPending += slab.nbytes;
+        }
+      }
+
+      while (!pending.isEmpty())
+        pending.removeFirst().write(writer, gdsOrg.getName());
+
+    } finally {
+      if (executor != null)
+        executor.shutdownNow();
+    }
+  }
+
+  // Split the coverage along as many leading dimensions as needed to fit in maxBytesInMemory.
+  private List<Slab> makeSlabs(Coverage coverage, Coverage coverageOrg, Variable v, SubsetParams subsetParams) {
+    int[] shape = v.getShape();
+    List<CoverageCoordAxis1D> tileAxes = getTileAxes(coverage, v);
+
+    int nfixed = 0;
+    long nbytes = v.getSize() * v.getElementSize();
+    while (nbytes > maxBytesInMemory && nfixed < tileAxes.size()) {
+      nbytes /= Math.max(1, shape[nfixed]);
+      nfixed++;
+    }
+
+    int[] slabShape = shape.clone();
+    Arrays.fill(slabShape, 0, nfixed, 1);
+    int[] outerShape = Arrays.copyOf(shape, nfixed);
+
+    List<Slab> result = new ArrayList<>();
+    Index index = Index.factory(outerShape);
+    long nslabs = index.getSize();
+    for (long i = 0; i < nslabs; i++) {
+      int[] counter = index.getCurrentCounter();
+      int[] origin = new int[shape.length];
+      SubsetParams params = copy(subsetParams);
+      Map<String, Double> expected = new HashMap<>();
+      for (int k = 0; k < nfixed; k++) {
+        CoverageCoordAxis1D axis = tileAxes.get(k);
+        origin[k] = counter[k];
+        if (axis.getNcoords() > 1) {
+          double coord = axis.getCoordMidpoint(counter[k]);
+          setCoord(params, axis, coord);
+          expected.put(axis.getName(), coord);
+        }
+      }
+      result.add(new Slab(coverageOrg, v, params, origin, slabShape, nbytes, expected));
+      index.incr();
+    }
+    return result;
+  }
+
+  // The leading dimensions of v that can be subset to a single coordinate by value.
+  // Only points are used, so that the closest coordinate is always the one we want.
+  private List<CoverageCoordAxis1D> getTileAxes(Coverage coverage, Variable v) {
+    CoverageCoordSys csys = coverage.getCoordSys();
+    List<CoverageCoordAxis1D> result = new ArrayList<>();
+
+    int dim = 0;
+    for (CoverageCoordAxis axis : csys.getAxes()) {
+      if (axis.getDependenceType() != CoverageCoordAxis.DependenceType.independent)
+        continue;
+      if (dim >= v.getRank() || !axis.getName().equals(v.getDimension(dim).getShortName()))
+        break;
+      if (!(axis instanceof CoverageCoordAxis1D) || csys.isTime2D(axis))
+        break;
+      CoverageCoordAxis1D axis1D = (CoverageCoordAxis1D) axis;
+      if (axis1D.getNcoords() > 1 && !canTile(axis1D))
+        break;
+      result.add(axis1D);
+      dim++;
+    }
+    return result;
+  }
+
+  private boolean canTile(CoverageCoordAxis1D axis) {
+    CoverageCoordAxis.Spacing spacing = axis.getSpacing();
+    if (spacing != CoverageCoordAxis.Spacing.regularPoint && spacing != CoverageCoordAxis.Spacing.irregularPoint)
+      return false;
+
+    switch (axis.getAxisType()) {
+      case Time:
+      case GeoZ:
+      case Pressure:
+      case Height:
+      case Ensemble:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private void setCoord(SubsetParams params, CoverageCoordAxis1D axis, double coord) {
+    switch (axis.getAxisType()) {
+      case Time:
+        params.setTime(axis.makeDate(coord));
+        break;
+      case Ensemble:
+        params.setEnsCoord(coord);
+        break;
+      default:
+        params.setVertCoord(coord);
+        break;
+    }
+  }
+
+  private SubsetParams copy(SubsetParams subsetParams) {
+    SubsetParams result = new SubsetParams();
+    for (Map.Entry<String, Object> entry : subsetParams.getEntries())
+      result.set(entry.getKey(), entry.getValue());
+    return result;
+  }
+
+  // One piece of a coverage, read from the original and written at origin.
+  private static class Slab {
+    final Coverage coverageOrg;
+    final Variable v;
+    final SubsetParams params;
+    final int[] origin;
+    final int[] shape;
+    final long nbytes;
+    final Map<String, Double> expected; // coordinate value of each subset axis
+    Future<GeoReferencedArray> future;
+
+    Slab(Coverage coverageOrg, Variable v, SubsetParams params, int[] origin, int[] shape, long nbytes,
+        Map<String, Double> expected) {
+      this.coverageOrg = coverageOrg;
+      this.v = v;
+      this.params = params;
+      this.origin = origin;
+      this.shape = shape;
+      this.nbytes = nbytes;
+      this.expected = expected;
+    }
+
+    void submit(ExecutorService executor) {
+      future = executor.submit(() -> coverageOrg.readData(params));
+    }
+
+    void write(NetcdfFileWriter writer, String where) throws IOException, InvalidRangeException {
+      GeoReferencedArray geo = (future == null) ? coverageOrg.readData(params) : await();
+      future = null;
+
+      // the slab must be exactly the coordinates we asked for
+      CoverageCoordSys csysData = geo.getCoordSysForData();
+      for (Map.Entry<String, Double> entry : expected.entrySet()) {
+        CoverageCoordAxis axis = csysData.getAxis(entry.getKey());
+        if (!(axis instanceof CoverageCoordAxis1D) || axis.getNcoords() != 1
+            || !Misc.nearlyEquals(((CoverageCoordAxis1D) axis).getCoordMidpoint(0), entry.getValue()))
+          throw new IllegalStateException(
+              "CFGridCoverageWriter2 slab of " + v.getShortName() + " has wrong " + entry.getKey() + " in " + where);
+      }
+
+      Array data = geo.getData();
+      if (data.getSize() != Index.computeSize(shape))
+        throw new IllegalStateException("CFGridCoverageWriter2 slab of " + v.getShortName() + " has shape "
+            + Arrays.toString(data.getShape()) + " expected " + Arrays.toString(shape) + " in " + where);
+      if (!Arrays.equals(data.getShape(), shape))
+        data = data.reshapeNoCopy(shape);
+
+      writer.write(v, origin, data);
+    }
+
+    private GeoReferencedArray await() throws IOException, InvalidRangeException {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted reading " + coverageOrg.getName());
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException)
+          throw (IOException) cause;
+        if (cause instanceof InvalidRangeException)
+          throw (InvalidRangeException) cause;
+        throw new IOException(cause);
+      }
+    }
+  }
+
   private void checkConformance(Coverage gridSubset, GeoReferencedArray geo, String where) {
     CoverageCoordSys csys = gridSubset.getCoordSys();
 
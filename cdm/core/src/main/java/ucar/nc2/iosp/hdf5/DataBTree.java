@@ -5,6 +5,7 @@
 
 package ucar.nc2.iosp.hdf5;
 
+import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
 import ucar.nc2.Variable;
 import ucar.nc2.iosp.LayoutTiled;
@@ -12,6 +13,8 @@ import ucar.nc2.util.Misc;
 import ucar.unidata.io.RandomAccessFile;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -60,14 +63,52 @@ public class DataBTree {
     this.owner = owner;
   }
 
+  long getRootNodeAddress() {
+    return rootNodeAddress;
+  }
+
   // used by H5tiledLayoutBB
   DataChunkIterator getDataChunkIteratorFilter(Section want) throws IOException {
-    return new DataChunkIterator(want);
+    return new DataChunkIterator(want, h5.raf);
+  }
+
+  // read the btree with the given raf, so that different threads can use different files
+  DataChunkIterator getDataChunkIteratorFilter(Section want, RandomAccessFile raf) throws IOException {
+    return new DataChunkIterator(want, raf);
+  }
+
+  /**
+   * Plan the reading of a section: find the chunks that intersect it, and put them in file order,
+   * so that they are read sequentially. Stops looking once the chunks cover the section.
+   *
+   * @param want the wanted section, same rank as chunkSize, not variable length
+   * @param chunkSize chunk shape, may be shorter than the chunk offsets
+   * @param raf read the btree from here
+   * @return the intersecting chunks, sorted by filePos
+   */
+  List<DataChunk> findDataChunks(Section want, int[] chunkSize, RandomAccessFile raf)
+      throws IOException, InvalidRangeException {
+    List<DataChunk> result = new ArrayList<>();
+    long wantSize = want.computeSize();
+    long found = 0;
+    DataChunkIterator iter = new DataChunkIterator(want, raf);
+    while (found < wantSize && iter.hasNext()) {
+      DataChunk dc = iter.next();
+      int[] origin = (dc.offset.length > chunkSize.length) ? Arrays.copyOf(dc.offset, chunkSize.length) : dc.offset;
+      Section dataSection = new Section(origin, chunkSize);
+      if (dataSection.intersects(want)) {
+        result.add(dc);
+        found += dataSection.intersect(want).computeSize();
+      }
+    }
+    result.sort(Comparator.comparingLong(dc -> dc.filePos));
+    return result;
   }
 
   // used by H5tiledLayout
-  LayoutTiled.DataChunkIterator getDataChunkIteratorNoFilter(Section want, int nChunkDim) throws IOException {
-    return new DataChunkIteratorNoFilter(want, nChunkDim);
+  LayoutTiled.DataChunkIterator getDataChunkIteratorNoFilter(Section want, int nChunkDim, RandomAccessFile raf)
+      throws IOException {
+    return new DataChunkIteratorNoFilter(want, nChunkDim, raf);
   }
 
   // An Iterator over the DataChunks in the btree.
@@ -82,11 +123,12 @@ public class DataBTree {
      *
      * @param want skip any nodes that are before this section
      * @param nChunkDim number of chunk dimensions - may be less than the offset[] length
+     * @param raf read the btree from here
      * @throws IOException on error
      */
-    DataChunkIteratorNoFilter(Section want, int nChunkDim) throws IOException {
+    DataChunkIteratorNoFilter(Section want, int nChunkDim, RandomAccessFile raf) throws IOException {
       this.nChunkDim = nChunkDim;
-      root = new Node(rootNodeAddress, -1); // should we cache the nodes ???
+      root = new Node(raf, rootNodeAddress, -1); // should we cache the nodes ???
       int[] wantOrigin = (want != null) ? want.getOrigin() : null;
       root.first(wantOrigin);
     }
@@ -120,10 +162,11 @@ public class DataBTree {
      * Constructor
      *
      * @param want skip any nodes that are before this section
+     * @param raf read the btree from here
      * @throws IOException on error
      */
-    DataChunkIterator(Section want) throws IOException {
-      root = new Node(rootNodeAddress, -1); // should we cache the nodes ???
+    DataChunkIterator(Section want, RandomAccessFile raf) throws IOException {
+      root = new Node(raf, rootNodeAddress, -1); // should we cache the nodes ???
       wantOrigin = (want != null) ? want.getOrigin() : null;
       root.first(wantOrigin);
     }
@@ -139,6 +182,7 @@ public class DataBTree {
 
   // Btree nodes
   class Node {
+    private final RandomAccessFile raf;
     private long address;
     private int level, nentries;
     private Node currentNode;
@@ -153,22 +197,23 @@ public class DataBTree {
 
     private int currentEntry; // track iteration; LOOK this seems fishy - why not an iterator ??
 
-    Node(long address, long parent) throws IOException {
+    Node(RandomAccessFile raf, long address, long parent) throws IOException {
+      this.raf = raf;
       if (debugDataBtree)
         debugOut.println("\n--> DataBTree read tree at address=" + address + " parent= " + parent + " owner= "
             + owner.getNameAndDimensions());
 
-      h5.raf.order(RandomAccessFile.LITTLE_ENDIAN); // header information is in le byte order
-      h5.raf.seek(h5.getFileOffset(address));
+      raf.order(RandomAccessFile.LITTLE_ENDIAN); // header information is in le byte order
+      raf.seek(h5.getFileOffset(address));
       this.address = address;
 
-      String magic = h5.raf.readString(4);
+      String magic = raf.readString(4);
       if (!magic.equals("TREE"))
         throw new IllegalStateException("DataBTree doesnt start with TREE");
 
-      int type = h5.raf.readByte();
-      level = h5.raf.readByte();
-      nentries = h5.raf.readShort();
+      int type = raf.readByte();
+      level = raf.readByte();
+      nentries = raf.readShort();
       if (type != wantType)
         throw new IllegalStateException("DataBTree must be type " + wantType);
 
@@ -178,8 +223,8 @@ public class DataBTree {
       if (debugDataBtree)
         debugOut.println("    type=" + type + " level=" + level + " nentries=" + nentries + " size = " + size);
 
-      long leftAddress = h5.readOffset();
-      long rightAddress = h5.readOffset();
+      long leftAddress = readOffset(raf);
+      long rightAddress = readOffset(raf);
       if (debugDataBtree)
         debugOut.println("    leftAddress=" + leftAddress + " =0x" + Long.toHexString(leftAddress) + " rightAddress="
             + rightAddress + " =0x" + Long.toHexString(rightAddress));
@@ -188,7 +233,7 @@ public class DataBTree {
         // read all entries as a DataChunk
         myEntries = new ArrayList<>();
         for (int i = 0; i <= nentries; i++) {
-          DataChunk dc = new DataChunk(ndimStorage, (i == nentries));
+          DataChunk dc = new DataChunk(raf, ndimStorage, (i == nentries));
           myEntries.add(dc);
           if (debugDataChunk)
             debugOut.println(dc);
@@ -197,13 +242,13 @@ public class DataBTree {
         offset = new int[nentries + 1][ndimStorage];
         childPointer = new long[nentries + 1];
         for (int i = 0; i <= nentries; i++) {
-          h5.raf.skipBytes(8); // skip size, filterMask
+          raf.skipBytes(8); // skip size, filterMask
           for (int j = 0; j < ndimStorage; j++) {
-            long loffset = h5.raf.readLong();
+            long loffset = raf.readLong();
             assert loffset < Integer.MAX_VALUE;
             offset[i][j] = (int) loffset;
           }
-          this.childPointer[i] = (i == nentries) ? -1 : h5.readOffset();
+          this.childPointer[i] = (i == nentries) ? -1 : readOffset(raf);
           if (debugDataBtree) {
             debugOut.print("    childPointer=" + childPointer[i] + " =0x" + Long.toHexString(childPointer[i]));
             for (long anOffset : offset[i])
@@ -242,7 +287,7 @@ public class DataBTree {
                 Misc.showInts(offset[currentEntry]), tiling.order(offset[currentEntry]),
                 tiling.order(offset[currentEntry + 1]));
           if ((wantOrigin == null) || tiling.compare(wantOrigin, offset[currentEntry + 1]) < 0) {
-            currentNode = new Node(childPointer[currentEntry], this.address);
+            currentNode = new Node(raf, childPointer[currentEntry], this.address);
             if (debugChunkOrder)
               System.out.printf("Level %d use entry= %d%n", level, currentEntry);
             currentNode.first(wantOrigin);
@@ -253,7 +298,7 @@ public class DataBTree {
         // heres the case where its the last entry we want; the tiling.compare() above may fail
         if (currentNode == null) {
           currentEntry = nentries - 1;
-          currentNode = new Node(childPointer[currentEntry], this.address);
+          currentNode = new Node(raf, childPointer[currentEntry], this.address);
           currentNode.first(wantOrigin);
         }
       }
@@ -282,13 +327,18 @@ public class DataBTree {
           return currentNode.next();
 
         currentEntry++;
-        currentNode = new Node(childPointer[currentEntry], this.address);
+        currentNode = new Node(raf, childPointer[currentEntry], this.address);
         currentNode.first(null);
         return currentNode.next();
       }
     }
   }
 
+  // same as H5header.readOffset(), from the given raf
+  private long readOffset(RandomAccessFile raf) throws IOException {
+    return h5.isOffsetLong ? raf.readLong() : (long) raf.readInt();
+  }
+
   // these are part of the level 1A data structure, type 1
   // see http://www.hdfgroup.org/HDF5/doc/H5.format.html#V1Btrees,
   // see "Key" field (type 1) p 10
@@ -299,16 +349,16 @@ public class DataBTree {
     int[] offset; // offset index of this chunk, reletive to entire array
     long filePos; // filePos of a single raw data chunk, already shifted by the offset if needed
 
-    DataChunk(int ndim, boolean last) throws IOException {
-      this.size = h5.raf.readInt();
-      this.filterMask = h5.raf.readInt();
+    DataChunk(RandomAccessFile raf, int ndim, boolean last) throws IOException {
+      this.size = raf.readInt();
+      this.filterMask = raf.readInt();
       offset = new int[ndim];
       for (int i = 0; i < ndim; i++) {
-        long loffset = h5.raf.readLong();
+        long loffset = raf.readLong();
         assert loffset < Integer.MAX_VALUE;
         offset[i] = (int) loffset;
       }
-      this.filePos = last ? -1 : h5.readAddress(); //
+      this.filePos = last ? -1 : h5.getFileOffset(readOffset(raf)); //
       if (memTracker != null)
         memTracker.addByLen("Chunked Data (" + owner + ")", filePos, size);
     }
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import ucar.nc2.util.cache.ByteBoundedCache;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A memory cache of decompressed HDF5 chunks, shared by all files and variables, bounded by the total bytes held.
+ * Overlapping reads of filtered (eg deflated) variables, such as a client fetching neighbouring tiles, then
+ * decompress each chunk only once.
+ * Turn on with H5iosp.setChunkCache().
+ */
+@ThreadSafe
+public class H5chunkCache extends ByteBoundedCache<H5chunkCache.Key, byte[]> {
+  private final AtomicLong bytesDecompressed = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param maxBytes maximum number of decompressed bytes to keep. Chunks larger than this are not kept.
+   */
+  public H5chunkCache(long maxBytes) {
+    super("H5chunkCache", maxBytes, data -> data.length);
+  }
+
+  /**
+   * Get the decompressed chunk, calling the reader and keeping the result if its not already in the cache.
+   * The returned array is shared, and must not be modified.
+   */
+  @Override
+  public <E extends Exception> byte[] get(Key key, Loader<? extends byte[], E> reader) throws IOException, E {
+    return super.get(key, () -> {
+      byte[] data = reader.load();
+      bytesDecompressed.addAndGet(data.length);
+      return data;
+    });
+  }
+
+  /** @return total bytes decompressed into this cache */
+  public long getBytesDecompressed() {
+    return bytesDecompressed.get();
+  }
+
+  @Override
+  public void showStats(Formatter f) {
+    super.showStats(f);
+    f.format("  bytesDecompressed=%d%n", bytesDecompressed.get());
+  }
+
+  /** Identifies one chunk of one variable in one file. */
+  @Immutable
+  static class Key {
+    private final String location;
+    private final String varName;
+    private final int[] origin;
+    private final long filePos; // in case the file is rewritten
+    private final int hashCode;
+
+    Key(String location, String varName, int[] origin, long filePos) {
+      this.location = location;
+      this.varName = varName;
+      this.origin = origin.clone();
+      this.filePos = filePos;
+      this.hashCode = Objects.hash(location, varName, Arrays.hashCode(origin), filePos);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof Key))
+        return false;
+      Key key = (Key) o;
+      return filePos == key.filePos && location.equals(key.location) && varName.equals(key.varName)
+          && Arrays.equals(origin, key.origin);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public String toString() {
+      return location + "#" + varName + Arrays.toString(origin);
+    }
+  }
+}
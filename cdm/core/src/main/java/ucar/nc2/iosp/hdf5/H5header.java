@@ -16,6 +16,10 @@ import ucar.nc2.iosp.netcdf3.N3iosp;
 import ucar.nc2.iosp.Layout;
 import ucar.nc2.iosp.LayoutRegular;
 import ucar.ma2.*;
+import ucar.nc2.stream.NcStream;
+import ucar.nc2.stream.NcStreamProto;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.*;
@@ -1869,6 +1873,76 @@ public class H5header extends NCheader {
       this.typeInfo = calcNCtype(mdt);
     }
 
+    /**
+     * Constructor, used for reading a metadata snapshot
+     *
+     * @param in read from here, as written by write()
+     * @param v the Variable that this belongs to, with its shape already set
+     */
+    Vinfo(DataInputStream in, Variable v) throws IOException {
+      this.dataPos = in.readLong();
+      this.typeInfo = TypeInfo.read(in);
+      this.storageSize = readInts(in);
+      this.isvlen = in.readBoolean();
+      this.isChunked = in.readBoolean();
+      if (in.readBoolean())
+        this.btree = new DataBTree(H5header.this, in.readLong(), v.getShape(), storageSize, memTracker);
+
+      // only the time type is needed when reading the data
+      this.mdt = new MessageDatatype();
+      if (typeInfo != null) {
+        mdt.type = typeInfo.hdfType;
+        mdt.byteSize = typeInfo.byteSize;
+      }
+      if (in.readBoolean())
+        mdt.timeType = DataType.valueOf(in.readUTF());
+
+      int nfilters = in.readInt();
+      if (nfilters >= 0) {
+        this.mfp = new MessageFilter();
+        mfp.filters = new Filter[nfilters];
+        for (int i = 0; i < nfilters; i++)
+          mfp.filters[i] = new Filter(in.readShort(), in.readShort(), in.readUTF(), readInts(in));
+      }
+
+      this.useFillValue = in.readBoolean();
+      int fillLen = in.readInt();
+      if (fillLen >= 0) {
+        this.fillValue = new byte[fillLen];
+        in.readFully(fillValue);
+      }
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeLong(dataPos);
+      TypeInfo.write(typeInfo, out);
+      writeInts(storageSize, out);
+      out.writeBoolean(isvlen);
+      out.writeBoolean(isChunked);
+      out.writeBoolean(btree != null);
+      if (btree != null)
+        out.writeLong(btree.getRootNodeAddress());
+
+      out.writeBoolean(mdt != null && mdt.timeType != null);
+      if (mdt != null && mdt.timeType != null)
+        out.writeUTF(mdt.timeType.name());
+
+      out.writeInt(mfp == null ? -1 : mfp.filters.length);
+      if (mfp != null) {
+        for (Filter f : mfp.filters) {
+          out.writeShort(f.id);
+          out.writeShort(f.flags);
+          out.writeUTF(f.name);
+          writeInts(f.data, out);
+        }
+      }
+
+      out.writeBoolean(useFillValue);
+      out.writeInt(fillValue == null ? -1 : fillValue.length);
+      if (fillValue != null)
+        out.write(fillValue);
+    }
+
     void setOwner(Variable owner) {
       this.owner = owner;
       if (btree != null)
@@ -2155,6 +2229,36 @@ public class H5header extends NCheader {
       this.byteSize = byteSize;
     }
 
+    static void write(TypeInfo tinfo, DataOutputStream out) throws IOException {
+      out.writeBoolean(tinfo != null);
+      if (tinfo == null)
+        return;
+      out.writeInt(tinfo.hdfType);
+      out.writeInt(tinfo.byteSize);
+      out.writeUTF(tinfo.dataType == null ? "" : tinfo.dataType.name());
+      out.writeInt(tinfo.endian);
+      out.writeBoolean(tinfo.unsigned);
+      out.writeBoolean(tinfo.isVString);
+      out.writeBoolean(tinfo.isVlen);
+      out.writeInt(tinfo.vpad);
+      write(tinfo.base, out);
+    }
+
+    static TypeInfo read(DataInputStream in) throws IOException {
+      if (!in.readBoolean())
+        return null;
+      TypeInfo tinfo = new TypeInfo(in.readInt(), in.readInt());
+      String dataType = in.readUTF();
+      tinfo.dataType = dataType.isEmpty() ? null : DataType.valueOf(dataType);
+      tinfo.endian = in.readInt();
+      tinfo.unsigned = in.readBoolean();
+      tinfo.isVString = in.readBoolean();
+      tinfo.isVlen = in.readBoolean();
+      tinfo.vpad = in.readInt();
+      tinfo.base = read(in);
+      return tinfo;
+    }
+
     public String toString() {
       StringBuilder buff = new StringBuilder();
       buff.append("hdfType=").append(hdfType).append(" byteSize=").append(byteSize).append(" dataType=")
@@ -3901,6 +4005,15 @@ public class H5header extends NCheader {
       }
     }
 
+    // used for reading a metadata snapshot
+    Filter(short id, short flags, String name, int[] data) {
+      this.id = id;
+      this.flags = flags;
+      this.name = name;
+      this.nValues = (short) data.length;
+      this.data = data;
+    }
+
     String getFilterName(int id) {
       return (id < filterName.length) ? filterName[id] : "StandardFilter " + id;
     }
@@ -5196,6 +5309,133 @@ public class H5header extends NCheader {
     ps.println();
   }
 
+  //////////////////////////////////////////////////////////////
+  // metadata snapshot, see H5iosp.setMetadataCache()
+
+  /**
+   * Can the metadata read by read() be saved with writeSnapshot()?
+   * Not if a Variable needs the HDF5 object graph to read its data (references), or has its data
+   * already read in.
+   */
+  boolean canWriteSnapshot() {
+    for (Variable v : getAllVariables(ncfile.getRootGroup(), new ArrayList<>())) {
+      if (!(v.getSPobject() instanceof Vinfo) || v.hasCachedData())
+        return false;
+      TypeInfo typeInfo = ((Vinfo) v.getSPobject()).typeInfo;
+      if (typeInfo == null || typeInfo.hdfType == 7 || (typeInfo.base != null && typeInfo.base.hdfType == 7))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Write the metadata read by read(): the CDM objects, and what H5iosp needs to read the data.
+   *
+   * @param out write to here
+   * @throws IOException on write error
+   */
+  void writeSnapshot(DataOutputStream out) throws IOException {
+    out.writeLong(baseAddress);
+    out.writeByte(sizeOffsets);
+    out.writeByte(sizeLengths);
+    out.writeBoolean(isNetcdf4);
+
+    byte[] root = NcStream.encodeGroup(ncfile.getRootGroup(), -1).build().toByteArray();
+    out.writeInt(root.length);
+    out.write(root);
+
+    List<Variable> vars = getAllVariables(ncfile.getRootGroup(), new ArrayList<>());
+    out.writeInt(vars.size());
+    for (Variable v : vars) {
+      out.writeUTF(v.getFullName());
+      out.writeInt(v.getElementSize());
+      ((Vinfo) v.getSPobject()).write(out);
+    }
+  }
+
+  /**
+   * Instead of read(), set the metadata from a snapshot made by writeSnapshot().
+   * The ncfile is not changed unless the whole snapshot is read successfully.
+   *
+   * @param in read from here
+   * @throws IOException on read error, or if the snapshot is not consistent
+   */
+  void readSnapshot(DataInputStream in) throws IOException {
+    long baseAddress = in.readLong();
+    byte sizeOffsets = in.readByte();
+    byte sizeLengths = in.readByte();
+    boolean isNetcdf4 = in.readBoolean();
+
+    byte[] root = new byte[in.readInt()];
+    in.readFully(root);
+    Group.Builder rootBuilder = Group.builder().setNcfile(ncfile).setName("");
+    NcStream.readGroup(NcStreamProto.Group.parseFrom(root), ncfile, rootBuilder);
+    Group rootGroup = rootBuilder.build(null);
+
+    Map<String, Variable> vars = new HashMap<>();
+    for (Variable v : getAllVariables(rootGroup, new ArrayList<>()))
+      vars.put(v.getFullName(), v);
+
+    // the DataBTrees need these
+    this.baseAddress = baseAddress;
+    this.sizeOffsets = sizeOffsets;
+    this.isOffsetLong = (sizeOffsets == 8);
+    this.sizeLengths = sizeLengths;
+    this.isLengthLong = (sizeLengths == 8);
+
+    int nvars = in.readInt();
+    if (nvars != vars.size())
+      throw new IOException("snapshot has " + nvars + " variables, expected " + vars.size());
+    for (int i = 0; i < nvars; i++) {
+      String name = in.readUTF();
+      Variable v = vars.get(name);
+      if (v == null)
+        throw new IOException("snapshot has unknown variable " + name);
+      v.setElementSize(in.readInt());
+      Vinfo vinfo = new Vinfo(in, v);
+      v.setSPobject(vinfo);
+      vinfo.setOwner(v);
+    }
+
+    this.isNetcdf4 = isNetcdf4;
+    ncfile.setRootGroup(rootGroup);
+  }
+
+  // all the Variables, including Structure members
+  private List<Variable> getAllVariables(Group g, List<Variable> result) {
+    for (Variable v : g.getVariables())
+      addVariable(v, result);
+    for (Group nested : g.getGroups())
+      getAllVariables(nested, result);
+    return result;
+  }
+
+  private void addVariable(Variable v, List<Variable> result) {
+    result.add(v);
+    if (v instanceof Structure) {
+      for (Variable member : ((Structure) v).getVariables())
+        addVariable(member, result);
+    }
+  }
+
+  private static void writeInts(int[] values, DataOutputStream out) throws IOException {
+    out.writeInt(values == null ? -1 : values.length);
+    if (values != null) {
+      for (int value : values)
+        out.writeInt(value);
+    }
+  }
+
+  private static int[] readInts(DataInputStream in) throws IOException {
+    int n = in.readInt();
+    if (n < 0)
+      return null;
+    int[] values = new int[n];
+    for (int i = 0; i < n; i++)
+      values[i] = in.readInt();
+    return values;
+  }
+
   public void close() {
     if (debugTracker) {
       Formatter f = new Formatter();
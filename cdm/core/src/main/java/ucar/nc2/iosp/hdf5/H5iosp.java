@@ -10,7 +10,9 @@ import ucar.ma2.*;
 import ucar.nc2.constants.CDM;
 import ucar.nc2.iosp.netcdf3.N3iosp;
 import ucar.nc2.time.CalendarDate;
+import ucar.nc2.util.DiskCache2;
 import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.io.RandomAccessFilePool;
 import ucar.nc2.iosp.*;
 import ucar.nc2.iosp.hdf4.HdfEos;
 import ucar.nc2.iosp.hdf4.H4header;
@@ -18,6 +20,8 @@ import ucar.nc2.*;
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Formatter;
 
 /**
@@ -41,7 +45,9 @@ public class H5iosp extends AbstractIOServiceProvider {
   static boolean debugChunkIndexer;
   static boolean debugVlen;
   static boolean debugStructure;
+  static boolean debugChunkCache;
   static boolean useHdfEos = true;
+  private static boolean concurrentReads;
 
   static org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(H5iosp.class);
 
@@ -53,6 +59,7 @@ public class H5iosp extends AbstractIOServiceProvider {
     debugFilterIndexer = debugFlag.isSet("H5iosp/filterIndexer");
     debugChunkIndexer = debugFlag.isSet("H5iosp/chunkIndexer");
     debugVlen = debugFlag.isSet("H5iosp/vlen");
+    debugChunkCache = debugFlag.isSet("H5iosp/chunkCache");
 
     H5header.setDebugFlags(debugFlag);
     H4header.setDebugFlags(debugFlag);
@@ -91,10 +98,113 @@ public class H5iosp extends AbstractIOServiceProvider {
     useHdfEos = val;
   }
 
+  /**
+   * Allow threads to read data from the same open file at the same time, for files opened after this is set.
+   * Each reading thread uses its own RandomAccessFile, taken from a pool of them, so there may be as many files
+   * open as threads reading. Strings, variable length data and references are read through the file's global
+   * heap, and are still read one thread at a time. Only local files can be read concurrently. Default is false.
+   *
+   * @param val allow concurrent reads
+   */
+  public static void setConcurrentReads(boolean val) {
+    concurrentReads = val;
+  }
+
+  private static H5chunkCache chunkCache; // default is not to use
+
+  /**
+   * Keep decompressed chunks of filtered variables in this cache, shared by all files, so that overlapping reads
+   * dont decompress the same chunks again.
+   *
+   * @param cache use this cache, or null to not use one (the default)
+   */
+  public static void setChunkCache(H5chunkCache cache) {
+    chunkCache = cache;
+  }
+
+  /** @return the chunk cache, or null if not using one */
+  public static H5chunkCache getChunkCache() {
+    return chunkCache;
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////
+  // metadata snapshots
+
+  private static final int SNAPSHOT_MAGIC = 0x48356d64; // "H5md"
+  private static final int SNAPSHOT_VERSION = 1;
+  private static final String SNAPSHOT_SUFFIX = ".h5meta";
+  private static DiskCache2 metadataCache; // default is not to use
+
+  /**
+   * Save the metadata of each HDF5 file that is opened into this cache, and use it the next time the same file
+   * is opened, instead of reading and parsing the file's header. A snapshot is used only if the file has the same
+   * location, size and last modified time as when the snapshot was made; otherwise it is rewritten.
+   * Only local files are cached, and not files with object references.
+   *
+   * @param dc use this cache, or null to not use one (the default)
+   */
+  public static void setMetadataCache(DiskCache2 dc) {
+    metadataCache = dc;
+  }
+
+  // null if not using a cache
+  private File getSnapshotFile() {
+    DiskCache2 dc = metadataCache;
+    if (dc == null)
+      return null;
+    File file = new File(raf.getLocation());
+    if (!file.isFile())
+      return null;
+    return dc.getCacheFile(raf.getLocation() + SNAPSHOT_SUFFIX);
+  }
+
+  private boolean readSnapshot(File snapshotFile) {
+    if (!snapshotFile.exists())
+      return false;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+      if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION)
+        return false;
+      if (!in.readUTF().equals(raf.getLocation()) || in.readLong() != raf.length()
+          || in.readLong() != new File(raf.getLocation()).lastModified()
+          || in.readBoolean() != includeOriginalAttributes)
+        return false; // out of date
+      headerParser.readSnapshot(in);
+      return true;
+
+    } catch (Exception e) {
+      log.warn("H5iosp failed to read metadata snapshot {}", snapshotFile, e);
+      return false;
+    }
+  }
+
+  private void writeSnapshot(File snapshotFile) {
+    if (!headerParser.canWriteSnapshot())
+      return;
+    File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeUTF(raf.getLocation());
+        out.writeLong(raf.length());
+        out.writeLong(new File(raf.getLocation()).lastModified());
+        out.writeBoolean(includeOriginalAttributes);
+        headerParser.writeSnapshot(out);
+      }
+      Files.move(tmpFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    } catch (Exception e) {
+      log.warn("H5iosp failed to write metadata snapshot {}", snapshotFile, e);
+      if (tmpFile.exists() && !tmpFile.delete())
+        log.warn("H5iosp failed to delete {}", tmpFile);
+    }
+  }
+
   //////////////////////////////////////////////////////////////////////////////////
 
   // private RandomAccessFile raf;
   private H5header headerParser;
+  private RandomAccessFilePool readers; // not null if concurrent reads are allowed
   private boolean isEos;
   boolean includeOriginalAttributes;
 
@@ -105,7 +215,13 @@ public class H5iosp extends AbstractIOServiceProvider {
       throws IOException {
     super.open(raf, ncfile, cancelTask);
     headerParser = new H5header(this.raf, ncfile, this);
-    headerParser.read(null);
+
+    File snapshotFile = getSnapshotFile();
+    if (snapshotFile == null || !readSnapshot(snapshotFile)) {
+      headerParser.read(null);
+      if (snapshotFile != null)
+        writeSnapshot(snapshotFile);
+    }
 
     // check if its an HDF5-EOS file
     Group eosInfo = ncfile.getRootGroup().findGroup(HdfEos.HDF5_GROUP);
@@ -114,17 +230,51 @@ public class H5iosp extends AbstractIOServiceProvider {
     }
 
     ncfile.finish();
+    if (concurrentReads && RandomAccessFilePool.canPool(raf))
+      readers = new RandomAccessFilePool(raf.getLocation(), raf.getBufferSize());
   }
 
   public Array readData(ucar.nc2.Variable v2, Section section) throws IOException, InvalidRangeException {
     H5header.Vinfo vinfo = (H5header.Vinfo) v2.getSPobject();
     if (debugRead)
       System.out.printf("%s read %s%n", v2.getFullName(), section);
-    return readData(v2, vinfo.dataPos, section);
+    if (readers == null)
+      return readData(v2, vinfo.dataPos, section, raf);
+
+    // the heap is read with the headerParser's raf, one thread at a time
+    if (usesHeap(v2)) {
+      synchronized (headerParser) {
+        return readData(v2, vinfo.dataPos, section, raf);
+      }
+    }
+
+    RandomAccessFile myRaf = readers.acquire();
+    try {
+      return readData(v2, vinfo.dataPos, section, myRaf);
+    } finally {
+      readers.release(myRaf);
+    }
+  }
+
+  // does reading this variable use the global heap
+  private boolean usesHeap(Variable v2) {
+    H5header.Vinfo vinfo = (H5header.Vinfo) v2.getSPobject();
+    if (vinfo == null || vinfo.typeInfo == null)
+      return true;
+    if (v2.getDataType() == DataType.STRING || v2.isVariableLength() || vinfo.typeInfo.isVString
+        || vinfo.typeInfo.isVlen)
+      return true;
+    if (v2 instanceof Structure) {
+      for (Variable member : ((Structure) v2).getVariables()) {
+        if (usesHeap(member))
+          return true;
+      }
+    }
+    return false;
   }
 
   // all the work is here, so can be called recursively
-  private Array readData(ucar.nc2.Variable v2, long dataPos, Section wantSection)
+  private Array readData(ucar.nc2.Variable v2, long dataPos, Section wantSection, RandomAccessFile raf)
       throws IOException, InvalidRangeException {
     H5header.Vinfo vinfo = (H5header.Vinfo) v2.getSPobject();
     DataType dataType = v2.getDataType();
@@ -143,12 +293,16 @@ public class H5iosp extends AbstractIOServiceProvider {
         System.out.println("read variable filtered " + v2.getFullName() + " vinfo = " + vinfo);
       assert vinfo.isChunked;
       ByteOrder bo = (vinfo.typeInfo.endian == 0) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
-      layout = new H5tiledLayoutBB(v2, wantSection, raf, vinfo.mfp.getFilters(), bo);
+      H5tiledLayoutBB layoutBB = new H5tiledLayoutBB(v2, wantSection, raf, vinfo.mfp.getFilters(), bo);
+      layout = layoutBB;
       if (vinfo.typeInfo.isVString) {
-        data = readFilteredStringData((LayoutBB) layout);
+        data = readFilteredStringData(layoutBB);
       } else {
-        data = IospHelper.readDataFill((LayoutBB) layout, v2.getDataType(), vinfo.getFillValue());
+        data = IospHelper.readDataFill(layoutBB, v2.getDataType(), vinfo.getFillValue());
       }
+      if (debugChunkCache)
+        System.out.printf("read %s %s: %d chunks, %d from cache, %d bytes decompressed%n", v2.getFullName(),
+            wantSection, layoutBB.getChunkCount(), layoutBB.getChunkCachedCount(), layoutBB.getBytesDecompressed());
 
     } else { // normal case
       if (debug)
@@ -181,11 +335,11 @@ public class H5iosp extends AbstractIOServiceProvider {
       }
 
       if (vinfo.isChunked) {
-        layout = new H5tiledLayout((H5header.Vinfo) v2.getSPobject(), readDtype, wantSection);
+        layout = new H5tiledLayout((H5header.Vinfo) v2.getSPobject(), readDtype, wantSection, raf);
       } else {
         layout = new LayoutRegular(dataPos, elemSize, v2.getShape(), wantSection);
       }
-      data = readData(vinfo, v2, layout, readDtype, wantSection.getShape(), fillValue, endian);
+      data = readData(vinfo, v2, layout, readDtype, wantSection.getShape(), fillValue, endian, raf);
     }
 
     if (data instanceof Array)
@@ -234,7 +388,7 @@ public class H5iosp extends AbstractIOServiceProvider {
    * @throws ucar.ma2.InvalidRangeException if invalid section
    */
   private Object readData(H5header.Vinfo vinfo, Variable v, Layout layout, DataType dataType, int[] shape,
-      Object fillValue, int endian) throws java.io.IOException, InvalidRangeException {
+      Object fillValue, int endian, RandomAccessFile raf) throws java.io.IOException, InvalidRangeException {
 
     H5header.TypeInfo typeInfo = vinfo.typeInfo;
 
@@ -338,7 +492,7 @@ public class H5iosp extends AbstractIOServiceProvider {
     }
 
     // normal case
-    return readDataPrimitive(layout, dataType, shape, fillValue, endian, true);
+    return readDataPrimitive(layout, dataType, shape, fillValue, endian, true, raf);
   }
 
   Array convertReference(Array refArray) throws java.io.IOException {
@@ -532,6 +686,11 @@ public class H5iosp extends AbstractIOServiceProvider {
    */
   Object readDataPrimitive(Layout layout, DataType dataType, int[] shape, Object fillValue, int endian,
       boolean convertChar) throws java.io.IOException {
+    return readDataPrimitive(layout, dataType, shape, fillValue, endian, convertChar, raf);
+  }
+
+  private Object readDataPrimitive(Layout layout, DataType dataType, int[] shape, Object fillValue, int endian,
+      boolean convertChar, RandomAccessFile raf) throws java.io.IOException {
 
     if (dataType == DataType.STRING) {
       int size = (int) layout.getTotalNelems();
@@ -583,7 +742,7 @@ public class H5iosp extends AbstractIOServiceProvider {
       H5header.Vinfo vinfo = (H5header.Vinfo) v2.getSPobject();
       if (debug)
         System.out.println(" readStructureMember " + v2.getFullName() + " vinfo = " + vinfo);
-      Array dataArray = readData(v2, dataPos + vinfo.dataPos, v2.getShapeAsSection());
+      Array dataArray = readData(v2, dataPos + vinfo.dataPos, v2.getShapeAsSection(), raf);
       sdata.setMemberData(v2.getShortName(), dataArray);
     }
 
@@ -597,6 +756,17 @@ public class H5iosp extends AbstractIOServiceProvider {
   public void close() throws IOException {
     super.close();
     headerParser.close();
+    if (readers != null)
+      readers.close();
+  }
+
+  @Override
+  public void release() throws IOException {
+    super.release();
+    if (readers != null) {
+      readers.close();
+      readers = new RandomAccessFilePool(readers.getLocation(), readers.getBufferSize());
+    }
   }
 
   @Override
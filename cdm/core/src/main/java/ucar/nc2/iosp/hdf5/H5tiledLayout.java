@@ -5,16 +5,22 @@
 package ucar.nc2.iosp.hdf5;
 
 import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
 import ucar.nc2.iosp.LayoutTiled;
 import ucar.nc2.iosp.Layout;
+import ucar.unidata.io.RandomAccessFile;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * Iterator to read/write subsets of an array.
  * This calculates byte offsets for HD5 chunked datasets.
  * Assumes that the data is stored in chunks, indexed by a Btree.
- * for unfiltered data only
+ * for unfiltered data only.
+ * The chunks that intersect the wanted section are read in file order.
  *
  * @author caron
  */
@@ -34,9 +40,10 @@ class H5tiledLayout implements Layout {
    * @param vinfo the vinfo object for this variable
    * @param dtype type of data. may be different from v2.
    * @param wantSection the wanted section of data, contains a List of Range objects, must be complete
+   * @param raf read the btree from here
    * @throws java.io.IOException on io error
    */
-  H5tiledLayout(H5header.Vinfo vinfo, DataType dtype, Section wantSection) throws IOException {
+  H5tiledLayout(H5header.Vinfo vinfo, DataType dtype, Section wantSection, RandomAccessFile raf) throws IOException {
     assert vinfo.isChunked;
     assert vinfo.btree != null;
 
@@ -58,7 +65,16 @@ class H5tiledLayout implements Layout {
       System.out.println(" H5tiledLayout: " + this);
 
     // create the data chunk iterator
-    LayoutTiled.DataChunkIterator iter = vinfo.btree.getDataChunkIteratorNoFilter(this.want, nChunkDims);
+    LayoutTiled.DataChunkIterator iter;
+    if (this.want.isVariableLength()) {
+      iter = vinfo.btree.getDataChunkIteratorNoFilter(this.want, nChunkDims, raf);
+    } else { // read the chunks that intersect the want section in file order
+      try {
+        iter = new SortedChunkIterator(vinfo.btree.findDataChunks(this.want, chunkSize, raf));
+      } catch (InvalidRangeException e) {
+        throw new IllegalStateException(e);
+      }
+    }
     delegate = new LayoutTiled(iter, chunkSize, elemSize, this.want);
   }
 
@@ -78,6 +94,24 @@ class H5tiledLayout implements Layout {
     return delegate.next();
   }
 
+  private class SortedChunkIterator implements LayoutTiled.DataChunkIterator {
+    private final Iterator<DataBTree.DataChunk> chunks;
+
+    SortedChunkIterator(List<DataBTree.DataChunk> chunks) {
+      this.chunks = chunks.iterator();
+    }
+
+    public boolean hasNext() {
+      return chunks.hasNext();
+    }
+
+    public LayoutTiled.DataChunk next() {
+      DataBTree.DataChunk dc = chunks.next();
+      int[] offset = (dc.offset.length > chunkSize.length) ? Arrays.copyOf(dc.offset, chunkSize.length) : dc.offset;
+      return new LayoutTiled.DataChunk(offset, dc.filePos);
+    }
+  }
+
   public String toString() {
     StringBuilder sbuff = new StringBuilder();
     sbuff.append("want=").append(want).append("; ");
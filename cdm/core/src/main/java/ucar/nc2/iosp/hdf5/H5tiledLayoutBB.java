@@ -19,12 +19,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * Iterator to read/write subsets of an array.
  * This calculates byte offsets for HD5 chunked datasets.
  * Assumes that the data is stored in chunks, indexed by a Btree.
- * for filtered data
+ * for filtered data.
+ * The chunks that intersect the wanted section are read in file order. If H5iosp has a chunk cache, decompressed
+ * chunks are taken from it when possible.
  *
  * @author caron
  */
@@ -39,6 +43,8 @@ class H5tiledLayoutBB implements LayoutBB {
   private LayoutBBTiled delegate;
 
   private RandomAccessFile raf;
+  private String varName;
+  private H5chunkCache chunkCache;
   private H5header.Filter[] filters;
   private ByteOrder byteOrder;
 
@@ -51,6 +57,10 @@ class H5tiledLayoutBB implements LayoutBB {
 
   private int inflatebuffersize = DEFAULTZIPBUFFERSIZE;
 
+  // per read statistics
+  private int nchunks, nchunksCached;
+  private long bytesDecompressed;
+
   /**
    * Constructor.
    * This is for HDF5 chunked data storage. The data is read by chunk, for efficency.
@@ -71,6 +81,8 @@ class H5tiledLayoutBB implements LayoutBB {
     assert vinfo.btree != null;
 
     this.raf = raf;
+    this.varName = v2.getFullName();
+    this.chunkCache = H5iosp.getChunkCache();
     this.filters = filters;
     this.byteOrder = byteOrder;
 
@@ -89,9 +101,9 @@ class H5tiledLayoutBB implements LayoutBB {
     System.arraycopy(vinfo.storageSize, 0, chunkSize, 0, nChunkDims);
     this.elemSize = vinfo.storageSize[vinfo.storageSize.length - 1]; // last one is always the elements size
 
-    // create the data chunk iterator
-    DataBTree.DataChunkIterator iter = vinfo.btree.getDataChunkIteratorFilter(this.want);
-    DataChunkIterator dcIter = new DataChunkIterator(iter);
+    // read the chunks that intersect the want section in file order
+    List<DataBTree.DataChunk> chunks = vinfo.btree.findDataChunks(this.want, chunkSize, raf);
+    DataChunkIterator dcIter = new DataChunkIterator(chunks.iterator());
     delegate = new LayoutBBTiled(dcIter, chunkSize, elemSize, this.want);
 
     if (System.getProperty(INFLATEBUFFERSIZE) != null) {
@@ -128,6 +140,31 @@ class H5tiledLayoutBB implements LayoutBB {
     return delegate.next();
   }
 
+  /** @return number of chunks read so far */
+  int getChunkCount() {
+    return nchunks;
+  }
+
+  /** @return number of chunks read so far that were found in the chunk cache */
+  int getChunkCachedCount() {
+    return nchunksCached;
+  }
+
+  /** @return number of bytes decompressed so far */
+  long getBytesDecompressed() {
+    return bytesDecompressed;
+  }
+
+  // may have to eliminate last offset
+  private int[] getChunkOffset(DataBTree.DataChunk dc) {
+    int[] offset = dc.offset;
+    if (offset.length > nChunkDims) {
+      offset = new int[nChunkDims];
+      System.arraycopy(dc.offset, 0, offset, 0, nChunkDims);
+    }
+    return offset;
+  }
+
   public String toString() {
     StringBuilder sbuff = new StringBuilder();
     sbuff.append("want=").append(want).append("; ");
@@ -143,9 +180,9 @@ class H5tiledLayoutBB implements LayoutBB {
   }
 
   private class DataChunkIterator implements LayoutBBTiled.DataChunkIterator {
-    DataBTree.DataChunkIterator delegate;
+    Iterator<DataBTree.DataChunk> delegate;
 
-    DataChunkIterator(DataBTree.DataChunkIterator delegate) {
+    DataChunkIterator(Iterator<DataBTree.DataChunk> delegate) {
       this.delegate = delegate;
     }
 
@@ -189,41 +226,24 @@ class H5tiledLayoutBB implements LayoutBB {
     }
 
     public int[] getOffset() {
-      int[] offset = delegate.offset;
-      if (offset.length > nChunkDims) { // may have to eliminate last offset
-        offset = new int[nChunkDims];
-        System.arraycopy(delegate.offset, 0, offset, 0, nChunkDims);
-      }
-      return offset;
+      return getChunkOffset(delegate);
     }
 
     public ByteBuffer getByteBuffer() throws IOException {
       try {
-        // read the data
-        byte[] data = new byte[delegate.size];
-        raf.seek(delegate.filePos);
-        raf.readFully(data);
-
-        // apply filters backwards
-        for (int i = filters.length - 1; i >= 0; i--) {
-          H5header.Filter f = filters[i];
-          if (isBitSet(delegate.filterMask, i)) {
-            if (debug)
-              System.out.println("skip for chunk " + delegate);
-            continue;
-          }
-          if (f.id == 1) {
-            data = inflate(data);
-          } else if (f.id == 2) {
-            data = shuffle(data, f.data[0]);
-          } else if (f.id == 3) {
-            data = checkfletcher32(data);
-            /*
-             * } else if (f.id == 307) {
-             * data = unbzip2(data);
-             */
-          } else
-            throw new RuntimeException("Unknown filter type=" + f.id);
+        byte[] data;
+        nchunks++;
+        if (chunkCache == null) {
+          data = readChunk();
+        } else {
+          H5chunkCache.Key key = new H5chunkCache.Key(raf.getLocation(), varName, delegate.offset, delegate.filePos);
+          boolean[] cached = {true};
+          data = chunkCache.get(key, () -> {
+            cached[0] = false;
+            return readChunk();
+          });
+          if (cached[0])
+            nchunksCached++;
         }
 
         ByteBuffer result = ByteBuffer.wrap(data);
@@ -237,6 +257,38 @@ class H5tiledLayoutBB implements LayoutBB {
       }
     }
 
+    // read the chunk and undo the filters
+    private byte[] readChunk() throws IOException {
+      // read the data
+      byte[] data = new byte[delegate.size];
+      raf.seek(delegate.filePos);
+      raf.readFully(data);
+
+      // apply filters backwards
+      for (int i = filters.length - 1; i >= 0; i--) {
+        H5header.Filter f = filters[i];
+        if (isBitSet(delegate.filterMask, i)) {
+          if (debug)
+            System.out.println("skip for chunk " + delegate);
+          continue;
+        }
+        if (f.id == 1) {
+          data = inflate(data);
+        } else if (f.id == 2) {
+          data = shuffle(data, f.data[0]);
+        } else if (f.id == 3) {
+          data = checkfletcher32(data);
+          /*
+           * } else if (f.id == 307) {
+           * data = unbzip2(data);
+           */
+        } else
+          throw new RuntimeException("Unknown filter type=" + f.id);
+      }
+      bytesDecompressed += data.length;
+      return data;
+    }
+
     /**
      * inflate data
      *
@@ -12,6 +12,7 @@ import ucar.nc2.constants.CDM;
 import ucar.nc2.constants.DataFormatType;
 import ucar.nc2.iosp.*;
 import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.io.RandomAccessFilePool;
 import java.io.File;
 import java.io.IOException;
 import java.nio.channels.WritableByteChannel;
@@ -125,6 +126,7 @@ public abstract class N3iosp extends AbstractIOServiceProvider implements IOServ
   public static final int MAX_NUMRECS = Integer.MAX_VALUE;
 
   private static boolean syncExtendOnly;
+  private static boolean concurrentReads;
 
   /**
    * Set a static property.
@@ -141,6 +143,17 @@ public abstract class N3iosp extends AbstractIOServiceProvider implements IOServ
       syncExtendOnly = value.equalsIgnoreCase("true");
   }
 
+  /**
+   * Allow threads to read the same file at the same time, each with its own RandomAccessFile from a pool,
+   * instead of taking turns on the one RandomAccessFile. Applies to local files opened read-only, after this is set.
+   * Default is false.
+   *
+   * @param b true to allow concurrent reads
+   */
+  public static void setConcurrentReads(boolean b) {
+    concurrentReads = b;
+  }
+
   /**
    * Determine if the given name can be used for a NetCDF object, i.e. a Dimension, Attribute, or Variable.
    * The allowed name syntax (in RE form) is:
@@ -374,6 +387,8 @@ public abstract class N3iosp extends AbstractIOServiceProvider implements IOServ
   // protected int numrecs;
   // protected long recsize;
   protected long lastModified; // used by sync
+  private boolean forWriting;
+  private RandomAccessFilePool readers; // not null if concurrent reads are allowed
 
   // used for writing only
   // protected long fileUsed = 0; // how much of the file is written to ?
@@ -411,6 +426,7 @@ public abstract class N3iosp extends AbstractIOServiceProvider implements IOServ
   @Override
   public void openForWriting(ucar.unidata.io.RandomAccessFile raf, ucar.nc2.NetcdfFile ncfile,
       ucar.nc2.util.CancelTask cancelTask) throws IOException {
+    forWriting = true;
     open(raf, ncfile, cancelTask);
   }
 
@@ -438,6 +454,9 @@ public abstract class N3iosp extends AbstractIOServiceProvider implements IOServ
     _open(raf);
 
     ncfile.finish();
+
+    if (concurrentReads && !forWriting && RandomAccessFilePool.canPool(raf))
+      readers = new RandomAccessFilePool(location, raf.getBufferSize());
   }
 
 
@@ -464,7 +483,17 @@ public abstract class N3iosp extends AbstractIOServiceProvider implements IOServ
       return Array.factory(dataType, section.getShape());
     }
 
-    Object data = readData(layout, dataType);
+    Object data;
+    if (readers == null) {
+      data = readData(layout, dataType);
+    } else {
+      RandomAccessFile myRaf = readers.acquire();
+      try {
+        data = IospHelper.readDataFill(myRaf, layout, dataType, null, -1);
+      } finally {
+        readers.release(myRaf);
+      }
+    }
     return Array.factory(dataType, section.getShape(), data);
   }
 
@@ -478,6 +507,19 @@ public abstract class N3iosp extends AbstractIOServiceProvider implements IOServ
    * @throws IOException on error
    */
   private ucar.ma2.Array readRecordData(ucar.nc2.Structure s, Section section) throws java.io.IOException {
+    if (readers == null)
+      return readRecordData(s, section, raf);
+
+    RandomAccessFile myRaf = readers.acquire();
+    try {
+      return readRecordData(s, section, myRaf);
+    } finally {
+      readers.release(myRaf);
+    }
+  }
+
+  private ucar.ma2.Array readRecordData(ucar.nc2.Structure s, Section section, RandomAccessFile raf)
+      throws java.io.IOException {
     // if (s.isSubset())
     // return readRecordDataSubset(s, section);
 
@@ -951,6 +993,10 @@ public abstract class N3iosp extends AbstractIOServiceProvider implements IOServ
 
   @Override
   public void close() throws java.io.IOException {
+    if (readers != null) {
+      readers.close();
+      readers = null;
+    }
     if (raf != null) {
       long size = header.calcFileSize();
       raf.setMinLength(size);
@@ -959,6 +1005,15 @@ public abstract class N3iosp extends AbstractIOServiceProvider implements IOServ
     raf = null;
   }
 
+  @Override
+  public void release() throws IOException {
+    super.release();
+    if (readers != null) {
+      readers.close();
+      readers = new RandomAccessFilePool(readers.getLocation(), readers.getBufferSize());
+    }
+  }
+
   @Override
   public void reacquire() throws IOException {
     super.reacquire();
@@ -62,7 +62,16 @@ public class NcStream {
 
   public static final int ncstream_data_version = 3;
 
-  static NcStreamProto.Group.Builder encodeGroup(Group g, int sizeToCache) throws IOException {
+  /**
+   * Encode the metadata of a Group and everything in it.
+   *
+   * @param g encode this group
+   * @param sizeToCache put the data of smaller numeric variables, and of coordinate variables, into the header;
+   *        if negative, dont put any data into the header
+   * @return the group message
+   * @throws IOException on read error
+   */
+  public static NcStreamProto.Group.Builder encodeGroup(Group g, int sizeToCache) throws IOException {
     NcStreamProto.Group.Builder groupBuilder = NcStreamProto.Group.newBuilder();
     groupBuilder.setName(g.getShortName());
 
@@ -157,7 +166,7 @@ public class NcStream {
     }
 
     // put small amounts of data in header "immediate mode"
-    if (var.isCaching() && var.getDataType().isNumeric()) {
+    if (sizeToCache >= 0 && var.isCaching() && var.getDataType().isNumeric()) {
       if (var.isCoordinateVariable() || var.getSize() * var.getElementSize() < sizeToCache) {
         Array data = var.read();
         ByteBuffer bb = data.getDataAsByteBuffer();
@@ -183,7 +192,7 @@ public class NcStream {
       if (v instanceof Structure)
         builder.addStructs(NcStream.encodeStructure((Structure) v));
       else
-        builder.addVars(NcStream.encodeVar(v, -1));
+        builder.addVars(NcStream.encodeVar(v, 0));
     }
 
     return builder;
@@ -422,7 +431,14 @@ public class NcStream {
 
   ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
-  static void readGroup(NcStreamProto.Group proto, NetcdfFile ncfile, Group.Builder g) {
+  /**
+   * Decode a group message made by encodeGroup().
+   *
+   * @param proto the group message
+   * @param ncfile the file being built
+   * @param g add the contents of the group to this builder
+   */
+  public static void readGroup(NcStreamProto.Group proto, NetcdfFile ncfile, Group.Builder g) {
 
     for (NcStreamProto.Dimension dim : proto.getDimsList())
       g.addDimension(NcStream.decodeDim(dim)); // always added to group? what if private ??
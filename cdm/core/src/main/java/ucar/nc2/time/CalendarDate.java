@@ -217,6 +217,16 @@ public class CalendarDate implements Comparable<CalendarDate> {
     return dateTime.getMillis();
   }
 
+  /**
+   * Make a CalendarDate with the same Calendar and chronology, at a different instant.
+   *
+   * @param msecs milliseconds from 1970-01-01T00:00:00Z
+   * @return CalendarDate at msecs
+   */
+  public CalendarDate withMillis(long msecs) {
+    return new CalendarDate(cal, dateTime.withMillis(msecs));
+  }
+
   // package private
   DateTime getDateTime() {
     return dateTime;
@@ -174,6 +174,50 @@ public class CalendarDateUnit {
       return baseDate.add(value, periodField);
   }
 
+  /**
+   * Convert an array of values in this unit to msecs since 1970-01-01T00:00:00Z.
+   * Same as makeCalendarDate(values[i]).getMillis(), but does not make a CalendarDate for each value,
+   * unless this is a calendar field unit.
+   *
+   * @param values values in this unit (secs, days, etc) from the baseDate
+   * @return msecs for each value
+   */
+  public long[] makeMillis(double[] values) {
+    long[] result = new long[values.length];
+    if (isCalendarField) {
+      for (int i = 0; i < values.length; i++)
+        result[i] = makeCalendarDate(values[i]).getMillis();
+      return result;
+    }
+
+    long base = baseDate.getMillis();
+    double msecsPerUnit = getMillisecsPerUnit(periodField);
+    for (int i = 0; i < values.length; i++)
+      result[i] = base + Math.round(values[i] * msecsPerUnit);
+    return result;
+  }
+
+  // must agree with CalendarDate.add(double value, CalendarPeriod.Field unit)
+  private static double getMillisecsPerUnit(CalendarPeriod.Field unit) {
+    switch (unit) {
+      case Millisec:
+        return 1;
+      case Second:
+        return CalendarDate.MILLISECS_IN_SECOND;
+      case Minute:
+        return CalendarDate.MILLISECS_IN_MINUTE;
+      case Hour:
+        return CalendarDate.MILLISECS_IN_HOUR;
+      case Day:
+        return CalendarDate.MILLISECS_IN_DAY;
+      case Month:
+        return CalendarDate.MILLISECS_IN_MONTH;
+      case Year:
+        return CalendarDate.MILLISECS_IN_YEAR;
+    }
+    throw new UnsupportedOperationException("period units = " + unit);
+  }
+
   public String getUdUnit() {
     return toString();
   }
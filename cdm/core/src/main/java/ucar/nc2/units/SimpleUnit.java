@@ -4,6 +4,9 @@
  */
 package ucar.nc2.units;
 
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.MAMath;
 import ucar.units.*;
 
 /**
@@ -255,6 +258,41 @@ public class SimpleUnit {
     }
   }
 
+  /**
+   * Convert all the values of a float or double Array from this unit to the new unit, in place.
+   *
+   * @param data values in this unit, of type float or double; modified in place
+   * @param outputUnit convert to this unit
+   * @return data, now in outputUnit
+   * @throws IllegalArgumentException if outputUnit not convertible from this unit, or data is not float or double
+   */
+  public Array convertTo(Array data, SimpleUnit outputUnit) throws IllegalArgumentException {
+    DataType dataType = data.getDataType();
+    if (dataType != DataType.FLOAT && dataType != DataType.DOUBLE)
+      throw new IllegalArgumentException("Can only convert float or double Arrays, not " + dataType);
+
+    Converter converter;
+    try {
+      converter = uu.getConverterTo(outputUnit.getUnit());
+    } catch (ConversionException e) {
+      throw new IllegalArgumentException(e.getMessage());
+    }
+
+    // the backing array if in order, else a copy
+    Object storage = data.get1DJavaArray(dataType);
+    if (dataType == DataType.FLOAT) {
+      float[] vals = (float[]) storage;
+      converter.convert(vals, vals);
+    } else {
+      double[] vals = (double[]) storage;
+      converter.convert(vals, vals);
+    }
+
+    if (storage != data.getStorage()) // a section or permutation: copy back
+      MAMath.copy(data, Array.factory(dataType, data.getShape(), storage));
+    return data;
+  }
+
   /**
    * Return true if unitString1 is compatible to unitString2,
    * meaning one can be converted to the other.
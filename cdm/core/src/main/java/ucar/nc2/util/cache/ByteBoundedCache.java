@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.util.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.Formatter;
+import java.util.concurrent.ExecutionException;
+import java.util.function.ToLongFunction;
+
+/**
+ * A memory cache of data read or decoded from files, bounded by the total bytes held, using a guava cache.
+ * Values larger than the bound are not kept. The values are shared, and must not be modified.
+ * Used by the chunk, tile and record caches of the iosps.
+ *
+ * @param <K> key type, with equals() and hashCode()
+ * @param <V> value type
+ */
+@ThreadSafe
+public class ByteBoundedCache<K, V> {
+
+  /**
+   * Reads or decodes a value that is not in the cache.
+   *
+   * @param <E> another checked exception the loader throws, if any; else it is inferred as RuntimeException
+   */
+  public interface Loader<V, E extends Exception> {
+    V load() throws IOException, E;
+  }
+
+  private final String name;
+  private final long maxBytes;
+  private final ToLongFunction<V> sizer;
+  private final Cache<K, V> cache;
+
+  /**
+   * Constructor.
+   *
+   * @param name used in showStats()
+   * @param maxBytes maximum number of bytes to keep
+   * @param sizer the size in bytes of a value
+   */
+  public ByteBoundedCache(String name, long maxBytes, ToLongFunction<V> sizer) {
+    this.name = name;
+    this.maxBytes = maxBytes;
+    this.sizer = sizer;
+    this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+        .weigher((K key, V value) -> (int) Math.min(Integer.MAX_VALUE, sizer.applyAsLong(value))).recordStats()
+        .build();
+  }
+
+  /**
+   * Get the value, calling the loader and keeping the result if it is not already in the cache.
+   * If several threads ask for the same missing key, only one of them calls the loader.
+   *
+   * @param key the key
+   * @param loader called if the key is not in the cache
+   * @return the value
+   * @throws IOException if the loader throws it
+   * @throws E if the loader throws it
+   */
+  @SuppressWarnings("unchecked")
+  public <E extends Exception> V get(K key, Loader<? extends V, E> loader) throws IOException, E {
+    try {
+      return cache.get(key, loader::load);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof Exception)
+        throw (E) cause; // the only other checked exception the loader can throw
+      throw new IOException(cause); // not reached, guava throws errors as ExecutionError
+    }
+  }
+
+  /** @return the value, or null if not in the cache */
+  @Nullable
+  public V getIfPresent(K key) {
+    return cache.getIfPresent(key);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** @return number of values now held */
+  public long getCount() {
+    return cache.size();
+  }
+
+  /** @return number of bytes now held */
+  public long getBytes() {
+    long total = 0;
+    for (V value : cache.asMap().values())
+      total += sizer.applyAsLong(value);
+    return total;
+  }
+
+  /** @return hit and miss counts, etc */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  public void clearCache() {
+    cache.invalidateAll();
+  }
+
+  public void showStats(Formatter f) {
+    CacheStats stats = cache.stats();
+    f.format("%s: %d entries, %d of %d bytes; hits=%d misses=%d hitRatio=%.3f%n", name, cache.size(), getBytes(),
+        maxBytes, stats.hitCount(), stats.missCount(), stats.hitRate());
+  }
+}
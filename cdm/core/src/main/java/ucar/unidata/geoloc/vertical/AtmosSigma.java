@@ -9,8 +9,9 @@ import java.util.List;
 import ucar.ma2.Array;
 import ucar.ma2.ArrayDouble;
 import ucar.ma2.ArrayDouble.D1;
-import ucar.ma2.Index;
+import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
 import ucar.nc2.Dimension;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
@@ -114,26 +115,33 @@ public class AtmosSigma extends VerticalTransformImpl {
    * @throws InvalidRangeException _more_
    */
   public ArrayDouble.D3 getCoordinateArray(int timeIndex) throws IOException, InvalidRangeException {
-    Array ps = readArray(psVar, timeIndex);
-    Index psIndex = ps.getIndex();
+    return getCoordinateArray(timeIndex, null, null, null);
+  }
+
+  @Override
+  protected ArrayDouble.D3 computeCoordinateArray(int timeIndex, Range zRange, Range yRange, Range xRange)
+      throws IOException, InvalidRangeException {
+    Array ps = readArray(psVar, timeIndex, yRange, xRange);
+    double[] psData = getDoubles(ps);
+    double[] sigmaz = getDoubles(Array.factory(DataType.DOUBLE, new int[] {sigma.length}, sigma), zRange);
 
-    int nz = sigma.length;
+    int nz = sigmaz.length;
     int[] shape2D = ps.getShape();
     int ny = shape2D[0];
     int nx = shape2D[1];
 
-    ArrayDouble.D3 result = new ArrayDouble.D3(nz, ny, nx);
-
-    for (int y = 0; y < ny; y++) {
-      for (int x = 0; x < nx; x++) {
-        double psVal = ps.getDouble(psIndex.set(y, x));
-        for (int z = 0; z < nz; z++) {
-          result.set(z, y, x, ptop + sigma[z] * (psVal - ptop));
+    double[] result = new double[nz * ny * nx];
+    computeRows(ny, result.length, y -> {
+      int row = y * nx;
+      for (int z = 0; z < nz; z++) {
+        int start = (z * ny + y) * nx;
+        for (int x = 0; x < nx; x++) {
+          result[start + x] = ptop + sigmaz[z] * (psData[row + x] - ptop);
         }
       }
-    }
+    });
 
-    return result;
+    return (ArrayDouble.D3) Array.factory(DataType.DOUBLE, new int[] {nz, ny, nx}, result);
   }
 
   /**
@@ -149,20 +157,7 @@ public class AtmosSigma extends VerticalTransformImpl {
    * @throws ucar.ma2.InvalidRangeException _more_
    */
   public D1 getCoordinateArray1D(int timeIndex, int xIndex, int yIndex) throws IOException, InvalidRangeException {
-
-    Array ps = readArray(psVar, timeIndex);
-    Index psIndex = ps.getIndex();
-    int nz = sigma.length;
-    ArrayDouble.D1 result = new ArrayDouble.D1(nz);
-
-    double psVal = ps.getDouble(psIndex.set(yIndex, xIndex));
-    for (int z = 0; z < nz; z++) {
-      result.set(z, ptop + sigma[z] * (psVal - ptop));
-    }
-
-    return result;
-
+    return computeColumn(timeIndex, xIndex, yIndex);
   }
 
 }
-
@@ -119,7 +119,13 @@ public class HybridSigmaPressure extends VerticalTransformImpl {
    * @throws InvalidRangeException _more_
    */
   public ArrayDouble.D3 getCoordinateArray(int timeIndex) throws IOException, InvalidRangeException {
-    Array psArray = readArray(psVar, timeIndex);
+    return getCoordinateArray(timeIndex, null, null, null);
+  }
+
+  @Override
+  protected ArrayDouble.D3 computeCoordinateArray(int timeIndex, Range zRange, Range yRange, Range xRange)
+      throws IOException, InvalidRangeException {
+    Array psArray = readArray(psVar, timeIndex, yRange, xRange);
 
     if (null == aArray) {
       aArray = aVar.read();
@@ -128,9 +134,16 @@ public class HybridSigmaPressure extends VerticalTransformImpl {
       p0 = computeP0();
     }
 
-    int nz = (int) aArray.getSize();
-    Index aIndex = aArray.getIndex();
-    Index bIndex = bArray.getIndex();
+    double[] term1 = getDoubles(aArray, zRange).clone();
+    double[] bz = getDoubles(bArray, zRange);
+    int nz = term1.length;
+    for (int z = 0; z < nz; z++) {
+      term1[z] *= p0;
+      // AP might need unit conversion
+      if (!apUnits.equals(units)) {
+        term1[z] = convertPressureToPSUnits(apUnits, term1[z]);
+      }
+    }
 
     // it's possible to have rank 3 because pressure can have a level, usually 1
     // Check if rank 3 and try to reduce
@@ -140,31 +153,20 @@ public class HybridSigmaPressure extends VerticalTransformImpl {
     int[] shape2D = psArray.getShape();
     int ny = shape2D[0];
     int nx = shape2D[1];
+    double[] psData = getDoubles(psArray);
 
-    Index psIndex = psArray.getIndex();
-
-    ArrayDouble.D3 press = new ArrayDouble.D3(nz, ny, nx);
-
-    double ps;
-    for (int z = 0; z < nz; z++) {
-      double term1 = aArray.getDouble(aIndex.set(z)) * p0;
-
-      // AP might need unit conversion
-      if (!apUnits.equals(units)) {
-        term1 = convertPressureToPSUnits(apUnits, term1);
-      }
-
-      double bz = bArray.getDouble(bIndex.set(z));
-
-      for (int y = 0; y < ny; y++) {
+    double[] press = new double[nz * ny * nx];
+    computeRows(ny, press.length, y -> {
+      int row = y * nx;
+      for (int z = 0; z < nz; z++) {
+        int start = (z * ny + y) * nx;
         for (int x = 0; x < nx; x++) {
-          ps = psArray.getDouble(psIndex.set(y, x));
-          press.set(z, y, x, term1 + bz * ps);
+          press[start + x] = term1[z] + bz[z] * psData[row + x];
         }
       }
-    }
+    });
 
-    return press;
+    return (ArrayDouble.D3) Array.factory(DataType.DOUBLE, new int[] {nz, ny, nx}, press);
   }
 
   /**
@@ -178,48 +180,7 @@ public class HybridSigmaPressure extends VerticalTransformImpl {
    * @throws ucar.ma2.InvalidRangeException _more_
    */
   public D1 getCoordinateArray1D(int timeIndex, int xIndex, int yIndex) throws IOException, InvalidRangeException {
-
-    Array psArray = readArray(psVar, timeIndex);
-
-    if (null == aArray) {
-      aArray = aVar.read();
-      bArray = bVar.read();
-      // p0 = (p0Var == null) ? 1.0 : p0Var.readScalarDouble();
-      p0 = computeP0();
-    }
-
-    int nz = (int) aArray.getSize();
-    Index aIndex = aArray.getIndex();
-    Index bIndex = bArray.getIndex();
-
-    // it's possible to have rank 3 because pressure can have a level, usually 1
-    // Check if rank 3 and try to reduce
-    if (psArray.getRank() == 3)
-      psArray = psArray.reduce(0);
-
-    Index psIndex = psArray.getIndex();
-
-    ArrayDouble.D1 press = new ArrayDouble.D1(nz);
-
-    double ps;
-    for (int z = 0; z < nz; z++) {
-
-      double term1 = aArray.getDouble(aIndex.set(z)) * p0;
-      // AP might need unit conversion
-      if (!apUnits.equals(units)) {
-        term1 = convertPressureToPSUnits(apUnits, term1);
-      }
-
-      double bz = bArray.getDouble(bIndex.set(z));
-
-      ps = psArray.getDouble(psIndex.set(yIndex, xIndex));
-      press.set(z, term1 + bz * ps);
-
-    }
-
-    return press;
-
-
+    return computeColumn(timeIndex, xIndex, yIndex);
   }
 
   private double computeP0() throws IOException {
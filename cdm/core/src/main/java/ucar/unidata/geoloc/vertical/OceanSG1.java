@@ -96,14 +96,20 @@ public class OceanSG1 extends VerticalTransformImpl {
    * @throws ucar.ma2.InvalidRangeException _more_
    */
   public ArrayDouble.D3 getCoordinateArray(int timeIndex) throws IOException, InvalidRangeException {
-    Array etaArray = readArray(etaVar, timeIndex);
+    return getCoordinateArray(timeIndex, null, null, null);
+  }
+
+  @Override
+  protected ArrayDouble.D3 computeCoordinateArray(int timeIndex, Range zRange, Range yRange, Range xRange)
+      throws IOException, InvalidRangeException {
+    Array etaArray = readArray(etaVar, timeIndex, yRange, xRange);
     Array sArray = readArray(sVar, timeIndex);
-    Array depthArray = readArray(depthVar, timeIndex);
+    Array depthArray = readArray(depthVar, timeIndex, yRange, xRange);
     Array cArray = readArray(cVar, timeIndex);
 
     depth_c = depthCVar.readScalarDouble();
 
-    return makeHeight(etaArray, sArray, depthArray, cArray, depth_c);
+    return makeHeight(etaArray, getDoubles(sArray, zRange), depthArray, getDoubles(cArray, zRange), depth_c);
   }
 
   /**
@@ -119,16 +125,7 @@ public class OceanSG1 extends VerticalTransformImpl {
    */
   public ArrayDouble.D1 getCoordinateArray1D(int timeIndex, int xIndex, int yIndex)
       throws IOException, InvalidRangeException {
-    Array etaArray = readArray(etaVar, timeIndex);
-    Array sArray = readArray(sVar, timeIndex);
-    Array depthArray = readArray(depthVar, timeIndex);
-    Array cArray = readArray(cVar, timeIndex);
-
-    depth_c = depthCVar.readScalarDouble();
-
-
-
-    return makeHeight1D(etaArray, sArray, depthArray, cArray, depth_c, xIndex, yIndex);
+    return computeColumn(timeIndex, xIndex, yIndex);
   }
 
   /**
@@ -141,84 +138,35 @@ public class OceanSG1 extends VerticalTransformImpl {
    * /
    *
    * @param eta eta Array
-   * @param s s Array
+   * @param s s values
    * @param depth depth Array
-   * @param c c Array
+   * @param c c values
    * @param depth_c value of depth_c
    * @return height data
    */
-  private ArrayDouble.D3 makeHeight(Array eta, Array s, Array depth, Array c, double depth_c) {
-    int nz = (int) s.getSize();
-    Index sIndex = s.getIndex();
-    Index cIndex = c.getIndex();
-
+  private ArrayDouble.D3 makeHeight(Array eta, double[] s, Array depth, double[] c, double depth_c) {
+    int nz = s.length;
     int[] shape2D = eta.getShape();
     int ny = shape2D[0];
     int nx = shape2D[1];
-    Index etaIndex = eta.getIndex();
-    Index depthIndex = depth.getIndex();
-
-    ArrayDouble.D3 height = new ArrayDouble.D3(nz, ny, nx);
-
-    for (int z = 0; z < nz; z++) {
-      double sz = s.getDouble(sIndex.set(z));
-      double cz = c.getDouble(cIndex.set(z));
-
-      double term1 = depth_c * sz;
-
-      for (int y = 0; y < ny; y++) {
+    double[] etaData = getDoubles(eta);
+    double[] depthData = getDoubles(depth);
+
+    double[] height = new double[nz * ny * nx];
+    computeRows(ny, height.length, y -> {
+      int row = y * nx;
+      for (int z = 0; z < nz; z++) {
+        double term1 = depth_c * s[z];
+        double cz = c[z];
+        int start = (z * ny + y) * nx;
         for (int x = 0; x < nx; x++) {
-
-          double fac1 = depth.getDouble(depthIndex.set(y, x));
-          double term2 = (fac1 - depth_c) * cz;
-
-          double Sterm = term1 + term2;
-
-          double term3 = eta.getDouble(etaIndex.set(y, x));
-          double term4 = 1 + Sterm / fac1;
-          double hterm = Sterm + term3 * term4;
-
-          height.set(z, y, x, hterm);
-
+          double fac1 = depthData[row + x];
+          double Sterm = term1 + (fac1 - depth_c) * cz;
+          height[start + x] = Sterm + etaData[row + x] * (1 + Sterm / fac1);
         }
       }
-    }
-
-    return height;
-  }
-
-
-  private ArrayDouble.D1 makeHeight1D(Array eta, Array s, Array depth, Array c, double depth_c, int x_index,
-      int y_index) {
-    int nz = (int) s.getSize();
-    Index sIndex = s.getIndex();
-    Index cIndex = c.getIndex();
-
-
-    Index etaIndex = eta.getIndex();
-    Index depthIndex = depth.getIndex();
-
-    ArrayDouble.D1 height = new ArrayDouble.D1(nz);
-
-    for (int z = 0; z < nz; z++) {
-      double sz = s.getDouble(sIndex.set(z));
-      double cz = c.getDouble(cIndex.set(z));
-
-      double term1 = depth_c * sz;
-
-      double fac1 = depth.getDouble(depthIndex.set(y_index, x_index));
-      double term2 = (fac1 - depth_c) * cz;
-
-
-      double Sterm = term1 + term2;
-
-      double term3 = eta.getDouble(etaIndex.set(y_index, x_index));
-      double term4 = 1 + Sterm / fac1;
-      double hterm = Sterm + term3 * term4;
-
-      height.set(z, hterm);
-    }
+    });
 
-    return height;
+    return (ArrayDouble.D3) Array.factory(DataType.DOUBLE, new int[] {nz, ny, nx}, height);
   }
 }
@@ -72,37 +72,38 @@ public class OceanSigma extends VerticalTransformImpl {
    * @throws InvalidRangeException _more_
    */
   public ArrayDouble.D3 getCoordinateArray(int timeIndex) throws IOException, InvalidRangeException {
-    Array eta = readArray(etaVar, timeIndex);
-    Array sigma = readArray(sVar, timeIndex);
-    Array depth = readArray(depthVar, timeIndex);
+    return getCoordinateArray(timeIndex, null, null, null);
+  }
 
-    int nz = (int) sigma.getSize();
-    Index sIndex = sigma.getIndex();
+  @Override
+  protected ArrayDouble.D3 computeCoordinateArray(int timeIndex, Range zRange, Range yRange, Range xRange)
+      throws IOException, InvalidRangeException {
+    Array eta = readArray(etaVar, timeIndex, yRange, xRange);
+    double[] sigma = getDoubles(readArray(sVar, timeIndex), zRange);
+    double[] etaData = getDoubles(eta);
+    double[] depthData = getDoubles(readArray(depthVar, timeIndex, yRange, xRange));
 
+    int nz = sigma.length;
     int[] shape2D = eta.getShape();
     int ny = shape2D[0];
     int nx = shape2D[1];
-    Index etaIndex = eta.getIndex();
-    Index depthIndex = depth.getIndex();
-
-    ArrayDouble.D3 height = new ArrayDouble.D3(nz, ny, nx);
 
-    for (int z = 0; z < nz; z++) {
-      double sigmaVal = sigma.getDouble(sIndex.set(z));
-      for (int y = 0; y < ny; y++) {
+    double[] height = new double[nz * ny * nx];
+    computeRows(ny, height.length, y -> {
+      int row = y * nx;
+      for (int z = 0; z < nz; z++) {
+        double sigmaVal = sigma[z];
+        int start = (z * ny + y) * nx;
         for (int x = 0; x < nx; x++) {
-          double etaVal = eta.getDouble(etaIndex.set(y, x));
-          double depthVal = depth.getDouble(depthIndex.set(y, x));
-
-          height.set(z, y, x, etaVal + sigmaVal * (depthVal + etaVal));
+          double etaVal = etaData[row + x];
+          height[start + x] = etaVal + sigmaVal * (depthData[row + x] + etaVal);
         }
       }
-    }
+    });
 
-    return height;
+    return (ArrayDouble.D3) Array.factory(DataType.DOUBLE, new int[] {nz, ny, nx}, height);
   }
 
-
   /**
    * Get the 1D vertical coordinate array for this time step and point
    * 
@@ -114,30 +115,7 @@ public class OceanSigma extends VerticalTransformImpl {
    * @throws ucar.ma2.InvalidRangeException _more_
    */
   public D1 getCoordinateArray1D(int timeIndex, int xIndex, int yIndex) throws IOException, InvalidRangeException {
-
-    Array eta = readArray(etaVar, timeIndex);
-    Array sigma = readArray(sVar, timeIndex);
-    Array depth = readArray(depthVar, timeIndex);
-
-    int nz = (int) sigma.getSize();
-    Index sIndex = sigma.getIndex();
-
-    Index etaIndex = eta.getIndex();
-    Index depthIndex = depth.getIndex();
-
-    ArrayDouble.D1 height = new ArrayDouble.D1(nz);
-
-    for (int z = 0; z < nz; z++) {
-      double sigmaVal = sigma.getDouble(sIndex.set(z));
-
-      double etaVal = eta.getDouble(etaIndex.set(yIndex, xIndex));
-      double depthVal = depth.getDouble(depthIndex.set(yIndex, xIndex));
-
-      height.set(z, etaVal + sigmaVal * (depthVal + etaVal));
-    }
-
-    return height;
+    return computeColumn(timeIndex, xIndex, yIndex);
   }
 
 }
-
@@ -5,12 +5,20 @@
 package ucar.unidata.geoloc.vertical;
 
 import ucar.ma2.Array;
+import ucar.ma2.ArrayDouble;
+import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Range;
 import ucar.nc2.*;
 import ucar.unidata.util.Parameter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * A transformation to a vertical reference coordinate system,
@@ -27,6 +35,13 @@ public abstract class VerticalTransformImpl implements VerticalTransform {
   /** time dimension */
   private Dimension timeDim;
 
+  /** compute rows in parallel when the result has at least this many values */
+  private static final int PARALLEL_THRESHOLD = 64 * 1000;
+
+  /** most recently used coordinate arrays, or null if not caching */
+  private Map<String, ArrayDouble.D3> cache;
+  private int cacheSize;
+
   /**
    * Construct a VerticalCoordinate
    *
@@ -60,6 +75,102 @@ public abstract class VerticalTransformImpl implements VerticalTransform {
   public abstract ucar.ma2.ArrayDouble.D1 getCoordinateArray1D(int timeIndex, int xIndex, int yIndex)
       throws IOException, InvalidRangeException;
 
+  /**
+   * Get the 3D vertical coordinate array for this time step, for a subset of the z, y and x indices only.
+   * Transforms that can compute a window directly override computeCoordinateArray(), otherwise the whole
+   * array is computed and then subset.
+   * If setCacheSize() was called, the result is shared with other callers, so it must not be modified.
+   *
+   * @param timeIndex the time index. Ignored if !isTimeDependent().
+   * @param zRange subset of the vertical dimension, or null for all of it
+   * @param yRange subset of the y dimension, or null for all of it
+   * @param xRange subset of the x dimension, or null for all of it
+   * @return vertical coordinate array, with shape (zRange, yRange, xRange)
+   * @throws java.io.IOException problem reading the data
+   * @throws InvalidRangeException timeIndex or a range out of bounds
+   */
+  public ArrayDouble.D3 getCoordinateArray(int timeIndex, Range zRange, Range yRange, Range xRange)
+      throws IOException, InvalidRangeException {
+    String key = null;
+    if (cacheSize > 0) {
+      key = timeIndex + " " + zRange + " " + yRange + " " + xRange;
+      synchronized (this) {
+        ArrayDouble.D3 result = cache.get(key);
+        if (result != null)
+          return result;
+      }
+    }
+
+    ArrayDouble.D3 result = computeCoordinateArray(timeIndex, zRange, yRange, xRange);
+
+    if (key != null) {
+      synchronized (this) {
+        if (cache != null)
+          cache.put(key, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Compute the 3D vertical coordinate array for this time step and window, without caching.
+   * This default computes the whole array and then subsets it.
+   *
+   * @param timeIndex the time index. Ignored if !isTimeDependent().
+   * @param zRange subset of the vertical dimension, or null for all of it
+   * @param yRange subset of the y dimension, or null for all of it
+   * @param xRange subset of the x dimension, or null for all of it
+   * @return vertical coordinate array, with shape (zRange, yRange, xRange)
+   * @throws java.io.IOException problem reading the data
+   * @throws InvalidRangeException timeIndex or a range out of bounds
+   */
+  protected ArrayDouble.D3 computeCoordinateArray(int timeIndex, Range zRange, Range yRange, Range xRange)
+      throws IOException, InvalidRangeException {
+    ArrayDouble.D3 data = getCoordinateArray(timeIndex);
+    if (zRange == null && yRange == null && xRange == null)
+      return data;
+    return (ArrayDouble.D3) data.sectionNoReduce(Arrays.asList(zRange, yRange, xRange));
+  }
+
+  /**
+   * Compute the 1D vertical coordinate array for this time step and point, as a window of a single column.
+   *
+   * @param timeIndex the time index. Ignored if !isTimeDependent().
+   * @param xIndex the x index
+   * @param yIndex the y index
+   * @return vertical coordinate array
+   * @throws java.io.IOException problem reading data
+   * @throws InvalidRangeException an index out of bounds
+   */
+  protected ArrayDouble.D1 computeColumn(int timeIndex, int xIndex, int yIndex)
+      throws IOException, InvalidRangeException {
+    ArrayDouble.D3 data = computeCoordinateArray(timeIndex, null, new Range(yIndex, yIndex), new Range(xIndex, xIndex));
+    return (ArrayDouble.D1) data.reduce(2).reduce(1);
+  }
+
+  /**
+   * Keep the coordinate arrays of the n most recently used time steps and windows.
+   * A full array is nz * ny * nx doubles, so this is only useful for small n.
+   *
+   * @param n number of arrays to keep, 0 to turn off caching
+   */
+  public synchronized void setCacheSize(int n) {
+    this.cacheSize = n;
+    if (n <= 0) {
+      cache = null;
+      return;
+    }
+    Map<String, ArrayDouble.D3> old = cache;
+    cache = new LinkedHashMap<String, ArrayDouble.D3>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, ArrayDouble.D3> eldest) {
+        return size() > cacheSize;
+      }
+    };
+    if (old != null)
+      cache.putAll(old);
+  }
+
   /**
    * Get the unit string for the vertical coordinate.
    * 
@@ -117,6 +228,86 @@ public abstract class VerticalTransformImpl implements VerticalTransform {
     return v.read(origin, shape);
   }
 
+  /**
+   * Read a window of the variable, at the specified time index if applicable.
+   * The ranges subset the trailing dimensions of the variable, eg (y, x), and the other
+   * dimensions are read in full. If the variable has a time dimension, the data array will have rank-1.
+   *
+   * @param v variable to read
+   * @param timeIndex time index, ignored if !isTimeDependent()
+   * @param ranges subset the last ranges.length dimensions; a null Range means all of that dimension
+   * @return Array from the variable at that time index
+   *
+   * @throws IOException problem reading data
+   * @throws InvalidRangeException a range out of bounds
+   */
+  protected Array readArray(Variable v, int timeIndex, Range... ranges) throws IOException, InvalidRangeException {
+    List<Range> section = new ArrayList<>(v.getRanges());
+    int rank = section.size();
+
+    int timeDimIndex = -1;
+    if (getTimeDimension() != null) {
+      timeDimIndex = v.findDimensionIndex(getTimeDimension().getShortName());
+      if (timeDimIndex >= 0)
+        section.set(timeDimIndex, new Range(timeIndex, timeIndex));
+    }
+
+    for (int i = 0; i < ranges.length; i++) {
+      int dim = rank - ranges.length + i;
+      if (ranges[i] != null && dim >= 0 && dim != timeDimIndex)
+        section.set(dim, ranges[i]);
+    }
+
+    Array data = v.read(section);
+    return (timeDimIndex >= 0) ? data.reduce(timeDimIndex) : data;
+  }
+
+  /**
+   * The values of the Array, in canonical order, as doubles.
+   * The result may be the backing array of data, so it must not be modified.
+   *
+   * @param data any numeric Array
+   * @return the values as a double[]
+   */
+  protected static double[] getDoubles(Array data) {
+    return (double[]) data.get1DJavaArray(DataType.DOUBLE);
+  }
+
+  /**
+   * Make a double[] with the values of the 1D Array at the indices of the range.
+   *
+   * @param data 1D Array
+   * @param range subset of the Array, or null for all of it
+   * @return values in the range
+   * @throws InvalidRangeException range is out of bounds
+   */
+  protected static double[] getDoubles(Array data, Range range) throws InvalidRangeException {
+    double[] all = getDoubles(data);
+    if (range == null)
+      return all;
+    double[] result = new double[range.length()];
+    for (int i = 0; i < result.length; i++)
+      result[i] = all[range.element(i)];
+    return result;
+  }
+
+  /**
+   * Run the computation of each y row, in parallel if there is enough work.
+   * Rows must write to disjoint parts of the result.
+   *
+   * @param ny number of rows
+   * @param size total number of values computed
+   * @param row computes one row, given its index
+   */
+  protected static void computeRows(int ny, long size, IntConsumer row) {
+    if (size < PARALLEL_THRESHOLD || ny < 2) {
+      for (int y = 0; y < ny; y++)
+        row.accept(y);
+    } else {
+      IntStream.range(0, ny).parallel().forEach(row);
+    }
+  }
+
   /**
    * Create a subset of this VerticalTransform.
    *
@@ -6,8 +6,8 @@ package ucar.unidata.geoloc.vertical;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import ucar.ma2.Array;
 import ucar.ma2.ArrayDouble;
 import ucar.ma2.ArrayDouble.D1;
 import ucar.ma2.InvalidRangeException;
@@ -47,16 +47,39 @@ public class VerticalTransformSubset extends VerticalTransformImpl {
   }
 
   public ArrayDouble.D3 getCoordinateArray(int subsetIndex) throws IOException, InvalidRangeException {
+    return getCoordinateArray(subsetIndex, null, null, null);
+  }
+
+  /**
+   * Compute only the requested window of the original.
+   * The ranges are relative to this subset.
+   */
+  @Override
+  protected ArrayDouble.D3 computeCoordinateArray(int subsetIndex, Range zRange, Range yRange, Range xRange)
+      throws IOException, InvalidRangeException {
     int orgIndex = subsetIndex;
     if (isTimeDependent() && (t_range != null)) {
       orgIndex = t_range.element(subsetIndex);
     }
 
-    ArrayDouble.D3 data = original.getCoordinateArray(orgIndex);
+    Range zOrg = compose(subsetList.get(0), zRange);
+    Range yOrg = compose(subsetList.get(1), yRange);
+    Range xOrg = compose(subsetList.get(2), xRange);
 
-    return (ArrayDouble.D3) data.sectionNoReduce(subsetList);
+    if (original instanceof VerticalTransformImpl)
+      return ((VerticalTransformImpl) original).getCoordinateArray(orgIndex, zOrg, yOrg, xOrg);
+
+    ArrayDouble.D3 data = original.getCoordinateArray(orgIndex);
+    return (ArrayDouble.D3) data.sectionNoReduce(Arrays.asList(zOrg, yOrg, xOrg));
   }
 
+  private Range compose(Range subset, Range want) throws InvalidRangeException {
+    if (subset == null)
+      return want;
+    if (want == null)
+      return subset;
+    return subset.compose(want);
+  }
 
   /**
    * Get the 1D vertical coordinate array for this time step and point
@@ -69,30 +92,7 @@ public class VerticalTransformSubset extends VerticalTransformImpl {
    * @throws ucar.ma2.InvalidRangeException _more_
    */
   public D1 getCoordinateArray1D(int timeIndex, int xIndex, int yIndex) throws IOException, InvalidRangeException {
-
-
-    ArrayDouble.D3 data = original.getCoordinateArray(timeIndex);
-
-    int[] origin = new int[3];
-    int[] shape = new int[3];
-
-    shape[0] = subsetList.get(0).length();
-    shape[1] = 1;
-    shape[2] = 1;
-
-    origin[0] = timeIndex;
-    if (isTimeDependent() && (t_range != null)) {
-      origin[0] = t_range.element(timeIndex);
-    }
-
-    origin[1] = yIndex;
-    origin[2] = xIndex;
-
-    Array section = data.section(origin, shape);
-
-    return (ArrayDouble.D1) section.reduce();
-
-
+    return computeColumn(timeIndex, xIndex, yIndex);
   }
 
 
@@ -6,15 +6,17 @@ package ucar.unidata.geoloc.vertical;
 
 import ucar.ma2.Array;
 import ucar.ma2.ArrayDouble;
+import ucar.ma2.DataType;
 import ucar.ma2.Index;
-import ucar.ma2.IndexIterator;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.ArrayDouble.D1;
+import ucar.ma2.Range;
 import ucar.nc2.Dimension;
 import ucar.nc2.Variable;
 import ucar.nc2.NetcdfFile;
 import ucar.unidata.util.Parameter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -99,47 +101,34 @@ public class WRFEta extends VerticalTransformImpl {
    * @throws IOException problem reading data
    */
   public ArrayDouble.D3 getCoordinateArray(int timeIndex) throws IOException {
-    ArrayDouble.D3 array;
-
-    Array pertArray = getTimeSlice(pertVar, timeIndex);
-    Array baseArray = getTimeSlice(baseVar, timeIndex);
-
-    // ADD: use MAMath?
-    // ADD: use IndexIterator from getIndexIteratorFast?
-    int[] shape = pertArray.getShape();
-    // ADD: assert that rank = 3
-    // ADD: assert that both arrays are same shape
-    int ni = shape[0];
-    int nj = shape[1];
-    int nk = shape[2];
-
-    array = new ArrayDouble.D3(ni, nj, nk);
-    Index index = array.getIndex();
-
-    for (int i = 0; i < ni; i++) {
-      for (int j = 0; j < nj; j++) {
-        for (int k = 0; k < nk; k++) {
-          index.set(i, j, k);
-          double d = pertArray.getDouble(index) + baseArray.getDouble(index);
-          if (isZStag) {
-            d = d / 9.81; // convert geopotential to height
-          }
-          array.setDouble(index, d);
-        }
-      }
+    try {
+      return getCoordinateArray(timeIndex, null, null, null);
+    } catch (InvalidRangeException e) {
+      throw new IOException(e);
     }
+  }
 
-    if (isXStag) {
-      array = addStagger(array, 2); // assuming x dim index is 2
-    }
-    if (isYStag) {
-      array = addStagger(array, 1); // assuming y dim index is 1
+  @Override
+  protected ArrayDouble.D3 computeCoordinateArray(int timeIndex, Range zRange, Range yRange, Range xRange)
+      throws IOException, InvalidRangeException {
+    if (isXStag || isYStag) {
+      // staggered values depend on their neighbors, so compute all of it
+      ArrayDouble.D3 array = add(getTimeSlice(pertVar, timeIndex), getTimeSlice(baseVar, timeIndex));
+      if (isXStag) {
+        array = addStagger(array, 2); // assuming x dim index is 2
+      }
+      if (isYStag) {
+        array = addStagger(array, 1); // assuming y dim index is 1
+      }
+      if (zRange == null && yRange == null && xRange == null)
+        return array;
+      return (ArrayDouble.D3) array.sectionNoReduce(Arrays.asList(zRange, yRange, xRange));
     }
 
-    return array;
+    return add(readWindow(pertVar, timeIndex, zRange, yRange, xRange),
+        readWindow(baseVar, timeIndex, zRange, yRange, xRange));
   }
 
-
   /**
    * Get the 1D vertical coordinate array for this time step and point
    * 
@@ -151,111 +140,87 @@ public class WRFEta extends VerticalTransformImpl {
    * @throws ucar.ma2.InvalidRangeException _more_
    */
   public D1 getCoordinateArray1D(int timeIndex, int xIndex, int yIndex) throws IOException, InvalidRangeException {
+    return computeColumn(timeIndex, xIndex, yIndex);
+  }
 
+  /**
+   * Add the perturbation and base arrays, which must have the same shape (z, y, x).
+   * Geopotential is converted to height.
+   *
+   * @param pertArray perturbation values
+   * @param baseArray base state values
+   * @return the sum
+   */
+  private ArrayDouble.D3 add(Array pertArray, Array baseArray) {
+    double[] pert = getDoubles(pertArray);
+    double[] base = getDoubles(baseArray);
+    double[] result = new double[pert.length];
+
+    for (int i = 0; i < result.length; i++) {
+      double d = pert[i] + base[i];
+      if (isZStag) {
+        d = d / 9.81; // convert geopotential to height
+      }
+      result[i] = d;
+    }
 
-    ArrayDouble.D3 data = getCoordinateArray(timeIndex);
-
-    int[] origin = new int[3];
-    int[] shape = new int[3];
-
-    origin[0] = 0;
-    origin[1] = yIndex;
-    origin[2] = xIndex;
-
-    shape[0] = data.getShape()[0];
-    shape[1] = 1;
-    shape[2] = 1;
-
-    Array tmp = data.section(origin, shape);
-    return (ArrayDouble.D1) tmp.reduce();
+    return (ArrayDouble.D3) Array.factory(DataType.DOUBLE, pertArray.getShape(), result);
   }
 
   /**
    * Add 1 to the size of the array for the given dimension.
-   * Use linear average and interpolation to fill in the values.
+   * Use linear average and interpolation to fill in the values:
+   * the inner points are the average of their neighbors, the end points are linearly extrapolated.
    *
    * @param array use this array
    * @param dimIndex use this dimension
    * @return new array with stagger
    */
   private ArrayDouble.D3 addStagger(ArrayDouble.D3 array, int dimIndex) {
+    int[] shape = array.getShape();
+    int[] newShape = shape.clone();
+    newShape[dimIndex]++;
 
-    // ADD: assert 0<=dimIndex<=2
+    double[] data = getDoubles(array);
+    double[] result = new double[(int) Index.computeSize(newShape)];
 
-    int[] shape = array.getShape();
-    int[] newShape = new int[3];
-    System.arraycopy(shape, 0, newShape, 0, 3);
+    int n = shape[dimIndex]; // length of the lines to be extended
+    int inner = 1; // distance between points of one line
+    for (int i = dimIndex + 1; i < 3; i++)
+      inner *= shape[i];
+    int outer = data.length / (n * inner); // number of blocks of lines
 
-    newShape[dimIndex]++;
-    int ni = newShape[0];
-    int nj = newShape[1];
-    int nk = newShape[2];
-    ArrayDouble.D3 newArray = new ArrayDouble.D3(ni, nj, nk);
-    // Index newIndex = newArray.getIndex();
-
-    // extract 1d array to be extended
-    int n = shape[dimIndex]; // length of extracted array
-    double[] d = new double[n]; // tmp array to hold extracted values
-    int[] eshape = new int[3]; // shape of extracted array
-    int[] neweshape = new int[3]; // shape of new array slice to write into
-    for (int i = 0; i < 3; i++) {
-      eshape[i] = (i == dimIndex) ? n : 1;
-      neweshape[i] = (i == dimIndex) ? n + 1 : 1;
-    }
-    int[] origin = new int[3];
+    for (int o = 0; o < outer; o++) {
+      int src = o * n * inner;
+      int dst = o * (n + 1) * inner;
 
-    try {
+      // end points from linear extrapolation
+      // equations confirmed by Christopher Lindholm
+      for (int k = 0; k < inner; k++) {
+        result[dst + k] = 1.5 * data[src + k] - 0.5 * data[src + inner + k];
+        result[dst + n * inner + k] = 1.5 * data[src + (n - 1) * inner + k] - 0.5 * data[src + (n - 2) * inner + k];
+      }
 
-      // loop through the other 2 dimensions and "extrapinterpolate" the other
-      for (int i = 0; i < ((dimIndex == 0) ? 1 : ni); i++) {
-        for (int j = 0; j < ((dimIndex == 1) ? 1 : nj); j++) {
-          for (int k = 0; k < ((dimIndex == 2) ? 1 : nk); k++) {
-            origin[0] = i;
-            origin[1] = j;
-            origin[2] = k;
-            IndexIterator it = array.section(origin, eshape).getIndexIterator();
-            for (int l = 0; l < n; l++) {
-              d[l] = it.getDoubleNext(); // get the original values
-            }
-            double[] d2 = extrapinterpolate(d); // compute new values
-            // define slice of new array to write into
-            IndexIterator newit = newArray.section(origin, neweshape).getIndexIterator();
-            for (int l = 0; l < n + 1; l++) {
-              newit.setDoubleNext(d2[l]);
-            }
-          }
-        }
+      // inner points from simple average
+      for (int l = 1; l < n; l++) {
+        int prev = src + (l - 1) * inner;
+        int next = src + l * inner;
+        int to = dst + l * inner;
+        for (int k = 0; k < inner; k++)
+          result[to + k] = 0.5 * (data[prev + k] + data[next + k]);
       }
-    } catch (InvalidRangeException e) {
-      // ADD: report error?
-      return null;
     }
 
-    return newArray;
+    return (ArrayDouble.D3) Array.factory(DataType.DOUBLE, newShape, result);
   }
 
-  /**
-   * Add one element to the array by linear interpolation
-   * and extrapolation at the ends.
-   *
-   * @param array input array
-   * @return extrapolated/interpolated array
-   */
-  private double[] extrapinterpolate(double[] array) {
-    int n = array.length;
-    double[] d = new double[n + 1];
-
-    // end points from linear extrapolation
-    // equations confirmed by Christopher Lindholm
-    d[0] = 1.5 * array[0] - 0.5 * array[1];
-    d[n] = 1.5 * array[n - 1] - 0.5 * array[n - 2];
-
-    // inner points from simple average
-    for (int i = 1; i < n; i++) {
-      d[i] = 0.5 * (array[i - 1] + array[i]);
-    }
-
-    return d;
+  // read the (z, y, x) window of v
+  private Array readWindow(Variable v, int timeIndex, Range zRange, Range yRange, Range xRange)
+      throws IOException, InvalidRangeException {
+    Array data = readArray(v, timeIndex, zRange, yRange, xRange);
+    while (data.getRank() > 3)
+      data = data.reduce(0);
+    return data;
   }
 
   /**
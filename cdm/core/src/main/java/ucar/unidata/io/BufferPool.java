@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Formatter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of byte arrays, for reading whole small files and messages into memory without allocating a new array
+ * each time. Arrays come in power of two size classes, from 4 KB up to getMaxSize().
+ * Larger requests get a new array, which is not pooled.
+ * <p>
+ * An array must be released only once, and not used after it is released.
+ * Arrays that are never released are simply garbage collected.
+ */
+@ThreadSafe
+public class BufferPool {
+  private static final int MIN_SHIFT = 12; // 4 KB
+  private static final int MAX_SHIFT = 24; // 16 MB, largest possible size class
+
+  private static volatile int maxSize = 1 << 22; // 4 MB
+  private static volatile int maxPerClass = 2 * Runtime.getRuntime().availableProcessors();
+
+  private static final Queue<byte[]>[] pools = makePools();
+  private static final AtomicIntegerArray pooled = new AtomicIntegerArray(MAX_SHIFT - MIN_SHIFT + 1);
+  private static final AtomicLong hits = new AtomicLong();
+  private static final AtomicLong misses = new AtomicLong();
+
+  @SuppressWarnings("unchecked")
+  private static Queue<byte[]>[] makePools() {
+    Queue<byte[]>[] result = new Queue[MAX_SHIFT - MIN_SHIFT + 1];
+    for (int i = 0; i < result.length; i++)
+      result[i] = new ConcurrentLinkedQueue<>();
+    return result;
+  }
+
+  /**
+   * Set the largest array that is pooled.
+   *
+   * @param size in bytes, rounded up to a power of two, at most 16 MB. 0 turns off pooling.
+   */
+  public static void setMaxSize(int size) {
+    maxSize = (size <= 0) ? 0 : Math.min(1 << MAX_SHIFT, roundUp(size));
+    clear();
+  }
+
+  public static int getMaxSize() {
+    return maxSize;
+  }
+
+  /** Set the maximum number of arrays kept in each size class, default 2 * number of processors. */
+  public static void setMaxPerClass(int n) {
+    maxPerClass = Math.max(0, n);
+  }
+
+  /**
+   * Get an array of at least length bytes. Its contents are undefined.
+   *
+   * @param length minimum length
+   * @return array from the pool if possible, else a new one
+   */
+  public static byte[] acquire(int length) {
+    if (length > maxSize)
+      return new byte[length];
+
+    int size = roundUp(length);
+    int sizeClass = sizeClass(size);
+    byte[] result = pools[sizeClass].poll();
+    if (result == null) {
+      misses.incrementAndGet();
+      return new byte[size];
+    }
+    pooled.decrementAndGet(sizeClass);
+    hits.incrementAndGet();
+    return result;
+  }
+
+  /**
+   * Return an array to the pool, if its one of the pooled sizes.
+   *
+   * @param buf from acquire(), no longer in use
+   */
+  public static void release(byte[] buf) {
+    if (buf == null)
+      return;
+    int size = buf.length;
+    if (size > maxSize || size < (1 << MIN_SHIFT) || Integer.bitCount(size) != 1)
+      return;
+
+    int sizeClass = sizeClass(size);
+    if (pooled.incrementAndGet(sizeClass) > maxPerClass) {
+      pooled.decrementAndGet(sizeClass);
+      return;
+    }
+    pools[sizeClass].offer(buf);
+  }
+
+  /** Drop all the pooled arrays. */
+  public static void clear() {
+    for (int i = 0; i < pools.length; i++) {
+      while (pools[i].poll() != null)
+        pooled.decrementAndGet(i);
+    }
+  }
+
+  /** @return number of bytes now held in the pool */
+  public static long getBytes() {
+    long total = 0;
+    for (int i = 0; i < pools.length; i++)
+      total += (long) pooled.get(i) << (MIN_SHIFT + i);
+    return total;
+  }
+
+  public static void showStats(Formatter f) {
+    f.format("BufferPool: %d bytes pooled, max size %d; hits=%d misses=%d%n", getBytes(), maxSize, hits.get(),
+        misses.get());
+  }
+
+  private static int roundUp(int length) {
+    if (length <= (1 << MIN_SHIFT))
+      return 1 << MIN_SHIFT;
+    return Integer.highestOneBit(length - 1) << 1;
+  }
+
+  private static int sizeClass(int size) {
+    return Integer.numberOfTrailingZeros(size) - MIN_SHIFT;
+  }
+}
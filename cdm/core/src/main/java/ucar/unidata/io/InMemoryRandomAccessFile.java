@@ -4,9 +4,12 @@
  */
 package ucar.unidata.io;
 
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.ByteBuffer;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * A RandomAccessFile stored entirely in memory as a byte array.
@@ -15,6 +18,53 @@ import java.io.IOException;
  */
 public class InMemoryRandomAccessFile extends ucar.unidata.io.RandomAccessFile {
 
+  /**
+   * Read a whole file into memory, in one FileChannel read, into an array from the BufferPool.
+   * The array is returned to the pool when this is closed.
+   *
+   * @param location file location
+   * @return the file in memory
+   * @throws IOException on read error, or if the file is 2 GB or more
+   */
+  public static InMemoryRandomAccessFile readFile(String location) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(location), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size >= Integer.MAX_VALUE)
+        throw new IOException("File too large to read into memory: " + location);
+
+      byte[] data = BufferPool.acquire((int) size);
+      try {
+        ByteBuffer bb = ByteBuffer.wrap(data, 0, (int) size);
+        while (bb.hasRemaining()) {
+          if (channel.read(bb) < 0)
+            break;
+        }
+        return wrapPooled(location, data, bb.position());
+      } catch (IOException | RuntimeException e) {
+        BufferPool.release(data);
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Wrap an array from BufferPool.acquire(), which is returned to the pool when this is closed.
+   * Use for data that has been read or decompressed into memory.
+   *
+   * @param name used as the location
+   * @param data from BufferPool.acquire(), not to be used by the caller after this is closed
+   * @param length number of bytes of data, the rest of the array is ignored
+   * @return the data as a RandomAccessFile
+   */
+  public static InMemoryRandomAccessFile wrapPooled(String name, byte[] data, int length) {
+    InMemoryRandomAccessFile result = new InMemoryRandomAccessFile(name, data, length);
+    result.pooled = true;
+    return result;
+  }
+
+  private final int dataLength;
+  private boolean pooled;
+
   /**
    * A RandomAccessFile stored entirely in memory as a byte array.
    *
@@ -22,16 +72,30 @@ public class InMemoryRandomAccessFile extends ucar.unidata.io.RandomAccessFile {
    * @param data the complete data file
    */
   public InMemoryRandomAccessFile(String name, byte[] data) {
+    this(name, data, (data == null) ? 0 : data.length);
+  }
+
+  /**
+   * A RandomAccessFile stored entirely in memory as the start of a byte array.
+   *
+   * @param name used as the location
+   * @param data the complete data file, followed by unused bytes
+   * @param length number of bytes of data
+   */
+  public InMemoryRandomAccessFile(String name, byte[] data, int length) {
     super(1);
     this.location = name;
     this.file = null;
     if (data == null)
       throw new IllegalArgumentException("data array is null");
+    if (length < 0 || length > data.length)
+      throw new IllegalArgumentException("data length " + length + " not in array of " + data.length);
 
     buffer = data;
+    dataLength = length;
     bufferStart = 0;
-    dataSize = buffer.length;
-    dataEnd = buffer.length;
+    dataSize = length;
+    dataEnd = length;
     filePosition = 0;
     endOfFile = false;
 
@@ -49,9 +113,16 @@ public class InMemoryRandomAccessFile extends ucar.unidata.io.RandomAccessFile {
     // do nothing
   }
 
+  // the whole file is always in the buffer; only the position changes
+  @Override
+  protected void readBuffer(long pos) throws IOException {
+    filePosition = pos;
+    endOfFile = (pos >= dataEnd);
+  }
+
   @Override
   protected int read_(long pos, byte[] b, int offset, int len) {
-    len = Math.min(len, (int) (buffer.length - pos));
+    len = (int) Math.max(0, Math.min(len, dataLength - pos));
     // copy out of buffer
     System.arraycopy(buffer, (int) pos, b, offset, len);
     return len;
@@ -59,7 +130,18 @@ public class InMemoryRandomAccessFile extends ucar.unidata.io.RandomAccessFile {
 
   @Override
   public long readToByteChannel(WritableByteChannel dest, long offset, long nbytes) throws IOException {
-    return dest.write(ByteBuffer.wrap(buffer, (int) offset, (int) nbytes));
+    // a pooled buffer is longer than the data
+    int n = (int) Math.max(0, Math.min(nbytes, dataLength - offset));
+    return dest.write(ByteBuffer.wrap(buffer, (int) offset, n));
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    super.close();
+    if (pooled) {
+      pooled = false;
+      BufferPool.release(buffer);
+    }
   }
 
 }
@@ -190,7 +190,39 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     return cache;
   }
 
+  private static volatile int smallFileSize;
+
+  /**
+   * Files of at most this many bytes are read entirely into memory by acquire(), in one read into an array from
+   * the BufferPool, instead of being opened with a read buffer. They bypass the global file cache.
+   * Use when opening many small files, such as NIDS, GINI or METAR files.
+   *
+   * @param size in bytes; 0 (the default) turns this off.
+   */
+  public static void setSmallFileSize(int size) {
+    smallFileSize = Math.max(0, size);
+  }
+
+  public static int getSmallFileSize() {
+    return smallFileSize;
+  }
+
+  // a small local file, or null
+  private static RandomAccessFile acquireSmallFile(String location) throws IOException {
+    int maxSize = smallFileSize;
+    if (maxSize <= 0)
+      return null;
+    File file = new File(location);
+    long size = file.length(); // 0 if it doesnt exist
+    if (size <= 0 || size > maxSize || !file.isFile())
+      return null;
+    return InMemoryRandomAccessFile.readFile(location);
+  }
+
   public static RandomAccessFile acquire(String location) throws IOException {
+    RandomAccessFile small = acquireSmallFile(location);
+    if (small != null)
+      return small;
     if (cache == null)
       return new RandomAccessFile(location, "r");
     else
@@ -198,6 +230,9 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
   }
 
   public static RandomAccessFile acquire(String location, int buffer_size) throws IOException {
+    RandomAccessFile small = acquireSmallFile(location);
+    if (small != null)
+      return small;
     if (cache == null)
       return new RandomAccessFile(location, "r", buffer_size);
     else
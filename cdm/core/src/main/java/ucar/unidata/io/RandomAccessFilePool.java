@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of read-only RandomAccessFiles on the same file, so that several threads can read it at once.
+ * Since a RandomAccessFile must be thread confined, each thread acquires its own, and releases it when done.
+ * Files are opened as needed, so there are as many as the largest number of threads that read at the same time.
+ *
+ * <pre>
+ * RandomAccessFile raf = pool.acquire();
+ * try {
+ *   ...
+ * } finally {
+ *   pool.release(raf);
+ * }
+ * </pre>
+ */
+@ThreadSafe
+public class RandomAccessFilePool implements Closeable {
+  private final String location;
+  private final int bufferSize;
+  private final Deque<RandomAccessFile> idle = new ConcurrentLinkedDeque<>();
+  private final AtomicInteger openCount = new AtomicInteger();
+  private volatile boolean closed;
+
+  /**
+   * Can the file that this RandomAccessFile reads be opened again by a pool?
+   * Only plain RandomAccessFiles on local files can.
+   *
+   * @param raf an open RandomAccessFile
+   * @return true if a pool can be made for its location
+   */
+  public static boolean canPool(RandomAccessFile raf) {
+    return raf != null && raf.getClass() == RandomAccessFile.class && raf.getLocation() != null
+        && new File(raf.getLocation()).isFile();
+  }
+
+  /**
+   * Constructor. No files are opened until acquire() is called.
+   *
+   * @param location location of a local file
+   * @param bufferSize buffer size of each RandomAccessFile
+   */
+  public RandomAccessFilePool(String location, int bufferSize) {
+    this.location = location;
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * Get a RandomAccessFile for the exclusive use of this thread, until it is released.
+   * Its file position and byte order are whatever the last user left them at.
+   *
+   * @return an open RandomAccessFile
+   * @throws IOException if a new file cant be opened, or the pool is closed
+   */
+  public RandomAccessFile acquire() throws IOException {
+    if (closed)
+      throw new IOException("RandomAccessFilePool is closed: " + location);
+    RandomAccessFile raf = idle.pollFirst();
+    if (raf == null) {
+      raf = new RandomAccessFile(location, "r", bufferSize);
+      openCount.incrementAndGet();
+    }
+    return raf;
+  }
+
+  /**
+   * Return a RandomAccessFile that came from acquire().
+   *
+   * @param raf no longer used by this thread
+   */
+  public void release(RandomAccessFile raf) {
+    idle.offerFirst(raf); // most recently used first, its buffer is likely to be useful
+    if (closed)
+      closeIdle();
+  }
+
+  /** @return number of files that are open, in use or not */
+  public int getOpenCount() {
+    return openCount.get();
+  }
+
+  public String getLocation() {
+    return location;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /** Close all the files. Files that are in use are closed when they are released. */
+  @Override
+  public void close() {
+    closed = true;
+    closeIdle();
+  }
+
+  private void closeIdle() {
+    RandomAccessFile raf;
+    while ((raf = idle.pollFirst()) != null) {
+      try {
+        raf.close();
+      } catch (IOException e) {
+        // ignore
+      }
+      openCount.decrementAndGet();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "RandomAccessFilePool{" + location + " open=" + openCount.get() + " idle=" + idle.size() + "}";
+  }
+}
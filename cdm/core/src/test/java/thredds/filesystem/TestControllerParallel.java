@@ -0,0 +1,129 @@
+package thredds.filesystem;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thredds.inventory.CollectionConfig;
+import thredds.inventory.MFile;
+import thredds.inventory.partition.DirectoryCollection;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/** Compare ControllerParallel with ControllerOS, before and after changes to the directory tree. */
+public class TestControllerParallel {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testRescanWithSnapshot() throws IOException {
+    Path top = tempFolder.newFolder("top").toPath();
+    Path snapshotFile = tempFolder.getRoot().toPath().resolve("scan.snapshot");
+    for (int d = 0; d < 5; d++) {
+      Path sub = Files.createDirectories(top.resolve("day" + d).resolve("hour"));
+      for (int i = 0; i < 10; i++) {
+        Files.write(sub.resolve("f" + i + ".grib2"), new byte[i]);
+        Files.write(sub.getParent().resolve("g" + i + ".grib2"), new byte[i]);
+      }
+    }
+    backdate(top); // so the directory mtimes are trusted
+    CollectionConfig mc = new CollectionConfig("test", top.toString(), true, null, null);
+
+    ControllerParallel controller = new ControllerParallel(4, snapshotFile);
+    Assert.assertEquals(scan(new ControllerOS(), mc), scan(controller, mc));
+    controller.close();
+    Assert.assertTrue(Files.exists(snapshotFile));
+
+    // a new controller starts from the saved snapshot, and only lists the directories that changed
+    Files.write(top.resolve("day2").resolve("new.grib2"), new byte[3]);
+    Files.delete(top.resolve("day3").resolve("hour").resolve("f1.grib2"));
+    controller = new ControllerParallel(4, snapshotFile);
+    Assert.assertEquals(scan(new ControllerOS(), mc), scan(controller, mc));
+    logger.debug("{}", controller.getStatistics());
+    Assert.assertEquals("directories listed=2 unchanged=9 cached=11", controller.getStatistics());
+
+    // modified in place is not seen until the directory is invalidated
+    Path modified = top.resolve("day4").resolve("g4.grib2");
+    FileTime dirTime = Files.getLastModifiedTime(modified.getParent());
+    Files.write(modified, new byte[100]);
+    Files.setLastModifiedTime(modified.getParent(), dirTime);
+    Assert.assertEquals(4L, (long) scan(controller, mc).get(modified.toString().replace('\\', '/')));
+    controller.invalidate(modified.getParent());
+    Assert.assertEquals(scan(new ControllerOS(), mc), scan(controller, mc));
+    controller.close();
+  }
+
+  @Test
+  public void testDirectoryCollection() throws IOException {
+    Path dir = tempFolder.newFolder("dir").toPath();
+    Files.createDirectory(dir.resolve("sub"));
+    for (int i = 0; i < 10; i++)
+      Files.write(dir.resolve("f" + i + ".grib2"), new byte[i]);
+    backdate(dir);
+
+    List<String> expected = listFiles(dir);
+    Assert.assertEquals(10, expected.size());
+    ControllerParallel controller = new ControllerParallel(2);
+    DirectoryCollection.setController(controller);
+    try {
+      Assert.assertEquals(expected, listFiles(dir));
+      Assert.assertEquals(expected, listFiles(dir));
+      Assert.assertEquals("directories listed=1 unchanged=1 cached=1", controller.getStatistics());
+    } finally {
+      DirectoryCollection.setController(null);
+      controller.close();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testMissingDirectory() throws IOException {
+    Path gone = tempFolder.newFolder("gone").toPath();
+    ControllerParallel controller = new ControllerParallel(2);
+    DirectoryCollection.setController(controller);
+    try {
+      Files.delete(gone);
+      listFiles(gone);
+    } finally {
+      DirectoryCollection.setController(null);
+      controller.close();
+    }
+  }
+
+  private List<String> listFiles(Path dir) throws IOException {
+    List<String> result = new ArrayList<>();
+    DirectoryCollection dcm = new DirectoryCollection("test", dir, true, null, logger);
+    for (MFile mfile : dcm.getFilesSorted())
+      result.add(mfile.getName() + " " + mfile.getLength());
+    return result;
+  }
+
+  private void backdate(Path top) throws IOException {
+    FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 10000);
+    try (java.util.stream.Stream<Path> paths = Files.walk(top)) {
+      for (Iterator<Path> it = paths.iterator(); it.hasNext();)
+        Files.setLastModifiedTime(it.next(), past);
+    }
+  }
+
+  private Map<String, Long> scan(thredds.inventory.MController controller, CollectionConfig mc) throws IOException {
+    Map<String, Long> result = new HashMap<>();
+    Iterator<MFile> iter = controller.getInventoryAll(mc, true);
+    while (iter.hasNext()) {
+      MFile mfile = iter.next();
+      result.put(mfile.getPath(), mfile.getLength());
+    }
+    return result;
+  }
+}
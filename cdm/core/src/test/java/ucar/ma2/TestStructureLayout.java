@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.ma2;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/** Test that record views and columns of an ArrayStructureBB get the same values as the member getters. */
+public class TestStructureLayout {
+  private static final int nrecs = 500;
+
+  private StructureMembers members;
+  private StructureMembers inner;
+  private ArrayStructureBB as;
+
+  private ArrayStructureBB makeArray() {
+    members = new StructureMembers("rec");
+    members.addMember("d", null, null, DataType.DOUBLE, new int[0]);
+    members.addMember("f", null, null, DataType.FLOAT, new int[] {3});
+    members.addMember("i", null, null, DataType.INT, new int[0]);
+    members.addMember("us", null, null, DataType.USHORT, new int[0]);
+    members.addMember("b", null, null, DataType.BYTE, new int[0]);
+    members.addMember("c", null, null, DataType.CHAR, new int[] {6});
+    members.addMember("s", null, null, DataType.STRING, new int[0]);
+    inner = new StructureMembers("inner");
+    inner.addMember("x", null, null, DataType.SHORT, new int[0]);
+    inner.addMember("y", null, null, DataType.LONG, new int[0]);
+    inner.addMember("z", null, null, DataType.CHAR, new int[] {4});
+    members.addMember("n", null, null, DataType.STRUCTURE, new int[] {2}).setStructureMembers(inner);
+    ArrayStructureBB.setOffsets(members);
+    members.findMember("i").setDataObject(ByteOrder.LITTLE_ENDIAN);
+
+    as = new ArrayStructureBB(members, new int[] {nrecs});
+    ByteBuffer bb = as.getByteBuffer();
+    Random random = new Random(17);
+    for (int rec = 0; rec < nrecs; rec++) {
+      int start = rec * members.getStructureSize();
+      bb.putDouble(start + offset("d"), random.nextGaussian());
+      for (int k = 0; k < 3; k++)
+        bb.putFloat(start + offset("f") + 4 * k, random.nextFloat());
+      bb.putShort(start + offset("us"), (short) random.nextInt());
+      bb.put(start + offset("b"), (byte) random.nextInt());
+      byte[] chars = ("ab" + (rec % 100)).getBytes(StandardCharsets.UTF_8);
+      for (int k = 0; k < chars.length; k++)
+        bb.put(start + offset("c") + k, chars[k]);
+      for (int e = 0; e < 2; e++) {
+        int nested = start + offset("n") + e * inner.getStructureSize();
+        bb.putShort(nested + inner.findMember("x").getDataParam(), (short) random.nextInt());
+        bb.putLong(nested + inner.findMember("y").getDataParam(), random.nextLong());
+        byte[] z = ("z" + (rec % 10) + e).getBytes(StandardCharsets.UTF_8);
+        for (int k = 0; k < z.length; k++)
+          bb.put(nested + inner.findMember("z").getDataParam() + k, z[k]);
+      }
+      bb.order(ByteOrder.LITTLE_ENDIAN);
+      bb.putInt(start + offset("i"), random.nextInt());
+      bb.order(ByteOrder.BIG_ENDIAN);
+      as.addObjectToHeap(rec, members.findMember("s"), "str" + rec);
+    }
+    return as;
+  }
+
+  private int offset(String name) {
+    return members.findMember(name).getDataParam();
+  }
+
+  private StructureMembers.Member m(String name) {
+    return members.findMember(name);
+  }
+
+  @Test
+  public void testRecordView() {
+    makeArray();
+    StructureLayout layout = as.getLayout();
+    int d = layout.findField("d").getIndex();
+    int f = layout.findField("f").getIndex();
+    int i = layout.findField("i").getIndex();
+    int us = layout.findField("us").getIndex();
+    int b = layout.findField("b").getIndex();
+    int c = layout.findField("c").getIndex();
+    int s = layout.findField("s").getIndex();
+    int n = layout.findField("n").getIndex();
+
+    ArrayStructureBB.RecordView view = as.makeRecordView();
+    for (int rec = 0; rec < nrecs; rec++) {
+      view.setRecnum(rec);
+      Assert.assertEquals(as.getScalarDouble(rec, m("d")), view.getDouble(d), 0.0);
+      float[] fa = as.getJavaArrayFloat(rec, m("f"));
+      for (int k = 0; k < 3; k++)
+        Assert.assertEquals(fa[k], view.getFloat(f, k), 0.0);
+      Assert.assertEquals(as.getScalarInt(rec, m("i")), view.getInt(i));
+      as.getByteBuffer().order(ByteOrder.BIG_ENDIAN); // getScalarInt() leaves the buffer little endian
+      Assert.assertEquals(as.getScalarShort(rec, m("us")), view.getShort(us));
+      Assert.assertEquals(as.convertScalarInt(rec, m("us")), view.convertDouble(us, 0), 0.0);
+      Assert.assertEquals(as.getScalarByte(rec, m("b")), view.getByte(b));
+      Assert.assertEquals(as.getScalarString(rec, m("c")), view.getString(c));
+      Assert.assertEquals(as.getScalarString(rec, m("s")), view.getString(s));
+
+      ArrayStructure nested = as.getArrayStructure(rec, m("n"));
+      for (int e = 0; e < 2; e++) {
+        ArrayStructureBB.RecordView nestedView = view.getNested(n, e);
+        Assert.assertEquals(nested.getScalarShort(e, inner.findMember("x")), nestedView.getShort(0));
+        Assert.assertEquals(nested.getScalarLong(e, inner.findMember("y")), nestedView.getLong(1));
+        Assert.assertEquals(nested.getScalarString(e, inner.findMember("z")), nestedView.getString(2));
+        Assert.assertEquals(e, nestedView.getRecnum());
+      }
+    }
+  }
+
+  @Test
+  public void testColumns() {
+    makeArray();
+    double[] dcol = as.getColumnDouble(m("d"));
+    float[] fcol = as.getColumnFloat(m("f"));
+    int[] icol = as.getColumnInt(m("i"));
+    short[] uscol = as.getColumnShort(m("us"));
+    double[] usdcol = as.getColumnAsDouble(m("us"));
+    byte[] bcol = as.getColumnByte(m("b"));
+    Assert.assertEquals(nrecs * 3, fcol.length);
+
+    for (int rec = 0; rec < nrecs; rec++) {
+      Assert.assertEquals(as.getScalarDouble(rec, m("d")), dcol[rec], 0.0);
+      float[] fa = as.getJavaArrayFloat(rec, m("f"));
+      for (int k = 0; k < 3; k++)
+        Assert.assertEquals(fa[k], fcol[3 * rec + k], 0.0);
+      Assert.assertEquals(as.getScalarInt(rec, m("i")), icol[rec]);
+      as.getByteBuffer().order(ByteOrder.BIG_ENDIAN);
+      Assert.assertEquals(as.getScalarShort(rec, m("us")), uscol[rec]);
+      Assert.assertEquals(as.convertScalarInt(rec, m("us")), usdcol[rec], 0.0);
+      Assert.assertEquals(as.getScalarByte(rec, m("b")), bcol[rec]);
+    }
+  }
+
+  // member data kept in an Array, indexed by record number
+  @Test
+  public void testDataArray() {
+    makeArray();
+    Array data = Array.factory(DataType.DOUBLE, new int[] {nrecs});
+    for (int rec = 0; rec < nrecs; rec++)
+      data.setDouble(rec, rec * 0.5);
+    m("d").setDataArray(data);
+
+    ArrayStructureBB.RecordView view = as.makeRecordView();
+    int d = as.getLayout().findField("d").getIndex();
+    double[] dcol = as.getColumnDouble(m("d"));
+    for (int rec = 0; rec < nrecs; rec++) {
+      view.setRecnum(rec);
+      Assert.assertEquals(rec * 0.5, view.getDouble(d), 0.0);
+      Assert.assertEquals(as.getScalarDouble(rec, m("d")), view.getDouble(d), 0.0);
+      Assert.assertEquals(rec * 0.5, dcol[rec], 0.0);
+    }
+  }
+
+  // in a nested view the record number is the element of the nested array, so it cant index a member's data Array
+  @Test(expected = IllegalArgumentException.class)
+  public void testNestedDataArray() {
+    makeArray();
+    inner.findMember("x").setDataArray(Array.factory(DataType.SHORT, new int[] {2 * nrecs}));
+    ArrayStructureBB.RecordView view = as.makeRecordView().setRecnum(7);
+    view.getNested(as.getLayout().findField("n").getIndex(), 1).getShort(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNestedStringWrongType() {
+    makeArray();
+    ArrayStructureBB.RecordView view = as.makeRecordView().setRecnum(7);
+    view.getNested(as.getLayout().findField("n").getIndex(), 1).getString(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongType() {
+    makeArray();
+    as.makeRecordView().getFloat(as.getLayout().findField("d").getIndex());
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dataset;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.ma2.Range;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.ncml.NcMLReader;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateUnit;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandles;
+import java.util.Formatter;
+import java.util.List;
+
+/** Test CoordinateAxis1DTime searches against the CalendarDates. */
+public class TestCoordinateAxis1DTime {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final String NCML = "<?xml version='1.0' encoding='UTF-8'?>\n"
+      + "<netcdf xmlns='http://www.unidata.ucar.edu/namespaces/netcdf/ncml-2.2'>\n"
+      + "  <dimension name='time' length='%d' />\n" + "  <variable name='time' shape='time' type='double'>\n"
+      + "    <attribute name='units' value='hours since 2000-01-01T00:00:00Z' />\n" + "    <values>%s</values>\n"
+      + "  </variable>\n" + "</netcdf>";
+
+  private CoordinateAxis1DTime makeAxis(double... values) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (double v : values)
+      sb.append(v).append(' ');
+    String xml = String.format(NCML, values.length, sb.toString().trim());
+    NetcdfFile ncfile = NcMLReader.readNcML(new StringReader(xml), null);
+    NetcdfDataset ncd = NetcdfDataset.wrap(ncfile, NetcdfDataset.getDefaultEnhanceMode());
+    return CoordinateAxis1DTime.factory(ncd, (VariableDS) ncd.findVariable("time"), new Formatter());
+  }
+
+  private CalendarDate hours(double h) {
+    return CalendarDateUnit.of(null, "hours since 2000-01-01T00:00:00Z").makeCalendarDate(h);
+  }
+
+  @Test
+  public void testAscending() throws IOException {
+    CoordinateAxis1DTime axis = makeAxis(0, 6, 6, 12, 24, 48);
+    List<CalendarDate> dates = axis.getCalendarDates();
+    Assert.assertEquals(6, dates.size());
+    Assert.assertEquals(hours(24), dates.get(4));
+    Assert.assertEquals(hours(24).getMillis(), axis.getCalendarDateMillis(4));
+
+    checkLinear(axis, -5, 0, 3, 6, 7, 12, 30, 48, 100);
+
+    Assert.assertEquals(0, axis.findTimeIndexNearest(hours(-10)));
+    Assert.assertEquals(1, axis.findTimeIndexNearest(hours(8))); // first of the duplicates
+    Assert.assertEquals(3, axis.findTimeIndexNearest(hours(18))); // tie goes to the smaller index
+    Assert.assertEquals(5, axis.findTimeIndexNearest(hours(100)));
+
+    Range r = axis.findTimeIndexRange(hours(5), hours(24));
+    Assert.assertEquals(1, r.first());
+    Assert.assertEquals(4, r.last());
+    Assert.assertNull(axis.findTimeIndexRange(hours(13), hours(23)));
+  }
+
+  @Test
+  public void testNotAscending() throws IOException {
+    CoordinateAxis1DTime axis = makeAxis(12, 0, 24, 6);
+    checkLinear(axis, -5, 0, 3, 6, 12, 20, 24, 30);
+    Assert.assertEquals(3, axis.findTimeIndexNearest(hours(7)));
+
+    Range r = axis.findTimeIndexRange(hours(0), hours(12));
+    Assert.assertEquals(0, r.first());
+    Assert.assertEquals(3, r.last());
+  }
+
+  @Test
+  public void testSection() throws Exception {
+    CoordinateAxis1DTime axis = makeAxis(0, 6, 12, 18, 24);
+    CoordinateAxis1DTime section = axis.section(new Range(1, 4, 2));
+    Assert.assertEquals(2, section.getCalendarDates().size());
+    Assert.assertEquals(hours(6), section.getCalendarDate(0));
+    Assert.assertEquals(hours(18), section.getCalendarDate(1));
+    Assert.assertTrue(section.hasCalendarDate(hours(18)));
+    Assert.assertFalse(section.hasCalendarDate(hours(12)));
+  }
+
+  @Test
+  public void testMakeMillis() {
+    CalendarDateUnit unit = CalendarDateUnit.of(null, "days since 1970-01-01");
+    double[] values = {0, 0.5, 1.25, -3, 20000};
+    long[] millis = unit.makeMillis(values);
+    for (int i = 0; i < values.length; i++)
+      Assert.assertEquals(unit.makeCalendarDate(values[i]).getMillis(), millis[i]);
+
+    CalendarDateUnit months = CalendarDateUnit.of(null, "calendar months since 2000-01-15");
+    millis = months.makeMillis(values);
+    for (int i = 0; i < values.length; i++)
+      Assert.assertEquals(months.makeCalendarDate(values[i]).getMillis(), millis[i]);
+  }
+
+  // compare to the original linear searches over the CalendarDates
+  private void checkLinear(CoordinateAxis1DTime axis, double... hours) {
+    List<CalendarDate> dates = axis.getCalendarDates();
+    for (double h : hours) {
+      CalendarDate d = hours(h);
+      int index = 0;
+      while (index < dates.size()) {
+        if (d.compareTo(dates.get(index)) < 0)
+          break;
+        index++;
+      }
+      Assert.assertEquals("hour " + h, Math.max(0, index - 1), axis.findTimeIndexFromCalendarDate(d));
+      Assert.assertEquals("hour " + h, dates.contains(d), axis.hasCalendarDate(d));
+      Assert.assertEquals("hour " + h, dates.contains(d), axis.hasTime(d.toDate()));
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dt.grid;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.ma2.Array;
+import ucar.ma2.Index;
+import ucar.ma2.InvalidRangeException;
+import ucar.unidata.util.test.TestDir;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Formatter;
+
+/** Test that GeoGrid.readYXTile() gets the same data as readYXData(), with and without the tile cache. */
+public class TestGeoGridTiles {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @After
+  public void clearCache() {
+    GeoGrid.setTileCache(null);
+  }
+
+  @Test
+  public void testTiles() throws IOException, InvalidRangeException {
+    try (GridDataset dataset = GridDataset.open(TestDir.cdmLocalTestDataDir + "permuteTest.nc")) {
+      for (String name : new String[] {"tzyx", "tzxy", "xyzt", "zyx", "xyz", "yxt"}) {
+        GeoGrid grid = dataset.findGridByName(name);
+        Assert.assertNotNull(name, grid);
+        checkTiles(grid, 2, 1);
+        checkTiles(grid, 2, 2);
+        checkTiles(grid, 3, 2);
+      }
+    }
+  }
+
+  @Test
+  public void testCache() throws IOException, InvalidRangeException {
+    GridTileCache cache = new GridTileCache(1000 * 1000);
+    GeoGrid.setTileCache(cache);
+
+    try (GridDataset dataset = GridDataset.open(TestDir.cdmLocalTestDataDir + "permuteTest.nc")) {
+      GeoGrid grid = dataset.findGridByName("tzxy");
+      checkTiles(grid, 2, 1);
+      long hits = cache.getStats().hitCount();
+      checkTiles(grid, 2, 1);
+      Assert.assertTrue(cache.getStats().hitCount() > hits);
+    }
+
+    Formatter f = new Formatter();
+    cache.showStats(f);
+    logger.debug("{}", f);
+    Assert.assertTrue(cache.getBytes() <= cache.getMaxBytes());
+  }
+
+  @Test(expected = InvalidRangeException.class)
+  public void testOutOfRange() throws IOException, InvalidRangeException {
+    try (GridDataset dataset = GridDataset.open(TestDir.cdmLocalTestDataDir + "permuteTest.nc")) {
+      GeoGrid grid = dataset.findGridByName("tzyx");
+      int[] counts = grid.getTileCounts(2, 1);
+      grid.readYXTile(0, 0, counts[0], 0, 2, 1);
+    }
+  }
+
+  private void checkTiles(GeoGrid grid, int tileSize, int stride) throws IOException, InvalidRangeException {
+    int t = (grid.getTimeDimension() != null) ? grid.getTimeDimension().getLength() - 1 : 0;
+    int z = (grid.getZDimension() != null) ? grid.getZDimension().getLength() - 1 : 0;
+    Array plane = grid.readYXData(t, z);
+    Index planeIndex = plane.getIndex();
+    int[] planeShape = plane.getShape();
+
+    int[] counts = grid.getTileCounts(tileSize, stride);
+    int npts = 0;
+    for (int ty = 0; ty < counts[0]; ty++) {
+      for (int tx = 0; tx < counts[1]; tx++) {
+        Array tile = grid.readYXTile(t, z, ty, tx, tileSize, stride);
+        int[] shape = tile.getShape();
+        Assert.assertEquals(2, shape.length);
+        Assert.assertTrue(shape[0] <= tileSize && shape[1] <= tileSize);
+        Index tileIndex = tile.getIndex();
+        for (int i = 0; i < shape[0]; i++) {
+          for (int j = 0; j < shape[1]; j++) {
+            int y = (ty * tileSize + i) * stride;
+            int x = (tx * tileSize + j) * stride;
+            Assert.assertEquals(grid.getFullName(), plane.getDouble(planeIndex.set(y, x)),
+                tile.getDouble(tileIndex.set(i, j)), 0);
+            npts++;
+          }
+        }
+      }
+    }
+
+    int ny = (planeShape[0] + stride - 1) / stride;
+    int nx = (planeShape[1] + stride - 1) / stride;
+    Assert.assertEquals(ny * nx, npts);
+  }
+}
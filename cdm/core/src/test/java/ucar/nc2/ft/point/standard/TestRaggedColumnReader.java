@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.ft.point.standard;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureDataIterator;
+import ucar.nc2.dataset.NetcdfDataset;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.unidata.geoloc.LatLonPointImpl;
+import ucar.unidata.geoloc.LatLonRect;
+import ucar.unidata.util.test.TestDir;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.Formatter;
+
+/** Test RaggedColumnReader on the contiguous and indexed ragged array examples. */
+public class TestRaggedColumnReader {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  // both files have 3 stations; obs i has time = 3*i days, data = 1 + 3*i
+  // contiguous: obsCount = 1 2 3; indexed: stationIndex = 0 0 0 1 1 2
+
+  @Test
+  public void testContiguous() throws IOException {
+    try (NetcdfDataset ds = NetcdfDataset.openDataset(TestDir.cdmLocalTestDataDir + "point/stationRaggedContig.ncml")) {
+      RaggedColumnReader reader = RaggedColumnReader.factory(ds, new Formatter());
+      Assert.assertNotNull(reader);
+      Assert.assertTrue(reader.isContiguous());
+      Assert.assertEquals(3, reader.getFeatureCount());
+      Assert.assertEquals(6, reader.getObsCount());
+
+      RaggedColumnReader.Columns cols = reader.read(Arrays.asList("data", "dataMitZ", "stationId"), null, null);
+      Assert.assertArrayEquals(new int[] {0, 1, 3, 6}, cols.getRowOffsets());
+      Assert.assertArrayEquals(new float[] {1, 4, 7, 10, 13, 16}, getFloats(cols.getColumn("data")), 0);
+      Assert.assertArrayEquals(new int[] {6, 2}, cols.getColumn("dataMitZ").getShape());
+      Assert.assertArrayEquals(new int[] {666, 672, 678},
+          (int[]) cols.getFeatureColumn("stationId").get1DJavaArray(DataType.INT));
+    }
+  }
+
+  @Test
+  public void testIndexed() throws IOException {
+    try (NetcdfDataset ds = NetcdfDataset.openDataset(TestDir.cdmLocalTestDataDir + "point/stationRaggedIndex.ncml")) {
+      RaggedColumnReader reader = RaggedColumnReader.factory(ds, new Formatter());
+      Assert.assertNotNull(reader);
+      Assert.assertFalse(reader.isContiguous());
+
+      RaggedColumnReader.Columns cols = reader.read(Arrays.asList("data", "dataMitZ"), null, null);
+      Assert.assertArrayEquals(new int[] {0, 3, 5, 6}, cols.getRowOffsets());
+      Assert.assertArrayEquals(new float[] {1, 4, 7, 10, 13, 16}, getFloats(cols.getColumn("data")), 0);
+
+      // the same rows through the StructureData adapter
+      float[] dataMitZ = getFloats(cols.getColumn("dataMitZ"));
+      int row = 3;
+      try (StructureDataIterator iter = cols.getStructureDataIterator(1)) {
+        while (iter.hasNext()) {
+          StructureData sdata = iter.next();
+          Assert.assertEquals(1 + 3 * row, sdata.getScalarFloat("data"), 0);
+          float[] z = (float[]) sdata.getArray("dataMitZ").get1DJavaArray(DataType.FLOAT);
+          Assert.assertArrayEquals(Arrays.copyOfRange(dataMitZ, 2 * row, 2 * row + 2), z, 0);
+          row++;
+        }
+      }
+      Assert.assertEquals(5, row);
+    }
+  }
+
+  @Test
+  public void testConstraints() throws IOException {
+    try (NetcdfDataset ds = NetcdfDataset.openDataset(TestDir.cdmLocalTestDataDir + "point/stationRaggedIndex.ncml")) {
+      RaggedColumnReader reader = RaggedColumnReader.factory(ds, new Formatter());
+
+      // days 3 to 12 are obs 1 to 4
+      CalendarDate start = CalendarDate.parseISOformat(null, "1970-01-04T00:00:00Z");
+      CalendarDate end = CalendarDate.parseISOformat(null, "1970-01-13T00:00:00Z");
+      RaggedColumnReader.Columns cols =
+          reader.read(Arrays.asList("data"), CalendarDateRange.of(start, end), null);
+      Assert.assertArrayEquals(new int[] {0, 2, 4, 4}, cols.getRowOffsets());
+      Assert.assertArrayEquals(new int[] {1, 2, 3, 4}, cols.getObsIndex());
+      Assert.assertArrayEquals(new float[] {4, 7, 10, 13}, getFloats(cols.getColumn("data")), 0);
+
+      // station 1 is at lat 42, lon -97
+      LatLonRect bbox = new LatLonRect(new LatLonPointImpl(41, -98), new LatLonPointImpl(43, -96));
+      cols = reader.read(Arrays.asList("data"), null, bbox);
+      Assert.assertArrayEquals(new int[] {0, 0, 2, 2}, cols.getRowOffsets());
+      Assert.assertArrayEquals(new float[] {10, 13}, getFloats(cols.getColumn("data")), 0);
+      logger.debug("bbox {} rows {}", bbox, cols.getRowCount());
+    }
+  }
+
+  private float[] getFloats(Array data) {
+    return (float[]) data.get1DJavaArray(DataType.FLOAT);
+  }
+}
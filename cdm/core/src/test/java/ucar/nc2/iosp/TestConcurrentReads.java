@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.ma2.Array;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.nc2.iosp.hdf5.H5iosp;
+import ucar.nc2.iosp.netcdf3.N3iosp;
+import ucar.nc2.util.CompareNetcdf2;
+import ucar.unidata.util.test.TestDir;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Test that many threads reading the same file get the same data as reading it one variable at a time. */
+public class TestConcurrentReads {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int NTHREADS = 8;
+  private static final int NREPEAT = 20;
+
+  @After
+  public void reset() {
+    H5iosp.setConcurrentReads(false);
+    N3iosp.setConcurrentReads(false);
+  }
+
+  @Test
+  public void testHdf5Chunked() throws Exception {
+    H5iosp.setConcurrentReads(true);
+    readConcurrently("chunked.h5");
+  }
+
+  @Test
+  public void testNetcdf4() throws Exception {
+    H5iosp.setConcurrentReads(true);
+    readConcurrently("testCFGridWriter.nc4");
+    readConcurrently("testSpecialAttributes.nc4"); // has strings, which are read from the heap
+  }
+
+  @Test
+  public void testNetcdf3() throws Exception {
+    N3iosp.setConcurrentReads(true);
+    readConcurrently("testWriteRecord.nc");
+    readConcurrently("longOffset.nc");
+  }
+
+  private void readConcurrently(String filename) throws Exception {
+    String location = TestDir.cdmLocalTestDataDir + filename;
+    try (NetcdfFile ncfile = NetcdfFile.open(location)) {
+      ncfile.sendIospMessage(NetcdfFile.IOSP_MESSAGE_ADD_RECORD_STRUCTURE);
+
+      long start = System.nanoTime();
+      Map<Variable, Array> expected = new HashMap<>();
+      for (Variable v : ncfile.getVariables()) {
+        v.setCaching(false);
+        expected.put(v, v.read());
+      }
+      long sequential = System.nanoTime() - start;
+
+      ExecutorService exec = Executors.newFixedThreadPool(NTHREADS);
+      try {
+        start = System.nanoTime();
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < NREPEAT; i++) {
+          for (Variable v : ncfile.getVariables())
+            results.add(exec.submit(() -> compare(v, expected.get(v))));
+        }
+        for (Future<Boolean> result : results)
+          Assert.assertTrue(filename, result.get());
+        long concurrent = System.nanoTime() - start;
+        logger.debug("{}: sequential {} usecs, {} concurrent reads of each variable {} usecs", filename,
+            sequential / 1000, NREPEAT, concurrent / 1000);
+      } finally {
+        exec.shutdown();
+      }
+    }
+  }
+
+  private boolean compare(Variable v, Array expected) throws IOException {
+    Formatter f = new Formatter();
+    boolean ok = new CompareNetcdf2(f, false, false, true).compareData(v.getFullName(), expected, v.read());
+    if (!ok)
+      logger.warn("{} {}", v.getFullName(), f);
+    return ok;
+  }
+}
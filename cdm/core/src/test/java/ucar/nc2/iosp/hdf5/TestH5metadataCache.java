@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp.hdf5;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.util.CompareNetcdf2;
+import ucar.nc2.util.DiskCache2;
+import ucar.unidata.util.test.TestDir;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.util.Formatter;
+
+/** Test that files opened from a metadata snapshot are the same as when the header is read. */
+public class TestH5metadataCache {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private DiskCache2 cache;
+
+  @Before
+  public void setCache() throws IOException {
+    cache = new DiskCache2(tempFolder.newFolder("cache").getPath(), false, 0, 0);
+    cache.setAlwaysUseCache(true);
+  }
+
+  @After
+  public void clearCache() {
+    H5iosp.setMetadataCache(null);
+  }
+
+  @Test
+  public void testChunked() throws IOException {
+    compareWithSnapshot("chunked.h5");
+  }
+
+  @Test
+  public void testNetcdf4() throws IOException {
+    compareWithSnapshot("testCFGridWriter.nc4");
+    compareWithSnapshot("testSpecialAttributes.nc4");
+  }
+
+  @Test
+  public void testStructures() throws IOException {
+    compareWithSnapshot("pointPre1.6/kunicki.structs.nc4");
+  }
+
+  @Test
+  public void testBadSnapshot() throws IOException {
+    String location = TestDir.cdmLocalTestDataDir + "chunked.h5";
+    File snapshot = cache.getCacheFile(location + ".h5meta");
+    Files.write(snapshot.toPath(), new byte[] {1, 2, 3});
+
+    H5iosp.setMetadataCache(cache);
+    try (NetcdfFile ncfile = NetcdfFile.open(location)) {
+      Assert.assertFalse(ncfile.getVariables().isEmpty());
+    }
+    Assert.assertTrue(snapshot.length() > 3); // was rewritten
+  }
+
+  private void compareWithSnapshot(String filename) throws IOException {
+    String location = TestDir.cdmLocalTestDataDir + filename;
+    File snapshot = cache.getCacheFile(location + ".h5meta");
+
+    H5iosp.setMetadataCache(cache);
+    try (NetcdfFile ncfile = NetcdfFile.open(location)) {
+      logger.debug("{}", ncfile.getLocation());
+    }
+    Assert.assertTrue(snapshot.exists());
+    long modified = snapshot.lastModified();
+
+    try (NetcdfFile fromSnapshot = NetcdfFile.open(location)) {
+      H5iosp.setMetadataCache(null);
+      try (NetcdfFile fromHeader = NetcdfFile.open(location)) {
+        Formatter f = new Formatter();
+        CompareNetcdf2 compare = new CompareNetcdf2(f, false, false, true);
+        boolean ok = compare.compare(fromHeader, fromSnapshot);
+        logger.debug("{} {}", ok ? "OK" : "NOT OK", f);
+        Assert.assertTrue(filename + " " + f, ok);
+        Assert.assertEquals(fromHeader.getFileTypeId(), fromSnapshot.getFileTypeId());
+      }
+    }
+    Assert.assertEquals(modified, snapshot.lastModified()); // was not rewritten
+  }
+}
@@ -22,6 +22,7 @@ import ucar.nc2.Variable;
 import ucar.nc2.dataset.NetcdfDataset;
 import ucar.nc2.dt.grid.GridDataset;
 import ucar.nc2.ft.fmrc.Fmrc;
+import ucar.nc2.ft.fmrc.FmrInv;
 import ucar.nc2.time.CalendarDate;
 import static java.lang.Math.toIntExact;
 
@@ -257,6 +258,25 @@ public class TestAggFmrc {
 
   }
 
+  @Test
+  public void testUpdateReusesInventory() throws IOException {
+    // nothing changed, so the files are not reopened and the runs are not remade
+    List<FmrInv> runs = fmrcScan.getFmrcInv(null).getFmrList();
+    Assert.assertEquals(3, runs.size());
+    List<FmrInv> runs2 = fmrcScan.getFmrcInv(null).getFmrList();
+    Assert.assertEquals(runs.size(), runs2.size());
+    for (int i = 0; i < runs.size(); i++)
+      Assert.assertSame(runs.get(i), runs2.get(i));
+
+    List<CalendarDate> runDates = fmrcScan.getRunDates();
+    fmrcScan.update();
+    Assert.assertEquals(runDates, fmrcScan.getRunDates());
+
+    Array valuesBest = fmrcScan.getDatasetBest().findGridByName(AGG_VAR_NAME).getVariable().read();
+    Assert.assertArrayEquals(valuesBestScanVar.getShape(), valuesBest.getShape());
+    Assert.assertTrue(ucar.ma2.MAMath.nearlyEquals(valuesBestScanVar, valuesBest));
+  }
+
   /**
    * close out datasets when tests are finished
    */
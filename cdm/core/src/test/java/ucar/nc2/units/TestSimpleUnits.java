@@ -103,4 +103,24 @@ public class TestSimpleUnits extends TestCase {
     }
   }
 
+  public void testConvertArray() throws Exception {
+    SimpleUnit kelvin = SimpleUnit.factory("K");
+    SimpleUnit celsius = SimpleUnit.factory("degC");
+
+    ucar.ma2.Array data = ucar.ma2.Array.makeArray(ucar.ma2.DataType.FLOAT, 12, 273.15, 1.0);
+    data = data.reshape(new int[] {3, 4});
+    assert data == kelvin.convertTo(data, celsius);
+    for (int i = 0; i < 12; i++)
+      assertEquals((float) kelvin.convertTo(273.15 + i, celsius), data.getFloat(i), 1.0e-4);
+
+    // a section is converted in place, leaving the rest alone
+    ucar.ma2.Array full = ucar.ma2.Array.makeArray(ucar.ma2.DataType.DOUBLE, 12, 0.0, 100.0).reshape(new int[] {3, 4});
+    ucar.ma2.Array section = full.section(new int[] {1, 1}, new int[] {2, 2});
+    SimpleUnit.factory("Pa").convertTo(section, SimpleUnit.factory("hPa"));
+    assertEquals(400.0, full.getDouble(full.getIndex().set(1, 0)));
+    assertEquals(5.0, full.getDouble(full.getIndex().set(1, 1)));
+    assertEquals(10.0, full.getDouble(full.getIndex().set(2, 2)));
+    assertEquals(1100.0, full.getDouble(full.getIndex().set(2, 3)));
+  }
+
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.nc2.util.CompareNetcdf2;
+import ucar.unidata.util.test.TestDir;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Formatter;
+
+/** Test reading small files into pooled memory buffers. */
+public class TestInMemoryRandomAccessFile {
+  private static final String testfile = TestDir.cdmLocalTestDataDir + "example1.nc";
+
+  @After
+  public void reset() {
+    RandomAccessFile.setSmallFileSize(0);
+  }
+
+  @Test
+  public void testBufferPool() {
+    byte[] b = BufferPool.acquire(5000);
+    Assert.assertEquals(8192, b.length);
+    BufferPool.release(b);
+    Assert.assertSame(b, BufferPool.acquire(6000));
+
+    byte[] big = BufferPool.acquire(BufferPool.getMaxSize() + 1);
+    Assert.assertEquals(BufferPool.getMaxSize() + 1, big.length);
+    BufferPool.release(big); // not pooled
+    Assert.assertNotSame(big, BufferPool.acquire(BufferPool.getMaxSize() + 1));
+  }
+
+  @Test
+  public void testReadFile() throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(testfile, "r");
+        RandomAccessFile mem = InMemoryRandomAccessFile.readFile(testfile)) {
+      Assert.assertEquals(raf.length(), mem.length());
+      byte[] expected = new byte[(int) raf.length()];
+      raf.readFully(expected);
+      byte[] result = new byte[(int) mem.length()];
+      mem.readFully(result);
+      Assert.assertArrayEquals(expected, result);
+      Assert.assertEquals(-1, mem.read());
+
+      // seek past the end and back again
+      mem.seek(mem.length() + 100);
+      Assert.assertEquals(-1, mem.read());
+      mem.seek(10);
+      Assert.assertEquals(expected[10] & 0xff, mem.read());
+      mem.seek(0);
+      mem.readFully(result);
+      Assert.assertArrayEquals(expected, result);
+    }
+  }
+
+  // the pooled array is longer than the file, and may hold bytes from an earlier use
+  @Test
+  public void testReadToByteChannelPastEnd() throws IOException {
+    byte[] data = BufferPool.acquire(100);
+    Arrays.fill(data, (byte) 99);
+    for (int i = 0; i < 10; i++)
+      data[i] = (byte) i;
+    try (RandomAccessFile mem = InMemoryRandomAccessFile.wrapPooled("test", data, 10)) {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      Assert.assertEquals(6, mem.readToByteChannel(Channels.newChannel(bos), 4, 50));
+      Assert.assertArrayEquals(new byte[] {4, 5, 6, 7, 8, 9}, bos.toByteArray());
+
+      bos.reset();
+      Assert.assertEquals(0, mem.readToByteChannel(Channels.newChannel(bos), 20, 10));
+      Assert.assertEquals(0, bos.size());
+    }
+  }
+
+  @Test
+  public void testSmallFileOpen() throws IOException {
+    Array expected;
+    try (NetcdfFile ncfile = NetcdfFile.open(testfile)) {
+      expected = ncfile.findVariable("rh").read();
+    }
+
+    RandomAccessFile.setSmallFileSize(1000 * 1000);
+    try (RandomAccessFile raf = RandomAccessFile.acquire(testfile)) {
+      Assert.assertTrue(raf instanceof InMemoryRandomAccessFile);
+    }
+    try (NetcdfFile ncfile = NetcdfFile.open(testfile)) {
+      Variable v = ncfile.findVariable("rh");
+      Formatter f = new Formatter();
+      Assert.assertTrue(f.toString(), new CompareNetcdf2(f, false, false, true).compareData("rh", expected, v.read()));
+    }
+  }
+}
@@ -8,6 +8,7 @@ import ucar.nc2.constants.DataFormatType;
 import ucar.ma2.*;
 import ucar.nc2.Variable;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.unidata.io.BufferPool;
 import java.io.*;
 import java.awt.image.*;
 import java.util.List;
@@ -124,12 +125,17 @@ public class Giniiosp extends AbstractIOServiceProvider {
     // Get to the proper offset and read in the rest of the compressed data
     raf.seek(dataPos);
     int data_size = (int) (raf.length() - dataPos);
-    byte[] data = new byte[data_size];
-    raf.readFully(data);
-
-    // Send the compressed data to ImageIO (to handle PNG)
-    ByteArrayInputStream ios = new ByteArrayInputStream(data);
-    BufferedImage image = javax.imageio.ImageIO.read(ios); // LOOK why ImageIO ??
+    byte[] data = BufferPool.acquire(data_size);
+    BufferedImage image;
+    try {
+      raf.readFully(data, 0, data_size);
+
+      // Send the compressed data to ImageIO (to handle PNG)
+      ByteArrayInputStream ios = new ByteArrayInputStream(data, 0, data_size);
+      image = javax.imageio.ImageIO.read(ios); // LOOK why ImageIO ??
+    } finally {
+      BufferPool.release(data);
+    }
     DataBuffer db = image.getData().getDataBuffer();
 
     // If the image had byte data, turn into an array
@@ -149,8 +155,8 @@ public class Giniiosp extends AbstractIOServiceProvider {
     // Get to the proper offset and read in the rest of the compressed data
     raf.seek(dataPos);
     int data_size = (int) (raf.length() - dataPos); // or 5120 as read buffer size
-    byte[] data = new byte[data_size];
-    raf.readFully(data);
+    byte[] data = BufferPool.acquire(data_size); // released once inflated
+    raf.readFully(data, 0, data_size);
 
     // Buffer for decompressing data
     byte[] uncomp = new byte[nx * ny];
@@ -158,7 +164,7 @@ public class Giniiosp extends AbstractIOServiceProvider {
 
     // Set-up zlib decompression (inflation)
     Inflater inflater = new Inflater(false);
-    inflater.setInput(data);
+    inflater.setInput(data, 0, data_size);
 
     // Loop while the inflater has data and we have space in final buffer
     // This will end up ignoring the last few compressed bytes, which
@@ -195,6 +201,7 @@ public class Giniiosp extends AbstractIOServiceProvider {
       }
     }
     inflater.end();
+    BufferPool.release(data);
 
     // Turn the decompressed data into an array, caching as appropriate
     Array array = makeArray(uncomp, levels, v2.getShape());
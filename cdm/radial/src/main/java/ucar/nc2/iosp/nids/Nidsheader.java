@@ -15,6 +15,7 @@ import ucar.nc2.constants.*;
 import ucar.nc2.units.DateFormatter;
 import ucar.unidata.geoloc.projection.FlatEarth;
 import ucar.unidata.geoloc.ProjectionImpl;
+import ucar.unidata.io.BufferPool;
 import ucar.unidata.io.bzip2.CBZip2InputStream;
 import ucar.unidata.io.bzip2.BZip2ReadException;
 import ucar.unidata.util.Parameter;
@@ -271,8 +272,9 @@ class Nidsheader {
 
     readLen = (int) actualSize;
 
-    byte[] b = new byte[readLen];
-    rc = raf.read(b);
+    // only needed until uncompdata is made
+    byte[] b = BufferPool.acquire(readLen);
+    rc = raf.read(b, 0, readLen);
     if (rc != readLen) {
       log.warn(" error reading nids product header " + raf.getLocation());
     }
@@ -337,18 +339,19 @@ class Nidsheader {
         // uncompdata = Nidsiosp.readCompData(hoff, 160) ;
         if (uncompdata == null) {
           log.warn("ReadNexrInfo: error uncompressing image " + raf.getLocation());
-          uncompdata = new byte[b.length - hoff];
-          System.arraycopy(b, hoff, uncompdata, 0, b.length - hoff);
+          uncompdata = new byte[readLen - hoff];
+          System.arraycopy(b, hoff, uncompdata, 0, readLen - hoff);
         }
       } else {
-        uncompdata = new byte[b.length - hoff];
-        System.arraycopy(b, hoff, uncompdata, 0, b.length - hoff);
+        uncompdata = new byte[readLen - hoff];
+        System.arraycopy(b, hoff, uncompdata, 0, readLen - hoff);
       }
     } else {
-      uncompdata = new byte[b.length];
-      System.arraycopy(b, 0, uncompdata, 0, b.length);
+      uncompdata = new byte[readLen];
+      System.arraycopy(b, 0, uncompdata, 0, readLen);
       // stationId = "YYY";
     }
+    BufferPool.release(b);
     byte[] b2 = new byte[2];
     ByteBuffer bos = ByteBuffer.wrap(uncompdata);
     rc = read_msghead(bos, 0);
@@ -1096,13 +1099,17 @@ class Nidsheader {
 
     readLen = (int) actualSize;
 
-    byte[] b = new byte[readLen];
-    rc = raf.read(b);
-    if (rc != readLen) {
-      log.warn(" error reading nids product header " + raf.getLocation());
+    byte[] b = BufferPool.acquire(readLen);
+    try {
+      rc = raf.read(b, 0, readLen);
+      if (rc != readLen) {
+        log.warn(" error reading nids product header " + raf.getLocation());
+      }
+      ByteBuffer bos = ByteBuffer.wrap(b, 0, readLen);
+      return read_msghead(bos, 0);
+    } finally {
+      BufferPool.release(b);
     }
-    ByteBuffer bos = ByteBuffer.wrap(b);
-    return read_msghead(bos, 0);
 
   }
 
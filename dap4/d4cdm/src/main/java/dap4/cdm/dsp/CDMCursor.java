@@ -140,6 +140,24 @@ public class CDMCursor extends AbstractCursor {
     return c;
   }
 
+  /**
+   * The records of a sequence are the elements of a vlen
+   * of one field, so the column is the vlen array itself.
+   */
+  @Override
+  protected Object readColumn(DapVariable field) throws DapException {
+    if (this.scheme != scheme.SEQUENCE || this.array == null)
+      return null;
+    DapSequence seq = (DapSequence) ((DapVariable) getTemplate()).getBaseType();
+    DapType basetype = field.getBaseType();
+    if (seq.getFields().size() != 1 || field.getRank() > 0 || !basetype.getTypeSort().isNumericType())
+      return null;
+    DataType cdmtype = CDMTypeFcns.daptype2cdmtype(basetype);
+    if (cdmtype == null || this.array.getSize() != this.recordcount)
+      return null;
+    return this.array.get1DJavaArray(cdmtype);
+  }
+
   //////////////////////////////////////////////////
   // Support Methods
 
@@ -105,6 +105,7 @@ public class CEConstraint implements Constraint {
     List<DapDimension> dimset; // dimensions for the variable; including
     // redefs and anonymous derived from slices
     CEAST filter;
+    CEFilter compiled; // filter compiled on first use
 
     Segment(DapVariable var) {
       this.var = var;
@@ -127,6 +128,7 @@ public class CEConstraint implements Constraint {
 
     void setFilter(CEAST filter) {
       this.filter = filter;
+      this.compiled = null;
     }
 
     public String toString() {
@@ -268,22 +270,6 @@ public class CEConstraint implements Constraint {
     universals.remove(dmr);
   }
 
-  protected static DataCursor fieldValue(DapVariable sqvar, DapSequence seq, DataCursor record, String field)
-      throws DapException {
-    DapVariable dapv = seq.findByName(field);
-    if (dapv == null)
-      throw new DapException("Unknown variable in filter: " + field);
-    if (!dapv.isAtomic())
-      throw new DapException("Non-atomic variable in filter: " + field);
-    if (dapv.getRank() > 0)
-      throw new DapException("Non-scalar variable in filter: " + field);
-    int fieldindex = seq.indexByName(field);
-    DataCursor da = (DataCursor) (record.readField(fieldindex));
-    if (da == null)
-      throw new DapException("No such field: " + field);
-    return da;
-  }
-
   protected static int compare(Object lvalue, Object rvalue) throws DapException {
     if (lvalue instanceof String && rvalue instanceof String)
       return ((String) lvalue).compareTo((String) rvalue);
@@ -291,7 +277,7 @@ public class CEConstraint implements Constraint {
       return compare((Boolean) lvalue ? 1 : 0, (Boolean) rvalue ? 1 : 0);
     if (lvalue instanceof Double || lvalue instanceof Float || rvalue instanceof Double || rvalue instanceof Float) {
       double d1 = ((Number) lvalue).doubleValue();
-      double d2 = ((Number) lvalue).doubleValue();
+      double d2 = ((Number) rvalue).doubleValue();
       return Double.compare(d1, d2);
     } else {
       long l1 = ((Number) lvalue).longValue();
@@ -300,58 +286,6 @@ public class CEConstraint implements Constraint {
     }
   }
 
-
-  /**
-   * Evaluate a filter with respect to a Sequence record.
-   * Assumes the filter has been canonicalized so that
-   * the lhs is a variable.
-   *
-   * @param seq the template
-   * @param record the record to evaluate
-   * @param expr the filter
-   * @throws DapException
-   * @returns the value of the expression (usually a Boolean)
-   */
-  protected Object eval(DapVariable var, DapSequence seq, DataCursor record, CEAST expr) throws DapException {
-    switch (expr.sort) {
-
-      case CONSTANT:
-        return expr.value;
-
-      case SEGMENT:
-        return fieldValue(var, seq, record, expr.name);
-
-      case EXPR:
-        Object lhs = eval(var, seq, record, expr.lhs);
-        Object rhs = (expr.rhs == null ? null : eval(var, seq, record, expr.rhs));
-        if (rhs != null)
-          switch (expr.op) {
-            case LT:
-              return compare(lhs, rhs) < 0;
-            case LE:
-              return compare(lhs, rhs) <= 0;
-            case GT:
-              return compare(lhs, rhs) > 0;
-            case GE:
-              return compare(lhs, rhs) >= 0;
-            case EQ:
-              return lhs.equals(rhs);
-            case NEQ:
-              return !lhs.equals(rhs);
-            case REQ:
-              return lhs.toString().matches(rhs.toString());
-            case AND:
-              return ((Boolean) lhs) && ((Boolean) rhs);
-          }
-        else
-          switch (expr.op) {
-            case NOT:
-              return !((Boolean) lhs);
-          }
-    }
-    throw new DapException("Malformed Filter");
-  }
-
   //////////////////////////////////////////////////
   // Instance variables
 
@@ -447,7 +381,7 @@ public class CEConstraint implements Constraint {
   public void setFilter(DapVariable var, CEAST filter) {
     Segment seg = findSegment(var);
     if (seg != null)
-      seg.filter = filter;
+      seg.setFilter(filter);
   }
 
   public List<Slice> getConstrainedSlices(DapVariable var) throws DapException {
@@ -686,25 +620,32 @@ public class CEConstraint implements Constraint {
     Segment sseq = findSegment(sqvar);
     if (sseq == null)
       return false;
-    CEAST filter = sseq.filter;
-    if (filter == null)
+    if (sseq.filter == null)
       return true;
-    return matches(sqvar, seq, rec, filter);
-
+    return getFilter(sseq).match(rec);
   }
 
   /**
-   * Evaluate a filter with respect to a Sequence record.
+   * Get the compiled filter for a Sequence variable,
+   * so that a DSP can use its bounds to restrict
+   * what it reads before evaluating it on each record.
    *
-   * @param seq the template
-   * @param rec the record to evaluate
-   * @param filter the filter
+   * @param sqvar the sequence variable
+   * @return the compiled filter, or null if the variable is
+   *         not referenced or has no filter
    * @throws DapException
-   * @returns true if a match
    */
-  protected boolean matches(DapVariable var, DapSequence seq, DataCursor rec, CEAST filter) throws DapException {
-    Object value = eval(var, seq, rec, filter);
-    return ((Boolean) value);
+  public CEFilter getFilter(DapVariable sqvar) throws DapException {
+    Segment sseq = findSegment(sqvar);
+    if (sseq == null || sseq.filter == null)
+      return null;
+    return getFilter(sseq);
+  }
+
+  protected CEFilter getFilter(Segment sseq) throws DapException {
+    if (sseq.compiled == null)
+      sseq.compiled = CEFilter.compile(sseq.var, sseq.filter);
+    return sseq.compiled;
   }
 
   //////////////////////////////////////////////////
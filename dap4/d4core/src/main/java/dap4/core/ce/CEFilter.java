@@ -0,0 +1,757 @@
+/*
+ * Copyright 2012, UCAR/Unidata.
+ * See the LICENSE file for more information.
+ */
+
+package dap4.core.ce;
+
+import dap4.core.data.DataCursor;
+import dap4.core.dmr.DapSequence;
+import dap4.core.dmr.DapVariable;
+import dap4.core.dmr.TypeSort;
+import dap4.core.util.DapException;
+import dap4.core.util.DapUtil;
+import dap4.core.util.Index;
+import dap4.core.util.Slice;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A Sequence filter compiled into a form that can be
+ * planned against before any data is read, and evaluated
+ * without re-interpreting the CEAST for every record.
+ * <p>
+ * Planning: the top-level conjuncts of the form
+ * "field op numeric-constant" (op in <,<=,>,>=,==)
+ * are folded into per-field Bounds. If any Bounds is empty,
+ * no record can match and the DSP need not read anything.
+ * If a bounded field is sorted (e.g. a time or other
+ * coordinate-like field), select() turns the Bounds into
+ * a Slice over the records using binary search, so that only
+ * the matching records need to be read.
+ * <p>
+ * Evaluation: the remaining (residual) predicate is compiled
+ * into a tree of nodes with field indices resolved and constants
+ * converted once; numeric comparisons are done on primitive
+ * doubles and regular expressions are compiled once.
+ * Each field is read at most once per record. Evaluation
+ * over primitive column arrays (see match(Object[],int))
+ * allocates nothing per record.
+ */
+
+public class CEFilter {
+
+  //////////////////////////////////////////////////
+  // Type Decls
+
+  /**
+   * Interval of legal values for a single field,
+   * derived from the top-level conjuncts of a filter.
+   * Values are ordered as by Double.compare(), as in
+   * CEConstraint.compare(), so NaN is above +Infinity
+   * and equal to itself; the unbounded high end is NaN.
+   */
+  public static class Bounds {
+    protected final DapVariable field;
+    protected final int index;
+    protected double lo = Double.NEGATIVE_INFINITY;
+    protected double hi = Double.NaN;
+    protected boolean loinclusive = true;
+    protected boolean hiinclusive = true;
+
+    Bounds(DapVariable field, int index) {
+      this.field = field;
+      this.index = index;
+    }
+
+    public DapVariable getField() {
+      return this.field;
+    }
+
+    public int getFieldIndex() {
+      return this.index;
+    }
+
+    public double getLow() {
+      return this.lo;
+    }
+
+    /**
+     * @return the upper bound; NaN if unbounded
+     */
+    public double getHigh() {
+      return this.hi;
+    }
+
+    void restrict(CEAST.Operator op, double v) {
+      switch (op) {
+        case LT:
+          restrictHigh(v, false);
+          break;
+        case LE:
+          restrictHigh(v, true);
+          break;
+        case GT:
+          restrictLow(v, false);
+          break;
+        case GE:
+          restrictLow(v, true);
+          break;
+        case EQ:
+          restrictLow(v, true);
+          restrictHigh(v, true);
+          break;
+        default:
+          throw new IllegalArgumentException(op.toString());
+      }
+    }
+
+    protected void restrictLow(double v, boolean inclusive) {
+      int c = Double.compare(v, lo);
+      if (c > 0 || (c == 0 && !inclusive)) {
+        lo = v;
+        loinclusive = inclusive;
+      }
+    }
+
+    protected void restrictHigh(double v, boolean inclusive) {
+      int c = Double.compare(v, hi);
+      if (c < 0 || (c == 0 && !inclusive)) {
+        hi = v;
+        hiinclusive = inclusive;
+      }
+    }
+
+    public boolean isEmpty() {
+      int c = Double.compare(lo, hi);
+      if (c < 0)
+        return false;
+      return !(c == 0 && loinclusive && hiinclusive);
+    }
+
+    public boolean contains(double v) {
+      int c = Double.compare(v, lo);
+      if (loinclusive ? c < 0 : c <= 0)
+        return false;
+      c = Double.compare(v, hi);
+      return !(hiinclusive ? c > 0 : c >= 0);
+    }
+
+    public String toString() {
+      return String.format("%s%s%s,%s%s", field.getShortName(), loinclusive ? "[" : "(", lo, hi,
+          hiinclusive ? "]" : ")");
+    }
+  }
+
+  /**
+   * Access to the field values of one record.
+   */
+  protected interface Row {
+    double getDouble(int field) throws DapException;
+
+    String getString(int field) throws DapException;
+  }
+
+  protected abstract static class Node {
+    abstract boolean test(Row row) throws DapException;
+  }
+
+  protected static class And extends Node {
+    final Node lhs, rhs;
+
+    And(Node lhs, Node rhs) {
+      this.lhs = lhs;
+      this.rhs = rhs;
+    }
+
+    boolean test(Row row) throws DapException {
+      return lhs.test(row) && rhs.test(row);
+    }
+  }
+
+  protected static class Not extends Node {
+    final Node expr;
+
+    Not(Node expr) {
+      this.expr = expr;
+    }
+
+    boolean test(Row row) throws DapException {
+      return !expr.test(row);
+    }
+  }
+
+  protected static class NumericCompare extends Node {
+    final int field;
+    final CEAST.Operator op;
+    final double value;
+
+    NumericCompare(int field, CEAST.Operator op, double value) {
+      this.field = field;
+      this.op = op;
+      this.value = value;
+    }
+
+    // Same ordering as CEConstraint.compare()
+    boolean test(Row row) throws DapException {
+      int c = Double.compare(row.getDouble(field), value);
+      switch (op) {
+        case LT:
+          return c < 0;
+        case LE:
+          return c <= 0;
+        case GT:
+          return c > 0;
+        case GE:
+          return c >= 0;
+        case EQ:
+          return c == 0;
+        case NEQ:
+          return c != 0;
+        default:
+          throw new DapException("Illegal numeric operator: " + op);
+      }
+    }
+  }
+
+  protected static class StringCompare extends Node {
+    final int field;
+    final CEAST.Operator op;
+    final String value;
+
+    StringCompare(int field, CEAST.Operator op, String value) {
+      this.field = field;
+      this.op = op;
+      this.value = value;
+    }
+
+    boolean test(Row row) throws DapException {
+      int c = row.getString(field).compareTo(value);
+      switch (op) {
+        case LT:
+          return c < 0;
+        case LE:
+          return c <= 0;
+        case GT:
+          return c > 0;
+        case GE:
+          return c >= 0;
+        case EQ:
+          return c == 0;
+        case NEQ:
+          return c != 0;
+        default:
+          throw new DapException("Illegal string operator: " + op);
+      }
+    }
+  }
+
+  protected static class RegexMatch extends Node {
+    final int field;
+    final Pattern pattern;
+
+    RegexMatch(int field, String regex) {
+      this.field = field;
+      this.pattern = Pattern.compile(regex);
+    }
+
+    boolean test(Row row) throws DapException {
+      return pattern.matcher(row.getString(field)).matches();
+    }
+  }
+
+  protected static class Constant extends Node {
+    final boolean value;
+
+    Constant(boolean value) {
+      this.value = value;
+    }
+
+    boolean test(Row row) {
+      return value;
+    }
+  }
+
+  /**
+   * Reads field values from a Sequence record cursor,
+   * caching them so each field is read once per record.
+   */
+  protected class CursorRow implements Row {
+    final double[] numbers;
+    final String[] strings;
+    final boolean[] loaded;
+    DataCursor record;
+
+    CursorRow(int nfields) {
+      this.numbers = new double[nfields];
+      this.strings = new String[nfields];
+      this.loaded = new boolean[nfields];
+    }
+
+    void set(DataCursor record) {
+      this.record = record;
+      for (int i = 0; i < loaded.length; i++)
+        loaded[i] = false;
+    }
+
+    void load(int field) throws DapException {
+      if (loaded[field])
+        return;
+      DataCursor fieldcursor = record.readField(field);
+      if (fieldcursor == null)
+        throw new DapException("No such field: " + seq.getFields().get(field).getShortName());
+      Object vector = fieldcursor.read(Index.SCALAR);
+      if (vector instanceof String[])
+        strings[field] = ((String[]) vector)[0];
+      else if (vector instanceof char[])
+        strings[field] = String.valueOf(((char[]) vector)[0]);
+      else {
+        numbers[field] = toDouble(vector, 0, field);
+        strings[field] = null;
+      }
+      loaded[field] = true;
+    }
+
+    public double getDouble(int field) throws DapException {
+      load(field);
+      return numbers[field];
+    }
+
+    public String getString(int field) throws DapException {
+      load(field);
+      if (strings[field] == null)
+        strings[field] = Double.toString(numbers[field]);
+      return strings[field];
+    }
+  }
+
+  /**
+   * Reads field values from primitive column vectors,
+   * one vector per field of the sequence (null if not needed).
+   */
+  protected class ColumnRow implements Row {
+    Object[] columns;
+    int row;
+
+    public double getDouble(int field) throws DapException {
+      return toDouble(columns[field], row, field);
+    }
+
+    public String getString(int field) throws DapException {
+      Object vector = columns[field];
+      if (vector instanceof String[])
+        return ((String[]) vector)[row];
+      if (vector instanceof char[])
+        return String.valueOf(((char[]) vector)[row]);
+      return Double.toString(toDouble(vector, row, field));
+    }
+  }
+
+  //////////////////////////////////////////////////
+  // Static methods
+
+  /**
+   * Compile a filter that has already been processed
+   * by CECompiler.compilefilter (so that comparisons are
+   * canonicalized to "field op constant").
+   *
+   * @param seqvar the sequence variable
+   * @param filter the filter; null means match everything
+   * @return the compiled filter
+   * @throws DapException
+   */
+  public static CEFilter compile(DapVariable seqvar, CEAST filter) throws DapException {
+    if (!seqvar.isSequence())
+      throw new DapException("Attempt to apply a filter to a non-sequence variable: " + seqvar.getFQN());
+    CEFilter result = new CEFilter(seqvar, (DapSequence) seqvar.getBaseType(), filter);
+    result.plan();
+    return result;
+  }
+
+  //////////////////////////////////////////////////
+  // Instance variables
+
+  protected final DapVariable seqvar;
+  protected final DapSequence seq;
+  protected final CEAST filter;
+
+  protected final Map<Integer, Bounds> bounds = new LinkedHashMap<>();
+  protected Node residual = null; // null => no residual predicate
+  protected final boolean[] unsigned;
+
+  // scratch state for evaluation; a CEFilter is not thread safe
+  protected CursorRow cursorrow;
+  protected ColumnRow columnrow;
+
+  //////////////////////////////////////////////////
+  // Constructor(s)
+
+  protected CEFilter(DapVariable seqvar, DapSequence seq, CEAST filter) {
+    this.seqvar = seqvar;
+    this.seq = seq;
+    this.filter = filter;
+    List<DapVariable> fields = seq.getFields();
+    this.unsigned = new boolean[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      unsigned[i] = fields.get(i).getBaseType().getTypeSort().isUnsigned();
+    }
+    this.cursorrow = new CursorRow(fields.size());
+    this.columnrow = new ColumnRow();
+  }
+
+  //////////////////////////////////////////////////
+  // Accessors
+
+  public DapVariable getSequence() {
+    return this.seqvar;
+  }
+
+  /**
+   * @return true if no record can match, so nothing need be read
+   */
+  public boolean isEmpty() {
+    for (Bounds b : bounds.values()) {
+      if (b.isEmpty())
+        return true;
+    }
+    return residual instanceof Constant && !((Constant) residual).value;
+  }
+
+  /**
+   * @return true if every record matches
+   */
+  public boolean isUniversal() {
+    return bounds.isEmpty() && residual == null;
+  }
+
+  public List<Bounds> getBounds() {
+    return Collections.unmodifiableList(new ArrayList<>(bounds.values()));
+  }
+
+  /**
+   * @param field a field of the sequence
+   * @return the bounds on field implied by the filter, or null if unbounded
+   */
+  public Bounds getBounds(DapVariable field) {
+    return bounds.get(seq.indexByName(field.getShortName()));
+  }
+
+  //////////////////////////////////////////////////
+  // Planning
+
+  protected void plan() throws DapException {
+    if (filter == null)
+      return;
+    List<CEAST> conjuncts = new ArrayList<>();
+    flatten(filter, conjuncts);
+    Node rest = null;
+    for (CEAST conjunct : conjuncts) {
+      if (isBoundable(conjunct)) {
+        int index = fieldIndex(conjunct.lhs);
+        Bounds b = bounds.get(index);
+        if (b == null) {
+          b = new Bounds(seq.getFields().get(index), index);
+          bounds.put(index, b);
+        }
+        b.restrict(conjunct.op, ((Number) conjunct.rhs.value).doubleValue());
+      } else {
+        Node n = compileNode(conjunct);
+        rest = (rest == null ? n : new And(rest, n));
+      }
+    }
+    this.residual = rest;
+  }
+
+  protected static void flatten(CEAST expr, List<CEAST> conjuncts) {
+    if (expr.sort == CEAST.Sort.EXPR && expr.op == CEAST.Operator.AND) {
+      flatten(expr.lhs, conjuncts);
+      flatten(expr.rhs, conjuncts);
+    } else
+      conjuncts.add(expr);
+  }
+
+  protected boolean isBoundable(CEAST expr) throws DapException {
+    if (expr.sort != CEAST.Sort.EXPR || expr.lhs == null || expr.rhs == null)
+      return false;
+    if (expr.lhs.sort != CEAST.Sort.SEGMENT || expr.rhs.sort != CEAST.Sort.CONSTANT)
+      return false;
+    switch (expr.op) {
+      case LT:
+      case LE:
+      case GT:
+      case GE:
+      case EQ:
+        break;
+      default:
+        return false;
+    }
+    return isNumericField(expr.lhs) && CEAST.Constant.NUMERIC.contains(expr.rhs.kind);
+  }
+
+  protected Node compileNode(CEAST expr) throws DapException {
+    switch (expr.sort) {
+      case CONSTANT:
+        if (expr.value instanceof Boolean)
+          return new Constant((Boolean) expr.value);
+        break;
+      case EXPR:
+        if (expr.op == CEAST.Operator.AND)
+          return new And(compileNode(expr.lhs), compileNode(expr.rhs));
+        if (expr.op == CEAST.Operator.NOT)
+          return new Not(compileNode(expr.lhs));
+        if (expr.lhs == null || expr.rhs == null)
+          break;
+        if (expr.lhs.sort == CEAST.Sort.SEGMENT && expr.rhs.sort == CEAST.Sort.CONSTANT) {
+          int index = fieldIndex(expr.lhs);
+          Object value = expr.rhs.value;
+          if (expr.op == CEAST.Operator.REQ)
+            return new RegexMatch(index, value.toString());
+          if (isNumericField(expr.lhs) && value instanceof Number)
+            return new NumericCompare(index, expr.op, ((Number) value).doubleValue());
+          return new StringCompare(index, expr.op, value.toString());
+        }
+        if (expr.lhs.sort == CEAST.Sort.CONSTANT && expr.rhs.sort == CEAST.Sort.CONSTANT)
+          return new Constant(compareConstants(expr.lhs.value, expr.op, expr.rhs.value));
+        break;
+      default:
+        break;
+    }
+    throw new DapException("Malformed Filter: " + expr);
+  }
+
+  protected static boolean compareConstants(Object lhs, CEAST.Operator op, Object rhs) throws DapException {
+    int c = CEConstraint.compare(lhs, rhs);
+    switch (op) {
+      case LT:
+        return c < 0;
+      case LE:
+        return c <= 0;
+      case GT:
+        return c > 0;
+      case GE:
+        return c >= 0;
+      case EQ:
+        return c == 0;
+      case NEQ:
+        return c != 0;
+      case REQ:
+        return lhs.toString().matches(rhs.toString());
+      default:
+        throw new DapException("Malformed Filter: " + op);
+    }
+  }
+
+  protected int fieldIndex(CEAST segment) throws DapException {
+    int index = seq.indexByName(segment.name);
+    if (index < 0)
+      throw new DapException("Unknown variable in filter: " + segment.name);
+    DapVariable field = seq.getFields().get(index);
+    if (!field.isAtomic())
+      throw new DapException("Non-atomic variable in filter: " + segment.name);
+    if (field.getRank() > 0)
+      throw new DapException("Non-scalar variable in filter: " + segment.name);
+    return index;
+  }
+
+  protected boolean isNumericField(CEAST segment) throws DapException {
+    TypeSort sort = seq.getFields().get(fieldIndex(segment)).getBaseType().getTypeSort();
+    return sort.isNumericType() || sort.isEnumType();
+  }
+
+  //////////////////////////////////////////////////
+  // Pushdown
+
+  /**
+   * Values of one field, by record number.
+   */
+  public interface FieldValues {
+    double get(long recno) throws DapException;
+  }
+
+  /**
+   * Restrict the records to read using a field whose values
+   * are sorted in ascending order, e.g. a time coordinate.
+   *
+   * @param field the sorted field
+   * @param sorted the values of the field for all records
+   * @return the records that can match, or null if the filter does not bound this field
+   * @throws DapException
+   */
+  public Slice select(DapVariable field, double[] sorted) throws DapException {
+    return select(field, sorted.length, recno -> sorted[(int) recno]);
+  }
+
+  /**
+   * Restrict the records of a Sequence to read using a
+   * field whose values are sorted in ascending order.
+   * Only that field of O(log(n)) records is read to do so.
+   *
+   * @param field the sorted field
+   * @param sequence cursor of scheme SEQUENCE
+   * @return the records that can match, or null if the filter does not bound this field
+   * @throws DapException
+   */
+  public Slice select(DapVariable field, DataCursor sequence) throws DapException {
+    int index = seq.indexByName(field.getShortName());
+    return select(field, sequence.getRecordCount(), recno -> {
+      cursorrow.set(sequence.readRecord(recno));
+      return cursorrow.getDouble(index);
+    });
+  }
+
+  /**
+   * Restrict the records to read using the values of a field
+   * for all records, as returned by DataCursor.read(),
+   * if they turn out to be in ascending order.
+   *
+   * @param field the field
+   * @param column the values of the field for all records
+   * @return the records that can match, or null if the values are not
+   *         in ascending order or the filter does not bound this field
+   * @throws DapException
+   */
+  public Slice selectColumn(DapVariable field, Object column) throws DapException {
+    int index = seq.indexByName(field.getShortName());
+    int n = java.lang.reflect.Array.getLength(column);
+    for (int i = 1; i < n; i++) {
+      if (Double.compare(toDouble(column, i - 1, index), toDouble(column, i, index)) > 0)
+        return null;
+    }
+    return select(field, n, recno -> toDouble(column, (int) recno, index));
+  }
+
+  protected Slice select(DapVariable field, long nrecords, FieldValues values) throws DapException {
+    Bounds b = getBounds(field);
+    if (b == null)
+      return null;
+    if (b.isEmpty())
+      return new Slice(0, 0, 1, nrecords).finish();
+    long first = lowerBound(values, nrecords, b.lo, !b.loinclusive);
+    long stop = lowerBound(values, nrecords, b.hi, b.hiinclusive);
+    if (stop < first)
+      stop = first;
+    return new Slice(first, stop, 1, nrecords).finish();
+  }
+
+  // first index i with values[i] >= v (or > v if strict), ordered as by Double.compare()
+  protected static long lowerBound(FieldValues values, long n, double v, boolean strict) throws DapException {
+    long low = 0;
+    long high = n;
+    while (low < high) {
+      long mid = (low + high) >>> 1;
+      int c = Double.compare(values.get(mid), v);
+      boolean before = strict ? c <= 0 : c < 0;
+      if (before)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+
+  //////////////////////////////////////////////////
+  // Evaluation
+
+  /**
+   * Evaluate the filter against a Sequence record.
+   *
+   * @param record cursor of scheme RECORD
+   * @return true if the record matches
+   * @throws DapException
+   */
+  public boolean match(DataCursor record) throws DapException {
+    if (isUniversal())
+      return true;
+    cursorrow.set(record);
+    return matches(cursorrow);
+  }
+
+  /**
+   * Evaluate the filter against one row of column vectors,
+   * as returned by DataCursor.read(), indexed by field number.
+   * Only the columns for fields referenced by the filter are needed.
+   *
+   * @param columns one vector per field
+   * @param row the row to test
+   * @return true if the row matches
+   * @throws DapException
+   */
+  public boolean match(Object[] columns, int row) throws DapException {
+    if (isUniversal())
+      return true;
+    columnrow.columns = columns;
+    columnrow.row = row;
+    return matches(columnrow);
+  }
+
+  /**
+   * Test the bounds of the filter against one row of column vectors,
+   * indexed by field number, skipping the fields whose column is null.
+   * A row that fails cannot match, so its record need not be read.
+   *
+   * @param columns one vector per field, or null
+   * @param row the row to test
+   * @return false if the row is outside the bounds of some field
+   * @throws DapException
+   */
+  public boolean inBounds(Object[] columns, int row) throws DapException {
+    for (Bounds b : bounds.values()) {
+      Object column = columns[b.index];
+      if (column != null && !b.contains(toDouble(column, row, b.index)))
+        return false;
+    }
+    return true;
+  }
+
+  protected boolean matches(Row row) throws DapException {
+    for (Bounds b : bounds.values()) {
+      if (!b.contains(row.getDouble(b.index)))
+        return false;
+    }
+    return residual == null || residual.test(row);
+  }
+
+  protected double toDouble(Object vector, int i, int field) throws DapException {
+    if (vector instanceof double[])
+      return ((double[]) vector)[i];
+    if (vector instanceof float[])
+      return ((float[]) vector)[i];
+    if (vector instanceof long[]) {
+      long l = ((long[]) vector)[i];
+      if (unsigned[field] && l < 0)
+        return DapUtil.BIG_UMASK64.and(java.math.BigInteger.valueOf(l)).doubleValue();
+      return l;
+    }
+    if (vector instanceof int[]) {
+      int v = ((int[]) vector)[i];
+      return unsigned[field] ? (v & 0xFFFFFFFFL) : v;
+    }
+    if (vector instanceof short[]) {
+      short v = ((short[]) vector)[i];
+      return unsigned[field] ? (v & 0xFFFF) : v;
+    }
+    if (vector instanceof byte[]) {
+      byte v = ((byte[]) vector)[i];
+      return unsigned[field] ? (v & 0xFF) : v;
+    }
+    if (vector instanceof char[])
+      return ((char[]) vector)[i];
+    if (vector instanceof ByteBuffer[])
+      throw new DapException("Opaque variable in filter: " + seq.getFields().get(field).getShortName());
+    throw new DapException("Unexpected field vector: " + (vector == null ? "null" : vector.getClass().getName()));
+  }
+
+  public String toString() {
+    StringBuilder buf = new StringBuilder();
+    buf.append(seqvar.getFQN());
+    buf.append(bounds.values());
+    if (residual != null)
+      buf.append("|residual");
+    return buf.toString();
+  }
+}
@@ -5,6 +5,7 @@
 
 package dap4.core.data;
 
+import dap4.core.ce.CEFilter;
 import dap4.core.dmr.DapNode;
 import dap4.core.util.DapException;
 import dap4.core.util.Index;
@@ -76,6 +77,10 @@ public interface DataCursor {
 
   public DataCursor readRecord(long i) throws DapException;
 
+  // Read the records that match a filter (null => all),
+  // without reading records the filter's bounds exclude.
+  public List<DataCursor> readRecords(CEFilter filter) throws DapException;
+
   public long getRecordIndex() throws DapException; // assert scheme == RECORD
 
   //////////////////////////////////////////////////
@@ -5,6 +5,7 @@
 
 package dap4.dap4lib;
 
+import dap4.core.ce.CEFilter;
 import dap4.core.data.DSP;
 import dap4.core.data.DataCursor;
 import dap4.core.dmr.DapNode;
@@ -15,6 +16,8 @@ import dap4.core.util.DapException;
 import dap4.core.util.DapSort;
 import dap4.core.util.Index;
 import dap4.core.util.Slice;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public abstract class AbstractCursor implements DataCursor {
@@ -139,6 +142,107 @@ public abstract class AbstractCursor implements DataCursor {
   }
 
 
+  /**
+   * Read the records of a sequence that match a filter.
+   * Only the records given by selectRecords() are read.
+   *
+   * @param filter the filter; null means all records
+   * @return the matching records, in order
+   * @throws DapException
+   */
+  @Override
+  public List<DataCursor> readRecords(CEFilter filter) throws DapException {
+    List<DataCursor> records = new ArrayList<>();
+    for (long r : selectRecords(filter)) {
+      DataCursor record = readRecord(r);
+      if (filter == null || filter.match(record))
+        records.add(record);
+    }
+    return records;
+  }
+
+  /**
+   * Find the records of a sequence that a filter can match,
+   * without reading the records.
+   * If the filter's bounds are empty, there are none.
+   * If a bounded field is sorted (see isSorted()), only the records
+   * within its bounds are kept, found by binary search on that field.
+   * If a bounded field can be read for all records at once
+   * (see readColumn()), it is searched the same way when its
+   * values are in ascending order, else tested for each record.
+   *
+   * @param filter the filter; null means all records
+   * @return the record numbers, in order
+   * @throws DapException
+   */
+  public long[] selectRecords(CEFilter filter) throws DapException {
+    if (this.scheme != Scheme.SEQUENCE)
+      throw new DapException("Not a SEQUENCE instance");
+    long first = 0;
+    long stop = getRecordCount();
+    Object[] columns = null;
+    if (filter != null) {
+      if (filter.isEmpty())
+        return new long[0];
+      for (CEFilter.Bounds b : filter.getBounds()) {
+        Slice slice = null;
+        if (isSorted(b.getField()))
+          slice = filter.select(b.getField(), this);
+        else {
+          Object column = readColumn(b.getField());
+          if (column == null)
+            continue;
+          slice = filter.selectColumn(b.getField(), column);
+          if (slice == null) {
+            if (columns == null)
+              columns = new Object[((DapStructure) ((DapVariable) getTemplate()).getBaseType()).getFields().size()];
+            columns[b.getFieldIndex()] = column;
+          }
+        }
+        if (slice != null) {
+          first = Math.max(first, slice.getFirst());
+          stop = Math.min(stop, slice.getStop());
+        }
+      }
+    }
+    long[] selected = new long[(int) Math.max(0, stop - first)];
+    int count = 0;
+    for (long r = first; r < stop; r++) {
+      if (columns == null || filter.inBounds(columns, (int) r))
+        selected[count++] = r;
+    }
+    return count == selected.length ? selected : Arrays.copyOf(selected, count);
+  }
+
+  /**
+   * Subclasses that know the values of a field of this
+   * sequence to be in ascending order (e.g. a time coordinate)
+   * override this, so that selectRecords() can skip records
+   * outside the bounds of a filter on that field.
+   *
+   * @param field a field of this sequence
+   * @return true if the field is sorted in ascending order
+   */
+  protected boolean isSorted(DapVariable field) {
+    return false;
+  }
+
+  /**
+   * Read a field of rank 0 for all the records of this sequence,
+   * straight from where the sequence is held, without making a
+   * cursor for each record. Subclasses that can do so override this,
+   * so that selectRecords() can skip records outside the bounds
+   * of a filter on that field.
+   *
+   * @param field a field of this sequence
+   * @return a vector with one value per record, of the type
+   *         DataCursor.read() returns; or null if not supported for this field
+   * @throws DapException
+   */
+  protected Object readColumn(DapVariable field) throws DapException {
+    return null;
+  }
+
   @Override
   public AbstractCursor getContainer() {
     return this.container;
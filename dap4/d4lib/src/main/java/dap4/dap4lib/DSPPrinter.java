@@ -5,6 +5,7 @@
 package dap4.dap4lib;
 
 import dap4.core.ce.CEConstraint;
+import dap4.core.ce.CEFilter;
 import dap4.core.data.DSP;
 import dap4.core.data.DataCursor;
 import dap4.core.dmr.*;
@@ -259,9 +260,8 @@ public class DSPPrinter {
 
       case SEQUENCE:
         DapSequence dseq = (DapSequence) dstruct;
-        long count = datav.getRecordCount();
-        for (long r = 0; r < count; r++) {
-          DataCursor dr = datav.readRecord(r);
+        CEFilter filter = this.ce.getFilter((DapVariable) datav.getTemplate());
+        for (DataCursor dr : datav.readRecords(filter)) {
           printer.marginPrint("[");
           printer.eol();
           printer.indent();
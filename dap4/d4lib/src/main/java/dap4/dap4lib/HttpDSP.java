@@ -11,6 +11,7 @@ import dap4.core.util.DapDump;
 import dap4.core.util.DapException;
 import dap4.core.util.DapUtil;
 import dap4.dap4lib.serial.D4DSP;
+import dap4.dap4lib.serial.D4StreamCompiler;
 import org.apache.http.HttpStatus;
 import ucar.httpservices.HTTPException;
 import ucar.httpservices.HTTPFactory;
@@ -70,6 +71,8 @@ public class HttpDSP extends D4DSP {
 
   protected Object context = null;
 
+  protected D4StreamCompiler.Listener streamlistener = null;
+
   //////////////////////////////////////////////////
   // Constructor(s)
 
@@ -153,6 +156,18 @@ public class HttpDSP extends D4DSP {
   @Override
   public void close() {}
 
+  /**
+   * Receive the data for each top-level variable as soon as it
+   * has been read from the server; must be set before open().
+   *
+   * @param listener
+   * @return this
+   */
+  public HttpDSP setStreamListener(D4StreamCompiler.Listener listener) {
+    this.streamlistener = listener;
+    return this;
+  }
+
   /////////////////////////////////////////
   // AbstractDSP extensions
 
@@ -176,12 +191,12 @@ public class HttpDSP extends D4DSP {
   protected void build() throws DapException {
     String methodurl = buildURL(this.xuri.assemble(XURI.URLONLY), DATASUFFIX, this.dmr, this.basece);
 
-    InputStream stream;
-    // Make the request and return an input stream for accessing the databuffer
+    // Make the request and keep the method open while the response is compiled
     // Should fill in bigendian and stream fields
-    stream = callServer(methodurl);
-
-    try {
+    try (HTTPMethod method = openServer(methodurl)) {
+      InputStream stream = method.getResponseAsStream();
+      if (stream == null)
+        throw new DapException("Empty response: " + methodurl);
       ChunkInputStream reader;
       if (DEBUG) {
         byte[] raw = DapUtil.readbinaryfile(stream);
@@ -193,70 +208,56 @@ public class HttpDSP extends D4DSP {
         reader = new ChunkInputStream(stream, RequestMode.DAP, getOrder());
       }
 
-      // Extract and "compile" the server response
+      // Extract the DMR, then "compile" the databuffer as it arrives
       String document = reader.readDMR();
-      // Extract all the remaining bytes
-      byte[] bytes = DapUtil.readbinaryfile(reader);
-      // use super.build to compile
-      super.build(document, bytes, getOrder());
+      super.build(document, reader, this.streamlistener);
+    } catch (DapException de) {
+      throw de;
     } catch (Throwable t) {
       t.printStackTrace();
       throw new DapException(t);
-    } finally {
-      try {
-        stream.close();
-      } catch (IOException ioe) {
-        /* ignore */}
     }
   }
 
-  protected InputStream callServer(String methodurl) throws DapException {
-    URI uri;
-
+  /**
+   * Make the request and check the status.
+   * The caller is responsible for closing the returned method.
+   *
+   * @param methodurl
+   * @return the executed method
+   * @throws DapException
+   */
+  protected HTTPMethod openServer(String methodurl) throws DapException {
     try {
-      uri = HTTPUtil.parseToURI(methodurl);
+      HTTPUtil.parseToURI(methodurl);
     } catch (URISyntaxException mue) {
       throw new DapException("Malformed url: " + methodurl);
     }
 
-    long start = System.currentTimeMillis();
-    long stop = 0;
     this.status = 0;
-    if (false) {
-      HTTPMethod method = null; // Implicitly passed out to caller via stream
-      try { // Note that we cannot use try with resources because we export the method stream, so method
-        // must not be closed.
-        method = HTTPFactory.Get(methodurl);
-        if (allowCompression)
-          method.setCompression("deflate,gzip");
-        this.status = method.execute();
-        if (this.status != HttpStatus.SC_OK) {
-          String msg = method.getResponseAsString();
-          throw new DapException("Request failure: " + status + ": " + methodurl).setCode(status);
-        }
-        // Get the response body stream => do not close the method
-        return method.getResponseAsStream();
-      } catch (HTTPException e) {
-        if (method != null)
-          method.close();
-        throw new DapException(e);
-      }
-    } else {// read whole input
-      try {
-        try (HTTPMethod method = HTTPFactory.Get(methodurl)) {
-          if (allowCompression)
-            method.setCompression("deflate,gzip");
-          this.status = method.execute();
-          if (this.status != HttpStatus.SC_OK) {
-            String msg = method.getResponseAsString();
-            throw new DapException("Request failure: " + status + ": " + methodurl).setCode(status);
-          }
-          byte[] body = method.getResponseAsBytes();
-          return new ByteArrayInputStream(body);
-        }
-      } catch (HTTPException e) {
-        throw new DapException(e);
+    HTTPMethod method = null;
+    try {
+      method = HTTPFactory.Get(methodurl);
+      if (allowCompression)
+        method.setCompression("deflate,gzip");
+      this.status = method.execute();
+      if (this.status != HttpStatus.SC_OK) {
+        method.close();
+        throw new DapException("Request failure: " + status + ": " + methodurl).setCode(status);
       }
+      return method;
+    } catch (HTTPException e) {
+      if (method != null)
+        method.close();
+      throw new DapException(e);
+    }
+  }
+
+  protected InputStream callServer(String methodurl) throws DapException {
+    // read whole input
+    try (HTTPMethod method = openServer(methodurl)) {
+      byte[] body = method.getResponseAsBytes();
+      return new ByteArrayInputStream(body);
     }
   }
 
@@ -159,6 +159,21 @@ public class Nc4Cursor extends AbstractCursor {
   }
 
 
+  /**
+   * The records of a sequence are the elements of a vlen
+   * of one field, so the column is the vlen memory itself.
+   */
+  @Override
+  protected Object readColumn(DapVariable field) throws DapException {
+    assert (this.scheme == scheme.SEQUENCE);
+    DapStructure ds = (DapStructure) ((DapVariable) getTemplate()).getBaseType();
+    DapType ftype = field.getBaseType();
+    if (ds.getFields().size() != 1 || field.getRank() > 0 || !ftype.getTypeSort().isNumericType())
+      return null;
+    TypeNotes fnotes = (TypeNotes) ((Nc4DSP) getDSP()).find(ftype);
+    return getatomicdata(ftype, getRecordCount(), getElementSize(fnotes), getMemory());
+  }
+
   @Override
   public Index getIndex() throws DapException {
     if (this.scheme != Scheme.STRUCTURE && this.scheme != Scheme.SEQUENCE)
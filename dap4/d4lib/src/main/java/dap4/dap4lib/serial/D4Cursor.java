@@ -140,6 +140,55 @@ public class D4Cursor extends AbstractCursor {
     return this.records == null ? 0 : this.records.size();
   }
 
+  /**
+   * Read a numeric field of every record from the data buffer,
+   * using the offsets compiled for each record.
+   */
+  @Override
+  protected Object readColumn(DapVariable field) throws DapException {
+    assert (this.scheme == Scheme.SEQUENCE);
+    DapType basetype = field.getBaseType();
+    if (basetype.isEnumType())
+      basetype = ((DapEnumeration) basetype).getBaseType();
+    if (field.getRank() > 0 || !basetype.getTypeSort().isNumericType())
+      return null;
+    DapStructure ds = (DapStructure) ((DapVariable) getTemplate()).getBaseType();
+    int m = ds.indexByName(field.getShortName());
+    int nrecs = (int) getRecordCount();
+    Object column = LibTypeFcns.newVector(basetype, nrecs);
+    ByteBuffer alldata = ((D4DSP) this.dsp).getBuffer();
+    for (int r = 0; r < nrecs; r++) {
+      int pos = (int) this.records.get(r).fieldcursors[m].offset; // absolute
+      switch (basetype.getTypeSort()) {
+        case Int8:
+        case UInt8:
+          ((byte[]) column)[r] = alldata.get(pos);
+          break;
+        case Int16:
+        case UInt16:
+          ((short[]) column)[r] = alldata.getShort(pos);
+          break;
+        case Int32:
+        case UInt32:
+          ((int[]) column)[r] = alldata.getInt(pos);
+          break;
+        case Int64:
+        case UInt64:
+          ((long[]) column)[r] = alldata.getLong(pos);
+          break;
+        case Float32:
+          ((float[]) column)[r] = alldata.getFloat(pos);
+          break;
+        case Float64:
+          ((double[]) column)[r] = alldata.getDouble(pos);
+          break;
+        default:
+          return null;
+      }
+    }
+    return column;
+  }
+
   //////////////////////////////////////////////////
   // Support methods
 
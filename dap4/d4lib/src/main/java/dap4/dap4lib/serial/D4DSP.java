@@ -9,6 +9,7 @@ import dap4.core.dmr.DapDataset;
 import dap4.core.util.DapDump;
 import dap4.core.util.DapException;
 import dap4.dap4lib.AbstractDSP;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
@@ -54,6 +55,10 @@ public abstract class D4DSP extends AbstractDSP {
     return databuffer;
   }
 
+  /* packge */ void setBuffer(ByteBuffer databuffer) {
+    this.databuffer = databuffer;
+  }
+
   //////////////////////////////////////////////////
   // Compilation
 
@@ -92,4 +97,28 @@ public abstract class D4DSP extends AbstractDSP {
     compiler.compile();
   }
 
+  /**
+   * Build the data incrementally from a stream of serial data,
+   * e.g. a ChunkInputStream positioned after the DMR.
+   * Each top-level variable is available as soon as its
+   * bytes have been read.
+   *
+   * @param document the DMR
+   * @param serialdata the databuffer source
+   * @param listener notified as each top-level variable is complete (may be null)
+   * @throws DapException
+   */
+  protected void build(String document, InputStream serialdata, D4StreamCompiler.Listener listener)
+      throws DapException {
+    DapDataset dmr = parseDMR(document);
+    if (DEBUG || DUMPDMR) {
+      System.err.println("\n+++++++++++++++++++++");
+      System.err.println(dmr);
+      System.err.println("+++++++++++++++++++++\n");
+    }
+    setDMR(dmr);
+    D4StreamCompiler compiler = new D4StreamCompiler(this, getChecksumMode(), getOrder(), serialdata, listener);
+    compiler.compile();
+  }
+
 }
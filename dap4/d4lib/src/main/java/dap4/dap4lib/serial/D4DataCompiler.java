@@ -95,7 +95,7 @@ public class D4DataCompiler {
     if (dapvar.isTopLevel() && this.checksummode.enabled(ChecksumMode.DAP)) {
       // extract the checksum from databuffer src,
       // attach to the array, and make into an attribute
-      int checksum = extractChecksum(databuffer);
+      int checksum = extractChecksum();
       dapvar.setChecksum(checksum);
     }
     return array;
@@ -111,21 +111,19 @@ public class D4DataCompiler {
   protected D4Cursor compileAtomicVar(DapVariable var, D4Cursor container) throws DapException {
     DapType daptype = var.getBaseType();
     D4Cursor data = new D4Cursor(Scheme.ATOMIC, (D4DSP) this.dsp, var, container);
-    data.setOffset(getPos(this.databuffer));
+    data.setOffset(getPos());
     long total = 0;
     long dimproduct = var.getCount();
     if (!daptype.isEnumType() && !daptype.isFixedSize()) {
       // this is a string, url, or opaque
       long[] positions = new long[(int) dimproduct];
-      int savepos = databuffer.position();
       // Walk the bytestring and return the instance count (in databuffer)
-      total = walkByteStrings(positions, databuffer);
-      databuffer.position(savepos);// leave position unchanged
+      total = walkByteStrings(positions);
       data.setByteStringOffsets(total, positions);
     } else {
       total = dimproduct * daptype.getSize();
     }
-    skip(databuffer, (int) total);
+    skip((int) total);
     return data;
   }
 
@@ -140,7 +138,7 @@ public class D4DataCompiler {
   protected D4Cursor compileStructureArray(DapVariable var, D4Cursor container) throws DapException {
     DapStructure dapstruct = (DapStructure) var.getBaseType();
     D4Cursor structarray =
-        new D4Cursor(Scheme.STRUCTARRAY, this.dsp, var, container).setOffset(getPos(this.databuffer));
+        new D4Cursor(Scheme.STRUCTARRAY, this.dsp, var, container).setOffset(getPos());
     List<DapDimension> dimset = var.getDimensions();
     long dimproduct = DapUtil.dimProduct(dimset);
     D4Cursor[] instances = new D4Cursor[(int) dimproduct];
@@ -164,7 +162,7 @@ public class D4DataCompiler {
    * @throws DapException
    */
   protected D4Cursor compileStructure(DapVariable var, DapStructure dapstruct, D4Cursor container) throws DapException {
-    int pos = getPos(this.databuffer);
+    int pos = getPos();
     D4Cursor d4ds = new D4Cursor(Scheme.STRUCTURE, (D4DSP) this.dsp, var, container).setOffset(pos);
     List<DapVariable> dfields = dapstruct.getFields();
     for (int m = 0; m < dfields.size(); m++) {
@@ -185,7 +183,7 @@ public class D4DataCompiler {
    */
   protected D4Cursor compileSequenceArray(DapVariable var, D4Cursor container) throws DapException {
     DapSequence dapseq = (DapSequence) var.getBaseType();
-    D4Cursor seqarray = new D4Cursor(Scheme.SEQARRAY, this.dsp, var, container).setOffset(getPos(this.databuffer));
+    D4Cursor seqarray = new D4Cursor(Scheme.SEQARRAY, this.dsp, var, container).setOffset(getPos());
     List<DapDimension> dimset = var.getDimensions();
     long dimproduct = DapUtil.dimProduct(dimset);
     D4Cursor[] instances = new D4Cursor[(int) dimproduct];
@@ -209,13 +207,13 @@ public class D4DataCompiler {
    * @throws DapException
    */
   public D4Cursor compileSequence(DapVariable var, DapSequence dapseq, D4Cursor container) throws DapException {
-    int pos = getPos(this.databuffer);
+    int pos = getPos();
     D4Cursor seq = new D4Cursor(Scheme.SEQUENCE, this.dsp, var, container).setOffset(pos);
     List<DapVariable> dfields = dapseq.getFields();
     // Get the count of the number of records
-    long nrecs = getCount(this.databuffer);
+    long nrecs = getCount();
     for (int r = 0; r < nrecs; r++) {
-      pos = getPos(this.databuffer);
+      pos = getPos();
       D4Cursor rec =
           (D4Cursor) new D4Cursor(D4Cursor.Scheme.RECORD, this.dsp, var, container).setOffset(pos).setRecordIndex(r);
       for (int m = 0; m < dfields.size(); m++) {
@@ -232,25 +230,38 @@ public class D4DataCompiler {
   //////////////////////////////////////////////////
   // Utilities
 
-  protected int extractChecksum(ByteBuffer data) throws DapException {
+  protected int extractChecksum() throws DapException {
     assert ChecksumMode.DAP.enabled(this.checksummode);
-    if (data.remaining() < DapUtil.CHECKSUMSIZE)
+    ensure(DapUtil.CHECKSUMSIZE);
+    if (this.databuffer.remaining() < DapUtil.CHECKSUMSIZE)
       throw new DapException("Short serialization: missing checksum");
-    return data.getInt();
+    return this.databuffer.getInt();
   }
 
-  protected static void skip(ByteBuffer data, int count) {
-    data.position(data.position() + count);
+  /**
+   * Make sure that at least count bytes beyond the current position
+   * are available in the databuffer. The complete databuffer
+   * is available up front, so this does nothing here; see D4StreamCompiler.
+   *
+   * @param count number of bytes needed
+   * @throws DapException if the bytes cannot be made available
+   */
+  protected void ensure(long count) throws DapException {}
+
+  protected void skip(int count) throws DapException {
+    ensure(count);
+    this.databuffer.position(this.databuffer.position() + count);
   }
 
-  protected static int getCount(ByteBuffer data) {
-    long count = data.getLong();
+  protected int getCount() throws DapException {
+    ensure(COUNTSIZE);
+    long count = this.databuffer.getLong();
     count = (count & 0xFFFFFFFF);
     return (int) count;
   }
 
-  protected static int getPos(ByteBuffer data) {
-    return data.position();
+  protected int getPos() {
+    return this.databuffer.position();
   }
 
   /**
@@ -263,20 +274,20 @@ public class D4DataCompiler {
     return LibTypeFcns.size(daptype);
   }
 
-  protected static long walkByteStrings(long[] positions, ByteBuffer databuffer) {
+  protected long walkByteStrings(long[] positions) throws DapException {
     int count = positions.length;
     long total = 0;
-    int savepos = databuffer.position();
+    int savepos = getPos();
     // Walk each bytestring
     for (int i = 0; i < count; i++) {
-      int pos = databuffer.position();
+      int pos = getPos();
       positions[i] = pos;
-      int size = getCount(databuffer);
+      int size = getCount();
       total += COUNTSIZE;
       total += size;
-      skip(databuffer, size);
+      skip(size);
     }
-    databuffer.position(savepos);// leave position unchanged
+    this.databuffer.position(savepos);// leave position unchanged
     return total;
   }
 
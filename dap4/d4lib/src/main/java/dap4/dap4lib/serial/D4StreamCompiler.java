@@ -0,0 +1,211 @@
+/*
+ * Copyright 2012, UCAR/Unidata.
+ * See the LICENSE file for more information.
+ */
+
+package dap4.dap4lib.serial;
+
+import dap4.core.data.ChecksumMode;
+import dap4.core.dmr.DapType;
+import dap4.core.dmr.DapVariable;
+import dap4.core.util.DapException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Variant of D4DataCompiler that compiles the serialized
+ * databuffer while it is being read from a (chunked) stream,
+ * instead of requiring the complete databuffer up front.
+ * <p>
+ * The DMR is walked in order and bytes are pulled from the
+ * stream only as they are needed, so each top-level variable
+ * is available (and reported to the Listener) as soon as
+ * its bytes have arrived.
+ * <p>
+ * Top-level, fixed-size atomic variables may be claimed
+ * by the Listener; their bytes are then passed to it in
+ * slices of bounded size and are never retained, so memory
+ * is bounded by the variables that are not claimed.
+ */
+
+public class D4StreamCompiler extends D4DataCompiler {
+
+  //////////////////////////////////////////////////
+  // Constants
+
+  public static final int DFALTSLICESIZE = 1 << 20; // bytes per slice passed to Listener.atomicData
+  protected static final int INITIALSIZE = 1 << 16;
+
+  //////////////////////////////////////////////////
+  // Type Decls
+
+  /**
+   * Notified as the data for each top-level variable is compiled.
+   * All calls are made on the compiling thread.
+   */
+  public interface Listener {
+    /**
+     * Should the data for this fixed-size, top-level atomic variable
+     * be streamed to atomicData() instead of being retained?
+     *
+     * @param var the variable
+     * @return true to stream the variable
+     */
+    boolean streamVariable(DapVariable var);
+
+    /**
+     * Receive a slice of a streamed variable. The slice is
+     * only valid during the call, copy out what is needed.
+     *
+     * @param var the variable
+     * @param elementOffset index of the first element in the slice
+     * @param slice the bytes of a whole number of elements, in the data byte order
+     * @throws DapException to abort the compilation
+     */
+    void atomicData(DapVariable var, long elementOffset, ByteBuffer slice) throws DapException;
+
+    /**
+     * A top-level variable is complete.
+     *
+     * @param var the variable
+     * @param data cursor over the variable's data, or null if it was streamed
+     * @throws DapException to abort the compilation
+     */
+    void variableComplete(DapVariable var, D4Cursor data) throws DapException;
+  }
+
+  //////////////////////////////////////////////////
+  // Instance variables
+
+  protected InputStream stream;
+  protected Listener listener;
+  protected int slicesize = DFALTSLICESIZE;
+
+  //////////////////////////////////////////////////
+  // Constructor(s)
+
+  /**
+   * Constructor
+   *
+   * @param dsp the D4DSP
+   * @param checksummode
+   * @param order
+   * @param stream the source of serialized databuffer, positioned after the DMR
+   * @param listener notified of each top-level variable (may be null)
+   */
+
+  public D4StreamCompiler(D4DSP dsp, ChecksumMode checksummode, ByteOrder order, InputStream stream,
+      Listener listener) throws DapException {
+    super(dsp, checksummode, order, (ByteBuffer) ByteBuffer.allocate(INITIALSIZE).order(order).limit(0));
+    this.stream = stream;
+    this.listener = listener;
+    this.dsp.setBuffer(this.databuffer);
+  }
+
+  public D4StreamCompiler setSliceSize(int slicesize) {
+    this.slicesize = slicesize;
+    return this;
+  }
+
+  //////////////////////////////////////////////////
+  // DataCompiler API
+
+  @Override
+  public void compile() throws DapException {
+    assert (this.dataset != null && this.stream != null);
+    for (DapVariable vv : this.dataset.getTopVariables()) {
+      D4Cursor data = null;
+      if (listener != null && isStreamable(vv) && listener.streamVariable(vv)) {
+        streamAtomicVar(vv);
+      } else {
+        data = compileVar(vv, null);
+        this.dsp.addVariableData(vv, data);
+      }
+      if (listener != null) {
+        // the listener may read through the cursor, which moves the buffer position
+        int savepos = getPos();
+        listener.variableComplete(vv, data);
+        this.databuffer.position(savepos);
+      }
+    }
+  }
+
+  //////////////////////////////////////////////////
+  // Streaming
+
+  protected boolean isStreamable(DapVariable var) {
+    DapType type = var.getBaseType();
+    return type.isAtomic() && (type.isEnumType() || type.isFixedSize());
+  }
+
+  /**
+   * Pass the variable's bytes to the listener, slice by slice,
+   * without adding them to the databuffer.
+   */
+  protected void streamAtomicVar(DapVariable var) throws DapException {
+    // Everything read so far has been consumed, so the stream is positioned at this variable
+    assert getPos() == this.databuffer.limit();
+    int elemsize = var.getBaseType().getSize();
+    long remaining = var.getCount();
+    int perslice = Math.max(1, this.slicesize / elemsize);
+    ByteBuffer slice = ByteBuffer.allocate((int) Math.min(remaining, perslice) * elemsize).order(this.order);
+    long elementOffset = 0;
+    while (remaining > 0) {
+      int n = (int) Math.min(remaining, perslice);
+      slice.clear();
+      slice.limit(n * elemsize);
+      readFully(slice.array(), 0, n * elemsize);
+      listener.atomicData(var, elementOffset, slice);
+      elementOffset += n;
+      remaining -= n;
+    }
+    if (this.checksummode.enabled(ChecksumMode.DAP))
+      var.setChecksum(extractChecksum());
+  }
+
+  //////////////////////////////////////////////////
+  // Utilities
+
+  /**
+   * Pull bytes from the stream until count bytes beyond the current position
+   * are in the databuffer. The databuffer is grown as needed; cursors pick up
+   * the new buffer from the DSP.
+   */
+  @Override
+  protected void ensure(long count) throws DapException {
+    int pos = getPos();
+    int have = this.databuffer.limit();
+    long need = pos + count;
+    if (need <= have)
+      return;
+    if (need > Integer.MAX_VALUE)
+      throw new DapException("Serialized data too large: " + need);
+    if (need > this.databuffer.capacity()) {
+      long newsize = Math.min(Math.max(need, 2L * this.databuffer.capacity()), Integer.MAX_VALUE);
+      ByteBuffer grown = ByteBuffer.allocate((int) newsize).order(this.order);
+      System.arraycopy(this.databuffer.array(), 0, grown.array(), 0, have);
+      this.databuffer = grown;
+      this.dsp.setBuffer(grown);
+    }
+    readFully(this.databuffer.array(), have, (int) (need - have));
+    this.databuffer.limit((int) need);
+    this.databuffer.position(pos);
+  }
+
+  protected void readFully(byte[] buf, int off, int len) throws DapException {
+    try {
+      while (len > 0) {
+        int red = this.stream.read(buf, off, len);
+        if (red <= 0)
+          throw new DapException("Short serialization: unexpected end of data");
+        off += red;
+        len -= red;
+      }
+    } catch (IOException ioe) {
+      throw new DapException(ioe);
+    }
+  }
+
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2012, UCAR/Unidata.
+ * See the LICENSE file for more information.
+ */
+
+package dap4.test;
+
+import dap4.core.ce.CEConstraint;
+import dap4.core.ce.CEFilter;
+import dap4.core.data.ChecksumMode;
+import dap4.core.data.DataCursor;
+import dap4.core.dmr.DMRFactory;
+import dap4.core.dmr.DapDataset;
+import dap4.core.dmr.DapNode;
+import dap4.core.dmr.DapSequence;
+import dap4.core.dmr.DapVariable;
+import dap4.core.dmr.parser.DOM4Parser;
+import dap4.core.util.DapException;
+import dap4.core.util.DapSort;
+import dap4.core.util.Index;
+import dap4.core.util.Slice;
+import dap4.core.util.DapUtil;
+import dap4.dap4lib.AbstractCursor;
+import dap4.dap4lib.FileDSP;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Planning and evaluation of compiled sequence filters. */
+public class TestCEFilter extends DapTestCommon {
+
+  static final String DMR = "<Dataset name=\"cefilter\" dapVersion=\"4.0\" dmrVersion=\"1.0\""
+      + " ns=\"http://xml.opendap.org/ns/DAP/4.0#\">" + "  <Sequence name=\"seq\">" + "    <Float64 name=\"time\"/>"
+      + "    <Int32 name=\"i1\"/>" + "    <String name=\"name\"/>" + "  </Sequence>" + "</Dataset>";
+
+  /**
+   * An in memory sequence of (time, i1, name) records
+   * that remembers which records and fields are read.
+   */
+  static class TestSequence extends AbstractCursor {
+    final double[] time;
+    final boolean sorted;
+    final Set<Long> records = new TreeSet<>(); // records read
+    final Set<Long> fields = new TreeSet<>(); // records with a field other than time read
+
+    TestSequence(DapVariable seq, double[] time, boolean sorted) {
+      super(Scheme.SEQUENCE, null, seq, null);
+      this.time = time;
+      this.sorted = sorted;
+      setRecordCount(time.length);
+    }
+
+    @Override
+    protected boolean isSorted(DapVariable field) {
+      return sorted && field.getShortName().equals("time");
+    }
+
+    @Override
+    public AbstractCursor readRecord(long i) {
+      records.add(i);
+      return new TestCursor(this, Scheme.RECORD, getTemplate(), i, -1);
+    }
+
+    @Override
+    public Object read(List<Slice> slices) throws DapException {
+      throw new DapException("unexpected");
+    }
+
+    @Override
+    public Object read(Index index) throws DapException {
+      throw new DapException("unexpected");
+    }
+
+    @Override
+    public AbstractCursor readField(int fieldindex) throws DapException {
+      throw new DapException("unexpected");
+    }
+  }
+
+  static class TestCursor extends AbstractCursor {
+    final TestSequence seq;
+    final int field;
+
+    TestCursor(TestSequence seq, Scheme scheme, DapNode template, long recno, int field) {
+      super(scheme, null, template, seq);
+      this.seq = seq;
+      this.field = field;
+      setRecordIndex(recno);
+    }
+
+    @Override
+    public AbstractCursor readField(int fieldindex) {
+      if (fieldindex != 0)
+        seq.fields.add(this.recordindex);
+      DapSequence type = (DapSequence) ((DapVariable) getTemplate()).getBaseType();
+      return new TestCursor(seq, Scheme.ATOMIC, type.getFields().get(fieldindex), recordindex, fieldindex);
+    }
+
+    @Override
+    public Object read(Index index) {
+      int r = (int) this.recordindex;
+      switch (field) {
+        case 0:
+          return new double[] {seq.time[r]};
+        case 1:
+          return new int[] {r};
+        default:
+          return new String[] {"rec" + r};
+      }
+    }
+
+    @Override
+    public Object read(List<Slice> slices) {
+      return read(Index.SCALAR);
+    }
+
+    @Override
+    public AbstractCursor readRecord(long i) throws DapException {
+      throw new DapException("unexpected");
+    }
+  }
+
+  protected DapDataset dmr;
+  protected DapVariable seq;
+
+  @Before
+  public void setup() throws Exception {
+    DOM4Parser parser = new DOM4Parser(new DMRFactory());
+    Assert.assertTrue(parser.parse(DMR));
+    dmr = parser.getDMR();
+    seq = (DapVariable) dmr.findByFQN("/seq", DapSort.VARIABLE);
+  }
+
+  protected CEFilter compile(String ce) throws Exception {
+    CEConstraint constraint = CEConstraint.compile(ce, dmr);
+    CEFilter filter = constraint.getFilter(seq);
+    Assert.assertNotNull(filter);
+    return filter;
+  }
+
+  @Test
+  public void testBounds() throws Exception {
+    CEFilter filter = compile("/seq|10<=time<20,i1>0");
+    DapVariable time = ((DapSequence) seq.getBaseType()).findByName("time");
+    CEFilter.Bounds b = filter.getBounds(time);
+    Assert.assertNotNull(b);
+    Assert.assertEquals(10.0, b.getLow(), 0.0);
+    Assert.assertEquals(20.0, b.getHigh(), 0.0);
+    Assert.assertFalse(filter.isEmpty());
+    Assert.assertEquals(2, filter.getBounds().size());
+
+    // binary search on a sorted field gives the records to read
+    double[] times = {0, 5, 10, 12, 15, 20, 25};
+    Slice slice = filter.select(time, times);
+    Assert.assertEquals(2, slice.getFirst());
+    Assert.assertEquals(5, slice.getStop());
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    CEFilter filter = compile("/seq|time>20,time<10");
+    Assert.assertTrue(filter.isEmpty());
+    DapVariable time = ((DapSequence) seq.getBaseType()).findByName("time");
+    Assert.assertEquals(0, filter.select(time, new double[] {5, 15, 25}).getCount());
+  }
+
+  @Test
+  public void testColumns() throws Exception {
+    Object[] columns = new Object[3];
+    columns[0] = new double[] {5, 10, 11, 12};
+    columns[1] = new int[] {1, 2, 3, 4};
+    columns[2] = new String[] {"abc", "abc", "abc", "xyz"};
+    CEFilter filter = compile("/seq|time>=10,i1!=3");
+    Assert.assertFalse(filter.match(columns, 0)); // time
+    Assert.assertTrue(filter.match(columns, 1));
+    Assert.assertFalse(filter.match(columns, 2)); // i1
+    filter = compile("/seq|time>=10,name==\"abc\"");
+    Assert.assertTrue(filter.match(columns, 1));
+    Assert.assertFalse(filter.match(columns, 3)); // name
+  }
+
+  @Test
+  public void testReadRecords() throws Exception {
+    int n = 1000;
+    double[] times = new double[n];
+    for (int i = 0; i < n; i++)
+      times[i] = i;
+
+    // Bounds on a sorted field: records outside them are not read,
+    // except for the time field of the records probed by the binary search
+    CEFilter filter = compile("/seq|400<=time<410,i1!=405");
+    TestSequence data = new TestSequence(seq, times, true);
+    List<Long> matched = new ArrayList<>();
+    for (DataCursor rec : data.readRecords(filter))
+      matched.add(rec.getRecordIndex());
+    Assert.assertEquals(9, matched.size());
+    Assert.assertEquals(400L, (long) matched.get(0));
+    Assert.assertFalse(matched.contains(405L));
+    for (long r : data.fields)
+      Assert.assertTrue(r >= 400 && r < 410);
+    int probes = 0;
+    for (long r : data.records) {
+      if (r < 400 || r >= 410)
+        probes++;
+    }
+    Assert.assertTrue("probes " + probes, probes <= 2 * 11);
+
+    // Unsorted field: every record is tested, but only the bounded
+    // field is read from records outside the bounds
+    data = new TestSequence(seq, times, false);
+    Assert.assertEquals(9, data.readRecords(filter).size());
+    Assert.assertEquals(n, data.records.size());
+    for (long r : data.fields)
+      Assert.assertTrue(r >= 400 && r < 410);
+
+    // Empty bounds: nothing is read
+    data = new TestSequence(seq, times, true);
+    Assert.assertEquals(0, data.readRecords(compile("/seq|time>20,time<10")).size());
+    Assert.assertTrue(data.records.isEmpty());
+
+    // No filter: every record
+    data = new TestSequence(seq, times, true);
+    Assert.assertEquals(n, data.readRecords(null).size());
+  }
+
+  // A sequence served by FileDSP: the records outside the bounds are not read, sorted or not
+  @Test
+  public void testFileDSP() throws Exception {
+    int n = 1000;
+    double[] sorted = new double[n];
+    double[] unsorted = new double[n];
+    for (int i = 0; i < n; i++) {
+      sorted[i] = i;
+      unsorted[i] = (7 * i) % n;
+    }
+    for (double[] times : new double[][] {sorted, unsorted}) {
+      FileDSP dsp = new FileDSP();
+      dsp.setChecksumMode(ChecksumMode.NONE);
+      dsp.open(serialize(times));
+      DapVariable dspseq = (DapVariable) dsp.getDMR().findByFQN("/seq", DapSort.VARIABLE);
+      DataCursor[] instances = (DataCursor[]) dsp.getVariableData(dspseq).read(Index.SCALAR);
+      AbstractCursor data = (AbstractCursor) instances[0];
+      Assert.assertEquals(n, data.getRecordCount());
+
+      CEFilter filter = CEConstraint.compile("/seq|400<=time<410,i1!=405", dsp.getDMR()).getFilter(dspseq);
+      long[] selected = data.selectRecords(filter);
+      Assert.assertEquals(10, selected.length); // readRecords() reads only these
+      for (long r : selected)
+        Assert.assertTrue(times[(int) r] >= 400 && times[(int) r] < 410);
+
+      List<DataCursor> matched = data.readRecords(filter);
+      Assert.assertEquals(9, matched.size());
+      for (DataCursor rec : matched) {
+        int i1 = ((int[]) rec.readField(1).read(Index.SCALAR))[0];
+        Assert.assertTrue(i1 >= 400 && i1 < 410 && i1 != 405);
+      }
+      Assert.assertEquals(n, data.selectRecords(null).length);
+    }
+  }
+
+  // A DAP4 response for the test DMR, with time[i], (int) time[i] and "rec"+i as the fields of record i
+  protected byte[] serialize(double[] times) throws Exception {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    ByteBuffer count = ByteBuffer.allocate(8).putLong(times.length);
+    data.write(count.array());
+    for (int i = 0; i < times.length; i++) {
+      byte[] name = ("rec" + i).getBytes(DapUtil.UTF8);
+      ByteBuffer rec = ByteBuffer.allocate(8 + 4 + 8 + name.length);
+      rec.putDouble(times[i]).putInt((int) times[i]).putLong(name.length).put(name);
+      data.write(rec.array());
+    }
+    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+    byte[] dmr8 = DMR.getBytes(DapUtil.UTF8);
+    raw.write(chunkHeader(0, dmr8.length));
+    raw.write(dmr8);
+    raw.write(chunkHeader(DapUtil.CHUNK_END, data.size()));
+    raw.write(data.toByteArray());
+    return raw.toByteArray();
+  }
+
+  protected byte[] chunkHeader(int flags, int size) {
+    byte[] header = ByteBuffer.allocate(4).putInt(size).array(); // big endian
+    header[0] = (byte) flags;
+    return header;
+  }
+
+  @Test
+  public void testNaN() throws Exception {
+    // Same ordering as CEConstraint.compare(), i.e. Double.compare():
+    // NaN is equal to itself and greater than everything else
+    CEFilter filter = compile("/seq|time>100");
+    Object[] columns = new Object[] {new double[] {Double.NaN, Double.POSITIVE_INFINITY, 50}, null, null};
+    Assert.assertTrue(filter.match(columns, 0));
+    Assert.assertTrue(filter.match(columns, 1));
+    Assert.assertFalse(filter.match(columns, 2));
+
+    filter = compile("/seq|time<100,i1!=3");
+    Assert.assertFalse(filter.match(new Object[] {new double[] {Double.NaN}, new int[] {0}, null}, 0));
+  }
+}
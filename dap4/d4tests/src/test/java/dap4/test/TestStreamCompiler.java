@@ -0,0 +1,121 @@
+package dap4.test;
+
+import dap4.core.data.DSP;
+import dap4.core.dmr.DapVariable;
+import dap4.core.util.DapContext;
+import dap4.core.util.DapException;
+import dap4.core.util.DapUtil;
+import dap4.dap4lib.ChunkInputStream;
+import dap4.dap4lib.DSPPrinter;
+import dap4.dap4lib.FileDSP;
+import dap4.dap4lib.RequestMode;
+import dap4.dap4lib.serial.D4Cursor;
+import dap4.dap4lib.serial.D4StreamCompiler;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiling the serialized data while it is streamed
+ * must give the same result as compiling the complete databuffer.
+ */
+public class TestStreamCompiler extends DapTestCommon {
+
+  static final String TESTCDMINPUT = "TestCDMClient/testinput";
+
+  // Same as FileDSP, but compiles from the ChunkInputStream
+  static class StreamFileDSP extends FileDSP {
+    D4StreamCompiler.Listener listener;
+
+    StreamFileDSP(D4StreamCompiler.Listener listener) {
+      this.listener = listener;
+    }
+
+    @Override
+    public FileDSP open(byte[] rawdata) throws DapException {
+      try {
+        this.raw = rawdata;
+        ChunkInputStream rdr = new ChunkInputStream(new ByteArrayInputStream(rawdata), RequestMode.DAP);
+        String document = rdr.readDMR();
+        super.build(document, rdr, listener);
+        return this;
+      } catch (IOException ioe) {
+        throw new DapException(ioe);
+      }
+    }
+  }
+
+  protected List<String> testfiles = new ArrayList<>();
+
+  @Before
+  public void setup() throws Exception {
+    String dir = DapUtil.absolutize(getResourceRoot()) + "/" + TESTCDMINPUT;
+    TestFilter.filterfiles(dir, testfiles, "raw");
+  }
+
+  @Test
+  public void testSameAsFileDSP() throws Exception {
+    Assert.assertFalse(testfiles.isEmpty());
+    for (String path : testfiles) {
+      byte[] raw = Files.readAllBytes(Paths.get(path));
+      FileDSP full = new FileDSP();
+      full.setContext(new DapContext());
+      full.open(raw);
+      FileDSP stream = new StreamFileDSP(null);
+      stream.setContext(new DapContext());
+      stream.open(raw);
+      Assert.assertEquals(path, dumpdata(full), dumpdata(stream));
+    }
+  }
+
+  @Test
+  public void testStreamedVariables() throws Exception {
+    for (String path : testfiles) {
+      byte[] raw = Files.readAllBytes(Paths.get(path));
+      Map<DapVariable, Long> counts = new HashMap<>();
+      List<DapVariable> completed = new ArrayList<>();
+      D4StreamCompiler.Listener listener = new D4StreamCompiler.Listener() {
+        public boolean streamVariable(DapVariable var) {
+          return true;
+        }
+
+        public void atomicData(DapVariable var, long elementOffset, ByteBuffer slice) {
+          long have = counts.getOrDefault(var, 0L);
+          Assert.assertEquals(have, elementOffset);
+          counts.put(var, have + slice.remaining() / var.getBaseType().getSize());
+        }
+
+        public void variableComplete(DapVariable var, D4Cursor data) {
+          completed.add(var);
+        }
+      };
+      FileDSP dsp = new StreamFileDSP(listener);
+      dsp.setContext(new DapContext());
+      dsp.open(raw);
+      Assert.assertEquals(path, dsp.getDMR().getTopVariables(), completed);
+      for (Map.Entry<DapVariable, Long> e : counts.entrySet())
+        Assert.assertEquals(path, e.getKey().getCount(), e.getValue().longValue());
+    }
+  }
+
+  String dumpdata(DSP dsp) throws Exception {
+    StringWriter sw = new StringWriter();
+    PrintWriter pw = new PrintWriter(sw);
+    DSPPrinter p = new DSPPrinter(dsp, pw).flag(DSPPrinter.Flags.CONTROLCHAR);
+    p.print();
+    pw.close();
+    sw.close();
+    return sw.toString();
+  }
+}
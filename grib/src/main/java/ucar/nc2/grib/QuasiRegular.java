@@ -5,8 +5,19 @@
 
 package ucar.nc2.grib;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
 /**
  * Converts a QuasiRegular grid into a regular rectanglar (lat/lon) grid.
+ * The interpolation weights are computed once for each thin grid and cached, see getStencil().
  *
  * @author John, from rkambic, probably from gempak
  * @author jkaehler@meteomatics.com
@@ -27,117 +38,280 @@ public class QuasiRegular {
     if (interpolationMethod == GribData.InterpolationMethod.none)
       return quasi;
 
+    return getStencil(linePts, nx, ny, interpolationMethod).apply(quasi);
+  }
+
+  /**
+   * Get the interpolation stencil for this thin grid, computing it if its not already cached.
+   * The stencils of thin grids with the same line points are shared.
+   *
+   * @param linePts npts in each line
+   * @param nx num parellels or undefined
+   * @param ny num parellels or undefined
+   * @param interpolationMethod linear or cubic
+   * @return stencil that converts the quasi regular data to a regular grid
+   */
+  public static Stencil getStencil(int[] linePts, int nx, int ny, GribData.InterpolationMethod interpolationMethod) {
+    if (interpolationMethod != GribData.InterpolationMethod.linear
+        && interpolationMethod != GribData.InterpolationMethod.cubic)
+      throw new RuntimeException("unsupported interpolation method");
 
-    // int nrows; /* number of rows in input */
-    // int ix[]; /* row i starts at idat[ix[i]], and ix[nrows] is 1 after
-    // last elem of idat */
-    // float *idat; /* input quasi-regular data */
-    // int ni; /* constant length of each output row */
-    // int nj; /* number of output rows */
-    // float *odat; /* where to put ni*nj outputs, already allocated */
-
-    int max = getMax(linePts);
-    if (nx < 0) {
-      assert ny == linePts.length;
-      nx = max;
-    } else {
-      assert ny < 0;
-      assert nx == linePts.length;
-      ny = max;
+    // two threads may both compute a missing stencil, which is harmless
+    StencilKey key = new StencilKey(linePts, nx, ny, interpolationMethod);
+    Stencil stencil = stencils.getIfPresent(key);
+    if (stencil == null) {
+      stencil = new Stencil(linePts, nx, ny, interpolationMethod);
+      stencils.put(key, stencil);
     }
+    return stencil;
+  }
+
+  public static void showCache(Formatter f) {
+    CacheStats stats = rows.stats();
+    f.format("QuasiRegular: %d stencils, %d rows; row hits=%d misses=%d%n", stencils.size(), rows.size(),
+        stats.hitCount(), stats.missCount());
+  }
 
-    double x1_der = 1.0e30; /* derivative of the first end point */
-    double xn_der = 1.0e30; /* derivative of the nth end point */
-    double[] second_d; /* second derivatives of input row */
-    int inputIdx = 0; /* current index position in input */
-    int outputIdx = 0; /* current index position in output */
+  public static void clearCache() {
+    stencils.invalidateAll();
+    rows.invalidateAll();
+  }
 
-    float[] data = new float[nx * ny];
+  // whole grids, only refer to the rows
+  private static final Cache<StencilKey, Stencil> stencils = CacheBuilder.newBuilder().maximumSize(100).build();
+  // rows are shared by all grids with the same output row length, bounded by the memory they use
+  private static final Cache<RowKey, Row> rows = CacheBuilder.newBuilder().maximumWeight(64 * 1000 * 1000)
+      .weigher((RowKey key, Row row) -> row.sizeBytes()).recordStats().build();
 
-    if (interpolationMethod == GribData.InterpolationMethod.cubic) {
+  /** convert rows in parallel when the regular grid has at least this many points */
+  private static final int PARALLEL_THRESHOLD = 64 * 1000;
 
+  /**
+   * The interpolation from a quasi regular grid to a regular grid, computed once from the line points.
+   * Each output point is a weighted sum of the two input points that bracket it, plus for cubic interpolation
+   * the second derivatives of its input row. Applying it gets the same values as the row by row computation of
+   * secondDerivative(), cubicSpline() and linear().
+   */
+  @Immutable
+  public static class Stencil {
+    private final int nx, ny; // regular grid
+    private final int[] rowStart; // index of the first input point of each row
+    private final Row[] rowStencils; // null when the input row already has nx points
+
+    private Stencil(int[] linePts, int nx, int ny, GribData.InterpolationMethod method) {
+      int max = getMax(linePts);
+      if (nx < 0) {
+        assert ny == linePts.length;
+        nx = max;
+      } else {
+        assert ny < 0;
+        assert nx == linePts.length;
+        ny = max;
+      }
+      this.nx = nx;
+      this.ny = ny;
+
+      this.rowStart = new int[ny];
+      this.rowStencils = new Row[ny];
+      int inputIdx = 0;
       for (int j = 0; j < ny; j++) { // LOOK - assumes varies by x
-        // int inrow; /* input row to use */
-        int npoints; /* number input points in current parrallel */
-
-        // inrow = j * (nrows - 1) / (nj - 1); /* set the row number */
-        // npoints = ix[inrow+1] - ix[inrow]; /* set number of input points */
-        npoints = linePts[j]; /* number of input points in this parellel */
-
-        // skip the processing if npoints = number of points in output parrallel
-        if (npoints == nx) {
-          for (int i = 0; i < nx; i++) {
-            data[outputIdx++] = quasi[inputIdx++];
-          }
-          continue;
-        }
-        // second_d = (float *)emalloc(npoints * sizeof(double));
-        second_d = new double[npoints];
-
-        /* calculate the second derivatives of the input row */
-        secondDerivative(
-            // &idat[ix[inrow]], /* input row */
-            quasi, /* input data */
-            inputIdx, /* current index position in input */
-            npoints, /* number of points in input row */
-            x1_der, /* first derivative of first element */
-            xn_der, /* first derivative of nth element */
-            second_d); /* output second derivative */
-
-        /* interpolate the output row */
-        for (int i = 0; i < nx; i++) {
-          double mapped_i; /* i mapped to input space */
-          mapped_i = (float) i / ((float) nx) * ((float) npoints);
-
-          /* map output point to input space */
-          cubicSpline( /* interpolate the value */
-              quasi, /* input data */
-              inputIdx, /* current index position in input */
-              second_d, /* calculated second derivatives */
-              mapped_i, /* element to be interpolated */
-              data, /* output data */
-              outputIdx++); /* where to put the interpolated value */
-        }
+        int npoints = linePts[j];
+        rowStart[j] = inputIdx;
+        if (npoints != nx)
+          rowStencils[j] = getRow(npoints, nx, method);
         inputIdx += npoints;
       }
+    }
 
-    } else if (interpolationMethod == GribData.InterpolationMethod.linear) { // =>
-      // USE_LINEAR
+    public int getNx() {
+      return nx;
+    }
 
-      for (int j = 0; j < ny; j++) { // LOOK - assumes varies by x
-        // int inrow; /* input row to use */
-        // inrow = j * (nrows - 1) / (nj - 1); /* set the row number */
-        // npoints = ix[inrow+1] - ix[inrow]; /* set number of input points */
-        int npoints = linePts[j]; /* number of input points in this parallel */
-
-        // skip the processing if npoints = number of points in output
-        // parallel
-        if (npoints == nx) {
-          for (int i = 0; i < nx; i++)
-            data[outputIdx++] = quasi[inputIdx++];
-          continue;
+    public int getNy() {
+      return ny;
+    }
+
+    /**
+     * Convert the data of one record.
+     *
+     * @param quasi input data
+     * @return regular grid
+     */
+    public float[] apply(float[] quasi) {
+      float[] data = new float[nx * ny];
+      IntConsumer convertRow = j -> {
+        Row row = rowStencils[j];
+        if (row == null)
+          System.arraycopy(quasi, rowStart[j], data, j * nx, nx);
+        else
+          row.apply(quasi, rowStart[j], data, j * nx);
+      };
+
+      if ((long) nx * ny < PARALLEL_THRESHOLD || ny < 2) {
+        for (int j = 0; j < ny; j++)
+          convertRow.accept(j);
+      } else {
+        IntStream.range(0, ny).parallel().forEach(convertRow);
+      }
+      return data;
+    }
+  }
+
+  private static Row getRow(int npoints, int nx, GribData.InterpolationMethod method) {
+    RowKey key = new RowKey(npoints, nx, method);
+    Row row = rows.getIfPresent(key);
+    if (row == null) {
+      row = new Row(npoints, nx, method);
+      rows.put(key, row);
+    }
+    return row;
+  }
+
+  /** Interpolates one input row of npoints to an output row of nx. */
+  @Immutable
+  private static class Row {
+    private final int npoints;
+    private final boolean cubic;
+    private final int[] low; // lower input point of each output point
+    private final double[] a, b; // weights of the lower and upper input points; b == 0 for an existing data point
+    private final double[] decomp, p; // data independent part of secondDerivative(), cubic only
+
+    Row(int npoints, int nx, GribData.InterpolationMethod method) {
+      this.npoints = npoints;
+      this.cubic = (method == GribData.InterpolationMethod.cubic);
+      if (cubic && npoints < 2)
+        throw new IllegalArgumentException("cubic interpolation needs at least 2 points in a line, has " + npoints);
+
+      low = new int[nx];
+      a = new double[nx];
+      b = new double[nx];
+      for (int i = 0; i < nx; i++) {
+        double mapped_i = (float) i / ((float) nx) * ((float) npoints); // i mapped to input space
+        int hi = (int) (java.lang.Math.ceil(mapped_i));
+        low[i] = (int) (java.lang.Math.floor(mapped_i));
+        a[i] = hi - mapped_i;
+        b[i] = mapped_i - low[i];
+      }
+
+      if (cubic) {
+        // natural boundaries, as convertQuasiGrid() uses
+        double sig = 0.5;
+        decomp = new double[npoints];
+        p = new double[npoints];
+        for (int i = 1; i < npoints - 1; i++) {
+          p[i] = sig * decomp[i - 1] + 2.0;
+          decomp[i] = (sig - 1.0) / p[i];
         }
+      } else {
+        decomp = null;
+        p = null;
+      }
+    }
+
+    int sizeBytes() {
+      return 20 * low.length + (cubic ? 16 * npoints : 0);
+    }
 
-        for (int i = 0; i < nx; i++) {
-          double mapped_i = (float) i / ((float) nx) * ((float) npoints); // i mapped to input space
+    void apply(float[] inpt, int iIdx, float[] outpt, int oIdx) {
+      double[] y2d = cubic ? secondDerivative(inpt, iIdx) : null;
 
-          // interpolate this point
-          linear(quasi, /* input data */
-              inputIdx, /* current index position in input */
-              mapped_i, /* element to be interpolated */
-              data, /* output data */
-              outputIdx++, /* where to put the interpolated value */
-              npoints);
+      for (int i = 0; i < low.length; i++) {
+        int lo = low[i];
+        if (b[i] == 0.0) { // existing data point
+          outpt[oIdx + i] = inpt[iIdx + lo];
+          continue;
+        }
+        int hi = lo + 1 > (npoints - 1) ? 0 : lo + 1;
+        double ai = a[i];
+        double bi = b[i];
+        if (cubic) {
+          outpt[oIdx + i] = (float) (ai * inpt[iIdx + lo] + bi * inpt[iIdx + hi]
+              + ((ai * ai * ai - ai) * y2d[lo] + (bi * bi * bi - bi) * y2d[hi]) / 6.0);
+        } else {
+          outpt[oIdx + i] = (float) (ai * inpt[iIdx + lo] + bi * inpt[iIdx + hi]);
         }
+      }
+    }
 
-        inputIdx += npoints;
+    // the data dependent part of secondDerivative(), with natural boundaries
+    private double[] secondDerivative(float[] inpt, int idx) {
+      int n = npoints;
+      double sig = 0.5;
+      double[] y2d = new double[n];
+      double[] scratch = new double[n - 1];
+
+      for (int i = 1; i < n - 1; i++) {
+        scratch[i] = (inpt[idx + i + 1] - inpt[idx + i]) - (inpt[idx + i] - inpt[idx + i - 1]);
+        scratch[i] = (6.0 * scratch[i] / 2.0 - sig * scratch[i - 1]) / p[i];
       }
 
-    } else {
-      throw new RuntimeException("unsupported interpolation method");
+      double qn = 0;
+      double un = 0;
+      y2d[n - 1] = (un - qn * scratch[n - 2]) / (qn * decomp[n - 2] + 1.0);
+
+      for (int i = n - 2; i >= 0; i--) { /* back substitution loop */
+        y2d[i] = decomp[i] * y2d[i + 1] + scratch[i];
+      }
+      return y2d;
+    }
+  }
+
+  @Immutable
+  private static class RowKey {
+    private final int npoints, nx;
+    private final GribData.InterpolationMethod method;
+
+    RowKey(int npoints, int nx, GribData.InterpolationMethod method) {
+      this.npoints = npoints;
+      this.nx = nx;
+      this.method = method;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof RowKey))
+        return false;
+      RowKey rowKey = (RowKey) o;
+      return npoints == rowKey.npoints && nx == rowKey.nx && method == rowKey.method;
     }
 
-    return data;
+    @Override
+    public int hashCode() {
+      return Objects.hash(npoints, nx, method);
+    }
+  }
+
+  @Immutable
+  private static class StencilKey {
+    private final int[] linePts;
+    private final int nx, ny;
+    private final GribData.InterpolationMethod method;
+    private final int hashCode;
+
+    StencilKey(int[] linePts, int nx, int ny, GribData.InterpolationMethod method) {
+      this.linePts = linePts.clone();
+      this.nx = nx;
+      this.ny = ny;
+      this.method = method;
+      this.hashCode = 31 * Objects.hash(nx, ny, method) + Arrays.hashCode(linePts);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof StencilKey))
+        return false;
+      StencilKey that = (StencilKey) o;
+      return nx == that.nx && ny == that.ny && method == that.method && Arrays.equals(linePts, that.linePts);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
   }
 
   public static int getMax(int[] vals) {
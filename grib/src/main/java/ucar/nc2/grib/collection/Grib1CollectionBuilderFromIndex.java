@@ -30,7 +30,7 @@ public class Grib1CollectionBuilderFromIndex extends GribCollectionBuilderFromIn
       org.slf4j.Logger logger) {
 
     Grib1CollectionBuilderFromIndex builder = new Grib1CollectionBuilderFromIndex(name, config, logger);
-    if (!builder.readIndex(raf))
+    if (!builder.readIndex(raf, GribCdmIndex.lazyIndexLoading))
       return null;
 
     if (builder.gc.getFiles().isEmpty()) {
@@ -25,7 +25,7 @@ class Grib1PartitionBuilderFromIndex extends Grib1CollectionBuilderFromIndex {
       org.slf4j.Logger logger) {
 
     Grib1PartitionBuilderFromIndex builder = new Grib1PartitionBuilderFromIndex(name, config, logger);
-    if (builder.readIndex(raf))
+    if (builder.readIndex(raf, GribCdmIndex.lazyIndexLoading))
       return new Grib1Partition(builder.pc);
 
     return null;
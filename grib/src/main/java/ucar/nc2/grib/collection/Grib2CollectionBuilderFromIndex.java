@@ -29,7 +29,7 @@ class Grib2CollectionBuilderFromIndex extends GribCollectionBuilderFromIndex {
       org.slf4j.Logger logger) {
 
     Grib2CollectionBuilderFromIndex builder = new Grib2CollectionBuilderFromIndex(name, config, logger);
-    if (!builder.readIndex(raf))
+    if (!builder.readIndex(raf, GribCdmIndex.lazyIndexLoading))
       return null;
 
     if (builder.gc.getFiles().isEmpty()) {
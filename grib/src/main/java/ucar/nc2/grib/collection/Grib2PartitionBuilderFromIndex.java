@@ -26,7 +26,7 @@ public class Grib2PartitionBuilderFromIndex extends Grib2CollectionBuilderFromIn
       org.slf4j.Logger logger) {
 
     Grib2PartitionBuilderFromIndex builder = new Grib2PartitionBuilderFromIndex(name, config, logger);
-    if (builder.readIndex(raf))
+    if (builder.readIndex(raf, GribCdmIndex.lazyIndexLoading))
       return new Grib2Partition(builder.pc);
 
     return null;
@@ -77,6 +77,20 @@ public class GribCdmIndex implements IndexReader {
     gribCollectionCache = cache;
   }
 
+  static boolean lazyIndexLoading;
+
+  /**
+   * Set whether opening a GribCollection from its ncx index reads only the top level information.
+   * Groups and variables are then read from the index when they are first used, so opening a partition
+   * to read one variable is proportional to that variable, not to the whole index.
+   * Only the offsets of the groups and variables in the index file are kept in memory until then.
+   *
+   * @param b true for lazy loading; default false
+   */
+  public static void setLazyIndexLoading(boolean b) {
+    lazyIndexLoading = b;
+  }
+
   // open GribCollectionImmutable from an existing index file. return null on failure
   static GribCollectionImmutable acquireGribCollection(FileFactory factory, Object hashKey, String location,
       int buffer_size, CancelTask cancelTask, Object spiObject) throws IOException {
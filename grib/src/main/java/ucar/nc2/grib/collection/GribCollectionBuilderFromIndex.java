@@ -63,6 +63,18 @@ abstract class GribCollectionBuilderFromIndex {
   protected abstract String getMagicStart();
 
   protected boolean readIndex(RandomAccessFile raf) {
+    return readIndex(raf, false);
+  }
+
+  /**
+   * Read the index.
+   *
+   * @param raf the open index file
+   * @param lazy if true, only read the groups and variables when they are first used. Only for a collection that is
+   *        made immutable; see GribCdmIndex.setLazyIndexLoading().
+   * @return true on success
+   */
+  protected boolean readIndex(RandomAccessFile raf, boolean lazy) {
 
     gc.setIndexRaf(raf);
     try {
@@ -101,6 +113,7 @@ abstract class GribCollectionBuilderFromIndex {
       }
       logger.debug("GribCollectionBuilderFromIndex proto len = {}", size);
 
+      long mPos = raf.getFilePointer();
       byte[] m = new byte[size];
       raf.readFully(m);
 
@@ -131,7 +144,10 @@ abstract class GribCollectionBuilderFromIndex {
        * }
        */
 
-      GribCollectionProto.GribCollection proto = GribCollectionProto.GribCollection.parseFrom(m);
+      // when lazy, decode everything except the datasets now
+      NcxIndexDirectory ncxDir = lazy ? new NcxIndexDirectory(m, raf.getLocation(), mPos) : null;
+      GribCollectionProto.GribCollection proto =
+          GribCollectionProto.GribCollection.parseFrom(ncxDir != null ? ncxDir.getHeader() : m);
 
       // need to read this first to get this.tables initialized
       gc.center = proto.getCenter();
@@ -169,9 +185,13 @@ abstract class GribCollectionBuilderFromIndex {
 
       gc.masterRuntime = (CoordinateRuntime) readCoord(proto.getMasterRuntime());
 
-      gc.datasets = new ArrayList<>(proto.getDatasetCount());
-      for (int i = 0; i < proto.getDatasetCount(); i++)
-        readDataset(proto.getDataset(i));
+      if (ncxDir != null) {
+        readDatasetsLazy(ncxDir);
+      } else {
+        gc.datasets = new ArrayList<>(proto.getDatasetCount());
+        for (int i = 0; i < proto.getDatasetCount(); i++)
+          readDataset(proto.getDataset(i));
+      }
 
       return readExtensions(proto);
 
@@ -229,9 +249,13 @@ abstract class GribCollectionBuilderFromIndex {
    * }
    */
   protected GribCollectionMutable.GroupGC readGroup(GribCollectionProto.Group p) {
+    return readGroup(p, readGds(p.getGds()));
+  }
+
+  private GribCollectionMutable.GroupGC readGroup(GribCollectionProto.Group p, GribHorizCoordSystem hcs) {
     GribCollectionMutable.GroupGC group = gc.makeGroup();
 
-    group.horizCoordSys = readGds(p.getGds());
+    group.horizCoordSys = hcs;
 
     // read coords before variables
     group.coords = new ArrayList<>();
@@ -304,6 +328,88 @@ abstract class GribCollectionBuilderFromIndex {
     return group;
   }
 
+  /*
+   * Only the Dataset types and the Gds of each Group are read here. The Gds are read in the same order as readGroup()
+   * would, so that the Group ids are the same.
+   */
+  private void readDatasetsLazy(NcxIndexDirectory ncxDir) throws IOException {
+    int nds = ncxDir.getDatasetCount();
+    GribHorizCoordSystem[][] hcs = new GribHorizCoordSystem[nds][];
+    gc.datasets = new ArrayList<>(nds);
+    for (int i = 0; i < nds; i++) {
+      GribCollectionProto.Dataset p = ncxDir.readDataset(i);
+      gc.makeDataset(GribCollectionImmutable.Type.valueOf(p.getType().toString()));
+      hcs[i] = new GribHorizCoordSystem[ncxDir.getGroupCount(i)];
+      for (int j = 0; j < hcs[i].length; j++)
+        hcs[i][j] = readGds(ncxDir.readGds(i, j));
+    }
+    gc.lazyIndex = new LazyIndexReader(ncxDir, hcs);
+  }
+
+  // reads groups and variables for GribCollectionImmutable, on first use
+  private class LazyIndexReader implements GribCollectionImmutable.LazyIndex {
+    private final NcxIndexDirectory ncxDir;
+    private final GribHorizCoordSystem[][] hcs;
+
+    LazyIndexReader(NcxIndexDirectory ncxDir, GribHorizCoordSystem[][] hcs) {
+      this.ncxDir = ncxDir;
+      this.hcs = hcs;
+    }
+
+    @Override
+    public int getGroupCount(int dsIndex) {
+      return hcs[dsIndex].length;
+    }
+
+    @Override
+    public GribHorizCoordSystem getHorizCoordSys(int dsIndex, int groupIndex) {
+      return hcs[dsIndex][groupIndex];
+    }
+
+    @Override
+    public synchronized GribCollectionMutable.GroupGC readGroup(int dsIndex, int groupIndex) {
+      try {
+        return GribCollectionBuilderFromIndex.this.readGroup(ncxDir.readGroup(dsIndex, groupIndex),
+            hcs[dsIndex][groupIndex]);
+      } catch (IOException e) {
+        throw new IllegalStateException("Error reading group " + groupIndex + " of index " + gc.indexFilename, e);
+      }
+    }
+
+    @Override
+    public int getVariableCount(int dsIndex, int groupIndex) {
+      return ncxDir.getVariableCount(dsIndex, groupIndex);
+    }
+
+    @Override
+    public synchronized GribCollectionMutable.VariableIndex readVariable(GribCollectionMutable.GroupGC group,
+        int dsIndex, int groupIndex, int varIndex) {
+      try {
+        GribCollectionMutable.VariableIndex vi =
+            GribCollectionBuilderFromIndex.this.readVariable(group, ncxDir.readVariable(dsIndex, groupIndex, varIndex));
+        group.variList.clear(); // readVariable() adds it, but the caller only needs it once
+        return vi;
+      } catch (IOException e) {
+        throw new IllegalStateException("Error reading variable " + varIndex + " of index " + gc.indexFilename, e);
+      }
+    }
+
+    @Override
+    public synchronized Object readVariableHash(GribCollectionMutable.GroupGC group, int dsIndex, int groupIndex,
+        int varIndex) {
+      try {
+        GribCollectionProto.Variable pv = ncxDir.readVariableId(dsIndex, groupIndex, varIndex);
+        int nids = pv.getIdsCount();
+        int center = (nids > 0) ? pv.getIds(0) : 0;
+        int subcenter = (nids > 1) ? pv.getIds(1) : 0;
+        return gc.makeVariableIndex(group, tables, pv.getDiscipline(), center, subcenter, pv.getPds().toByteArray(),
+            new ArrayList<>(), 0, 0).gribVariable;
+      } catch (IOException e) {
+        throw new IllegalStateException("Error reading variable " + varIndex + " of index " + gc.indexFilename, e);
+      }
+    }
+  }
+
   public void assignVertNames(List<CoordinateVert> vertCoords) {
     Map<String, Integer> map = new HashMap<>(2 * vertCoords.size());
 
@@ -47,11 +47,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.function.IntFunction;
 
 /**
  * An Immutable GribCollection, corresponds to one index (ncx) file.
  * The index file has already been read; it is opened and the closed when a variable is first accessed to read in the
- * record array (sa).
+ * record table.
  * <p>
  * Could use the Proto equivalents, and eliminate GribCollectionMutable ?
  *
@@ -116,8 +117,12 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     this.info = new Info(gc);
 
     List<Dataset> work = new ArrayList<>(gc.datasets.size());
-    for (GribCollectionMutable.Dataset gcDataset : gc.datasets) {
-      work.add(new Dataset(gcDataset.gctype, gcDataset.groups));
+    for (int i = 0; i < gc.datasets.size(); i++) {
+      GribCollectionMutable.Dataset gcDataset = gc.datasets.get(i);
+      if (gc.lazyIndex != null)
+        work.add(new Dataset(gcDataset.gctype, gc.lazyIndex, i));
+      else
+        work.add(new Dataset(gcDataset.gctype, gcDataset.groups));
     }
     this.datasets = Collections.unmodifiableList(work);
 
@@ -249,6 +254,63 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
 
   protected abstract String makeVariableId(VariableIndex v);
 
+  /**
+   * Reads the groups and variables from the index when they are first used, instead of when the collection is opened.
+   * Groups are numbered by dataset and group index, variables by their index in the group.
+   *
+   * @see GribCdmIndex#setLazyIndexLoading(boolean)
+   */
+  interface LazyIndex {
+    int getGroupCount(int dsIndex);
+
+    // read when the collection is opened
+    GribHorizCoordSystem getHorizCoordSys(int dsIndex, int groupIndex);
+
+    // the group's variables are not read
+    GribCollectionMutable.GroupGC readGroup(int dsIndex, int groupIndex);
+
+    int getVariableCount(int dsIndex, int groupIndex);
+
+    GribCollectionMutable.VariableIndex readVariable(GribCollectionMutable.GroupGC group, int dsIndex, int groupIndex,
+        int varIndex);
+
+    // the VariableIndex.gribVariable, made without reading the rest of the variable
+    Object readVariableHash(GribCollectionMutable.GroupGC group, int dsIndex, int groupIndex, int varIndex);
+  }
+
+  // fixed size List whose elements are made on first access
+  private static class LazyList<T> extends AbstractList<T> implements RandomAccess {
+    private final Object[] elems;
+    private final IntFunction<T> reader;
+
+    LazyList(int size, IntFunction<T> reader) {
+      this.elems = new Object[size];
+      this.reader = reader;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized T get(int index) {
+      if (elems[index] == null)
+        elems[index] = reader.apply(index);
+      return (T) elems[index];
+    }
+
+    @Override
+    public int size() {
+      return elems.length;
+    }
+
+    // index of this object, if it has been made, else -1; does not make any elements
+    synchronized int indexOfMade(Object o) {
+      for (int i = 0; i < elems.length; i++) {
+        if (elems[i] == o)
+          return i;
+      }
+      return -1;
+    }
+  }
+
   static class Info {
     final int version; // the ncx version
     final int center, subcenter, master, local; // GRIB 1 uses "local" for table version
@@ -289,9 +351,13 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
   public class Dataset {
     final Type gctype;
     final List<GroupGC> groups; // must be kept in order, because PartitionForVariable2D has index into it
+    private final LazyIndex lazyIndex; // null unless the groups are lazy
+    private final int dsIndex;
 
     public Dataset(Type gctype, List<GribCollectionMutable.GroupGC> groups) {
       this.gctype = gctype;
+      this.lazyIndex = null;
+      this.dsIndex = -1;
       List<GroupGC> work = new ArrayList<>(groups.size());
       for (GribCollectionMutable.GroupGC gcGroup : groups) {
         work.add(new GroupGC(this, gcGroup));
@@ -299,6 +365,14 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
       this.groups = Collections.unmodifiableList(work);
     }
 
+    Dataset(Type gctype, LazyIndex lazyIndex, int dsIndex) {
+      this.gctype = gctype;
+      this.lazyIndex = lazyIndex;
+      this.dsIndex = dsIndex;
+      this.groups = Collections.unmodifiableList(new LazyList<>(lazyIndex.getGroupCount(dsIndex),
+          groupIndex -> new GroupGC(this, lazyIndex, dsIndex, groupIndex)));
+    }
+
     public Iterable<GroupGC> getGroups() {
       return groups;
     }
@@ -317,12 +391,26 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
 
     @Nullable
     public GroupGC findGroupById(String id) {
-      for (GroupGC g : getGroups()) {
-        if (g.getId().equals(id))
-          return g;
+      for (int i = 0; i < groups.size(); i++) {
+        if (getHorizCoordSys(i).getId().equals(id))
+          return groups.get(i);
+      }
+      return null;
+    }
+
+    @Nullable
+    GroupGC findGroupByGdsHash(Object gdsHash) {
+      for (int i = 0; i < groups.size(); i++) {
+        if (getHorizCoordSys(i).getGdsHash().equals(gdsHash))
+          return groups.get(i);
       }
       return null;
     }
+
+    // does not read a lazy group
+    private GribHorizCoordSystem getHorizCoordSys(int groupIndex) {
+      return lazyIndex != null ? lazyIndex.getHorizCoordSys(dsIndex, groupIndex) : groups.get(groupIndex).horizCoordSys;
+    }
   }
 
   @Immutable
@@ -332,7 +420,10 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     final List<VariableIndex> variList;
     final List<Coordinate> coords; // shared coordinates
     final int[] filenose; // key for GC.fileMap
-    private final Map<VariableIndex, VariableIndex> varMap;
+    private final Map<VariableIndex, VariableIndex> varMap; // null when the variables are lazy
+    private final LazyList<VariableIndex> lazyVariables; // null unless the variables are lazy
+    private final IntFunction<Object> varHashReader;
+    private Object[] varHashes; // the gribVariable of each lazy variable, made on first use
 
     public GroupGC(Dataset ds, GribCollectionMutable.GroupGC gc) {
       this.ds = ds;
@@ -340,6 +431,8 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
       this.coords = gc.coords;
       this.filenose = gc.filenose;
       this.varMap = new HashMap<>(gc.variList.size() * 2);
+      this.lazyVariables = null;
+      this.varHashReader = null;
 
       List<GribCollectionMutable.VariableIndex> gcVars = gc.variList;
       List<VariableIndex> work = new ArrayList<>(gcVars.size());
@@ -351,6 +444,19 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
       this.variList = Collections.unmodifiableList(work);
     }
 
+    GroupGC(Dataset ds, LazyIndex lazyIndex, int dsIndex, int groupIndex) {
+      GribCollectionMutable.GroupGC gc = lazyIndex.readGroup(dsIndex, groupIndex);
+      this.ds = ds;
+      this.horizCoordSys = gc.horizCoordSys;
+      this.coords = gc.coords;
+      this.filenose = gc.filenose;
+      this.lazyVariables = new LazyList<>(lazyIndex.getVariableCount(dsIndex, groupIndex),
+          varIndex -> makeVariableIndex(this, lazyIndex.readVariable(gc, dsIndex, groupIndex, varIndex)));
+      this.variList = Collections.unmodifiableList(lazyVariables);
+      this.varMap = null;
+      this.varHashReader = varIndex -> lazyIndex.readVariableHash(gc, dsIndex, groupIndex, varIndex);
+    }
+
     public Type getType() {
       return ds.gctype;
     }
@@ -381,7 +487,39 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     }
 
     VariableIndex findVariableByHash(VariableIndex vi) {
-      return varMap.get(vi);
+      if (varMap != null)
+        return varMap.get(vi);
+
+      // Lazy: only read the variable that is found. A Best group is a copy of the TwoD group, with the variables in
+      // the same order, so try the variable at the same index first.
+      int hint = vi.group.indexOfVariable(vi);
+      if (hint >= 0 && hint < variList.size()) {
+        VariableIndex v = variList.get(hint);
+        if (v.equals(vi))
+          return v;
+      }
+      // else find it by its gribVariable, which is read without the rest of each variable
+      for (int i = 0; i < variList.size(); i++) {
+        if (getVariableHash(i).equals(vi.gribVariable)) {
+          VariableIndex v = variList.get(i);
+          if (v.equals(vi))
+            return v;
+        }
+      }
+      return null;
+    }
+
+    // does not read a lazy variable
+    private int indexOfVariable(VariableIndex vi) {
+      return lazyVariables != null ? lazyVariables.indexOfMade(vi) : variList.indexOf(vi);
+    }
+
+    private synchronized Object getVariableHash(int varIndex) {
+      if (varHashes == null)
+        varHashes = new Object[variList.size()];
+      if (varHashes[varIndex] == null)
+        varHashes[varIndex] = varHashReader.apply(varIndex);
+      return varHashes[varIndex];
     }
 
     public Optional<Coordinate> findCoordinate(String name) {
@@ -447,7 +585,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     }
   }
 
-  @Immutable // except for sa
+  @Immutable // except for records
   public class VariableIndex {
     final GroupGC group; // belongs to this group
     final VariableIndex.Info info;
@@ -461,7 +599,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     final int ndups, nrecords, nmissing;
 
     // read in on demand
-    private SparseArray<Record> sa; // for GC only; lazily read; same array shape as variable, minus x and y
+    private RecordTable records; // for GC only; lazily read; same array shape as variable, minus x and y
 
     protected VariableIndex(GroupGC g, GribCollectionMutable.VariableIndex gcVar) {
       this.group = g;
@@ -478,7 +616,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     }
 
     public synchronized void readRecords() throws IOException {
-      if (this.sa != null)
+      if (this.records != null)
         return;
 
       if (recordsLen == 0)
@@ -499,25 +637,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
          * }
          */
         GribCollectionProto.SparseArray proto = GribCollectionProto.SparseArray.parseFrom(b);
-
-        int nsizes = proto.getSizeCount();
-        int[] size = new int[nsizes];
-        for (int i = 0; i < nsizes; i++)
-          size[i] = proto.getSize(i);
-
-        int ntrack = proto.getTrackCount();
-        int[] track = new int[ntrack];
-        for (int i = 0; i < ntrack; i++)
-          track[i] = proto.getTrack(i);
-
-        int n = proto.getRecordsCount();
-        List<Record> records = new ArrayList<>(n);
-        for (int i = 0; i < n; i++) {
-          GribCollectionProto.Record pr = proto.getRecords(i);
-          records.add(new Record(pr.getFileno(), pr.getStartPos(), pr.getBmsOffset(), pr.getDrsOffset()));
-        }
-        int ndups = proto.getNdups();
-        this.sa = new SparseArray<>(size, track, records, ndups);
+        this.records = RecordTable.fromProto(proto);
 
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
         logger.error(" file={} recordsLen={} recordPos={}", indexFilename, recordsLen, recordsPos);
@@ -525,18 +645,18 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
       }
     }
 
-    synchronized Record getRecordAt(int sourceIndex) {
-      return sa.getContent(sourceIndex);
+    // returns the record number in getRecordTable(), or -1 if missing
+    synchronized int getRecordIndexAt(int sourceIndex) {
+      return records.getRecordIndex(sourceIndex);
     }
 
-    synchronized Record getRecordAt(int[] sourceIndex) {
-      return sa.getContent(sourceIndex);
+    synchronized int getRecordIndexAt(int[] sourceIndex) {
+      return records.getRecordIndex(sourceIndex);
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // coord based record finding. note only one record at a time
-    @Nullable
-    synchronized Record getRecordAt(SubsetParams coords) {
+    synchronized int getRecordIndexAt(SubsetParams coords) {
       int[] want = new int[getRank()];
       int count = 0;
       int runIdx = -1;
@@ -608,12 +728,12 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
 
         if (idx < 0) {
           logger.debug("Cant find index for value in axis {} in variable {}", coord.getName(), name);
-          return null;
+          return -1;
         }
 
         want[count++] = idx;
       }
-      return sa.getContent(want);
+      return records.getRecordIndex(want);
     }
 
     public List<Coordinate> getCoordinates() {
@@ -649,12 +769,19 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
       return coordIndex;
     }
 
-    public SparseArray<Record> getSparseArray() {
-      return sa;
+    /** The records, after readRecords() has been called, else null */
+    public synchronized RecordTable getRecordTable() {
+      return records;
+    }
+
+    /** Makes a SparseArray of Record objects from the RecordTable; for display only, use getRecordTable() */
+    @Nullable
+    public synchronized SparseArray<Record> getSparseArray() {
+      return records == null ? null : records.toSparseArray();
     }
 
-    public int getNRecords() {
-      return sa == null ? -1 : sa.countNotMissing();
+    public synchronized int getNRecords() {
+      return records == null ? -1 : records.countNotMissing();
     }
 
     public int getTableVersion() {
@@ -80,6 +80,7 @@ public class GribCollectionMutable implements Closeable {
   protected Map<Integer, MFile> fileMap; // all the files used in the GC; key is the index in original collection, GC
                                          // has subset of them
   protected List<Dataset> datasets;
+  GribCollectionImmutable.LazyIndex lazyIndex; // if set, datasets have no groups; they are read when first used
   protected CoordinateRuntime masterRuntime;
   protected GribTables cust;
   protected int indexVersion;
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import com.google.common.cache.CacheStats;
+import ucar.nc2.util.cache.ByteBoundedCache;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.Formatter;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A memory cache of decoded GRIB records, shared by all collections, bounded by the total bytes held.
+ * The data is kept as returned by Grib1Record/Grib2Record.readData(), so with the bitmap and scan mode already
+ * applied. Services that read the same records for many different subsets then decode each record only once.
+ * A GRIB2 message may hold several records, so a record is identified by its data and bitmap sections, not only by
+ * the start of its message.
+ * Turn on with GribDataReader.setDataCache().
+ * <p>
+ * The data files are assumed not to be rewritten in place; call clearCache() if they are.
+ */
+@ThreadSafe
+public class GribDataCache {
+  private final ByteBoundedCache<Key, float[]> cache;
+  private final AtomicLong recordsDecoded = new AtomicLong();
+  private final AtomicLong bytesDecoded = new AtomicLong();
+  private final AtomicLong nanosDecoding = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param maxBytes maximum number of decoded bytes to keep. Records larger than this are not kept.
+   */
+  public GribDataCache(long maxBytes) {
+    this.cache = new ByteBoundedCache<>("GribDataCache", maxBytes, data -> 4L * data.length);
+  }
+
+  /**
+   * Get the decoded record, calling the reader and keeping the result if its not already in the cache.
+   * The returned array may be shared, and must not be modified.
+   */
+  <E extends Exception> float[] get(Key key, ByteBoundedCache.Loader<float[], E> reader) throws IOException, E {
+    return cache.get(key, () -> {
+      long start = System.nanoTime();
+      float[] decoded = reader.load();
+      nanosDecoding.addAndGet(System.nanoTime() - start);
+      recordsDecoded.incrementAndGet();
+      bytesDecoded.addAndGet(4L * decoded.length);
+      return decoded;
+    });
+  }
+
+  /**
+   * Get the decoded record if its in the cache.
+   *
+   * @return the data, which may be shared, and must not be modified; or null if not in the cache
+   */
+  @Nullable
+  float[] getIfPresent(Key key) {
+    return cache.getIfPresent(key);
+  }
+
+  public long getMaxBytes() {
+    return cache.getMaxBytes();
+  }
+
+  /** @return number of decoded bytes now held */
+  public long getBytes() {
+    return cache.getBytes();
+  }
+
+  /** @return total number of records decoded into this cache */
+  public long getRecordsDecoded() {
+    return recordsDecoded.get();
+  }
+
+  /** @return total bytes decoded into this cache */
+  public long getBytesDecoded() {
+    return bytesDecoded.get();
+  }
+
+  /** @return total time spent reading and decoding records, in nanoseconds */
+  public long getNanosDecoding() {
+    return nanosDecoding.get();
+  }
+
+  /** @return hit and miss counts, etc */
+  public CacheStats getStats() {
+    return cache.getStats();
+  }
+
+  public void clearCache() {
+    cache.clearCache();
+  }
+
+  public void showStats(Formatter f) {
+    cache.showStats(f);
+    long ndecoded = recordsDecoded.get();
+    f.format("  decoded=%d records %d bytes avg %.3f msecs%n", ndecoded, bytesDecoded.get(), (ndecoded == 0) ? 0.0 : nanosDecoding.get() / 1.0e6 / ndecoded);
+  }
+
+  /** Identifies one record in one data file: the message start, and the data and bitmap sections within it. */
+  @Immutable
+  static class Key {
+    private final String location;
+    private final long pos;
+    private final int drsOffset;
+    private final int bmsOffset;
+    private final int hashCode;
+
+    Key(String location, long pos, int drsOffset, int bmsOffset) {
+      this.location = location;
+      this.pos = pos;
+      this.drsOffset = drsOffset;
+      this.bmsOffset = bmsOffset;
+      this.hashCode = Objects.hash(location, pos, drsOffset, bmsOffset);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof Key))
+        return false;
+      Key key = (Key) o;
+      return pos == key.pos && drsOffset == key.drsOffset && bmsOffset == key.bmsOffset
+          && location.equals(key.location);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public String toString() {
+      return location + "#" + pos + "+" + drsOffset + "," + bmsOffset;
+    }
+  }
+}
@@ -6,6 +6,7 @@
 package ucar.nc2.grib.collection;
 
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import javax.annotation.Nonnull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,12 +23,23 @@ import ucar.nc2.grib.grib1.Grib1SectionProductDefinition;
 import ucar.nc2.grib.grib1.tables.Grib1Customizer;
 import ucar.nc2.grib.grib2.Grib2Record;
 import ucar.nc2.grib.grib2.Grib2RecordScanner;
+import ucar.nc2.grib.grib2.Grib2SectionIndicator;
 import ucar.nc2.grib.grib2.table.Grib2Tables;
 import ucar.nc2.util.Misc;
+import ucar.unidata.io.BufferPool;
+import ucar.unidata.io.InMemoryRandomAccessFile;
 import ucar.unidata.io.RandomAccessFile;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Grib Data Reader.
@@ -49,7 +61,17 @@ public abstract class GribDataReader {
       return new Grib2DataReader(gribCollection, vindex);
   }
 
-  protected abstract float[] readData(RandomAccessFile rafData, DataRecord dr) throws IOException;
+  /**
+   * Read and decode one record.
+   *
+   * @param rafData from this file
+   * @param pos the record's message starts here; usually dr.pos
+   * @param dr the record
+   */
+  protected abstract float[] readData(RandomAccessFile rafData, long pos, DataRecord dr) throws IOException;
+
+  /** @return length of the message starting at pos, or -1 if not known */
+  protected abstract long getMessageLength(RandomAccessFile rafData, long pos) throws IOException;
 
   protected abstract void show(RandomAccessFile rafData, long dataPos) throws IOException;
 
@@ -59,6 +81,57 @@ public abstract class GribDataReader {
   public static String currentDataRafFilename;
   private static final boolean show = false; // debug
 
+  private static GribDataCache dataCache; // default is not to use
+
+  /**
+   * Set a cache of decoded records, shared by all GribDataReaders.
+   *
+   * @param cache use this cache, or null to not use a cache.
+   */
+  public static void setDataCache(GribDataCache cache) {
+    dataCache = cache;
+  }
+
+  public static GribDataCache getDataCache() {
+    return dataCache;
+  }
+
+  // default is to decode in the calling thread
+  private static volatile DecodePool decodePool = new DecodePool(null, 1);
+
+  /**
+   * Decode the records of each read in parallel, with a pool of threads shared by all GribDataReaders.
+   * The messages are still read sequentially, then decoded from memory. GRIB-2 only.
+   * Reads already in progress finish with the pool they started with.
+   *
+   * @param nthreads number of decoding threads; if <= 1, decode in the calling thread.
+   */
+  public static synchronized void setDecodeThreads(int nthreads) {
+    DecodePool old = decodePool;
+    int n = Math.max(nthreads, 1);
+    decodePool = new DecodePool((n > 1) ? Executors.newFixedThreadPool(n,
+        new ThreadFactoryBuilder().setNameFormat("GribDataReader-%d").setDaemon(true).build()) : null, n);
+    // already submitted tasks still run; later submits are rejected, and RecordDecoder then decodes in the caller
+    if (old.executor != null)
+      old.executor.shutdown();
+  }
+
+  public static int getDecodeThreads() {
+    return decodePool.nthreads;
+  }
+
+  // the executor and its number of threads, always read together
+  @Immutable
+  private static class DecodePool {
+    final ExecutorService executor;
+    final int nthreads;
+
+    DecodePool(ExecutorService executor, int nthreads) {
+      this.executor = executor;
+      this.nthreads = nthreads;
+    }
+  }
+
   protected final GribCollectionImmutable gribCollection;
   private final GribCollectionImmutable.VariableIndex vindex;
   private final List<DataRecord> records = new ArrayList<>();
@@ -102,12 +175,12 @@ public abstract class GribDataReader {
     int resultIndex = 0;
     for (int sourceIndex : sectionWanted) {
       // addRecord(sourceIndex, count++);
-      GribCollectionImmutable.Record record = vindex.getRecordAt(sourceIndex);
+      int recno = vindex.getRecordIndexAt(sourceIndex);
       if (Grib.debugRead)
         logger.debug("GribIosp debugRead sourceIndex={} resultIndex={} record is null={}", sourceIndex, resultIndex,
-            record == null);
-      if (record != null)
-        records.add(new DataRecord(resultIndex, record, vindex.group.getGdsHorizCoordSys()));
+            recno < 0);
+      if (recno >= 0)
+        records.add(new DataRecord(resultIndex, vindex.getRecordTable(), recno, vindex.group.getGdsHorizCoordSys()));
       resultIndex++;
     }
 
@@ -190,9 +263,9 @@ public abstract class GribDataReader {
     // collect all the records that need to be read
     int resultIndex = 0;
     for (SubsetParams coords : want) {
-      GribCollectionImmutable.Record record = vindex.getRecordAt(coords);
-      if (record != null) {
-        DataRecord dr = new DataRecord(resultIndex, record, vindex.group.getGdsHorizCoordSys());
+      int recno = vindex.getRecordIndexAt(coords);
+      if (recno >= 0) {
+        DataRecord dr = new DataRecord(resultIndex, vindex.getRecordTable(), recno, vindex.group.getGdsHorizCoordSys());
         if (GribDataReader.validator != null)
           dr.validation = coords;
         records.add(dr);
@@ -239,48 +312,168 @@ public abstract class GribDataReader {
 
     int currFile = -1;
     RandomAccessFile rafData = null;
+    RecordDecoder decoder = new RecordDecoder(dataReceiver);
     try {
       for (DataRecord dr : records) {
         if (Grib.debugIndexOnly || Grib.debugGbxIndexOnly) {
           GribIosp.debugIndexOnlyCount++;
-          currentDataRecord = dr.record;
-          currentDataRafFilename = gribCollection.getDataRafFilename(dr.record.fileno);
+          currentDataRecord = new GribCollectionImmutable.Record(dr.fileno, dr.pos, dr.bmsOffset, dr.drsOffset);
+          currentDataRafFilename = gribCollection.getDataRafFilename(dr.fileno);
           if (Grib.debugIndexOnlyShow)
             dr.show(gribCollection);
           dataReceiver.setDataToZero();
           continue;
         }
 
-        if (dr.record.fileno != currFile) {
+        if (dr.fileno != currFile) {
           if (rafData != null)
             rafData.close();
-          rafData = gribCollection.getDataRaf(dr.record.fileno);
-          currFile = dr.record.fileno;
+          rafData = gribCollection.getDataRaf(dr.fileno);
+          currFile = dr.fileno;
         }
 
-        if (dr.record.pos == GribCollectionMutable.MISSING_RECORD)
+        if (dr.pos == GribCollectionMutable.MISSING_RECORD)
           continue;
 
         if (GribDataReader.validator != null && dr.validation != null && rafData != null) {
-          GribDataReader.validator.validate(gribCollection.cust, rafData, dr.record.pos + dr.record.drsOffset,
+          GribDataReader.validator.validate(gribCollection.cust, rafData, dr.pos + dr.drsOffset,
               dr.validation);
 
         } else if (show && rafData != null) { // for validation
           show(dr.validation);
-          show(rafData, dr.record.pos + dr.record.drsOffset);
+          show(rafData, dr.pos + dr.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
         GdsHorizCoordSys hcs = vindex.group.getGdsHorizCoordSys();
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        decoder.add(rafData, dr, hcs.nx);
       }
+      decoder.finish();
 
     } finally {
+      decoder.cancel();
       if (rafData != null)
         rafData.close(); // make sure its closed even on exception
     }
   }
 
+  // the returned data may be shared with the cache, and must not be modified
+  private float[] readCachedData(RandomAccessFile rafData, DataRecord dr) throws IOException {
+    GribDataCache cache = dataCache;
+    if (cache == null)
+      return readData(rafData, dr.pos, dr);
+    return cache.get(cacheKey(rafData, dr), () -> readData(rafData, dr.pos, dr));
+  }
+
+  private static GribDataCache.Key cacheKey(RandomAccessFile rafData, DataRecord dr) {
+    return new GribDataCache.Key(rafData.getLocation(), dr.pos, dr.drsOffset, dr.bmsOffset);
+  }
+
+  // read the whole message into a pooled buffer, or null if its length is not known. close() to return the buffer.
+  @Nullable
+  private RandomAccessFile readMessage(RandomAccessFile rafData, long pos) throws IOException {
+    long len = getMessageLength(rafData, pos);
+    if (len <= 0 || len > Integer.MAX_VALUE)
+      return null;
+    byte[] message = BufferPool.acquire((int) len);
+    rafData.seek(pos);
+    rafData.readFully(message, 0, (int) len);
+    return InMemoryRandomAccessFile.wrapPooled(rafData.getLocation(), message, (int) len);
+  }
+
+  /**
+   * Decodes the records and sends them to the receiver.
+   * If there is a decode executor, the messages are read in the calling thread, and decoded from memory in the
+   * executor, with a bounded number waiting to be sent to the receiver. If the executor has been shut down by
+   * setDecodeThreads(), the rest of the messages are decoded in the calling thread.
+   */
+  private class RecordDecoder {
+    private final DataReceiverIF receiver;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final Deque<Pending> pending = new ArrayDeque<>();
+
+    RecordDecoder(DataReceiverIF receiver) {
+      this.receiver = receiver;
+      DecodePool pool = decodePool;
+      this.executor = pool.executor;
+      this.maxPending = 2 * pool.nthreads;
+    }
+
+    void add(RandomAccessFile rafData, DataRecord dr, int nx) throws IOException {
+      RandomAccessFile message = null;
+      GribDataCache cache = dataCache;
+      GribDataCache.Key key = (cache == null) ? null : cacheKey(rafData, dr);
+      float[] cached = (cache == null) ? null : cache.getIfPresent(key);
+      if (executor != null && cached == null)
+        message = readMessage(rafData, dr.pos);
+      if (message == null) {
+        receiver.addData((cached != null) ? cached : readCachedData(rafData, dr), dr.resultIndex, nx);
+        return;
+      }
+
+      RandomAccessFile messageRaf = message;
+      Callable<float[]> task = () -> {
+        try (RandomAccessFile raf = messageRaf) {
+          if (cache == null)
+            return readData(raf, 0, dr);
+          return cache.get(key, () -> readData(raf, 0, dr));
+        }
+      };
+
+      while (pending.size() >= maxPending)
+        send(pending.removeFirst());
+      Future<float[]> future;
+      try {
+        future = executor.submit(task);
+      } catch (RejectedExecutionException e) {
+        FutureTask<float[]> inline = new FutureTask<>(task);
+        inline.run();
+        future = inline;
+      }
+      pending.addLast(new Pending(future, dr.resultIndex, nx));
+    }
+
+    void finish() throws IOException {
+      while (!pending.isEmpty())
+        send(pending.removeFirst());
+    }
+
+    // if finish() was not reached
+    void cancel() {
+      for (Pending p : pending)
+        p.future.cancel(true);
+      pending.clear();
+    }
+
+    private void send(Pending p) throws IOException {
+      float[] data;
+      try {
+        data = p.future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException)
+          throw (IOException) cause;
+        throw new IOException(cause);
+      }
+      receiver.addData(data, p.resultIndex, p.nx);
+    }
+  }
+
+  private static class Pending {
+    final Future<float[]> future;
+    final int resultIndex;
+    final int nx;
+
+    Pending(Future<float[]> future, int resultIndex, int nx) {
+      this.future = future;
+      this.resultIndex = resultIndex;
+      this.nx = nx;
+    }
+  }
+
   private void show(SubsetParams validation) {
     if (validation == null)
       return;
@@ -292,6 +485,7 @@ public abstract class GribDataReader {
 
     PartitionCollectionImmutable.DataRecord lastRecord = null;
     RandomAccessFile rafData = null;
+    RecordDecoder decoder = new RecordDecoder(dataReceiver);
     try {
 
       for (DataRecord dr : records) {
@@ -307,27 +501,28 @@ public abstract class GribDataReader {
         if ((rafData == null) || !drp.usesSameFile(lastRecord)) {
           if (rafData != null)
             rafData.close();
-          rafData = drp.usePartition.getRaf(drp.partno, dr.record.fileno);
+          rafData = drp.usePartition.getRaf(drp.partno, dr.fileno);
         }
         lastRecord = drp;
 
-        if (dr.record.pos == GribCollectionMutable.MISSING_RECORD)
+        if (dr.pos == GribCollectionMutable.MISSING_RECORD)
           continue;
 
         if (GribDataReader.validator != null && dr.validation != null) {
-          GribDataReader.validator.validate(gribCollection.cust, rafData, dr.record.pos + dr.record.drsOffset,
+          GribDataReader.validator.validate(gribCollection.cust, rafData, dr.pos + dr.drsOffset,
               dr.validation);
         } else if (show) { // for validation
           show(dr.validation);
-          show(rafData, dr.record.pos + dr.record.drsOffset);
+          show(rafData, dr.pos + dr.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
         GdsHorizCoordSys hcs = dr.hcs;
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        decoder.add(rafData, dr, hcs.nx);
       }
+      decoder.finish();
 
     } finally {
+      decoder.cancel();
       if (rafData != null)
         rafData.close(); // make sure its closed even on exception
     }
@@ -335,28 +530,34 @@ public abstract class GribDataReader {
 
   public static class DataRecord implements Comparable<DataRecord> {
     int resultIndex; // index into the result array
-    final GribCollectionImmutable.Record record;
+    final int fileno; // copied from the RecordTable, so no Record object is needed
+    final long pos;
+    final int bmsOffset;
+    final int drsOffset;
     final GdsHorizCoordSys hcs;
     SubsetParams validation;
 
-    DataRecord(int resultIndex, GribCollectionImmutable.Record record, GdsHorizCoordSys hcs) {
+    DataRecord(int resultIndex, RecordTable table, int recno, GdsHorizCoordSys hcs) {
       this.resultIndex = resultIndex;
-      this.record = record;
+      this.fileno = table.getFileno(recno);
+      this.pos = table.getPos(recno);
+      this.bmsOffset = table.getBmsOffset(recno);
+      this.drsOffset = table.getDrsOffset(recno);
       this.hcs = hcs;
     }
 
     @Override
     public int compareTo(@Nonnull DataRecord o) {
-      int r = Misc.compare(record.fileno, o.record.fileno);
+      int r = Misc.compare(fileno, o.fileno);
       if (r != 0)
         return r;
-      return Misc.compare(record.pos, o.record.pos);
+      return Misc.compare(pos, o.pos);
     }
 
     // debugging
     public void show(GribCollectionImmutable gribCollection) {
-      String dataFilename = gribCollection.getFilename(record.fileno);
-      System.out.printf(" fileno=%d filename=%s startPos=%d%n", record.fileno, dataFilename, record.pos);
+      String dataFilename = gribCollection.getFilename(fileno);
+      System.out.printf(" fileno=%d filename=%s startPos=%d%n", fileno, dataFilename, pos);
     }
   }
 
@@ -467,14 +668,20 @@ public abstract class GribDataReader {
     }
 
     @Override
-    protected float[] readData(RandomAccessFile rafData, GribDataReader.DataRecord dr) throws IOException {
+    protected float[] readData(RandomAccessFile rafData, long pos, GribDataReader.DataRecord dr) throws IOException {
       GdsHorizCoordSys hcs = dr.hcs;
-      long dataPos = dr.record.pos + dr.record.drsOffset;
-      long bmsPos = (dr.record.bmsOffset > 0) ? dr.record.pos + dr.record.bmsOffset : 0;
+      long dataPos = pos + dr.drsOffset;
+      long bmsPos = (dr.bmsOffset > 0) ? pos + dr.bmsOffset : 0;
       return Grib2Record.readData(rafData, dataPos, bmsPos, hcs.gdsNumberPoints, hcs.getScanMode(), hcs.nxRaw,
           hcs.nyRaw, hcs.nptsInLine);
     }
 
+    @Override
+    protected long getMessageLength(RandomAccessFile rafData, long pos) throws IOException {
+      rafData.seek(pos);
+      return new Grib2SectionIndicator(rafData).getMessageLength();
+    }
+
     @Override
     protected void show(RandomAccessFile rafData, long pos) throws IOException {
       Grib2Record gr = Grib2RecordScanner.findRecordByDrspos(rafData, pos);
@@ -503,8 +710,13 @@ public abstract class GribDataReader {
     }
 
     @Override
-    protected float[] readData(RandomAccessFile rafData, DataRecord dr) throws IOException {
-      return Grib1Record.readData(rafData, dr.record.pos);
+    protected float[] readData(RandomAccessFile rafData, long pos, DataRecord dr) throws IOException {
+      return Grib1Record.readData(rafData, pos);
+    }
+
+    @Override
+    protected long getMessageLength(RandomAccessFile rafData, long pos) {
+      return -1; // not needed, since only GRIB-2 is decoded in parallel
     }
 
     @Override
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.collection;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import ucar.unidata.io.RandomAccessFile;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A directory of where each Dataset, Group and Variable message is in the GribCollection message of an ncx4 index.
+ * Made by scanning the protobuf wire format, which skips over the length-delimited messages without decoding them.
+ * The pieces are then read back from the index file and decoded one at a time, when they are needed,
+ * so the GribCollection message is not kept in memory.
+ * Works on any ncx4 file, there is no change to the index layout.
+ *
+ * @see GribCdmIndex#setLazyIndexLoading(boolean)
+ */
+class NcxIndexDirectory {
+  // field numbers in gribCollection4.proto
+  private static final int GC_DATASET = 4;
+  private static final int DATASET_GROUPS = 2;
+  private static final int GROUP_GDS = 1;
+  private static final int GROUP_VARIABLES = 2;
+  private static final int VARIABLE_IDS = 3; // discipline, pds, ids are fields 1-3
+
+  private final String location; // the index file
+  private final long filePos; // where the GribCollection message starts in the index file
+  private final byte[] header; // the GribCollection message without the datasets
+  private final List<DatasetEntry> datasets = new ArrayList<>();
+
+  /**
+   * Constructor.
+   *
+   * @param buff the GribCollection message, only used during construction
+   * @param location the index file
+   * @param filePos where the message starts in the index file
+   */
+  NcxIndexDirectory(byte[] buff, String location, long filePos) throws IOException {
+    this.location = location;
+    this.filePos = filePos;
+    List<Field> fields = scan(buff, 0, buff.length);
+    this.header = copyExcept(buff, fields, GC_DATASET);
+    for (Field f : fields) {
+      if (f.number == GC_DATASET)
+        datasets.add(new DatasetEntry(buff, f));
+    }
+  }
+
+  /** The top level GribCollection message, without any datasets. */
+  byte[] getHeader() {
+    return header;
+  }
+
+  int getDatasetCount() {
+    return datasets.size();
+  }
+
+  /** The Dataset message, without any groups. */
+  GribCollectionProto.Dataset readDataset(int dsIndex) throws IOException {
+    return GribCollectionProto.Dataset.parseFrom(datasets.get(dsIndex).header);
+  }
+
+  int getGroupCount(int dsIndex) {
+    return datasets.get(dsIndex).groups.size();
+  }
+
+  GribCollectionProto.Gds readGds(int dsIndex, int groupIndex) throws IOException {
+    GroupEntry group = datasets.get(dsIndex).groups.get(groupIndex);
+    if (group.gds == null)
+      return GribCollectionProto.Gds.getDefaultInstance();
+    return GribCollectionProto.Gds.parseFrom(group.gds);
+  }
+
+  /** The Group message, without any variables. */
+  GribCollectionProto.Group readGroup(int dsIndex, int groupIndex) throws IOException {
+    GroupEntry group = datasets.get(dsIndex).groups.get(groupIndex);
+    return GribCollectionProto.Group.parseFrom(readExcept(group.fields, GROUP_VARIABLES));
+  }
+
+  int getVariableCount(int dsIndex, int groupIndex) {
+    return datasets.get(dsIndex).groups.get(groupIndex).variables.size();
+  }
+
+  GribCollectionProto.Variable readVariable(int dsIndex, int groupIndex, int varIndex) throws IOException {
+    Field f = datasets.get(dsIndex).groups.get(groupIndex).variables.get(varIndex);
+    return GribCollectionProto.Variable.parseFrom(read(f.valueStart, f.end));
+  }
+
+  /** The Variable message with only the fields that identify it: discipline, pds and ids. */
+  GribCollectionProto.Variable readVariableId(int dsIndex, int groupIndex, int varIndex) throws IOException {
+    Field f = datasets.get(dsIndex).groups.get(groupIndex).variables.get(varIndex);
+    byte[] b = read(f.valueStart, f.end);
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    for (Field vf : scan(b, 0, b.length)) {
+      if (vf.number <= VARIABLE_IDS)
+        bout.write(b, vf.start, vf.end - vf.start);
+    }
+    return GribCollectionProto.Variable.parseFrom(bout.toByteArray());
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////
+
+  private static class DatasetEntry {
+    final byte[] header;
+    final List<GroupEntry> groups = new ArrayList<>();
+
+    DatasetEntry(byte[] buff, Field ds) throws IOException {
+      List<Field> fields = scan(buff, ds.valueStart, ds.end);
+      this.header = copyExcept(buff, fields, DATASET_GROUPS);
+      for (Field f : fields) {
+        if (f.number == DATASET_GROUPS)
+          groups.add(new GroupEntry(buff, f));
+      }
+    }
+  }
+
+  private static class GroupEntry {
+    final List<Field> fields;
+    final List<Field> variables = new ArrayList<>();
+    byte[] gds; // the Gds message, which is always read when the collection is opened
+
+    GroupEntry(byte[] buff, Field group) throws IOException {
+      this.fields = scan(buff, group.valueStart, group.end);
+      for (Field f : fields) {
+        if (f.number == GROUP_VARIABLES)
+          variables.add(f);
+        else if (f.number == GROUP_GDS)
+          gds = Arrays.copyOfRange(buff, f.valueStart, f.end);
+      }
+    }
+  }
+
+  // one field of a message: the tag starts at start, the value at valueStart; offsets are into the GribCollection
+  private static class Field {
+    final int number, start, valueStart, end;
+
+    Field(int number, int start, int valueStart, int end) {
+      this.number = number;
+      this.start = start;
+      this.valueStart = valueStart;
+      this.end = end;
+    }
+  }
+
+  // list the fields of the message in buff[start, end)
+  private static List<Field> scan(byte[] buff, int start, int end) throws IOException {
+    List<Field> result = new ArrayList<>();
+    CodedInputStream in = CodedInputStream.newInstance(buff, start, end - start);
+    while (!in.isAtEnd()) {
+      int fieldStart = start + in.getTotalBytesRead();
+      int tag = in.readTag();
+      int number = WireFormat.getTagFieldNumber(tag);
+      if ((tag & 7) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+        int len = in.readRawVarint32();
+        int valueStart = start + in.getTotalBytesRead();
+        in.skipRawBytes(len);
+        result.add(new Field(number, fieldStart, valueStart, valueStart + len));
+      } else {
+        in.skipField(tag);
+        int fieldEnd = start + in.getTotalBytesRead();
+        result.add(new Field(number, fieldStart, fieldEnd, fieldEnd));
+      }
+    }
+    return result;
+  }
+
+  // the encoded message, leaving out the fields with the given number
+  private static byte[] copyExcept(byte[] buff, List<Field> fields, int leaveOut) {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    for (Field f : fields) {
+      if (f.number != leaveOut)
+        bout.write(buff, f.start, f.end - f.start);
+    }
+    return bout.toByteArray();
+  }
+
+  // read GribCollection[start, end) from the index file
+  private byte[] read(int start, int end) throws IOException {
+    byte[] b = new byte[end - start];
+    try (RandomAccessFile indexRaf = RandomAccessFile.acquire(location)) {
+      indexRaf.seek(filePos + start);
+      indexRaf.readFully(b);
+    }
+    return b;
+  }
+
+  // read the message made of fields, leaving out the fields with the given number, which are not read
+  private byte[] readExcept(List<Field> fields, int leaveOut) throws IOException {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    try (RandomAccessFile indexRaf = RandomAccessFile.acquire(location)) {
+      for (Field f : fields) {
+        if (f.number == leaveOut)
+          continue;
+        byte[] b = new byte[f.end - f.start];
+        indexRaf.seek(filePos + f.start);
+        indexRaf.readFully(b);
+        bout.write(b, 0, b.length);
+      }
+    }
+    return bout.toByteArray();
+  }
+}
@@ -140,10 +140,8 @@ public abstract class PartitionCollectionImmutable extends GribCollectionImmutab
     Dataset ds2d = getDatasetCanonical();
     if (ds2d == null)
       return null;
-    for (GroupGC groupHcs : ds2d.getGroups())
-      if (groupHcs.getGdsHash().equals(hcs.getGdsHash()))
-        return (VariableIndexPartitioned) groupHcs.findVariableByHash(vi);
-    return null;
+    GroupGC groupHcs = ds2d.findGroupByGdsHash(hcs.getGdsHash());
+    return groupHcs == null ? null : (VariableIndexPartitioned) groupHcs.findVariableByHash(vi);
   }
 
   @Override
@@ -420,15 +418,16 @@ public abstract class PartitionCollectionImmutable extends GribCollectionImmutab
 
       if (sourceIndex == null)
         return null; // missing
-      GribCollectionImmutable.Record record = vindex2Dpart.getRecordAt(sourceIndex);
-      if (record == null) {
+      int recno = vindex2Dpart.getRecordIndexAt(sourceIndex);
+      if (recno < 0) {
         return null;
       }
 
+      DataRecord dr = new DataRecord(PartitionCollectionImmutable.this, partno, vindex2Dpart.group.getGdsHorizCoordSys(),
+          vindex2Dpart.getRecordTable(), recno);
       if (Grib.debugRead)
-        logger.debug("  result success: partno={} fileno={}", partno, record.fileno);
-      return new DataRecord(PartitionCollectionImmutable.this, partno, vindex2Dpart.group.getGdsHorizCoordSys(),
-          record);
+        logger.debug("  result success: partno={} fileno={}", partno, dr.fileno);
+      return dr;
     }
 
     /**
@@ -731,14 +730,14 @@ public abstract class PartitionCollectionImmutable extends GribCollectionImmutab
       }
 
       // otherwise its a GribCollection
-      GribCollectionImmutable.Record record = compVindex2D.getRecordAt(coords);
-      if (record == null)
+      int recno = compVindex2D.getRecordIndexAt(coords);
+      if (recno < 0)
         return null;
 
+      DataRecord dr = new DataRecord(PartitionCollectionImmutable.this, partno,
+          compVindex2D.group.getGdsHorizCoordSys(), compVindex2D.getRecordTable(), recno);
       if (Grib.debugRead)
-        logger.debug("  result success: partno={} fileno={}", partno, record.fileno);
-      DataRecord dr =
-          new DataRecord(PartitionCollectionImmutable.this, partno, compVindex2D.group.getGdsHorizCoordSys(), record);
+        logger.debug("  result success: partno={} fileno={}", partno, dr.fileno);
       if (GribDataReader.validator != null)
         dr.validation = coords;
       return dr;
@@ -751,9 +750,9 @@ public abstract class PartitionCollectionImmutable extends GribCollectionImmutab
     final PartitionCollectionImmutable usePartition;
     final int partno; // partition index in usePartition
 
-    DataRecord(PartitionCollectionImmutable usePartition, int partno, GdsHorizCoordSys hcs,
-        GribCollectionImmutable.Record record) {
-      super(-1, record, hcs);
+    DataRecord(PartitionCollectionImmutable usePartition, int partno, GdsHorizCoordSys hcs, RecordTable table,
+        int recno) {
+      super(-1, table, recno, hcs);
       this.usePartition = usePartition;
       this.partno = partno;
     }
@@ -767,10 +766,10 @@ public abstract class PartitionCollectionImmutable extends GribCollectionImmutab
       int r = Misc.compare(partno, op.partno);
       if (r != 0)
         return r;
-      r = Misc.compare(record.fileno, o.record.fileno);
+      r = Misc.compare(fileno, o.fileno);
       if (r != 0)
         return r;
-      return Misc.compare(record.pos, o.record.pos);
+      return Misc.compare(pos, o.pos);
     }
 
     boolean usesSameFile(DataRecord o) {
@@ -782,15 +781,15 @@ public abstract class PartitionCollectionImmutable extends GribCollectionImmutab
       int r = Misc.compare(partno, o.partno);
       if (r != 0)
         return false;
-      r = Misc.compare(record.fileno, o.record.fileno);
+      r = Misc.compare(fileno, o.fileno);
       return r == 0;
     }
 
     // debugging
     public void show() throws IOException {
-      String dataFilename = usePartition.getFilename(partno, record.fileno);
-      System.out.printf(" **DataReader partno=%d fileno=%d filename=%s startPos=%d%n", partno, record.fileno,
-          dataFilename, record.pos);
+      String dataFilename = usePartition.getFilename(partno, fileno);
+      System.out.printf(" **DataReader partno=%d fileno=%d filename=%s startPos=%d%n", partno, fileno, dataFilename,
+          pos);
     }
   }
 }
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import ucar.nc2.grib.coord.SparseArray;
+import javax.annotation.concurrent.Immutable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The records of a GribCollectionImmutable.VariableIndex, stored as columns of packed primitives
+ * instead of a SparseArray of Record objects.
+ * <p>
+ * Conceptually the same as SparseArray: a multidim array with shape[n] and totalSize, and
+ * track[totalSize] = {0 = missing, else = index+1 into the records}.
+ * Each column (track, fileno, pos, bmsOffset, drsOffset) uses the smallest width (1, 2, 4 or 8 bytes)
+ * that holds its largest value, and all columns share one ByteBuffer, which may be off-heap.
+ * Records are identified by their index into the columns; a Record object is made only on request.
+ */
+@Immutable
+public class RecordTable {
+  private static boolean useDirectBuffers = false;
+
+  /**
+   * Set whether new RecordTables are allocated outside of the java heap.
+   *
+   * @param b true for direct ByteBuffers; default false
+   */
+  public static void setUseDirectBuffers(boolean b) {
+    useDirectBuffers = b;
+  }
+
+  private final int[] shape; // multidim sizes
+  private final int[] stride; // for index calculation
+  private final int totalSize; // product of sizes
+  private final int nrecords;
+  private final int ndups;
+  private final int countNotMissing;
+
+  private final ByteBuffer bb;
+  private final int trackWidth, filenoWidth, posWidth, bmsWidth, drsWidth; // bytes per value
+  private final int filenoStart, posStart, bmsStart, drsStart; // start of each column in bb; track starts at 0
+
+  /**
+   * Build from the SparseArray message in the ncx4 index, without making Record objects.
+   *
+   * @param proto the SparseArray message
+   * @return the table
+   */
+  static RecordTable fromProto(GribCollectionProto.SparseArray proto) {
+    int nsizes = proto.getSizeCount();
+    int[] size = new int[nsizes];
+    for (int i = 0; i < nsizes; i++)
+      size[i] = proto.getSize(i);
+
+    int n = proto.getRecordsCount();
+    int[] fileno = new int[n];
+    long[] pos = new long[n];
+    int[] bmsOffset = new int[n];
+    int[] drsOffset = new int[n];
+    for (int i = 0; i < n; i++) {
+      GribCollectionProto.Record pr = proto.getRecords(i);
+      fileno[i] = pr.getFileno();
+      pos[i] = pr.getStartPos();
+      bmsOffset[i] = pr.getBmsOffset();
+      drsOffset[i] = pr.getDrsOffset();
+    }
+
+    return new RecordTable(size, proto.getTrackList(), fileno, pos, bmsOffset, drsOffset, proto.getNdups());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param shape multidim sizes
+   * @param track for each index in the multidim array: 0 = missing, else 1-based index into the records
+   * @param fileno record column
+   * @param pos record column
+   * @param bmsOffset record column
+   * @param drsOffset record column
+   * @param ndups number of duplicates found when creating
+   */
+  public RecordTable(int[] shape, List<Integer> track, int[] fileno, long[] pos, int[] bmsOffset, int[] drsOffset,
+      int ndups) {
+    this.shape = shape.clone();
+    this.stride = new int[shape.length];
+    int product = 1;
+    for (int ii = shape.length - 1; ii >= 0; ii--) {
+      stride[ii] = product;
+      product *= shape[ii];
+    }
+    this.totalSize = product;
+    this.nrecords = fileno.length;
+    this.ndups = ndups;
+
+    if (track.size() != totalSize)
+      throw new IllegalStateException("track len " + track.size() + " != totalSize " + totalSize);
+
+    trackWidth = width(nrecords);
+    filenoWidth = width(max(fileno));
+    posWidth = width(pos);
+    bmsWidth = width(max(bmsOffset));
+    drsWidth = width(max(drsOffset));
+
+    filenoStart = totalSize * trackWidth;
+    posStart = filenoStart + nrecords * filenoWidth;
+    bmsStart = posStart + nrecords * posWidth;
+    drsStart = bmsStart + nrecords * bmsWidth;
+    int len = drsStart + nrecords * drsWidth;
+    bb = useDirectBuffers ? ByteBuffer.allocateDirect(len) : ByteBuffer.allocate(len);
+
+    int count = 0;
+    for (int i = 0; i < totalSize; i++) {
+      int t = track.get(i);
+      if (t < 0 || t > nrecords)
+        throw new IllegalStateException("track value " + t + " out of range; nrecords = " + nrecords);
+      if (t > 0)
+        count++;
+      put(i * trackWidth, trackWidth, t);
+    }
+    this.countNotMissing = count;
+
+    for (int i = 0; i < nrecords; i++) {
+      put(filenoStart + i * filenoWidth, filenoWidth, fileno[i]);
+      put(posStart + i * posWidth, posWidth, pos[i]);
+      put(bmsStart + i * bmsWidth, bmsWidth, bmsOffset[i]);
+      put(drsStart + i * drsWidth, drsWidth, drsOffset[i]);
+    }
+  }
+
+  private static int max(int[] vals) {
+    int result = 0;
+    for (int v : vals) {
+      if (v < 0)
+        throw new IllegalArgumentException("negative value " + v);
+      result = Math.max(result, v);
+    }
+    return result;
+  }
+
+  // unsigned width for a non-negative int
+  private static int width(int max) {
+    if (max <= 0xff)
+      return 1;
+    if (max <= 0xffff)
+      return 2;
+    return 4;
+  }
+
+  // width for the pos column; MISSING_RECORD is negative, so needs 8 bytes
+  private static int width(long[] vals) {
+    int result = 1;
+    for (long v : vals) {
+      if (v < 0 || v > 0xffffffffL)
+        return 8;
+      if (v > 0xffff)
+        result = 4;
+      else if (v > 0xff)
+        result = Math.max(result, 2);
+    }
+    return result;
+  }
+
+  private void put(int where, int width, long val) {
+    switch (width) {
+      case 1:
+        bb.put(where, (byte) val);
+        break;
+      case 2:
+        bb.putShort(where, (short) val);
+        break;
+      case 4:
+        bb.putInt(where, (int) val);
+        break;
+      default:
+        bb.putLong(where, val);
+    }
+  }
+
+  private long get(int where, int width) {
+    switch (width) {
+      case 1:
+        return bb.get(where) & 0xff;
+      case 2:
+        return bb.getShort(where) & 0xffff;
+      case 4:
+        return bb.getInt(where) & 0xffffffffL;
+      default:
+        return bb.getLong(where);
+    }
+  }
+
+  /**
+   * Find the record at a 1D index into the multidim array.
+   *
+   * @param idx 1D index, 0 <= idx < getTotalSize()
+   * @return record number, or -1 if missing
+   */
+  public int getRecordIndex(int idx) {
+    if (idx >= totalSize || idx < 0)
+      throw new IndexOutOfBoundsException("BAD index get=" + idx + " max= " + totalSize);
+    return (int) get(idx * trackWidth, trackWidth) - 1;
+  }
+
+  /**
+   * Find the record at a multidim index.
+   *
+   * @param index multidim index, same rank as shape
+   * @return record number, or -1 if missing
+   */
+  public int getRecordIndex(int[] index) {
+    assert index.length == shape.length;
+    int where = 0;
+    for (int ii = 0; ii < index.length; ii++)
+      where += index[ii] * stride[ii];
+    return getRecordIndex(where);
+  }
+
+  public int getFileno(int recno) {
+    return (int) get(filenoStart + recno * filenoWidth, filenoWidth);
+  }
+
+  public long getPos(int recno) {
+    return get(posStart + recno * posWidth, posWidth);
+  }
+
+  public int getBmsOffset(int recno) {
+    return (int) get(bmsStart + recno * bmsWidth, bmsWidth);
+  }
+
+  public int getDrsOffset(int recno) {
+    return (int) get(drsStart + recno * drsWidth, drsWidth);
+  }
+
+  /**
+   * Make a Record object for one record.
+   *
+   * @param recno record number, 0 <= recno < getNRecords()
+   * @return new Record
+   */
+  public GribCollectionImmutable.Record getRecord(int recno) {
+    return new GribCollectionImmutable.Record(getFileno(recno), getPos(recno), getBmsOffset(recno),
+        getDrsOffset(recno));
+  }
+
+  public int[] getShape() {
+    return shape.clone();
+  }
+
+  public int getRank() {
+    return shape.length;
+  }
+
+  public int getTotalSize() {
+    return totalSize;
+  }
+
+  public int getNRecords() {
+    return nrecords;
+  }
+
+  public int countNotMissing() {
+    return countNotMissing;
+  }
+
+  public int getNdups() {
+    return ndups;
+  }
+
+  /** @return number of bytes used by the columns */
+  public int getSizeBytes() {
+    return bb.capacity();
+  }
+
+  /**
+   * Make the equivalent SparseArray of Record objects; for debugging and display.
+   *
+   * @return new SparseArray
+   */
+  public SparseArray<GribCollectionImmutable.Record> toSparseArray() {
+    int[] track = new int[totalSize];
+    for (int i = 0; i < totalSize; i++)
+      track[i] = getRecordIndex(i) + 1;
+    List<GribCollectionImmutable.Record> records = new ArrayList<>(nrecords);
+    for (int i = 0; i < nrecords; i++)
+      records.add(getRecord(i));
+    return new SparseArray<>(getShape(), track, records, ndups);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("RecordTable{totalSize=%d nrecords=%d widths track=%d fileno=%d pos=%d bms=%d drs=%d bytes=%d}",
+        totalSize, nrecords, trackWidth, filenoWidth, posWidth, bmsWidth, drsWidth, bb.capacity());
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import ucar.nc2.iosp.BitReader;
+import ucar.unidata.io.RandomAccessFile;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Unpacks the bit packed values of a GRIB2 data section, after reading the whole section into memory.
+ * Each value is taken out of one 8 byte big endian word, instead of bit by bit as in BitReader.
+ * Gets the same values as BitReader, for widths up to 32 bits.
+ * Like BitReader, a 32 bit value from bits2UInt() is sign extended.
+ * <p>
+ * Also like BitReader, a data section that is too short is read on into the rest of the file, and EOFException is
+ * only thrown at the end of the file.
+ */
+class BitUnpacker {
+  private static final int PAD = 8; // so a word can always be read
+
+  private final RandomAccessFile raf; // to read past the end of the section, or null
+  private final long startPos;
+  private ByteBuffer bb;
+  private long limit; // in bits
+  private long bitPos;
+
+  /**
+   * Read nbytes starting at pos into memory.
+   *
+   * @param raf from this file
+   * @param pos starting position
+   * @param nbytes number of bytes in the packed data
+   * @return unpacker, positioned at the start
+   */
+  static BitUnpacker read(RandomAccessFile raf, long pos, int nbytes) throws IOException {
+    byte[] buf = new byte[Math.max(nbytes, 0) + PAD];
+    raf.seek(pos);
+    raf.readFully(buf, 0, buf.length - PAD);
+    return new BitUnpacker(buf, buf.length - PAD, raf, pos);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param buf the packed data, followed by at least 8 more bytes
+   * @param nbytes number of bytes of packed data
+   */
+  BitUnpacker(byte[] buf, int nbytes) {
+    this(buf, nbytes, null, 0);
+  }
+
+  private BitUnpacker(byte[] buf, int nbytes, RandomAccessFile raf, long startPos) {
+    this.bb = ByteBuffer.wrap(buf); // big endian
+    this.limit = 8L * nbytes;
+    this.raf = raf;
+    this.startPos = startPos;
+  }
+
+  /** Skip to the start of the next byte, unless already there. */
+  void incrByte() {
+    bitPos = (bitPos + 7) & ~7L;
+  }
+
+  /**
+   * Read the next nb bits as an unsigned integer.
+   *
+   * @param nb the number of bits, 0 <= nb <= 64.
+   */
+  long bits2UInt(int nb) throws IOException {
+    if (nb == 0)
+      return 0;
+    if (nb > 56) {
+      long hi = bits2UInt(nb - 32);
+      return (hi << 32) | (bits2UInt(32) & 0xffffffffL);
+    }
+    checkAvailable(nb);
+    long result = (bb.getLong((int) (bitPos >>> 3)) << (bitPos & 7)) >>> (64 - nb);
+    bitPos += nb;
+    return (nb == 32) ? (int) result : result; // sign extended, as BitReader does
+  }
+
+  /**
+   * Read the next n values of nb bits each, as if by (int) bits2UInt(nb).
+   *
+   * @param nb the number of bits of each value, 0 <= nb <= 32.
+   * @param dest put the values here
+   * @param off starting at this index
+   * @param n number of values
+   */
+  void unpack(int nb, int[] dest, int off, int n) throws IOException {
+    if (nb < 0 || nb > 32)
+      throw new IllegalArgumentException("bit width " + nb);
+    if (nb == 0) {
+      Arrays.fill(dest, off, off + n, 0);
+      return;
+    }
+    checkAvailable((long) n * nb);
+
+    long pos = bitPos;
+    if ((pos & 7) == 0 && nb == 8) {
+      int p = (int) (pos >>> 3);
+      for (int i = 0; i < n; i++)
+        dest[off + i] = bb.get(p + i) & 0xff;
+
+    } else if ((pos & 7) == 0 && nb == 16) {
+      int p = (int) (pos >>> 3);
+      for (int i = 0; i < n; i++)
+        dest[off + i] = bb.getShort(p + 2 * i) & 0xffff;
+
+    } else {
+      int shift = 64 - nb;
+      for (int i = 0; i < n; i++) {
+        dest[off + i] = (int) ((bb.getLong((int) (pos >>> 3)) << (pos & 7)) >>> shift);
+        pos += nb;
+      }
+    }
+    bitPos += (long) n * nb;
+  }
+
+  private void checkAvailable(long nbits) throws IOException {
+    if (bitPos + nbits > limit && !readMore(bitPos + nbits))
+      throw new EOFException("Read past end of GRIB2 data section");
+  }
+
+  // read bytes following the data section, as BitReader does, until nbits are in memory. false if the file is too short
+  private boolean readMore(long nbits) throws IOException {
+    if (raf == null)
+      return false;
+    long nbytes = Math.min((nbits + 7) >>> 3, raf.length() - startPos);
+    if (8 * nbytes < nbits || nbytes > Integer.MAX_VALUE - PAD)
+      return false;
+    byte[] buf = new byte[(int) nbytes + PAD];
+    raf.seek(startPos);
+    raf.readFully(buf, 0, (int) nbytes);
+    bb = ByteBuffer.wrap(buf);
+    limit = 8 * nbytes;
+    return true;
+  }
+
+  /** Unpacks through a BitReader, one value at a time. Used to check BitUnpacker. */
+  static class Reference extends BitUnpacker {
+    private final BitReader reader;
+
+    Reference(RandomAccessFile raf, long pos) throws IOException {
+      super(new byte[PAD], 0);
+      this.reader = new BitReader(raf, pos);
+    }
+
+    @Override
+    void incrByte() {
+      reader.incrByte();
+    }
+
+    @Override
+    long bits2UInt(int nb) throws IOException {
+      return reader.bits2UInt(nb);
+    }
+
+    @Override
+    void unpack(int nb, int[] dest, int off, int n) throws IOException {
+      for (int i = 0; i < n; i++)
+        dest[off + i] = (int) reader.bits2UInt(nb);
+    }
+  }
+}
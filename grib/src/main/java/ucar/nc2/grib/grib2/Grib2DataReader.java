@@ -39,6 +39,9 @@ public class Grib2DataReader {
     }
   }
 
+  // for testing: unpack one value at a time with BitReader, as the reference for BitUnpacker
+  static boolean useBitReader;
+
   ///////////////////////////////////////////////
 
   private final int dataTemplate;
@@ -148,6 +151,13 @@ public class Grib2DataReader {
     return getData40raw(raf, (Grib2Drs.Type40) gdrs);
   }
 
+  // the packed values of the data section, after the first 5 bytes
+  private BitUnpacker makeUnpacker(RandomAccessFile raf) throws IOException {
+    if (useBitReader)
+      return new BitUnpacker.Reference(raf, startPos + 5);
+    return BitUnpacker.read(raf, startPos + 5, dataLength - 5);
+  }
+
   private static final boolean staticMissingValueInUse = true;
   private static final float staticMissingValue = Float.NaN;
 
@@ -228,10 +238,16 @@ public class Grib2DataReader {
     // X2 = scaled encoded value
     // data[ i ] = (R + ( X1 + X2) * EE)/DD ;
 
-    BitReader reader = new BitReader(raf, startPos + 5);
-    if (bitmap == null) {
+    BitUnpacker reader = makeUnpacker(raf);
+    if (bitmap == null && nb < 32) {
+      int[] X2 = new int[totalNPoints];
+      reader.unpack(nb, X2, 0, totalNPoints);
       for (int i = 0; i < totalNPoints; i++) {
         // data[ i ] = (R + ( X1 + X2) * EE)/DD ;
+        data[i] = (R + X2[i] * EE) / DD;
+      }
+    } else if (bitmap == null) {
+      for (int i = 0; i < totalNPoints; i++) {
         data[i] = (R + reader.bits2UInt(nb) * EE) / DD;
       }
     } else {
@@ -289,15 +305,13 @@ public class Grib2DataReader {
       return nGroups0(bitmapIndicator, ref_val, mv);
     }
 
-    BitReader reader = new BitReader(raf, startPos + 5);
+    BitUnpacker reader = makeUnpacker(raf);
 
     // 6-xx Get reference values for groups (X1's)
     int[] X1 = new int[NG];
     int nb = gdrs.numberOfBits;
     if (nb != 0) {
-      for (int i = 0; i < NG; i++) {
-        X1[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, X1, 0, NG);
     }
 
     // [xx +1 ]-yy Get number of bits used to encode each group
@@ -305,9 +319,7 @@ public class Grib2DataReader {
     nb = gdrs.bitsGroupWidths;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        NB[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, NB, 0, NG);
     }
 
     // [yy +1 ]-zz Get the scaled group lengths using formula
@@ -320,8 +332,9 @@ public class Grib2DataReader {
     nb = gdrs.bitsScaledGroupLength;
 
     reader.incrByte();
+    reader.unpack(nb, L, 0, NG);
     for (int i = 0; i < NG; i++) {
-      L[i] = ref + (int) reader.bits2UInt(nb) * len_inc;
+      L[i] = ref + L[i] * len_inc;
     }
     L[NG - 1] = gdrs.lengthLastGroup; // enter Length of Last Group
 
@@ -339,7 +352,10 @@ public class Grib2DataReader {
     // D = THE DECIMAL SCALE FACTOR
     int count = 0;
     reader.incrByte();
+    int[] X2s = new int[maxLength(L)];
     for (int i = 0; i < NG; i++) {
+      if (NB[i] != 0)
+        reader.unpack(NB[i], X2s, 0, L[i]);
       for (int j = 0; j < L[i]; j++) {
         if (NB[i] == 0) {
           if (mvm == 0) { // X2 = 0
@@ -348,7 +364,7 @@ public class Grib2DataReader {
             data[count++] = mv;
           }
         } else {
-          int X2 = (int) reader.bits2UInt(NB[i]);
+          int X2 = X2s[j];
           if (mvm == 0) {
             data[count++] = (R + (X1[i] + X2) * EE) / DD;
           } else { // if (mvm == 1) || (mvm == 2 )
@@ -379,6 +395,12 @@ public class Grib2DataReader {
     return data;
   }
 
+  private int maxLength(int[] L) {
+    int max = 0;
+    for (int len : L)
+      max = Math.max(max, len);
+    return max;
+  }
 
   /*
    * from wgrib unpk_complex():
@@ -475,7 +497,7 @@ public class Grib2DataReader {
       return nGroups0(bitmapIndicator, ref_val, mv);
     }
 
-    BitReader reader = new BitReader(raf, startPos + 5);
+    BitUnpacker reader = makeUnpacker(raf);
 
     int ival1;
     int ival2 = 0;
@@ -520,9 +542,7 @@ public class Grib2DataReader {
     int nb = gdrs.numberOfBits;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        X1[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, X1, 0, NG);
     }
 
     // [xx +1 ]-yy Get number of bits used to encode each group
@@ -531,9 +551,7 @@ public class Grib2DataReader {
     nb = gdrs.bitsGroupWidths;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        NB[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, NB, 0, NG);
     }
 
     int referenceGroupWidths = gdrs.referenceGroupWidths;
@@ -552,9 +570,7 @@ public class Grib2DataReader {
 
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        L[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.unpack(nb, L, 0, NG);
     }
 
     int totalL = 0;
@@ -606,11 +622,13 @@ public class Grib2DataReader {
     reader.incrByte();
     int dataSize = 0;
     boolean[] dataBitMap = null;
+    int[] X2 = new int[maxLength(L)];
     if (mvm == 0) {
       for (int i = 0; i < NG; i++) {
         if (NB[i] != 0) {
+          reader.unpack(NB[i], X2, 0, L[i]);
           for (int j = 0; j < L[i]; j++) {
-            data[count++] = (int) reader.bits2UInt(NB[i]) + X1[i];
+            data[count++] = X2[j] + X1[i];
           }
         } else {
           for (int j = 0; j < L[i]; j++) {
@@ -627,8 +645,9 @@ public class Grib2DataReader {
         if (NB[i] != 0) {
           int msng1 = bitsmv1[NB[i]];
           int msng2 = msng1 - 1;
+          reader.unpack(NB[i], X2, 0, L[i]);
           for (int j = 0; j < L[i]; j++) {
-            data[count] = (int) reader.bits2UInt(NB[i]);
+            data[count] = X2[j];
             if (data[count] == msng1 || mvm == 2 && data[count] == msng2) {
               dataBitMap[count] = false;
             } else {
@@ -752,16 +771,6 @@ public class Grib2DataReader {
     float EE = (float) java.lang.Math.pow(2.0, (double) E);
     float ref_val = R / DD;
 
-    Grib2JpegDecoder g2j = null;
-    // try {
-    if (nb != 0) { // there's data to decode
-      g2j = new Grib2JpegDecoder(nb, false);
-      byte[] buf = new byte[dataLength - 5];
-      raf.readFully(buf);
-      g2j.decode(buf);
-      gdrs.hasSignedProblem = g2j.hasSignedProblem();
-    }
-
     float[] result = new float[totalNPoints];
 
     // no data to decode, set to reference value
@@ -772,7 +781,7 @@ public class Grib2DataReader {
       return result;
     }
 
-    int[] idata = g2j.getGdata();
+    int[] idata = decodeJpeg(raf, gdrs);
     if (bitmap == null) { // must be one decoded value in idata for every expected data point
       if (idata.length != dataNPoints) {
         logger.debug("Number of points in the data record {} != {} expected from GDS", idata.length, dataNPoints);
@@ -818,6 +827,21 @@ public class Grib2DataReader {
      */
   }
 
+  // decode the jpeg2000 data block with a pooled decoder
+  private int[] decodeJpeg(RandomAccessFile raf, Grib2Drs.Type40 gdrs) throws IOException {
+    Grib2JpegDecoder g2j = Grib2JpegDecoder.acquire(gdrs.numberOfBits);
+    try {
+      int len = dataLength - 5;
+      byte[] buf = g2j.getBuffer(len);
+      raf.readFully(buf, 0, len);
+      g2j.decode(buf, len);
+      gdrs.hasSignedProblem = g2j.hasSignedProblem();
+      return g2j.getGdata();
+    } finally {
+      Grib2JpegDecoder.release(g2j);
+    }
+  }
+
   // Grid point data - JPEG 2000 code stream format
   @Nullable
   private int[] getData40raw(RandomAccessFile raf, Grib2Drs.Type40 gdrs) throws IOException {
@@ -827,14 +851,7 @@ public class Grib2DataReader {
     }
     int missing_value = (2 << nb - 1) - 1; // all ones - reserved for missing value
 
-    Grib2JpegDecoder g2j;
-    g2j = new Grib2JpegDecoder(nb, false);
-    byte[] buf = new byte[dataLength - 5];
-    raf.readFully(buf);
-    g2j.decode(buf);
-    gdrs.hasSignedProblem = g2j.hasSignedProblem();
-
-    int[] idata = g2j.getGdata();
+    int[] idata = decodeJpeg(raf, gdrs);
 
     if (bitmap == null) { // must be one decoded value in idata for every expected data point
       if (idata.length != totalNPoints) {
@@ -23,12 +23,16 @@ import ucar.jpeg.icc.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.io.IOException;
 import java.io.EOFException;
 import java.io.ByteArrayInputStream;
 
 /**
  * Adaptation of jj2000.j2k.decoder.Decoder, in order to read input from memory.
+ * A decoder may be used for any number of messages, one at a time. Use acquire() and release() to share
+ * decoders between threads.
  *
  * @author robb kambic
  * @author caron rewritten Aug 2014
@@ -36,6 +40,48 @@ import java.io.ByteArrayInputStream;
 public class Grib2JpegDecoder {
   private static final Logger logger = LoggerFactory.getLogger(Grib2JpegDecoder.class);
 
+  // the default parameters of all the modules in the decoding chain; only read after this
+  private static final ParameterList defaultParameters = makeDefaultParameters();
+
+  // idle decoders, by number of bits
+  private static final int maxPooled = 2 * Runtime.getRuntime().availableProcessors();
+  private static final Map<Integer, Queue<Grib2JpegDecoder>> pool = new ConcurrentHashMap<>();
+
+  /**
+   * Get a decoder from the pool, or a new one if none is idle.
+   * Call release() when done with it.
+   *
+   * @param nbits number of bits of the packed data
+   */
+  static Grib2JpegDecoder acquire(int nbits) {
+    Queue<Grib2JpegDecoder> idle = pool.get(nbits);
+    Grib2JpegDecoder result = (idle == null) ? null : idle.poll();
+    return (result != null) ? result : new Grib2JpegDecoder(nbits, false);
+  }
+
+  /**
+   * Return a decoder to the pool. It must not be used again by the caller.
+   */
+  static void release(Grib2JpegDecoder decoder) {
+    decoder.data = null; // belongs to the caller now
+    Queue<Grib2JpegDecoder> idle = pool.computeIfAbsent(decoder.rate, k -> new ConcurrentLinkedQueue<>());
+    if (idle.size() < maxPooled)
+      idle.offer(decoder);
+  }
+
+  private static ParameterList makeDefaultParameters() {
+    ParameterList defpl = new ParameterList();
+    String[][] param = Grib2JpegDecoder.getAllParameters();
+
+    for (int i = param.length - 1; i >= 0; i--) {
+      if (param[i][3] != null)
+        defpl.put(param[i][0], param[i][3]);
+    }
+    return defpl;
+  }
+
+  private byte[] buffer; // reused for the input of each message
+
   private boolean debug;
   private final int rate;
 
@@ -82,21 +128,8 @@ public class Grib2JpegDecoder {
     argv[4] = "-debug";
     argv[5] = "on";
 
-    // Initialize default parameters
-    // System.err.println("calling Grib2JpegDecoder with argv argument");
-    /*
-     * The default parameter list (with modules arguments)
-     */
-    ParameterList defpl = new ParameterList();
-    String[][] param = Grib2JpegDecoder.getAllParameters();
-
-    for (int i = param.length - 1; i >= 0; i--) {
-      if (param[i][3] != null)
-        defpl.put(param[i][0], param[i][3]);
-    }
-
     // Create parameter list using defaults
-    pl = new ParameterList(defpl);
+    pl = new ParameterList(defaultParameters);
 
     // Parse arguments from argv
     try {
@@ -122,6 +155,16 @@ public class Grib2JpegDecoder {
     return hasSignedProblem;
   }
 
+  /**
+   * Get a buffer of at least n bytes, which is reused for each message decoded by this decoder.
+   * Fill it, then call decode(buffer, n).
+   */
+  byte[] getBuffer(int n) {
+    if (buffer == null || buffer.length < n)
+      buffer = new byte[n];
+    return buffer;
+  }
+
   /**
    * Runs the decoder. After completion the exit code is set, a non-zero
    * value indicates that an error occurred.
@@ -129,6 +172,21 @@ public class Grib2JpegDecoder {
    * @see #getExitCode
    */
   public void decode(byte[] buf) throws IOException {
+    decode(buf, buf.length);
+  }
+
+  /**
+   * Runs the decoder on the first len bytes of buf.
+   *
+   * @see #decode(byte[])
+   */
+  public void decode(byte[] buf, int len) throws IOException {
+    exitCode = 0;
+    hasSignedProblem = false;
+    packBytes = 0;
+    csMap = null;
+    data = null;
+
     // int dataSize = buf.length;
     boolean verbose = false;
     int res; // resolution level to reconstruct
@@ -152,8 +210,8 @@ public class Grib2JpegDecoder {
     try {
 
       // create a ByteArrayInputStream from byte array for ISRandomAccessIO
-      ByteArrayInputStream bais = new ByteArrayInputStream(buf);
-      RandomAccessIO in = new ISRandomAccessIO(bais, buf.length, 1, buf.length);
+      ByteArrayInputStream bais = new ByteArrayInputStream(buf, 0, len);
+      RandomAccessIO in = new ISRandomAccessIO(bais, len, 1, len);
 
       // **** File Format ****
       // If the codestream is wrapped in the jp2 fileformat, Read the
@@ -215,6 +215,15 @@ public class Grib2Record {
 
   // isolate dependencies here - in case we have a "minimal I/O" mode where not all fields are available
   public float[] readData(RandomAccessFile raf) throws IOException {
+    return readData(raf, GribData.getInterpolationMethod());
+  }
+
+  // dont convertQuasiGrid
+  public float[] readDataRaw(RandomAccessFile raf) throws IOException {
+    return readData(raf, GribData.InterpolationMethod.none);
+  }
+
+  public float[] readData(RandomAccessFile raf, GribData.InterpolationMethod method) throws IOException {
     Grib2Gds gds = getGDS();
 
     Grib2DataReader reader = new Grib2DataReader(drss.getDataTemplate(), gdss.getNumberPoints(), drss.getDataPoints(),
@@ -225,8 +234,7 @@ public class Grib2Record {
     float[] data = reader.getData(raf, bms, gdrs);
 
     if (gds.isThin())
-      data = QuasiRegular.convertQuasiGrid(data, gds.getNptsInLine(), gds.getNxRaw(), gds.getNyRaw(),
-          GribData.getInterpolationMethod());
+      data = QuasiRegular.convertQuasiGrid(data, gds.getNptsInLine(), gds.getNxRaw(), gds.getNyRaw(), method);
 
     lastRecordRead = this;
     return data;
@@ -11,6 +11,8 @@ package ucar.nc2.grib;
 import static org.junit.Assert.assertEquals;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.Random;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -50,4 +52,55 @@ public class TestQuasiRegular {
     assertEquals(13.5, out[7], 0.0);
   }
 
+  // the cached stencil must get the same values, bit for bit, as interpolating each row
+  @Test
+  public void testStencil() {
+    Random random = new Random(123);
+    int ny = 40;
+    int[] linePts = new int[ny];
+    int total = 0;
+    for (int j = 0; j < ny; j++) {
+      linePts[j] = (j == ny / 2) ? 100 : 4 + random.nextInt(96);
+      total += linePts[j];
+    }
+    float[] quasi = new float[total];
+    for (int i = 0; i < total; i++)
+      quasi[i] = (i % 37 == 0) ? Float.NaN : (float) random.nextGaussian();
+
+    for (GribData.InterpolationMethod method : new GribData.InterpolationMethod[] {GribData.InterpolationMethod.linear,
+        GribData.InterpolationMethod.cubic}) {
+      float[] expected = convertByRow(quasi, linePts, 100, method);
+      for (int pass = 0; pass < 2; pass++) { // second time uses the cached stencil
+        float[] result = QuasiRegular.convertQuasiGrid(quasi, linePts, -1, ny, method);
+        Assert.assertEquals(expected.length, result.length);
+        for (int i = 0; i < expected.length; i++)
+          Assert.assertEquals(method + " " + i, Float.floatToRawIntBits(expected[i]), Float.floatToRawIntBits(result[i]));
+      }
+    }
+    Assert.assertSame(QuasiRegular.getStencil(linePts, -1, ny, GribData.InterpolationMethod.linear),
+        QuasiRegular.getStencil(linePts.clone(), -1, ny, GribData.InterpolationMethod.linear));
+  }
+
+  private float[] convertByRow(float[] quasi, int[] linePts, int nx, GribData.InterpolationMethod method) {
+    float[] data = new float[nx * linePts.length];
+    int inputIdx = 0;
+    int outputIdx = 0;
+    for (int npoints : linePts) {
+      double[] d2 = new double[npoints];
+      if (method == GribData.InterpolationMethod.cubic)
+        QuasiRegular.secondDerivative(quasi, inputIdx, npoints, x1d, xnd, d2);
+      for (int i = 0; i < nx; i++) {
+        double mapped = (float) i / ((float) nx) * ((float) npoints);
+        if (npoints == nx)
+          data[outputIdx++] = quasi[inputIdx + i];
+        else if (method == GribData.InterpolationMethod.cubic)
+          QuasiRegular.cubicSpline(quasi, inputIdx, d2, mapped, data, outputIdx++);
+        else
+          QuasiRegular.linear(quasi, inputIdx, mapped, data, outputIdx++, npoints);
+      }
+      inputIdx += npoints;
+    }
+    return data;
+  }
+
 }
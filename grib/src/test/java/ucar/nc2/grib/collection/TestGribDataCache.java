@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.nc2.util.CompareNetcdf2;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+
+/** Test that reads through the decoded record cache get the same data, and that rereads hit the cache. */
+public class TestGribDataCache {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final String testfile = "../grib/src/test/data/HLYA10.grib2";
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void clearCache() {
+    GribDataReader.setDataCache(null);
+  }
+
+  @Test
+  public void testCache() throws IOException {
+    check(new GribDataCache(100 * 1000 * 1000));
+  }
+
+  @Test
+  public void testSmallCache() throws IOException {
+    GribDataCache cache = new GribDataCache(100); // smaller than any record, so nothing is kept
+    check(cache);
+    Assert.assertTrue(cache.getBytes() <= 100);
+  }
+
+  private void check(GribDataCache cache) throws IOException {
+    try (NetcdfFile ncfile = NetcdfFile.open(testfile)) {
+      int count = 0;
+      for (Variable v : ncfile.getVariables()) {
+        if (v.getDataType() != DataType.FLOAT || v.getRank() < 2)
+          continue;
+        v.setCaching(false);
+
+        GribDataReader.setDataCache(null);
+        Array expected = v.read();
+
+        GribDataReader.setDataCache(cache);
+        compare(v, expected, v.read());
+        compare(v, expected, v.read()); // second time from the cache, if it fits
+        count++;
+      }
+      Assert.assertTrue(count > 0);
+    }
+
+    Formatter f = new Formatter();
+    cache.showStats(f);
+    logger.debug("{}", f);
+    Assert.assertTrue(cache.getRecordsDecoded() > 0);
+    if (cache.getMaxBytes() > cache.getBytesDecoded())
+      Assert.assertEquals(cache.getRecordsDecoded(), cache.getStats().hitCount());
+  }
+
+  // the records of one message start at the same place, and must not get each others data
+  @Test
+  public void testRecordsInOneMessage() throws IOException {
+    File file = makeTwoRecordMessage();
+    GribDataCache cache = new GribDataCache(100 * 1000 * 1000);
+    try (NetcdfFile ncfile = NetcdfFile.open(file.getPath())) {
+      List<Variable> vars = new ArrayList<>();
+      List<Array> expected = new ArrayList<>();
+      for (Variable v : ncfile.getVariables()) {
+        if (v.getDataType() != DataType.FLOAT || v.getRank() < 2)
+          continue;
+        v.setCaching(false);
+        vars.add(v);
+        expected.add(v.read());
+      }
+      Assert.assertEquals(2, vars.size());
+      Assert.assertFalse(new CompareNetcdf2(new Formatter(), false, false, true).compareData("records",
+          expected.get(0), expected.get(1)));
+
+      GribDataReader.setDataCache(cache);
+      for (int i = 0; i < vars.size(); i++) {
+        compare(vars.get(i), expected.get(i), vars.get(i).read());
+        compare(vars.get(i), expected.get(i), vars.get(i).read());
+      }
+    }
+    Assert.assertEquals(2, cache.getRecordsDecoded());
+    Assert.assertEquals(2, cache.getStats().hitCount());
+  }
+
+  // HLYA10 with a second record in its message: sections 4-7 repeated, with another parameter and reference value
+  private File makeTwoRecordMessage() throws IOException {
+    byte[] bytes = Files.readAllBytes(Paths.get(testfile));
+    ByteBuffer bb = ByteBuffer.wrap(bytes); // big endian
+    int start = 0;
+    while (bytes[start] != 'G' || bytes[start + 1] != 'R' || bytes[start + 2] != 'I' || bytes[start + 3] != 'B')
+      start++;
+    int end = start + (int) bb.getLong(start + 8) - 4; // where the end section starts
+    int pds = start + 16;
+    while (bytes[pds + 4] != 4)
+      pds += bb.getInt(pds);
+
+    byte[] repeat = new byte[end - pds];
+    System.arraycopy(bytes, pds, repeat, 0, repeat.length);
+    ByteBuffer rb = ByteBuffer.wrap(repeat);
+    repeat[10]++; // parameter number
+    int drs = rb.getInt(0);
+    rb.putFloat(drs + 11, rb.getFloat(drs + 11) + 100); // reference value
+
+    byte[] message = new byte[end - start + repeat.length + 4];
+    System.arraycopy(bytes, start, message, 0, end - start);
+    System.arraycopy(repeat, 0, message, end - start, repeat.length);
+    System.arraycopy(bytes, end, message, message.length - 4, 4);
+    ByteBuffer.wrap(message).putLong(8, message.length);
+
+    File file = tempFolder.newFile("twoRecords.grib2");
+    Files.write(file.toPath(), message);
+    return file;
+  }
+
+  private void compare(Variable v, Array expected, Array result) {
+    Formatter f = new Formatter();
+    boolean ok = new CompareNetcdf2(f, false, false, true).compareData(v.getFullName(), expected, result);
+    Assert.assertTrue(v.getFullName() + " " + f, ok);
+  }
+}
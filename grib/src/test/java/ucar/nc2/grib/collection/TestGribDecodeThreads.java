@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.nc2.util.CompareNetcdf2;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Test that reads with records decoded in parallel get the same data as reads on the calling thread. */
+public class TestGribDecodeThreads {
+  private static final String[] testfiles =
+      {"../grib/src/test/data/pdsScale.pds1.grib2", "../grib/src/test/data/sref.pds2.grib2",
+          "../grib/src/test/data/HLYA10.grib2"};
+
+  @After
+  public void reset() {
+    GribDataReader.setDecodeThreads(1);
+    GribDataReader.setDataCache(null);
+  }
+
+  @Test
+  public void testDecodeThreads() throws IOException {
+    for (String testfile : testfiles)
+      check(testfile, null);
+  }
+
+  @Test
+  public void testDecodeThreadsWithCache() throws IOException {
+    for (String testfile : testfiles)
+      check(testfile, new GribDataCache(100 * 1000 * 1000));
+  }
+
+  // setDecodeThreads() shuts down the old pool while reads that started with it are still submitting
+  @Test
+  public void testSetDecodeThreadsWhileReading() throws Exception {
+    try (NetcdfFile ncfile = NetcdfFile.open(testfiles[1])) {
+      List<Variable> vars = new ArrayList<>();
+      List<Array> expected = new ArrayList<>();
+      for (Variable v : ncfile.getVariables()) {
+        if (v.getDataType() != DataType.FLOAT || v.getRank() < 2)
+          continue;
+        v.setCaching(false);
+        vars.add(v);
+        expected.add(v.read());
+      }
+
+      AtomicBoolean done = new AtomicBoolean();
+      Thread changer = new Thread(() -> {
+        int n = 2;
+        while (!done.get()) {
+          GribDataReader.setDecodeThreads(n);
+          n = (n == 2) ? 4 : 2;
+          Thread.yield();
+        }
+      });
+      GribDataReader.setDecodeThreads(4);
+      changer.start();
+      try {
+        for (int pass = 0; pass < 10; pass++) {
+          for (int i = 0; i < vars.size(); i++)
+            compare(vars.get(i), expected.get(i), vars.get(i).read());
+        }
+      } finally {
+        done.set(true);
+        changer.join();
+      }
+    }
+  }
+
+  private void check(String testfile, GribDataCache cache) throws IOException {
+    try (NetcdfFile ncfile = NetcdfFile.open(testfile)) {
+      int count = 0;
+      for (Variable v : ncfile.getVariables()) {
+        if (v.getDataType() != DataType.FLOAT || v.getRank() < 2)
+          continue;
+        v.setCaching(false);
+
+        GribDataReader.setDecodeThreads(1);
+        GribDataReader.setDataCache(null);
+        Array expected = v.read();
+
+        GribDataReader.setDecodeThreads(4);
+        GribDataReader.setDataCache(cache);
+        compare(v, expected, v.read());
+        compare(v, expected, v.read());
+        count++;
+      }
+      Assert.assertTrue(testfile, count > 0);
+    }
+  }
+
+  private void compare(Variable v, Array expected, Array result) {
+    Formatter f = new Formatter();
+    boolean ok = new CompareNetcdf2(f, false, false, true).compareData(v.getFullName(), expected, result);
+    Assert.assertTrue(v.getFullName() + " " + f, ok);
+  }
+}
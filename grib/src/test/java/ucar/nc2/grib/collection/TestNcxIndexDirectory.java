@@ -0,0 +1,105 @@
+package ucar.nc2.grib.collection;
+
+import com.google.protobuf.ByteString;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+
+/** Test that NcxIndexDirectory finds the same pieces as parsing the whole GribCollection message. */
+public class TestNcxIndexDirectory {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testPiecesMatch() throws Exception {
+    GribCollectionProto.GribCollection gc = makeCollection();
+    NcxIndexDirectory ncxDir = makeDirectory(gc.toByteArray());
+
+    // header has everything but the datasets
+    GribCollectionProto.GribCollection header = GribCollectionProto.GribCollection.parseFrom(ncxDir.getHeader());
+    Assert.assertEquals(0, header.getDatasetCount());
+    Assert.assertEquals(gc.toBuilder().clearDataset().build(), header);
+
+    Assert.assertEquals(gc.getDatasetCount(), ncxDir.getDatasetCount());
+    for (int ds = 0; ds < gc.getDatasetCount(); ds++) {
+      GribCollectionProto.Dataset want = gc.getDataset(ds);
+      Assert.assertEquals(want.getType(), ncxDir.readDataset(ds).getType());
+      Assert.assertEquals(0, ncxDir.readDataset(ds).getGroupsCount());
+      Assert.assertEquals(want.getGroupsCount(), ncxDir.getGroupCount(ds));
+
+      for (int g = 0; g < want.getGroupsCount(); g++) {
+        GribCollectionProto.Group wantGroup = want.getGroups(g);
+        Assert.assertEquals(wantGroup.getGds(), ncxDir.readGds(ds, g));
+        Assert.assertEquals(wantGroup.toBuilder().clearVariables().build(), ncxDir.readGroup(ds, g));
+        Assert.assertEquals(wantGroup.getVariablesCount(), ncxDir.getVariableCount(ds, g));
+        for (int v = 0; v < wantGroup.getVariablesCount(); v++) {
+          GribCollectionProto.Variable wantVar = wantGroup.getVariables(v);
+          Assert.assertEquals(wantVar, ncxDir.readVariable(ds, g, v));
+          GribCollectionProto.Variable wantId = GribCollectionProto.Variable.newBuilder()
+              .setDiscipline(wantVar.getDiscipline()).setPds(wantVar.getPds()).addAllIds(wantVar.getIdsList()).build();
+          Assert.assertEquals(wantId, ncxDir.readVariableId(ds, g, v));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    NcxIndexDirectory ncxDir = makeDirectory(new byte[0]);
+    Assert.assertEquals(0, ncxDir.getDatasetCount());
+    Assert.assertEquals(0, ncxDir.getHeader().length);
+  }
+
+  // the message is read back from a file, after some other bytes as in an ncx4 index
+  private NcxIndexDirectory makeDirectory(byte[] m) throws IOException {
+    byte[] file = new byte[m.length + 11];
+    System.arraycopy(m, 0, file, 11, m.length);
+    File index = tempFolder.newFile();
+    Files.write(index.toPath(), file);
+    return new NcxIndexDirectory(m, index.getPath(), 11);
+  }
+
+  private GribCollectionProto.GribCollection makeCollection() {
+    GribCollectionProto.GribCollection.Builder gc = GribCollectionProto.GribCollection.newBuilder();
+    gc.setName("testNcx").setTopDir("/data/grib").setCenter(7).setSubcenter(2).setMaster(1).setLocal(3).setVersion(3);
+    gc.setStartTime(1000L).setEndTime(2000L);
+    for (int i = 0; i < 3; i++)
+      gc.addMfiles(GribCollectionProto.MFile.newBuilder().setFilename("file" + i).setIndex(i).setLength(100 * i));
+    gc.setMasterRuntime(GribCollectionProto.Coord.newBuilder().setAxisType(GribCollectionProto.GribAxisType.runtime)
+        .setUnit("hours").addMsecs(1000L).addMsecs(2000L));
+
+    GribCollectionProto.Dataset.Type[] types =
+        {GribCollectionProto.Dataset.Type.TwoD, GribCollectionProto.Dataset.Type.Best};
+    for (GribCollectionProto.Dataset.Type type : types) {
+      GribCollectionProto.Dataset.Builder ds = GribCollectionProto.Dataset.newBuilder().setType(type);
+      for (int g = 0; g < 2; g++) {
+        GribCollectionProto.Group.Builder group = GribCollectionProto.Group.newBuilder();
+        group.setGds(GribCollectionProto.Gds.newBuilder().setGds(ByteString.copyFrom(new byte[] {1, 2, (byte) g})));
+        group.addCoords(GribCollectionProto.Coord.newBuilder().setAxisType(GribCollectionProto.GribAxisType.time)
+            .setCode(1).setUnit("hours").addValues(0).addValues(6).addMsecs(1000L));
+        group.addFileno(0).addFileno(g + 1);
+        for (int v = 0; v < 5; v++) {
+          group.addVariables(GribCollectionProto.Variable.newBuilder().setDiscipline(v)
+              .setPds(ByteString.copyFrom(new byte[] {(byte) v, (byte) g})).addIds(7).addIds(v)
+              .setRecordsPos(1000L * v).setRecordsLen(v)
+              .addCoordIdx(0).setNrecords(v + g).addPartVariable(
+                  GribCollectionProto.PartitionVariable.newBuilder().setGroupno(g).setVarno(v).setPartno(type.getNumber())));
+        }
+        ds.addGroups(group);
+      }
+      gc.addDataset(ds);
+    }
+    gc.addPartitions(GribCollectionProto.Partition.newBuilder().setName("p1").setFilename("p1.ncx4"));
+    gc.setIsPartitionOfPartitions(false).addRun2Part(0);
+    return gc.build();
+  }
+}
@@ -0,0 +1,112 @@
+package ucar.nc2.grib.collection;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.nc2.grib.coord.SparseArray;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Test RecordTable against the equivalent SparseArray. */
+public class TestRecordTable {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @After
+  public void reset() {
+    RecordTable.setUseDirectBuffers(false);
+  }
+
+  @Test
+  public void testSmallValues() {
+    check(new int[] {3, 10, 10}, 0, 1000L, 40, 100);
+  }
+
+  @Test
+  public void testLargeValues() {
+    check(new int[] {2, 7, 50}, 70000, 5000000000L, 70000, 300);
+  }
+
+  @Test
+  public void testMissingPos() {
+    RecordTable table = check(new int[] {4, 5}, 3, GribCollectionMutable.MISSING_RECORD, 0, 16);
+    Assert.assertEquals(GribCollectionMutable.MISSING_RECORD, table.getPos(0));
+  }
+
+  @Test
+  public void testDirect() {
+    RecordTable.setUseDirectBuffers(true);
+    check(new int[] {3, 10, 10}, 300, 100000L, 40, 100);
+  }
+
+  private RecordTable check(int[] shape, int filenoBase, long posBase, int offsetBase, int drsBase) {
+    int total = 1;
+    for (int s : shape)
+      total *= s;
+
+    List<Integer> track = new ArrayList<>();
+    List<GribCollectionImmutable.Record> records = new ArrayList<>();
+    for (int i = 0; i < total; i++) {
+      if (i % 11 == 0) {
+        track.add(0);
+        continue;
+      }
+      int n = records.size();
+      long pos = posBase < 0 ? posBase : posBase + 17L * n;
+      records.add(new GribCollectionImmutable.Record(filenoBase + n % 3, pos, offsetBase + n, drsBase + n));
+      track.add(records.size());
+    }
+
+    int n = records.size();
+    int[] fileno = new int[n];
+    long[] pos = new long[n];
+    int[] bmsOffset = new int[n];
+    int[] drsOffset = new int[n];
+    for (int i = 0; i < n; i++) {
+      GribCollectionImmutable.Record r = records.get(i);
+      fileno[i] = r.fileno;
+      pos[i] = r.pos;
+      bmsOffset[i] = r.bmsOffset;
+      drsOffset[i] = r.drsOffset;
+    }
+    RecordTable table = new RecordTable(shape, track, fileno, pos, bmsOffset, drsOffset, 2);
+    logger.debug("{}", table);
+
+    int[] trackArray = new int[total];
+    for (int i = 0; i < total; i++)
+      trackArray[i] = track.get(i);
+    SparseArray<GribCollectionImmutable.Record> sa = new SparseArray<>(shape, trackArray, records, 2);
+
+    Assert.assertEquals(sa.getTotalSize(), table.getTotalSize());
+    Assert.assertEquals(sa.countNotMissing(), table.countNotMissing());
+    Assert.assertEquals(n, table.getNRecords());
+    Assert.assertEquals(2, table.getNdups());
+
+    for (int i = 0; i < total; i++) {
+      GribCollectionImmutable.Record want = sa.getContent(i);
+      int recno = table.getRecordIndex(i);
+      if (want == null) {
+        Assert.assertEquals(-1, recno);
+        continue;
+      }
+      Assert.assertEquals(want.fileno, table.getFileno(recno));
+      Assert.assertEquals(want.pos, table.getPos(recno));
+      Assert.assertEquals(want.bmsOffset, table.getBmsOffset(recno));
+      Assert.assertEquals(want.drsOffset, table.getDrsOffset(recno));
+    }
+
+    // multidim index is the same as the 1D index
+    int[] last = new int[shape.length];
+    for (int i = 0; i < shape.length; i++)
+      last[i] = shape[i] - 1;
+    Assert.assertEquals(table.getRecordIndex(total - 1), table.getRecordIndex(last));
+    Assert.assertEquals(-1, table.getRecordIndex(new int[shape.length]));
+
+    SparseArray<GribCollectionImmutable.Record> back = table.toSparseArray();
+    Assert.assertEquals(sa.countNotMissing(), back.countNotMissing());
+    Assert.assertEquals(sa.getContent(total - 1).pos, back.getContent(total - 1).pos);
+    return table;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.nc2.iosp.BitReader;
+import ucar.unidata.io.InMemoryRandomAccessFile;
+import ucar.unidata.io.RandomAccessFile;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Random;
+
+/**
+ * Check that BitUnpacker gets the same values as BitReader, and that the sample GRIB2 records decode to
+ * the same floats, bit for bit, with either one.
+ */
+public class TestBitUnpacker {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final String[] sampleFiles = {"HLYA10.grib2", "ds.sky.grib2", "ds.snow.grib2", "sref_eta.grib2",
+      "Eumetsat.VerticalPerspective.grib2", "pdsScale.pds1.grib2", "sref.pds2.grib2", "problem.pds9.grib2",
+      "cosmo.pds11.grib2", "sref.pds12.grib2", "rugley.pds15.grib2", "Lannion.pds31.grib2", "thinGrid.grib2",
+      "ofs_atl.grib2", "cosmo-eu.grib2", "rap-native.grib2"};
+
+  @After
+  public void reset() {
+    Grib2DataReader.useBitReader = false;
+  }
+
+  @Test
+  public void testAllWidths() throws IOException {
+    Random random = new Random(1234);
+    byte[] packed = new byte[4000];
+    random.nextBytes(packed);
+
+    for (int nb = 0; nb <= 32; nb++) {
+      BitReader expected = new BitReader(packed);
+      BitUnpacker unpacker = new BitUnpacker(copyPadded(packed), packed.length);
+
+      int total = 0;
+      while (total < 20000) {
+        if (random.nextInt(4) == 0) {
+          expected.incrByte();
+          unpacker.incrByte();
+        }
+        // a single value, then a run of values
+        long want = expected.bits2UInt(nb);
+        Assert.assertEquals("nb=" + nb, want, unpacker.bits2UInt(nb));
+
+        int n = random.nextInt(100);
+        int[] values = new int[n + 3];
+        unpacker.unpack(nb, values, 3, n);
+        for (int i = 0; i < n; i++)
+          Assert.assertEquals("nb=" + nb + " i=" + i, (int) expected.bits2UInt(nb), values[3 + i]);
+        total += (n + 1) * nb + 8;
+      }
+    }
+  }
+
+  @Test(expected = EOFException.class)
+  public void testPastEnd() throws IOException {
+    BitUnpacker unpacker = new BitUnpacker(new byte[12], 4);
+    unpacker.unpack(12, new int[3], 0, 3);
+  }
+
+  // a short data section is read on into the rest of the file, as BitReader does
+  @Test
+  public void testPastSectionEnd() throws IOException {
+    byte[] file = new byte[20];
+    new Random(99).nextBytes(file);
+    try (RandomAccessFile raf = new InMemoryRandomAccessFile("test", file)) {
+      BitReader expected = new BitReader(raf, 2);
+      int[] want = new int[16]; // to the end of the file
+      for (int i = 0; i < want.length; i++)
+        want[i] = (int) expected.bits2UInt(9);
+
+      BitUnpacker unpacker = BitUnpacker.read(raf, 2, 4);
+      int[] values = new int[want.length];
+      unpacker.unpack(9, values, 0, values.length);
+      Assert.assertArrayEquals(want, values);
+
+      try {
+        unpacker.bits2UInt(1);
+        Assert.fail("expected EOFException");
+      } catch (EOFException e) {
+        // ok
+      }
+    }
+  }
+
+  @Test
+  public void testSampleRecords() throws IOException {
+    int nrecords = 0;
+    for (String name : sampleFiles) {
+      try (RandomAccessFile raf = new RandomAccessFile("../grib/src/test/data/" + name, "r")) {
+        Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+        while (scanner.hasNext()) {
+          Grib2Record gr = scanner.next();
+          Grib2DataReader.useBitReader = true;
+          float[] expected = gr.readData(raf);
+          Grib2DataReader.useBitReader = false;
+          float[] result = gr.readData(raf);
+
+          String what = name + " template " + gr.getDataRepresentationSection().getDataTemplate();
+          Assert.assertEquals(what, expected.length, result.length);
+          for (int i = 0; i < expected.length; i++) {
+            if (Float.floatToRawIntBits(expected[i]) != Float.floatToRawIntBits(result[i]))
+              Assert.fail(what + " differs at " + i + ": " + expected[i] + " != " + result[i]);
+          }
+          nrecords++;
+        }
+      }
+    }
+    logger.debug("compared {} records", nrecords);
+    Assert.assertTrue(nrecords > 0);
+  }
+
+  private byte[] copyPadded(byte[] packed) {
+    byte[] result = new byte[packed.length + 8];
+    System.arraycopy(packed, 0, result, 0, packed.length);
+    return result;
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.unidata.io.RandomAccessFile;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Check that pooled JPEG2000 decoders get the same data as new ones, and time the decoding of the
+ * NCEP JPEG2000 sample messages, new decoder each time vs pooled, and pooled on several threads.
+ */
+public class TestGrib2JpegDecoder {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  // NCEP GEFS and SREF
+  private static final String[] sampleFiles =
+      {"pdsScale.pds1.grib2", "sref.pds2.grib2", "sref.pds12.grib2", "sref_eta.grib2"};
+
+  @Test
+  public void testPooledDecoder() throws IOException {
+    List<Message> messages = readJpegMessages();
+    Assert.assertTrue(messages.size() > 0);
+
+    for (Message m : messages) {
+      int[] expected = m.decodeNew();
+      for (int i = 0; i < 3; i++) // reuses the decoder and its buffer
+        Assert.assertArrayEquals(m.toString(), expected, m.decodePooled());
+    }
+  }
+
+  @Test
+  public void testParallel() throws Exception {
+    List<Message> messages = readJpegMessages();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<int[]>> futures = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        for (Message m : messages)
+          futures.add(executor.submit(m::decodePooled));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        Message m = messages.get(i % messages.size());
+        Assert.assertArrayEquals(m.toString(), m.decodeNew(), futures.get(i).get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  // a simple benchmark, results go to the log
+  @Test
+  public void testTiming() throws Exception {
+    List<Message> messages = readJpegMessages();
+    int npasses = 20;
+    for (Message m : messages) { // warm up
+      m.decodeNew();
+      m.decodePooled();
+    }
+
+    long start = System.nanoTime();
+    for (int pass = 0; pass < npasses; pass++) {
+      for (Message m : messages)
+        m.decodeNew();
+    }
+    long newTime = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    for (int pass = 0; pass < npasses; pass++) {
+      for (Message m : messages)
+        m.decodePooled();
+    }
+    long pooledTime = System.nanoTime() - start;
+
+    int nthreads = Runtime.getRuntime().availableProcessors();
+    ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+    start = System.nanoTime();
+    try {
+      List<Future<int[]>> futures = new ArrayList<>();
+      for (int pass = 0; pass < npasses; pass++) {
+        for (Message m : messages)
+          futures.add(executor.submit(m::decodePooled));
+      }
+      for (Future<int[]> f : futures)
+        f.get();
+    } finally {
+      executor.shutdown();
+    }
+    long parallelTime = System.nanoTime() - start;
+
+    int n = npasses * messages.size();
+    logger.info("JPEG2000 decode of {} messages: new decoder {} usecs/msg, pooled {} usecs/msg, pooled on {} threads"
+        + " {} usecs/msg", messages.size(), newTime / 1000 / n, pooledTime / 1000 / n, nthreads,
+        parallelTime / 1000 / n);
+  }
+
+  private List<Message> readJpegMessages() throws IOException {
+    List<Message> result = new ArrayList<>();
+    for (String name : sampleFiles) {
+      try (RandomAccessFile raf = new RandomAccessFile("../grib/src/test/data/" + name, "r")) {
+        Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+        while (scanner.hasNext()) {
+          Grib2Record gr = scanner.next();
+          Grib2SectionDataRepresentation drss = gr.getDataRepresentationSection();
+          if (drss.getDataTemplate() != 40)
+            continue;
+          Grib2Drs.Type40 drs = (Grib2Drs.Type40) drss.getDrs(raf);
+          if (drs.numberOfBits == 0)
+            continue;
+          Grib2SectionData dataSection = gr.getDataSection();
+          byte[] buf = new byte[dataSection.getMsgLength() - 5];
+          raf.seek(dataSection.getStartingPosition() + 5);
+          raf.readFully(buf);
+          result.add(new Message(name, drs.numberOfBits, buf));
+        }
+      }
+    }
+    return result;
+  }
+
+  private static class Message {
+    final String name;
+    final int nbits;
+    final byte[] buf;
+
+    Message(String name, int nbits, byte[] buf) {
+      this.name = name;
+      this.nbits = nbits;
+      this.buf = buf;
+    }
+
+    int[] decodeNew() throws IOException {
+      Grib2JpegDecoder decoder = new Grib2JpegDecoder(nbits, false);
+      decoder.decode(buf);
+      return decoder.getGdata();
+    }
+
+    int[] decodePooled() throws IOException {
+      Grib2JpegDecoder decoder = Grib2JpegDecoder.acquire(nbits);
+      try {
+        byte[] input = decoder.getBuffer(buf.length);
+        System.arraycopy(buf, 0, input, 0, buf.length);
+        decoder.decode(input, buf.length);
+        return decoder.getGdata();
+      } finally {
+        Grib2JpegDecoder.release(decoder);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return name + " nbits=" + nbits + " len=" + buf.length;
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package opendap.dap;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Byte-backed storage for the rows of a flat <code>DSequence</code>, used instead of a
+ * <code>Vector</code> of <code>BaseType</code> objects per row.
+ * <p/>
+ * Each row takes a fixed number of bytes, holding the XDR encoding of each member as it came off the wire:
+ * 4 bytes for Byte, Int16, UInt16, Int32, UInt32 and Float32, 8 bytes for Float64. Strings are variable length,
+ * so they are kept in a separate list, and the row holds the 4 byte index into that list.
+ * All values are big endian. Nothing is decoded until it is asked for.
+ * <p/>
+ * Only sequences whose members are all scalar primitives or Strings can be stored this way.
+ *
+ * @see DSequence#setCompactStorage(boolean)
+ */
+public final class CompactSequenceData {
+  private static final int MAX_STRING = Short.MAX_VALUE; // same limit as DString
+
+  private final BaseType[] templates;
+  private final int[] memberPos; // start of the member's slot in the row
+  private final int rowSize;
+
+  private byte[] data;
+  private int nrows;
+  private final List<String> strings = new ArrayList<>();
+
+  /**
+   * Can a sequence with these member variables use compact storage?
+   *
+   * @param varTemplate the sequence's template variables
+   * @return true if all members are scalar primitives or Strings
+   */
+  static boolean canStore(Vector varTemplate) {
+    if (varTemplate.isEmpty())
+      return false;
+    for (Object o : varTemplate) {
+      if (slotSize((BaseType) o) == 0)
+        return false;
+    }
+    return true;
+  }
+
+  private static int slotSize(BaseType bt) {
+    if (bt instanceof DFloat64)
+      return 8;
+    if ((bt instanceof DByte) || (bt instanceof DInt16) || (bt instanceof DInt32) || (bt instanceof DFloat32)
+        || (bt instanceof DString))
+      return 4;
+    return 0;
+  }
+
+  CompactSequenceData(Vector varTemplate) {
+    templates = new BaseType[varTemplate.size()];
+    memberPos = new int[templates.length];
+    int pos = 0;
+    for (int i = 0; i < templates.length; i++) {
+      templates[i] = (BaseType) varTemplate.elementAt(i);
+      memberPos[i] = pos;
+      pos += slotSize(templates[i]);
+    }
+    rowSize = pos;
+    data = new byte[Math.max(rowSize * 64, 1024)];
+  }
+
+  /**
+   * Read one row from the XDR stream, following the START_OF_INSTANCE marker.
+   */
+  void readRow(DataInputStream source, StatusUI statusUI) throws IOException, DataReadException {
+    int start = nrows * rowSize;
+    if (start + rowSize > data.length) {
+      byte[] bigger = new byte[Math.max(2 * data.length, start + rowSize)];
+      System.arraycopy(data, 0, bigger, 0, start);
+      data = bigger;
+    }
+
+    int nbytes = 0;
+    for (int i = 0; i < templates.length; i++) {
+      int pos = start + memberPos[i];
+      if (templates[i] instanceof DString) {
+        int len = source.readInt();
+        if (len < 0 || len > MAX_STRING)
+          throw new DataReadException("CompactSequenceData string length (dap_length: " + len + ") invalid.");
+        int pad = (len % 4 != 0) ? 4 - (len % 4) : 0;
+        byte[] b = new byte[len + pad];
+        source.readFully(b);
+        // ISO8859_1 maps each byte to the same Unicode value, as DString does
+        strings.add(new String(b, 0, len, StandardCharsets.ISO_8859_1));
+        putInt(pos, strings.size() - 1);
+        nbytes += 4 + len + pad;
+      } else {
+        int size = slotSize(templates[i]);
+        source.readFully(data, pos, size);
+        nbytes += size;
+      }
+    }
+    nrows++;
+
+    if (statusUI != null) {
+      statusUI.incrementByteCount(nbytes);
+      if (statusUI.userCancelled())
+        throw new DataReadException("User cancelled");
+    }
+  }
+
+  private void putInt(int pos, int val) {
+    data[pos] = (byte) (val >>> 24);
+    data[pos + 1] = (byte) (val >>> 16);
+    data[pos + 2] = (byte) (val >>> 8);
+    data[pos + 3] = (byte) val;
+  }
+
+  /** @return number of rows */
+  public int getRowCount() {
+    return nrows;
+  }
+
+  /** @return number of bytes in each row */
+  public int getRowSize() {
+    return rowSize;
+  }
+
+  /** @return number of members in each row */
+  public int getMemberCount() {
+    return templates.length;
+  }
+
+  /**
+   * Get the template variable for the ith member.
+   *
+   * @param i member index
+   * @return template variable, holds no data
+   */
+  public BaseType getTemplate(int i) {
+    return templates[i];
+  }
+
+  /**
+   * Get the offset within a row of the ith member's value. XDR widens Byte and Int16 to 4 bytes,
+   * so for these the offset points to the low order byte(s), and the value can be read
+   * directly as a byte or short.
+   *
+   * @param i member index
+   * @return offset in bytes from the start of the row.
+   */
+  public int getValueOffset(int i) {
+    BaseType bt = templates[i];
+    if (bt instanceof DByte)
+      return memberPos[i] + 3;
+    if (bt instanceof DInt16) // includes DUInt16
+      return memberPos[i] + 2;
+    return memberPos[i];
+  }
+
+  /**
+   * Get the row data, getRowCount() * getRowSize() bytes, big endian.
+   * String members hold an index into getStrings().
+   *
+   * @return the row data as a ByteBuffer; do not modify.
+   */
+  public ByteBuffer getByteBuffer() {
+    return ByteBuffer.wrap(data, 0, nrows * rowSize).slice();
+  }
+
+  /** @return the String values, indexed by the String members of each row; do not modify. */
+  public List<String> getStrings() {
+    return strings;
+  }
+
+  /**
+   * Decode a row into new <code>BaseType</code> objects.
+   *
+   * @param row which row
+   * @return Vector of BaseType, same types and order as the template variables.
+   */
+  Vector makeRow(int row) {
+    ByteBuffer bb = ByteBuffer.wrap(data);
+    int start = row * rowSize;
+    Vector result = new Vector(templates.length);
+    for (int i = 0; i < templates.length; i++) {
+      BaseType bt = (BaseType) templates[i].clone();
+      int pos = start + getValueOffset(i);
+      if (bt instanceof DString)
+        ((DString) bt).setValue(strings.get(bb.getInt(pos)));
+      else if (bt instanceof DFloat64)
+        ((DFloat64) bt).setValue(bb.getDouble(pos));
+      else if (bt instanceof DFloat32)
+        ((DFloat32) bt).setValue(bb.getFloat(pos));
+      else if (bt instanceof DInt32)
+        ((DInt32) bt).setValue(bb.getInt(pos));
+      else if (bt instanceof DInt16)
+        ((DInt16) bt).setValue(bb.getShort(pos));
+      else
+        ((DByte) bt).setValue(bb.get(pos));
+      result.addElement(bt);
+    }
+    return result;
+  }
+}
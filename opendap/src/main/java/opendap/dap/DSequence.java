@@ -91,6 +91,43 @@ public class DSequence extends DConstructor implements ClientIO {
    */
   private int level;
 
+  /**
+   * If not null, the rows are held here instead of in <code>allValues</code>.
+   */
+  private CompactSequenceData compactData;
+
+  private static boolean useCompactStorage = false;
+
+  /**
+   * Set whether <code>deserialize</code> stores the rows of flat sequences (all members are scalar
+   * primitives or Strings) in a <code>CompactSequenceData</code>, instead of creating
+   * <code>BaseType</code> objects for each row. Rows are then decoded only when asked for.
+   * Off by default.
+   *
+   * @param b true to use compact storage
+   */
+  public static void setCompactStorage(boolean b) {
+    useCompactStorage = b;
+  }
+
+  /**
+   * Get the compact row storage, if the rows were deserialized that way.
+   *
+   * @return the compact row storage, or null if the rows are held as <code>BaseType</code> objects.
+   */
+  public CompactSequenceData getCompactData() {
+    return compactData;
+  }
+
+  // convert compact storage into BaseType rows, before anything modifies the rows
+  private void inflate() {
+    if (compactData == null)
+      return;
+    for (int row = 0; row < compactData.getRowCount(); row++)
+      allValues.addElement(compactData.makeRow(row));
+    compactData = null;
+  }
+
   /**
    * Constructs a new <code>DSequence</code>.
    */
@@ -181,6 +218,7 @@ public class DSequence extends DConstructor implements ClientIO {
    * @param row the <code>Vector</code> to add.
    */
   public final void addRow(Vector row) {
+    inflate();
     allValues.addElement(row);
   }
 
@@ -188,11 +226,17 @@ public class DSequence extends DConstructor implements ClientIO {
    * Gets a row from the container. This returns a <code>Vector</code> of
    * variables of the same type and in the same order as the variable template
    * added with the <code>addVariable</code> method.
+   * If the rows are in compact storage, a new <code>Vector</code> is decoded on each call.
    *
    * @param row the row number to retrieve.
    * @return the <code>Vector</code> of <code>BaseType</code> variables.
    */
   public final Vector getRow(int row) {
+    if (compactData != null) {
+      if (row < 0 || row >= compactData.getRowCount())
+        throw new ArrayIndexOutOfBoundsException(row);
+      return compactData.makeRow(row);
+    }
     return (Vector) allValues.elementAt(row);
   }
 
@@ -203,6 +247,7 @@ public class DSequence extends DConstructor implements ClientIO {
    * @throws ArrayIndexOutOfBoundsException if the index was invalid.
    */
   public final void delRow(int row) {
+    inflate();
     allValues.removeElementAt(row);
   }
 
@@ -212,6 +257,8 @@ public class DSequence extends DConstructor implements ClientIO {
    * @return the number of rows currently in this <code>Sequence</code>.
    */
   public int getRowCount() {
+    if (compactData != null)
+      return compactData.getRowCount();
     return allValues.size();
   }
 
@@ -300,7 +347,7 @@ public class DSequence extends DConstructor implements ClientIO {
       else
         ; // fall through to throw statement
     } else {
-      Vector selectedRow = (Vector) allValues.elementAt(row);
+      Vector selectedRow = getRow(row);
       for (Enumeration e = selectedRow.elements(); e.hasMoreElements();) {
         BaseType v = (BaseType) e.nextElement();
         if (v.getEncodedName().equals(name))
@@ -397,6 +444,7 @@ public class DSequence extends DConstructor implements ClientIO {
       os.print(" = ");
     }
 
+    inflate();
     os.print("{ ");
     for (Enumeration e1 = allValues.elements(); e1.hasMoreElements();) {
       // get next instance vector
@@ -449,6 +497,10 @@ public class DSequence extends DConstructor implements ClientIO {
       // and "improved" serialization of OPeNDAP sequences. 8/31/01 ndp
       // // top level of sequence handles start and end markers
       // if (getLevel() == 0) {
+      inflate(); // any existing rows
+      if (useCompactStorage && allValues.isEmpty() && CompactSequenceData.canStore(varTemplate))
+        compactData = new CompactSequenceData(varTemplate);
+
       // loop until end of sequence
       for (;;) {
 
@@ -457,7 +509,9 @@ public class DSequence extends DConstructor implements ClientIO {
         if (statusUI != null)
           statusUI.incrementByteCount(4);
 
-        if (marker == START_OF_INSTANCE)
+        if (marker == START_OF_INSTANCE && compactData != null)
+          compactData.readRow(source, statusUI);
+        else if (marker == START_OF_INSTANCE)
           deserializeSingle(source, sv, statusUI);
         else if (marker == END_OF_SEQUENCE)
           break;
@@ -564,6 +618,7 @@ public class DSequence extends DConstructor implements ClientIO {
    *         exception.
    */
   public void externalize(DataOutputStream sink) throws IOException {
+    inflate();
 
     // loop until end of sequence
     for (int i = 0; i < allValues.size(); i++) {
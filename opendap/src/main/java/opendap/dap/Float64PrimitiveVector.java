@@ -160,14 +160,7 @@ public class Float64PrimitiveVector extends PrimitiveVector {
    */
   public synchronized void deserialize(DataInputStream source, ServerVersion sv, StatusUI statusUI)
       throws IOException, EOFException, DataReadException {
-    for (int i = 0; i < vals.length; i++) {
-      vals[i] = source.readDouble();
-      if (statusUI != null) {
-        statusUI.incrementByteCount(8);
-        if (statusUI.userCancelled())
-          throw new DataReadException("User cancelled");
-      }
-    }
+    readDoubles(source, vals, statusUI);
   }
 
   /**
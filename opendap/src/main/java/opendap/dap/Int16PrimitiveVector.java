@@ -160,14 +160,7 @@ public class Int16PrimitiveVector extends PrimitiveVector {
    */
   public synchronized void deserialize(DataInputStream source, ServerVersion sv, StatusUI statusUI)
       throws IOException, EOFException, DataReadException {
-    for (int i = 0; i < vals.length; i++) {
-      vals[i] = (short) source.readInt();
-      if (statusUI != null) {
-        statusUI.incrementByteCount(4);
-        if (statusUI.userCancelled())
-          throw new DataReadException("User cancelled");
-      }
-    }
+    readShorts(source, vals, statusUI);
   }
 
   /**
@@ -41,6 +41,7 @@
 package opendap.dap;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * A helper class for <code>DVector</code>. It allows <code>DVector</code>,
@@ -263,6 +264,112 @@ public abstract class PrimitiveVector extends DAPNode implements ClientIO {
     return v;
   }
 
+  //////////////////////////////////////////////////////////////////////
+  // Bulk XDR decoding: read a chunk of bytes at a time and convert from the buffer,
+  // rather than making one DataInputStream call per value.
+
+  private static final int CHUNK_BYTES = 32 * 1024;
+
+  /**
+   * Read XDR 4 byte integers into vals.
+   *
+   * @param source read from here
+   * @param vals fill this array
+   * @param statusUI for GUI updates and user cancellation, may be null
+   * @throws IOException on read error
+   * @throws DataReadException if the user cancelled
+   */
+  protected static void readInts(DataInputStream source, int[] vals, StatusUI statusUI)
+      throws IOException, DataReadException {
+    byte[] chunk = new byte[Math.min(CHUNK_BYTES, 4 * vals.length)];
+    ByteBuffer bb = ByteBuffer.wrap(chunk); // XDR is big endian, the ByteBuffer default
+    for (int start = 0; start < vals.length;) {
+      int count = Math.min(vals.length - start, chunk.length / 4);
+      source.readFully(chunk, 0, 4 * count);
+      bb.clear();
+      bb.asIntBuffer().get(vals, start, count);
+      start += count;
+      checkStatus(statusUI, 4 * count);
+    }
+  }
+
+  /**
+   * Read XDR 16 bit integers into vals; each one takes 4 bytes on the wire.
+   *
+   * @param source read from here
+   * @param vals fill this array
+   * @param statusUI for GUI updates and user cancellation, may be null
+   * @throws IOException on read error
+   * @throws DataReadException if the user cancelled
+   */
+  protected static void readShorts(DataInputStream source, short[] vals, StatusUI statusUI)
+      throws IOException, DataReadException {
+    byte[] chunk = new byte[Math.min(CHUNK_BYTES, 4 * vals.length)];
+    ByteBuffer bb = ByteBuffer.wrap(chunk);
+    for (int start = 0; start < vals.length;) {
+      int count = Math.min(vals.length - start, chunk.length / 4);
+      source.readFully(chunk, 0, 4 * count);
+      for (int i = 0; i < count; i++)
+        vals[start + i] = (short) bb.getInt(4 * i);
+      start += count;
+      checkStatus(statusUI, 4 * count);
+    }
+  }
+
+  /**
+   * Read XDR floats into vals.
+   *
+   * @param source read from here
+   * @param vals fill this array
+   * @param statusUI for GUI updates and user cancellation, may be null
+   * @throws IOException on read error
+   * @throws DataReadException if the user cancelled
+   */
+  protected static void readFloats(DataInputStream source, float[] vals, StatusUI statusUI)
+      throws IOException, DataReadException {
+    byte[] chunk = new byte[Math.min(CHUNK_BYTES, 4 * vals.length)];
+    ByteBuffer bb = ByteBuffer.wrap(chunk);
+    for (int start = 0; start < vals.length;) {
+      int count = Math.min(vals.length - start, chunk.length / 4);
+      source.readFully(chunk, 0, 4 * count);
+      bb.clear();
+      bb.asFloatBuffer().get(vals, start, count);
+      start += count;
+      checkStatus(statusUI, 4 * count);
+    }
+  }
+
+  /**
+   * Read XDR doubles into vals.
+   *
+   * @param source read from here
+   * @param vals fill this array
+   * @param statusUI for GUI updates and user cancellation, may be null
+   * @throws IOException on read error
+   * @throws DataReadException if the user cancelled
+   */
+  protected static void readDoubles(DataInputStream source, double[] vals, StatusUI statusUI)
+      throws IOException, DataReadException {
+    byte[] chunk = new byte[Math.min(CHUNK_BYTES, 8 * vals.length)];
+    ByteBuffer bb = ByteBuffer.wrap(chunk);
+    for (int start = 0; start < vals.length;) {
+      int count = Math.min(vals.length - start, chunk.length / 8);
+      source.readFully(chunk, 0, 8 * count);
+      bb.clear();
+      bb.asDoubleBuffer().get(vals, start, count);
+      start += count;
+      checkStatus(statusUI, 8 * count);
+    }
+  }
+
+  private static void checkStatus(StatusUI statusUI, int nbytes) throws DataReadException {
+    if (statusUI != null) {
+      statusUI.incrementByteCount(nbytes);
+      if (statusUI.userCancelled())
+        throw new DataReadException("User cancelled");
+    }
+  }
+
 }
 
 
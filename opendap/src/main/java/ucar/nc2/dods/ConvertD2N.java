@@ -175,6 +175,9 @@ public class ConvertD2N {
         throw new IllegalStateException("DGrid without a darray");
 
       } else if (dataV.bt instanceof DSequence) {
+        CompactSequenceData compact = ((DSequence) dataV.bt).getCompactData();
+        if (compact != null)
+          return makeArrayStructureBB(dataV, compact);
         ArrayStructure structArray = makeArrayStructure(dataV);
         iconvertDataSequenceArray((DSequence) dataV.bt, structArray.getStructureMembers());
         return structArray;
@@ -235,6 +238,32 @@ public class ConvertD2N {
     return new ArrayStructureMA(members, dataV.getShapeAll());
   }
 
+  // flat sequence in compact storage: wrap its bytes, values are decoded when accessed
+  private ArrayStructure makeArrayStructureBB(DodsV dataV, CompactSequenceData compact) throws DAP2Exception {
+    StructureMembers members = new StructureMembers(dataV.getNetcdfShortName());
+    for (int i = 0; i < compact.getMemberCount(); i++) {
+      String name = compact.getTemplate(i).getEncodedName();
+      DodsV memberV = null;
+      for (DodsV dodsV : dataV.children) {
+        if (dodsV.bt.getEncodedName().equals(name))
+          memberV = dodsV;
+      }
+      if (memberV == null)
+        throw new DAP2Exception("Cant find sequence member " + name + " in " + dataV.getEncodedName());
+
+      StructureMembers.Member m =
+          members.addMember(memberV.getNetcdfShortName(), null, null, memberV.getDataType(), new int[0]);
+      m.setDataParam(compact.getValueOffset(i));
+    }
+    members.setStructureSize(compact.getRowSize());
+
+    ArrayStructureBB asbb =
+        new ArrayStructureBB(members, new int[] {compact.getRowCount()}, compact.getByteBuffer(), 0);
+    for (String sval : compact.getStrings())
+      asbb.addObjectToHeap(new String[] {sval}); // heap index == string index
+    return asbb;
+  }
+
   private ArrayStructure makeArrayNestedSequence(DodsV dataV) {
 
     // make the members
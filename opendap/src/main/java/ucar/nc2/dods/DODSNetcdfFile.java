@@ -16,12 +16,20 @@ import ucar.nc2.iosp.IospHelper;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.util.rc.RC;
 import ucar.unidata.util.StringUtil2;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Access to DODS datasets through the Netcdf API.
@@ -87,6 +95,17 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
     accept_compress = b;
   }
 
+  /**
+   * Set whether flat Sequences (all members are scalars) are read into compact byte-backed storage,
+   * and returned as an ArrayStructureBB that decodes values when they are accessed. This avoids
+   * creating objects for every value of large Sequences.
+   *
+   * @param b true or false. default is false.
+   */
+  public static void setCompactSequences(boolean b) {
+    DSequence.setCompactStorage(b);
+  }
+
   /**
    * Debugging flags. This is a way to decouple setting flags from particular implementations.
    *
@@ -128,6 +147,65 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
     preloadCoordVarSize = size;
   }
 
+  private static ResponseCache responseCache = null;
+
+  /**
+   * Set the size of the client side response cache, shared by all DODSNetcdfFile objects.
+   * Data read from the server is kept, keyed by dataset URL and constraint expression, until the
+   * total size exceeds maxBytes, when the least recently used responses are discarded.
+   * Only arrays of primitive types are cached, not String arrays. Off by default; only use on datasets that dont change.
+   *
+   * @param maxBytes maximum number of bytes kept in the cache; 0 turns the cache off and discards its contents.
+   */
+  public static synchronized void setResponseCacheSize(long maxBytes) {
+    if (maxBytes <= 0) {
+      responseCache = null;
+    } else if (responseCache == null) {
+      responseCache = new ResponseCache(maxBytes);
+    } else {
+      responseCache.setMaxBytes(maxBytes);
+    }
+  }
+
+  /** Discard everything in the client side response cache. */
+  public static synchronized void clearResponseCache() {
+    if (responseCache != null)
+      responseCache.clear();
+  }
+
+  static synchronized ResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  private static ExecutorService requestPool = null;
+  private static long parallelReadSize = Long.MAX_VALUE;
+
+  /**
+   * Allow readArrays() to fetch large variables with their own requests to the server, concurrently with
+   * the request for the rest of the batch. Each concurrent request uses its own connection.
+   *
+   * @param maxConcurrent maximum number of concurrent requests, shared by all DODSNetcdfFile objects;
+   *        0 or 1 means always read in the calling thread (default).
+   * @param minBytes variables at least this size (in bytes) are requested in parallel.
+   */
+  public static synchronized void setParallelRequests(int maxConcurrent, long minBytes) {
+    if (requestPool != null) {
+      requestPool.shutdown();
+      requestPool = null;
+    }
+    if (maxConcurrent > 1) {
+      requestPool = Executors.newFixedThreadPool(maxConcurrent,
+          new ThreadFactoryBuilder().setNameFormat("DODSRequest-%d").setDaemon(true).build());
+      parallelReadSize = minBytes;
+    } else {
+      parallelReadSize = Long.MAX_VALUE;
+    }
+  }
+
+  private static synchronized ExecutorService getRequestPool() {
+    return requestPool;
+  }
+
   /**
    * Create the canonical form of the URL.
    * If the urlName starts with "http:" or "https:", change it to start with "dods:", otherwise
@@ -149,6 +227,7 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
   //////////////////////////////////////////////////////////////////////////////////
   private ConvertD2N convertD2N = new ConvertD2N();
   private DConnect2 dodsConnection = null;
+  private String datasetURL; // http url without the CE, used for extra connections
   private DDS dds;
   private DAS das;
 
@@ -194,6 +273,8 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
     if (debugServerCall)
       System.out.println("DConnect to = <" + urlName + ">");
     dodsConnection = new DConnect2(urlName, accept_compress);
+    int ceStart = urlName.indexOf('?');
+    this.datasetURL = (ceStart < 0) ? urlName : urlName.substring(0, ceStart);
     if (cancelTask != null && cancelTask.isCancel())
       return;
 
@@ -1491,6 +1572,23 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
     return data;
   }
 
+  /**
+   * Same as readDataDDSfromServer(), but on a new connection to the server, so it can run
+   * concurrently with other requests.
+   */
+  private DataDDS readDataDDSfromNewConnection(String CE) throws IOException, opendap.dap.DAP2Exception {
+    if (debugServerCall)
+      System.out.println("DODSNetcdfFile.readDataDDSfromNewConnection = <" + CE + ">");
+    if (!CE.startsWith("?"))
+      CE = "?" + CE;
+    DConnect2 conn = new DConnect2(datasetURL, accept_compress);
+    try {
+      return conn.getData(CE, null);
+    } finally {
+      conn.close();
+    }
+  }
+
   ///////////////////////////////////////////////////////////////////
   // ALL the I/O goes through these routines
   // called from ucar.nc2.Variable
@@ -1606,21 +1704,159 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
     return result;
   }
 
-  @Override
-  public Array readSection(String variableSection) throws IOException, InvalidRangeException {
-    ParsedSectionSpec cer = ParsedSectionSpec.parseVariableSection(this, variableSection);
-    return readData(cer.v, cer.section);
+  /**
+   * Read a section of each of the named variables, combining as many as possible into a
+   * single client/server roundtrip. Variables that are members of structures, or that are not
+   * primitive arrays, are read one at a time. If setParallelRequests() has been called,
+   * large variables are fetched with their own requests, concurrently with the rest of the batch.
+   * If setResponseCacheSize() has been called, responses already in the cache are not requested again.
+   *
+   * @param variables list of Variables to read
+   * @param sections matching list of Sections; a null Section means read the entire Variable
+   * @return list of Arrays, in the same order as the Variables
+   * @throws IOException on error
+   * @throws InvalidRangeException if a Section is invalid
+   */
+  public List<Array> readArrays(List<Variable> variables, List<Section> sections)
+      throws IOException, InvalidRangeException {
+    if (variables.size() != sections.size())
+      throw new IllegalArgumentException("must have one Section for each Variable");
+
+    int n = variables.size();
+    Array[] result = new Array[n];
+    Section[] want = new Section[n];
+    String[] wantCE = new String[n];
+    List<Integer> batch = new ArrayList<>();
+    List<Integer> single = new ArrayList<>();
+    Set<Variable> inBatch = new HashSet<>();
+    ResponseCache rcache = getResponseCache();
+    ExecutorService pool = getRequestPool();
+
+    for (int i = 0; i < n; i++) {
+      Variable v = variables.get(i);
+      Section section = Section.fill(sections.get(i), v.getShape());
+      if (v.hasCachedData() || !isBatchable(v)) {
+        result[i] = v.read(section);
+        continue;
+      }
+      want[i] = section;
+      wantCE[i] = makeConstraint(v, section);
+      if (rcache != null && (result[i] = rcache.get(ResponseCache.makeKey(location, wantCE[i]))) != null)
+        continue;
+
+      long size = section.computeSize() * v.getElementSize();
+      if (pool != null && size >= parallelReadSize)
+        single.add(i);
+      else if (inBatch.add(v)) // a Variable can only appear once in a CE
+        batch.add(i);
+      else
+        single.add(i);
+    }
+
+    // start the parallel requests, if any, then make the batch request on this thread
+    List<Future<DataDDS>> futures = new ArrayList<>();
+    if (pool != null) {
+      for (int idx : single) {
+        String CE = wantCE[idx];
+        Callable<DataDDS> task = () -> readDataDDSfromNewConnection(CE);
+        Future<DataDDS> future;
+        try {
+          future = pool.submit(task);
+        } catch (RejectedExecutionException e) { // setParallelRequests() has shut down the pool
+          FutureTask<DataDDS> inline = new FutureTask<>(task);
+          inline.run();
+          future = inline;
+        }
+        futures.add(future);
+      }
+    }
+
+    try {
+      if (!batch.isEmpty()) {
+        StringBuilder requestString = new StringBuilder();
+        for (int idx : batch) {
+          requestString.append(requestString.length() == 0 ? "?" : ",");
+          requestString.append(wantCE[idx]);
+        }
+
+        DodsV root;
+        try {
+          root = DodsV.parseDataDDS(readDataDDSfromServer(requestString.toString()));
+        } catch (DAP2Exception | ParseException exc) {
+          logger.error("ERROR readDataDDSfromServer on " + requestString, exc);
+          throw new IOException(exc.getMessage());
+        }
+
+        for (int idx : batch) {
+          Variable v = variables.get(idx);
+          DodsV dataV = root.findDataV((DodsV) v.getSPobject());
+          if (dataV == null)
+            throw new IOException("DODSNetcdfFile.readArrays cant find " + v.getFullName() + " in dataDDS; " + location);
+          result[idx] = convertTopVariable(v, want[idx], dataV);
+          if (rcache != null)
+            rcache.put(ResponseCache.makeKey(location, wantCE[idx]), result[idx]);
+        }
+      }
+
+      for (int i = 0; i < single.size(); i++) {
+        int idx = single.get(i);
+        Variable v = variables.get(idx);
+        if (pool == null) {
+          result[idx] = readData(v, want[idx]);
+          continue;
+        }
+
+        DataDDS dataDDS;
+        try {
+          dataDDS = futures.get(i).get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("DODSNetcdfFile.readArrays interrupted", e);
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException)
+            throw (IOException) cause;
+          throw new IOException(cause.getMessage() + "; " + v.getShortName() + " -- " + want[idx], cause);
+        }
+
+        try {
+          result[idx] = convertTopVariable(v, want[idx], DodsV.parseDataDDS(dataDDS).children.get(0));
+        } catch (DAP2Exception | ParseException ex) {
+          throw new IOException(ex.getMessage());
+        }
+        if (rcache != null)
+          rcache.put(ResponseCache.makeKey(location, wantCE[idx]), result[idx]);
+      }
+
+    } finally {
+      for (Future<DataDDS> f : futures)
+        f.cancel(true); // no-op on the ones that are done
+    }
+
+    return Arrays.asList(result);
   }
 
-  @Override
-  protected Array readData(ucar.nc2.Variable v, Section section) throws IOException, InvalidRangeException {
-    // if (unlocked)
-    // throw new IllegalStateException("File is unlocked - cannot use");
+  // top level primitive and String arrays can be combined into one request; ResponseCache keeps only the primitive ones
+  private boolean isBatchable(Variable v) {
+    if (v.isMemberOfStructure() || v.isVariableLength())
+      return false;
+    if (v.getDataType() == DataType.STRUCTURE || v.getDataType() == DataType.SEQUENCE)
+      return false;
+    Object spobj = v.getSPobject();
+    return (spobj instanceof DodsV) && (((DodsV) spobj).parent.bt == null);
+  }
 
-    // LOOK: what if theres already a CE !!!!
-    // create the constraint expression
+  private Array convertTopVariable(Variable v, Section section, DodsV dataV) throws IOException {
+    try {
+      return convertD2N.convertTopVariable(v, section.getRanges(), dataV);
+    } catch (DAP2Exception ex) {
+      throw new IOException(ex.getMessage() + "; " + v.getShortName() + " -- " + section);
+    }
+  }
+
+  // create the constraint expression for reading a section of a Variable
+  private String makeConstraint(Variable v, Section section) {
     StringBuilder buff = new StringBuilder(100);
-    buff.setLength(0);
     buff.append(getDODSConstraintName(v));
 
     // add the selector if not a Sequence
@@ -1633,13 +1869,37 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
       }
       makeSelector(buff, dodsSection);
     }
+    return buff.toString();
+  }
+
+  @Override
+  public Array readSection(String variableSection) throws IOException, InvalidRangeException {
+    ParsedSectionSpec cer = ParsedSectionSpec.parseVariableSection(this, variableSection);
+    return readData(cer.v, cer.section);
+  }
+
+  @Override
+  protected Array readData(ucar.nc2.Variable v, Section section) throws IOException, InvalidRangeException {
+    // if (unlocked)
+    // throw new IllegalStateException("File is unlocked - cannot use");
+
+    // LOOK: what if theres already a CE !!!!
+    // create the constraint expression
+    String CE = makeConstraint(v, section);
+
+    ResponseCache rcache = isBatchable(v) ? getResponseCache() : null;
+    if (rcache != null) {
+      Array cached = rcache.get(ResponseCache.makeKey(location, CE));
+      if (cached != null)
+        return cached;
+    }
 
     Array dataArray;
     try {
       // DodsV root = DodsV.parseDDS( readDataDDSfromServer(buff.toString()));
       // data = convertD2N( (DodsV) root.children.get(0), v, section, false); // can only be one
 
-      DataDDS dataDDS = readDataDDSfromServer(buff.toString());
+      DataDDS dataDDS = readDataDDSfromServer(CE);
       DodsV root = DodsV.parseDataDDS(dataDDS);
       DodsV want = root.children.get(0); // can only be one
       dataArray = convertD2N.convertTopVariable(v, section.getRanges(), want);
@@ -1653,6 +1913,8 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
       throw new IOException(ex.getMessage());
     }
 
+    if (rcache != null)
+      rcache.put(ResponseCache.makeKey(location, CE), dataArray);
     return dataArray;
   }
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dods;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Client side cache of converted DODS responses, keyed by dataset URL + constraint expression.
+ * Entries are evicted in least-recently-used order once the total size of the cached Arrays
+ * exceeds the byte limit. Arrays are copied on the way in and out, so callers may modify what they get back.
+ * Only Arrays of primitive types are cached; put() ignores String Arrays, whose size in bytes is not known.
+ */
+class ResponseCache {
+  private final LinkedHashMap<String, Array> map = new LinkedHashMap<>(64, .75f, true); // access order
+  private long maxBytes;
+  private long totalBytes;
+  private int hits, misses;
+
+  ResponseCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  static String makeKey(String location, String CE) {
+    return location + (CE.startsWith("?") ? CE : "?" + CE);
+  }
+
+  synchronized Array get(String key) {
+    Array data = map.get(key);
+    if (data == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return data.copy();
+  }
+
+  synchronized void put(String key, Array data) {
+    if (data.getDataType() == DataType.STRING)
+      return;
+    long size = data.getSizeBytes();
+    if (size > maxBytes)
+      return;
+    Array prev = map.put(key, data.copy());
+    if (prev != null)
+      totalBytes -= prev.getSizeBytes();
+    totalBytes += size;
+    evict();
+  }
+
+  synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  synchronized void clear() {
+    map.clear();
+    totalBytes = 0;
+  }
+
+  synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+
+  synchronized int getHits() {
+    return hits;
+  }
+
+  synchronized int getMisses() {
+    return misses;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<String, Array>> iter = map.entrySet().iterator();
+    while (totalBytes > maxBytes && iter.hasNext()) {
+      totalBytes -= iter.next().getValue().getSizeBytes();
+      iter.remove();
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("ResponseCache{entries=%d bytes=%d/%d hits=%d misses=%d}", map.size(), totalBytes, maxBytes,
+        hits, misses);
+  }
+}
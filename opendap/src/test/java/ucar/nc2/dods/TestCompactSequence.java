@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dods;
+
+import opendap.dap.*;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.ma2.Array;
+import ucar.ma2.ArrayStructure;
+import ucar.ma2.ArrayStructureBB;
+import ucar.ma2.ArrayStructureMA;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureMembers;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandles;
+import java.util.Objects;
+import java.util.Vector;
+
+/** Compare compact Sequence storage and bulk array decoding with the original BaseType decoding. */
+public class TestCompactSequence {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final int NROWS = 1000;
+  private static final String DDS = "Dataset {\n" + "  Sequence {\n" + "    Int32 i;\n" + "    Float64 d;\n"
+      + "    String s;\n" + "    Byte b;\n" + "    Int16 h;\n" + "    UInt16 uh;\n" + "    Float32 f;\n" + "  } seq;\n"
+      + "  Float32 farr[3000];\n" + "  Int16 harr[17];\n" + "} compact;\n";
+
+  @After
+  public void reset() {
+    DSequence.setCompactStorage(false);
+  }
+
+  @Test
+  public void testCompactMatchesOriginal() throws Exception {
+    byte[] serialized = makeData();
+
+    DataDDS original = read(serialized, false);
+    DataDDS compact = read(serialized, true);
+
+    DSequence seqOrg = (DSequence) original.getVariable("seq");
+    DSequence seqCompact = (DSequence) compact.getVariable("seq");
+    Assert.assertNull(seqOrg.getCompactData());
+    Assert.assertNotNull(seqCompact.getCompactData());
+    Assert.assertEquals(NROWS, seqCompact.getRowCount());
+
+    // rows decoded on demand are the same
+    for (int row = 0; row < NROWS; row += 37)
+      Assert.assertEquals(printRow(seqOrg.getRow(row)), printRow(seqCompact.getRow(row)));
+
+    // converted Arrays have the same values
+    ConvertD2N converter = new ConvertD2N();
+    ArrayStructure asOrg = (ArrayStructure) converter.convert(DodsV.parseDataDDS(original).findDodsV("seq", false));
+    ArrayStructure asCompact =
+        (ArrayStructure) converter.convert(DodsV.parseDataDDS(compact).findDodsV("seq", false));
+    Assert.assertTrue(asOrg instanceof ArrayStructureMA);
+    Assert.assertTrue(asCompact instanceof ArrayStructureBB);
+    Assert.assertEquals(asOrg.getSize(), asCompact.getSize());
+
+    for (int row = 0; row < NROWS; row++) {
+      StructureData sdOrg = asOrg.getStructureData(row);
+      StructureData sdCompact = asCompact.getStructureData(row);
+      for (StructureMembers.Member m : sdOrg.getMembers()) {
+        StructureMembers.Member mc = sdCompact.findMember(m.getName());
+        Assert.assertEquals(m.getDataType(), mc.getDataType());
+        Assert.assertEquals(m.getName() + " row " + row, sdOrg.getArray(m).toString(), sdCompact.getArray(mc).toString());
+      }
+    }
+
+    // member columns come out the same
+    for (StructureMembers.Member m : asOrg.getMembers()) {
+      Array colOrg = asOrg.extractMemberArray(m);
+      Array colCompact = asCompact.extractMemberArray(asCompact.findMember(m.getName()));
+      Assert.assertEquals(m.getName(), colOrg.toString(), colCompact.toString());
+    }
+
+    // primitive arrays, read in bulk
+    for (String name : new String[] {"farr", "harr"}) {
+      Object storageOrg = ((DArray) original.getVariable(name)).getPrimitiveVector().getInternalStorage();
+      Object storageCompact = ((DArray) compact.getVariable(name)).getPrimitiveVector().getInternalStorage();
+      Assert.assertTrue(name, Objects.deepEquals(storageOrg, storageCompact));
+    }
+  }
+
+  @Test
+  public void testModifyInflates() throws Exception {
+    DataDDS compact = read(makeData(), true);
+    DSequence seq = (DSequence) compact.getVariable("seq");
+    Vector row0 = seq.getRow(0);
+    seq.delRow(NROWS - 1);
+    Assert.assertNull(seq.getCompactData());
+    Assert.assertEquals(NROWS - 1, seq.getRowCount());
+    Assert.assertEquals(printRow(row0), printRow(seq.getRow(0)));
+  }
+
+  private DataDDS read(byte[] serialized, boolean useCompact) throws Exception {
+    DSequence.setCompactStorage(useCompact);
+    DConnect2 conn = new DConnect2(new ByteArrayInputStream(serialized));
+    return conn.getData("");
+  }
+
+  private String printRow(Vector row) {
+    StringWriter sw = new StringWriter();
+    PrintWriter pw = new PrintWriter(sw);
+    for (Object o : row) {
+      ((BaseType) o).printVal(pw, "", true);
+      pw.print("; ");
+    }
+    pw.flush();
+    return sw.toString();
+  }
+
+  private byte[] makeData() throws Exception {
+    DataDDS dds = new DataDDS(new ServerVersion(ServerVersion.DAP2_PROTOCOL_VERSION, ServerVersion.XDAP));
+    dds.parse(DDS);
+
+    DSequence seq = (DSequence) dds.getVariable("seq");
+    for (int row = 0; row < NROWS; row++) {
+      Vector vals = new Vector();
+      DInt32 i = new DInt32("i");
+      i.setValue(row * 1000 - 7);
+      vals.add(i);
+      DFloat64 d = new DFloat64("d");
+      d.setValue(row / 3.0);
+      vals.add(d);
+      DString s = new DString("s");
+      s.setValue("row" + (row % 5 == 0 ? "" : Integer.toString(row))); // varying lengths, to check padding
+      vals.add(s);
+      DByte b = new DByte("b");
+      b.setValue((byte) row);
+      vals.add(b);
+      DInt16 h = new DInt16("h");
+      h.setValue((short) (-row));
+      vals.add(h);
+      DUInt16 uh = new DUInt16("uh");
+      uh.setValue((short) (60000 + row));
+      vals.add(uh);
+      DFloat32 f = new DFloat32("f");
+      f.setValue(row * 1.5f);
+      vals.add(f);
+      seq.addRow(vals);
+    }
+
+    float[] farr = new float[3000];
+    for (int k = 0; k < farr.length; k++)
+      farr[k] = k * 0.25f;
+    ((DArray) dds.getVariable("farr")).getPrimitiveVector().setInternalStorage(farr);
+
+    short[] harr = new short[17];
+    for (int k = 0; k < harr.length; k++)
+      harr[k] = (short) (k - 8);
+    ((DArray) dds.getVariable("harr")).getPrimitiveVector().setInternalStorage(harr);
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    dds.externalize(bos, false, false);
+    return bos.toByteArray();
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dods;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import opendap.dap.DArray;
+import opendap.dap.DataDDS;
+import opendap.dap.ServerVersion;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.ma2.Array;
+import ucar.ma2.ArrayDouble;
+import ucar.ma2.ArrayInt;
+import ucar.ma2.DataType;
+import ucar.ma2.Section;
+import ucar.nc2.Variable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test DODSNetcdfFile.readArrays(List, List) batching, parallel requests and the response cache
+ * against a local stand-in server that applies projections and hyperslabs on 1D arrays.
+ */
+public class TestDODSBatchRead {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final String[] names = {"i32", "j32", "f64", "big"};
+  private static final int[] sizes = {25, 25, 25, 2000};
+
+  private static HttpServer server;
+  private static final List<String> dataRequests = Collections.synchronizedList(new ArrayList<>());
+
+  @BeforeClass
+  public static void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/dods/batch", TestDODSBatchRead::handle);
+    server.start();
+  }
+
+  @AfterClass
+  public static void stopServer() {
+    server.stop(0);
+  }
+
+  private DODSNetcdfFile dodsfile;
+
+  @Before
+  public void open() throws IOException {
+    dataRequests.clear();
+    dodsfile = new DODSNetcdfFile("dods://127.0.0.1:" + server.getAddress().getPort() + "/dods/batch");
+  }
+
+  @After
+  public void close() throws IOException {
+    dodsfile.close();
+    DODSNetcdfFile.setResponseCacheSize(0);
+    DODSNetcdfFile.setParallelRequests(0, 0);
+  }
+
+  @Test
+  public void testBatchIsOneRequest() throws Exception {
+    Variable i32 = dodsfile.findVariable("i32");
+    Variable j32 = dodsfile.findVariable("j32");
+    Variable f64 = dodsfile.findVariable("f64");
+
+    List<Array> result = dodsfile.readArrays(Arrays.asList(i32, j32, f64),
+        Arrays.asList(new Section("2:10"), null, new Section("0:24:4")));
+    Assert.assertEquals(dataRequests.toString(), 1, dataRequests.size());
+
+    checkInt(result.get(0), 2, 10, 1, 2048);
+    checkInt(result.get(1), 0, 24, 1, -1);
+    checkDouble(result.get(2), 0, 24, 4);
+  }
+
+  @Test
+  public void testSameVariableTwice() throws Exception {
+    Variable i32 = dodsfile.findVariable("i32");
+
+    List<Array> result =
+        dodsfile.readArrays(Arrays.asList(i32, i32), Arrays.asList(new Section("0:4"), new Section("20:24")));
+    Assert.assertEquals(dataRequests.toString(), 2, dataRequests.size());
+    checkInt(result.get(0), 0, 4, 1, 2048);
+    checkInt(result.get(1), 20, 24, 1, 2048);
+  }
+
+  @Test
+  public void testParallelRequests() throws Exception {
+    DODSNetcdfFile.setParallelRequests(2, 1000);
+    Variable i32 = dodsfile.findVariable("i32");
+    Variable f64 = dodsfile.findVariable("f64");
+    Variable big = dodsfile.findVariable("big");
+
+    List<Array> result = dodsfile.readArrays(Arrays.asList(big, i32, f64), Arrays.asList(null, null, null));
+    Assert.assertEquals(dataRequests.toString(), 2, dataRequests.size());
+
+    checkDouble(result.get(0), 0, 1999, 1);
+    checkInt(result.get(1), 0, 24, 1, 2048);
+    checkDouble(result.get(2), 0, 24, 1);
+  }
+
+  // setParallelRequests() shuts down the old pool while reads that started with it are still submitting
+  @Test
+  public void testSetParallelRequestsWhileReading() throws Exception {
+    Variable i32 = dodsfile.findVariable("i32");
+    Variable big = dodsfile.findVariable("big");
+
+    AtomicBoolean done = new AtomicBoolean();
+    Thread changer = new Thread(() -> {
+      int n = 2;
+      while (!done.get()) {
+        DODSNetcdfFile.setParallelRequests(n, 1000);
+        n = (n == 2) ? 3 : 2;
+        Thread.yield();
+      }
+    });
+    DODSNetcdfFile.setParallelRequests(2, 1000);
+    changer.start();
+    try {
+      for (int pass = 0; pass < 50; pass++) {
+        List<Array> result = dodsfile.readArrays(Arrays.asList(big, i32), Arrays.asList(null, null));
+        checkDouble(result.get(0), 0, 1999, 1);
+        checkInt(result.get(1), 0, 24, 1, 2048);
+      }
+    } finally {
+      done.set(true);
+      changer.join();
+    }
+  }
+
+  @Test
+  public void testResponseCache() throws Exception {
+    DODSNetcdfFile.setResponseCacheSize(100 * 1000);
+    Variable i32 = dodsfile.findVariable("i32");
+    Variable f64 = dodsfile.findVariable("f64");
+    List<Section> whole = Arrays.asList(null, null);
+
+    checkInt(dodsfile.readArrays(Collections.singletonList(i32), Collections.singletonList(null)).get(0), 0, 24, 1,
+        2048);
+    Assert.assertEquals(dataRequests.toString(), 1, dataRequests.size());
+
+    // i32 comes from the cache, only f64 is requested
+    List<Array> result = dodsfile.readArrays(Arrays.asList(i32, f64), whole);
+    Assert.assertEquals(dataRequests.toString(), 2, dataRequests.size());
+    Assert.assertFalse(dataRequests.get(1), dataRequests.get(1).contains("i32"));
+    checkInt(result.get(0), 0, 24, 1, 2048);
+    checkDouble(result.get(1), 0, 24, 1);
+
+    // callers can modify what they get back
+    result.get(0).setInt(0, 999);
+    checkInt(dodsfile.readArrays(Arrays.asList(i32, f64), whole).get(0), 0, 24, 1, 2048);
+    Assert.assertEquals(dataRequests.toString(), 2, dataRequests.size());
+
+    // the cache is shared by other opens of the same dataset
+    try (DODSNetcdfFile other = new DODSNetcdfFile(dodsfile.getLocation())) {
+      checkDouble(other.findVariable("f64").read(), 0, 24, 1);
+      Assert.assertEquals(dataRequests.toString(), 2, dataRequests.size());
+
+      // a different section is a different CE
+      checkInt(other.readSection("i32(3:5)"), 3, 5, 1, 2048);
+      Assert.assertEquals(dataRequests.toString(), 3, dataRequests.size());
+    }
+  }
+
+  @Test
+  public void testCacheEviction() {
+    ResponseCache rcache = new ResponseCache(250);
+    for (int i = 0; i < 3; i++)
+      rcache.put("key" + i, Array.factory(DataType.INT, new int[] {25})); // 100 bytes each
+    Assert.assertEquals(200, rcache.getTotalBytes());
+    Assert.assertNull(rcache.get("key0"));
+    Assert.assertNotNull(rcache.get("key1"));
+
+    rcache.put("key3", Array.factory(DataType.INT, new int[] {25})); // key2 is now the least recently used
+    Assert.assertNull(rcache.get("key2"));
+    Assert.assertNotNull(rcache.get("key1"));
+
+    rcache.put("huge", Array.factory(DataType.INT, new int[] {1000})); // bigger than the cache, not kept
+    Assert.assertNull(rcache.get("huge"));
+    Assert.assertEquals(200, rcache.getTotalBytes());
+
+    rcache.put("strings", Array.factory(DataType.STRING, new int[] {2}, new String[] {"a", "b"})); // size not known
+    Assert.assertNull(rcache.get("strings"));
+    Assert.assertEquals(200, rcache.getTotalBytes());
+  }
+
+  private void checkInt(Array data, int first, int last, int stride, int scale) {
+    Assert.assertTrue(data instanceof ArrayInt);
+    Assert.assertEquals((last - first) / stride + 1, data.getSize());
+    int count = 0;
+    for (int i = first; i <= last; i += stride)
+      Assert.assertEquals(i * scale, data.getInt(count++));
+  }
+
+  private void checkDouble(Array data, int first, int last, int stride) {
+    Assert.assertTrue(data instanceof ArrayDouble);
+    Assert.assertEquals((last - first) / stride + 1, data.getSize());
+    int count = 0;
+    for (int i = first; i <= last; i += stride)
+      Assert.assertEquals(i / 2.0, data.getDouble(count++), 0.0);
+  }
+
+  ////////////////////////////////////////////////////////////////////////
+  // the stand-in server
+
+  private static void handle(HttpExchange exchange) throws IOException {
+    try {
+      String path = exchange.getRequestURI().getPath();
+      String query = exchange.getRequestURI().getRawQuery();
+      String CE = (query == null) ? "" : URLDecoder.decode(query, "UTF-8");
+
+      byte[] body;
+      String description;
+      if (path.endsWith(".dds")) {
+        body = makeDDS(names, sizes).getBytes(StandardCharsets.UTF_8);
+        description = "dods-dds";
+      } else if (path.endsWith(".das")) {
+        body = "Attributes {\n}\n".getBytes(StandardCharsets.UTF_8);
+        description = "dods-das";
+      } else if (path.endsWith(".dods")) {
+        dataRequests.add(CE);
+        body = makeData(CE);
+        description = "dods-data";
+      } else {
+        exchange.sendResponseHeaders(404, -1);
+        return;
+      }
+
+      exchange.getResponseHeaders().add("XDAP", ServerVersion.DAP2_PROTOCOL_VERSION);
+      exchange.getResponseHeaders().add("XDODS-Server", "dods/" + ServerVersion.DAP2_PROTOCOL_VERSION);
+      exchange.getResponseHeaders().add("Content-Description", description);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+
+    } catch (Exception e) {
+      logger.error("stand-in server failed", e);
+      exchange.sendResponseHeaders(500, -1);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static String makeDDS(String[] vnames, int[] vsizes) {
+    StringBuilder sbuff = new StringBuilder("Dataset {\n");
+    for (int i = 0; i < vnames.length; i++) {
+      String type = vnames[i].endsWith("32") ? "Int32" : "Float64";
+      sbuff.append(String.format("  %s %s[%d];%n", type, vnames[i], vsizes[i]));
+    }
+    return sbuff.append("} batch;\n").toString();
+  }
+
+  // CE is a list of projections, each one a name with an optional [first:stride:last]
+  private static byte[] makeData(String CE) throws Exception {
+    String[] proj = CE.split(",");
+    String[] vnames = new String[proj.length];
+    int[][] hyperslab = new int[proj.length][];
+    int[] vsizes = new int[proj.length];
+    for (int i = 0; i < proj.length; i++) {
+      int pos = proj[i].indexOf('[');
+      vnames[i] = (pos < 0) ? proj[i] : proj[i].substring(0, pos);
+      int full = sizes[Arrays.asList(names).indexOf(vnames[i])];
+      if (pos < 0) {
+        hyperslab[i] = new int[] {0, 1, full - 1};
+      } else {
+        String[] tokens = proj[i].substring(pos + 1, proj[i].length() - 1).split(":");
+        hyperslab[i] = new int[] {Integer.parseInt(tokens[0]), Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2])};
+      }
+      vsizes[i] = (hyperslab[i][2] - hyperslab[i][0]) / hyperslab[i][1] + 1;
+    }
+
+    DataDDS dds = new DataDDS(new ServerVersion(ServerVersion.DAP2_PROTOCOL_VERSION, ServerVersion.XDAP));
+    dds.parse(makeDDS(vnames, vsizes));
+    for (int i = 0; i < vnames.length; i++) {
+      DArray darray = (DArray) dds.getVariable(vnames[i]);
+      int[] slab = hyperslab[i];
+      if (vnames[i].endsWith("32")) {
+        int scale = vnames[i].equals("i32") ? 2048 : -1;
+        int[] vals = new int[vsizes[i]];
+        for (int k = 0; k < vals.length; k++)
+          vals[k] = (slab[0] + k * slab[1]) * scale;
+        darray.getPrimitiveVector().setInternalStorage(vals);
+      } else {
+        double[] vals = new double[vsizes[i]];
+        for (int k = 0; k < vals.length; k++)
+          vals[k] = (slab[0] + k * slab[1]) / 2.0;
+        darray.getPrimitiveVector().setInternalStorage(vals);
+      }
+    }
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    dds.externalize(bos, false, false);
+    return bos.toByteArray();
+  }
+}
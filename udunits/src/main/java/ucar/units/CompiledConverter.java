@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.units;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A converter that is compiled once into a short list of primitive steps, instead of calling through the chain of
+ * units for each value. Consecutive scalings and offsets are fused into one affine step, so that most conversions
+ * (K to Celsius, Pa to hPa, m to km) become a single multiply (or divide) and add. Logarithmic units add exp and log
+ * steps.
+ * <p>
+ * Arrays are converted one step at a time over the whole array.
+ */
+@Immutable
+final class CompiledConverter extends ConverterImpl {
+  private static final int AFFINE = 0; // x * mul / div + add
+  private static final int EXP = 1; // exp(x)
+  private static final int LOG = 2; // ln(x)
+
+  /**
+   * Compile a converter between two units.
+   *
+   * @param fromUnit The unit from which to convert.
+   * @param toUnit The unit to which to convert.
+   * @return the converter, or null if one of the units is not made of scalings, offsets and logarithms of a
+   *         derived unit.
+   * @throws ConversionException The units are not convertible.
+   */
+  static Converter compile(final Unit fromUnit, final Unit toUnit) throws ConversionException {
+    final List<Step> to = new ArrayList<>();
+    final List<Step> from = new ArrayList<>();
+    if (!toDerivedSteps(fromUnit, to) || !toDerivedSteps(toUnit, from)) {
+      return null;
+    }
+
+    // fromUnit -> derived unit -> toUnit, which needs the inverse of toUnit's steps, in reverse order
+    final List<Step> steps = new ArrayList<>(to);
+    for (int i = from.size() - 1; i >= 0; i--) {
+      from.get(i).addInverse(steps);
+    }
+    return new CompiledConverter(fromUnit, toUnit, fuse(steps));
+  }
+
+  // the steps that convert a value in this unit to its derived unit, in order
+  private static boolean toDerivedSteps(final Object unit, final List<Step> steps) {
+    if (unit instanceof DerivedUnitImpl) {
+      return true;
+    }
+    if (unit instanceof ScaledUnit) {
+      final ScaledUnit scaled = (ScaledUnit) unit;
+      steps.add(Step.affine(scaled.getScale(), 1, 0));
+      return toDerivedSteps(scaled.getUnit(), steps);
+    }
+    if (unit instanceof OffsetUnit) {
+      final OffsetUnit offset = (OffsetUnit) unit;
+      steps.add(Step.affine(1, 1, offset.getOffset()));
+      return toDerivedSteps(offset.getUnit(), steps);
+    }
+    if (unit instanceof LogarithmicUnit) {
+      final LogarithmicUnit log = (LogarithmicUnit) unit;
+      steps.add(Step.affine(getLnBase(log.getBase()), 1, 0));
+      steps.add(new Step(EXP, 0, 0, 0));
+      return toDerivedSteps(log.getReference(), steps);
+    }
+    return false; // TimeScaleUnit, UnknownUnit, etc
+  }
+
+  // same as LogarithmicUnit
+  private static double getLnBase(final double base) {
+    return base == Math.E ? 1 : Math.log(base);
+  }
+
+  // combine consecutive affine steps, and drop the identity
+  private static Step[] fuse(final List<Step> steps) {
+    final List<Step> result = new ArrayList<>();
+    for (final Step step : steps) {
+      final int last = result.size() - 1;
+      if (step.kind == AFFINE && last >= 0 && result.get(last).kind == AFFINE) {
+        result.set(last, result.get(last).then(step));
+      } else {
+        result.add(step);
+      }
+    }
+    result.removeIf(Step::isIdentity);
+    return result.toArray(new Step[0]);
+  }
+
+  private static final class Step {
+    final int kind;
+    final double mul, div, add;
+
+    Step(final int kind, final double mul, final double div, final double add) {
+      this.kind = kind;
+      this.mul = mul;
+      this.div = div;
+      this.add = add;
+    }
+
+    static Step affine(final double mul, final double div, final double add) {
+      return new Step(AFFINE, mul, div, add);
+    }
+
+    // this step followed by that one; both affine
+    Step then(final Step that) {
+      return affine(mul * that.mul, div * that.div, add * that.mul / that.div + that.add);
+    }
+
+    boolean isIdentity() {
+      return kind == AFFINE && mul == div && add == 0;
+    }
+
+    void addInverse(final List<Step> steps) {
+      switch (kind) {
+        case EXP:
+          steps.add(new Step(LOG, 0, 0, 0));
+          break;
+        case LOG:
+          steps.add(new Step(EXP, 0, 0, 0));
+          break;
+        default:
+          steps.add(affine(1, 1, -add));
+          steps.add(affine(div, mul, 0));
+      }
+    }
+
+    double apply(final double x) {
+      switch (kind) {
+        case EXP:
+          return Math.exp(x);
+        case LOG:
+          return Math.log(x);
+        default:
+          if (mul == 1) {
+            return x / div + add;
+          }
+          if (div == 1) {
+            return x * mul + add;
+          }
+          return x * (mul / div) + add;
+      }
+    }
+
+    void apply(final double[] input, final double[] output) {
+      final int n = input.length;
+      switch (kind) {
+        case EXP:
+          for (int i = 0; i < n; i++) {
+            output[i] = Math.exp(input[i]);
+          }
+          break;
+        case LOG:
+          for (int i = 0; i < n; i++) {
+            output[i] = Math.log(input[i]);
+          }
+          break;
+        default:
+          if (mul == 1) {
+            for (int i = 0; i < n; i++) {
+              output[i] = input[i] / div + add;
+            }
+          } else {
+            final double factor = (div == 1) ? mul : mul / div;
+            for (int i = 0; i < n; i++) {
+              output[i] = input[i] * factor + add;
+            }
+          }
+      }
+    }
+
+    @Override
+    public String toString() {
+      switch (kind) {
+        case EXP:
+          return "exp";
+        case LOG:
+          return "log";
+        default:
+          return "*" + mul + "/" + div + "+" + add;
+      }
+    }
+  }
+
+  ////////////////////////////////////////////////////
+
+  private final Step[] steps;
+
+  private CompiledConverter(final Unit fromUnit, final Unit toUnit, final Step[] steps) throws ConversionException {
+    super(fromUnit, toUnit);
+    this.steps = steps;
+  }
+
+  public double convert(final double amount) {
+    double result = amount;
+    for (final Step step : steps) {
+      result = step.apply(result);
+    }
+    return result;
+  }
+
+  public float[] convert(final float[] input, final float[] output) {
+    final int n = input.length;
+    if (steps.length == 1 && steps[0].kind == AFFINE) {
+      final Step step = steps[0];
+      if (step.mul == 1) {
+        for (int i = 0; i < n; i++) {
+          output[i] = (float) (input[i] / step.div + step.add);
+        }
+      } else {
+        final double factor = (step.div == 1) ? step.mul : step.mul / step.div;
+        for (int i = 0; i < n; i++) {
+          output[i] = (float) (input[i] * factor + step.add);
+        }
+      }
+      return output;
+    }
+
+    for (int i = 0; i < n; i++) {
+      output[i] = (float) convert((double) input[i]);
+    }
+    return output;
+  }
+
+  public double[] convert(final double[] input, final double[] output) {
+    if (steps.length == 0) {
+      if (input != output) {
+        System.arraycopy(input, 0, output, 0, input.length);
+      }
+      return output;
+    }
+    double[] in = input;
+    for (final Step step : steps) {
+      step.apply(in, output);
+      in = output;
+    }
+    return output;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("CompiledConverter{");
+    for (final Step step : steps) {
+      sb.append(' ').append(step);
+    }
+    return sb.append(" }").toString();
+  }
+}
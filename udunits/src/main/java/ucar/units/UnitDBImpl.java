@@ -40,6 +40,11 @@ public class UnitDBImpl implements UnitDB, Serializable {
    */
   private final Map<String, Unit> symbolMap;
 
+  /**
+   * Incremented on every change, so that cached parses can be invalidated.
+   */
+  private transient volatile int modCount;
+
   /**
    * Constructs from the expected number of names and symbols. The sizes will
    * be used to construct the initial database but will not limit its growth.
@@ -64,6 +69,7 @@ public class UnitDBImpl implements UnitDB, Serializable {
    *         Attempt to redefine an existing entry.
    */
   public void add(final UnitDBImpl that) throws UnitExistsException {
+    modCount++;
     unitSet.addAll(that.unitSet);
     nameMap.putAll(that.nameMap);
     symbolMap.putAll(that.symbolMap);
@@ -87,6 +93,16 @@ public class UnitDBImpl implements UnitDB, Serializable {
     return symbolMap.size();
   }
 
+  /**
+   * Return the number of changes made to this database.
+   * 
+   * @return The number of changes; changes whenever a unit, alias, or symbol
+   *         is added.
+   */
+  int getModCount() {
+    return modCount;
+  }
+
   /**
    * Adds a unit to the database.
    * 
@@ -295,6 +311,7 @@ public class UnitDBImpl implements UnitDB, Serializable {
    */
   private void addByName(final String name, final Unit newUnit) throws UnitExistsException {
     if (name != null) {
+      modCount++;
       addUnique(nameMap, canonicalize(name), newUnit);
     }
   }
@@ -312,6 +329,7 @@ public class UnitDBImpl implements UnitDB, Serializable {
    */
   private void addBySymbol(final String symbol, final Unit newUnit) throws UnitExistsException {
     if (symbol != null) {
+      modCount++;
       addUnique(symbolMap, symbol, newUnit);
     }
   }
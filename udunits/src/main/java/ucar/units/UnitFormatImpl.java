@@ -4,6 +4,8 @@
  */
 package ucar.units;
 
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Provides support for classes that parse and format unit specifications.
@@ -16,6 +18,12 @@ public abstract class UnitFormatImpl implements UnitFormat {
 
   private static final long serialVersionUID = 1L;
   private static final Object MUTEX = new Object();
+  private static int parseCacheSize = 1000; // guarded by MUTEX
+
+  // unit specification -> parsed unit, for cacheUnitDB at cacheModCount; guarded by MUTEX
+  private final Map<String, Unit> parseCache = new HashMap<>();
+  private UnitDB cacheUnitDB;
+  private int cacheModCount;
 
   /**
    * Parses a unit specification. This method is thread-safe.
@@ -40,7 +48,41 @@ public abstract class UnitFormatImpl implements UnitFormat {
   public final Unit parse(final String spec) throws NoSuchUnitException, UnitParseException, SpecificationException,
       UnitDBException, PrefixDBException, UnitSystemException {
     synchronized (MUTEX) {
-      return parse(spec, UnitDBManager.instance());
+      final UnitDB unitDB = UnitDBManager.instance();
+      final boolean useCache = parseCacheSize > 0 && unitDB instanceof UnitDBImpl;
+      if (useCache) {
+        final int modCount = ((UnitDBImpl) unitDB).getModCount();
+        if (unitDB != cacheUnitDB || modCount != cacheModCount || parseCache.size() >= parseCacheSize) {
+          parseCache.clear();
+          cacheUnitDB = unitDB;
+          cacheModCount = modCount;
+        }
+        final Unit cached = parseCache.get(spec);
+        if (cached != null) {
+          return cached;
+        }
+      }
+      final Unit unit = parse(spec, unitDB);
+      if (useCache && unit != null) {
+        parseCache.put(spec, unit);
+      }
+      return unit;
+    }
+  }
+
+  /**
+   * Sets the maximum number of unit specifications whose parsed units are
+   * remembered by each UnitFormatImpl, so that they are not parsed again.
+   * Units are immutable, so the same Unit is returned each time. The cache
+   * is cleared if the unit database changes.
+   * 
+   * @param size
+   *        The maximum number of cached specifications; 0 to not cache.
+   *        Default is 1000.
+   */
+  public static void setParseCacheSize(final int size) {
+    synchronized (MUTEX) {
+      parseCacheSize = size;
     }
   }
 
@@ -248,7 +248,8 @@ public abstract class UnitImpl implements Unit, Serializable {
    *         The units aren't convertible.
    */
   public Converter getConverterTo(final Unit outputUnit) throws ConversionException {
-    return new MyConverter(this, outputUnit);
+    final Converter compiled = CompiledConverter.compile(this, outputUnit);
+    return compiled != null ? compiled : new MyConverter(this, outputUnit);
   }
 
   /**
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 1998-2018 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.units;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Compare compiled converters with converting through the chain of units.
+ */
+public class TestCompiledConverter {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final double[] VALUES = {0, 1, 273.15, -40, 1013.25, 12345.678, 1e-3};
+
+  @Test
+  public void testSameAsChain() throws Exception {
+    String[][] pairs = {{"K", "degC"}, {"degC", "K"}, {"Pa", "hPa"}, {"hPa", "Pa"}, {"km", "m"}, {"m", "km"},
+        {"degF", "degC"}, {"m/s", "knot"}, {"mbar", "Pa"}, {"lg(re mW)", "W"}, {"lg(re mW)", "ln(re W)"}};
+    UnitFormat format = UnitFormatManager.instance();
+
+    for (String[] pair : pairs) {
+      Unit from = format.parse(pair[0]);
+      Unit to = format.parse(pair[1]);
+      Converter converter = from.getConverterTo(to);
+      logger.debug("{} -> {} = {}", from, to, converter);
+      Assert.assertTrue(converter instanceof CompiledConverter);
+
+      DerivableUnit dfrom = (DerivableUnit) from;
+      DerivableUnit dto = (DerivableUnit) to;
+      double[] bulk = converter.convert(VALUES);
+      float[] floats = new float[VALUES.length];
+      for (int i = 0; i < VALUES.length; i++)
+        floats[i] = (float) VALUES[i];
+      float[] bulkFloats = converter.convert(floats, floats.clone());
+
+      for (int i = 0; i < VALUES.length; i++) {
+        double want = dto.fromDerivedUnit(dfrom.toDerivedUnit(VALUES[i]));
+        double tol = 1.0e-12 * Math.abs(want);
+        Assert.assertEquals(pair[0] + "->" + pair[1], want, converter.convert(VALUES[i]), tol);
+        Assert.assertEquals(converter.convert(VALUES[i]), bulk[i], 0.0);
+        Assert.assertEquals(converter.convert(floats[i]), bulkFloats[i], 1.0e-6 * Math.abs(want));
+      }
+    }
+  }
+
+  @Test
+  public void testInPlace() throws Exception {
+    Unit kelvin = UnitFormatManager.instance().parse("K");
+    Unit celsius = UnitFormatManager.instance().parse("degC");
+    double[] vals = VALUES.clone();
+    Assert.assertSame(vals, kelvin.getConverterTo(celsius).convert(vals, vals));
+    for (int i = 0; i < vals.length; i++)
+      Assert.assertEquals(VALUES[i] - 273.15, vals[i], 0.0);
+  }
+
+  @Test
+  public void testParseCache() throws Exception {
+    UnitFormat format = UnitFormatManager.instance();
+    Assert.assertSame(format.parse("m/s"), format.parse("m/s"));
+
+    UnitFormatImpl.setParseCacheSize(0);
+    try {
+      Assert.assertNotSame(format.parse("m/s"), format.parse("m/s"));
+      Assert.assertEquals(format.parse("m/s"), format.parse("m/s"));
+    } finally {
+      UnitFormatImpl.setParseCacheSize(1000);
+    }
+  }
+}